@@ -0,0 +1,108 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException;
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Creates the routes, timetable arguments and services the benchmarks measure on.
+ * The routes are random walks with fixed seeds, so the same length always gives the same route.
+ */
+public final class BenchmarkData {
+
+    /**
+     * This class only has static methods.
+     */
+    private BenchmarkData() {}
+
+    /**
+     * The number of random walks tried before giving up on a route length.
+     */
+    private static final int MAX_ATTEMPTS = 100000;
+
+    /**
+     * Returns the ids of the stops of a route with the given number of touched stops, including the station.
+     * The route only returns to the station at its end, if ever.
+     * @param length the number of touched stops, at least 1
+     * @return the ids of the stops of the route, the first one is the station
+     * @throws IllegalArgumentException if no route with the given length was found in the city
+     */
+    public static int[] createRoute(int length) {
+        for (int seed = 0; seed < MAX_ATTEMPTS; seed++) {
+            Random random = new Random(seed);
+            TouchedStops stops = new TouchedStops();
+            while (stops.getStopCount() < length) {
+                int[] reachable = stops.getReachableStopIds();
+                int[] candidates = stops.getStopCount() + 1 < length ? withoutStation(reachable) : reachable;
+                if (candidates.length == 0)
+                    break;
+                stops.appendStop(candidates[random.nextInt(candidates.length)]);
+            }
+            if (stops.getStopCount() == length)
+                return stops.getStops();
+        }
+        throw new IllegalArgumentException("there isn't a route with " + length + " stops in the city");
+    }
+
+    /**
+     * Returns the given ids without the id of the station.
+     * @param ids the ids of bus stops
+     * @return the ids that aren't 0
+     */
+    private static int[] withoutStation(int[] ids) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (int id : ids)
+            if (id != 0)
+                result[count++] = id;
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Creates the arguments of a timetable with the given route, from 04:00 to 23:00.
+     * @param name the name of the service
+     * @param stopIds the ids of the stops of the route
+     * @param timeGap the minutes between two subsequent buses
+     * @return the arguments of the timetable
+     */
+    public static iTimetable.iTimetableArguments createArguments(String name, int[] stopIds, int timeGap) {
+        int[] travelTimes = new int[stopIds.length - 1];
+        for (int i = 1; i < stopIds.length; i++)
+            travelTimes[i - 1] = (i == 1 ? 0 : travelTimes[i - 2]) + BusStop.travelTimeToFrom(stopIds[i], stopIds[i - 1]);
+        iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
+        args.setName(name);
+        args.setStopIds(stopIds);
+        args.setTravelTimes(travelTimes);
+        args.setTimeGap(timeGap);
+        args.setFirstLeaveTime(new DayTime(4, 0));
+        args.setBoundaryTime(new DayTime(23, 0));
+        return args;
+    }
+
+    /**
+     * Creates a controller with the given number of applied services. The services use routes of
+     * different lengths and different time gaps.
+     * @param serviceCount the number of services to create
+     * @return the controller with the services
+     */
+    public static Controller createController(int serviceCount) {
+        Controller controller = new Core();
+        for (int i = 0; i < serviceCount; i++) {
+            controller.createNewService();
+            controller.setName("service " + i);
+            controller.setTimeGap(5 + i % 25);
+            int[] route = createRoute(2 + i % 20);
+            for (int stop = 1; stop < route.length; stop++)
+                controller.appendStop(route[stop]);
+            try {
+                controller.applyChanges();
+            } catch (NameConflictException nce) {
+                throw new IllegalStateException(nce);
+            }
+        }
+        return controller;
+    }
+
+}//class
@@ -0,0 +1,108 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.dao.BusStopData;
+import com.github.joey11111000111.EasyPlan.dao.CompiledCity;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways {@link CityGraph#getReachableIdsExcept(int, long[])} finds the stops the route can
+ * continue with: the AND-NOT of the reachability bitsets, and the test of the roads of the stop one by one.
+ * The same random city is built in both forms, the queried stop changes with every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CityGraphBenchmark {
+
+    /**
+     * The number of stops of the city.
+     */
+    @Param({"64", "512", "2048", "16384"})
+    public int stopCount;
+
+    /**
+     * The number of roads of every stop.
+     */
+    @Param({"4", "32"})
+    public int degree;
+
+    /**
+     * The city with the reachability bitsets.
+     */
+    private CityGraph withBits;
+
+    /**
+     * The same city without the reachability bitsets.
+     */
+    private CityGraph withoutBits;
+
+    /**
+     * The stops already in the route, every fourth stop.
+     */
+    private long[] excluded;
+
+    /**
+     * The id of the next queried stop.
+     */
+    private int next;
+
+    /**
+     * Creates the city in both forms, and the excluded stops.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(stopCount);
+        List<iBusStopData> stops = new ArrayList<>();
+        for (int id = 0; id < stopCount; id++) {
+            Map<Integer, Integer> reachables = new HashMap<>();
+            while (reachables.size() < Math.min(degree, stopCount))
+                reachables.put(random.nextInt(stopCount), 1 + random.nextInt(30));
+            iBusStopData stop = new BusStopData();
+            stop.setId(id);
+            stop.setX(random.nextInt(10000));
+            stop.setY(random.nextInt(10000));
+            stop.setReachableStops(reachables);
+            stops.add(stop);
+        }
+        CompiledCity compiledCity = CompiledCity.fromStopData(stops);
+        withBits = CityGraph.fromCompiledCity(compiledCity, true);
+        withoutBits = CityGraph.fromCompiledCity(compiledCity, false);
+        excluded = new long[withBits.getWordCount()];
+        for (int id = 0; id < stopCount; id += 4)
+            excluded[id >>> 6] |= 1L << id;
+    }
+
+    @Benchmark
+    public int[] reachableIdsWithBits() {
+        next = next + 1 == stopCount ? 0 : next + 1;
+        return withBits.getReachableIdsExcept(next, excluded);
+    }
+
+    @Benchmark
+    public int[] reachableIdsWithoutBits() {
+        next = next + 1 == stopCount ? 0 : next + 1;
+        return withoutBits.getReachableIdsExcept(next, excluded);
+    }
+
+}//class
@@ -0,0 +1,58 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations of the {@link Controller} that work on all the bus services at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoreBenchmark {
+
+    /**
+     * The number of applied bus services.
+     */
+    @Param({"1", "10", "100"})
+    public int serviceCount;
+
+    /**
+     * The controller with the services.
+     */
+    private Controller controller;
+
+    /**
+     * Creates the controller with the services.
+     */
+    @Setup
+    public void setUp() {
+        controller = BenchmarkData.createController(serviceCount);
+    }
+
+    @Benchmark
+    public List<iTimetable> getAllTimetables() {
+        return controller.getAllTimetables();
+    }
+
+    @Benchmark
+    public VehicleSchedule scheduleVehicles() {
+        return controller.scheduleVehicles(5);
+    }
+
+}//class
@@ -0,0 +1,56 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the enumeration of all the closed routes of the default city with {@link RouteEnumerator},
+ * with a consumer that only sums the lengths of the routes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteEnumeratorBenchmark {
+
+    /**
+     * The maximum number of stops of the enumerated routes.
+     */
+    @Param({"10", "12", "14"})
+    public int maxStops;
+
+    /**
+     * The enumerator of the default city.
+     */
+    private RouteEnumerator enumerator;
+
+    /**
+     * Creates the enumerator.
+     */
+    @Setup
+    public void setUp() {
+        enumerator = new RouteEnumerator(CityGraph.getDefault());
+    }
+
+    @Benchmark
+    public long enumerate() {
+        LongAdder stops = new LongAdder();
+        enumerator.enumerate(maxStops, 24 * 60, route -> stops.add(route.length));
+        return stops.sum();
+    }
+
+}//class
@@ -0,0 +1,97 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries of {@link SpatialIndex} on cities of evenly spread random stops.
+ * The query points are taken from a fixed sequence, so every invocation searches a different place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialIndexBenchmark {
+
+    /**
+     * The number of query points, a power of two.
+     */
+    private static final int QUERY_COUNT = 1024;
+
+    /**
+     * The number of stops of the city.
+     */
+    @Param({"16", "1000", "50000"})
+    public int stopCount;
+
+    /**
+     * The index of the stops of the city.
+     */
+    private SpatialIndex index;
+
+    /**
+     * The X coordinates of the query points.
+     */
+    private double[] queryX;
+
+    /**
+     * The Y coordinates of the query points.
+     */
+    private double[] queryY;
+
+    /**
+     * The index of the next query point.
+     */
+    private int next;
+
+    /**
+     * Creates the city and the query points.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(stopCount);
+        int side = 100 * (int) Math.ceil(Math.sqrt(stopCount));
+        int[] xCoords = new int[stopCount];
+        int[] yCoords = new int[stopCount];
+        for (int id = 0; id < stopCount; id++) {
+            xCoords[id] = random.nextInt(side);
+            yCoords[id] = random.nextInt(side);
+        }
+        index = new SpatialIndex(xCoords, yCoords);
+        queryX = new double[QUERY_COUNT];
+        queryY = new double[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queryX[i] = random.nextDouble() * side;
+            queryY[i] = random.nextDouble() * side;
+        }
+    }
+
+    @Benchmark
+    public int nearestStop() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return index.nearestStop(queryX[next], queryY[next]);
+    }
+
+    @Benchmark
+    public int[] stopsInRectangle() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        int x = (int) queryX[next];
+        int y = (int) queryY[next];
+        return index.stopsInRectangle(x, y, x + 300, y + 300);
+    }
+
+}//class
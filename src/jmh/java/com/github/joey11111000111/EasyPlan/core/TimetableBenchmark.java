@@ -0,0 +1,95 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of timetables: the eager {@link Timetable}, the {@link VirtualTimetable}, and the
+ * {@link BusService#getTimetable() cached timetable} of a service, both when it is up to date and when the
+ * last stop was changed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimetableBenchmark {
+
+    /**
+     * The number of touched stops of the route, including the station.
+     */
+    @Param({"2", "8", "24"})
+    public int routeLength;
+
+    /**
+     * The minutes between two subsequent buses, which decides the number of buses.
+     */
+    @Param({"1", "10", "60"})
+    public int timeGap;
+
+    /**
+     * The arguments of the measured timetables.
+     */
+    private iTimetable.iTimetableArguments args;
+
+    /**
+     * A service with the route and time gap of the arguments.
+     */
+    private BusService service;
+
+    /**
+     * The last stop of the route, that is removed and appended again.
+     */
+    private int lastStop;
+
+    /**
+     * Creates the route, the arguments and the service.
+     */
+    @Setup
+    public void setUp() {
+        int[] route = BenchmarkData.createRoute(routeLength);
+        args = BenchmarkData.createArguments("benchmark", route, timeGap);
+        service = new BusService();
+        service.getCurrentServiceData().setTimeGap(timeGap);
+        for (int i = 1; i < route.length; i++)
+            service.getCurrentStops().appendStop(route[i]);
+        lastStop = route[route.length - 1];
+        service.getTimetable();
+    }
+
+    @Benchmark
+    public iTimetable createTimetable() {
+        return Timetable.createTimetable(args);
+    }
+
+    @Benchmark
+    public iTimetable createVirtualTimetable() {
+        return VirtualTimetable.createTimetable(args);
+    }
+
+    @Benchmark
+    public iTimetable getCachedTimetable() {
+        return service.getTimetable();
+    }
+
+    @Benchmark
+    public iTimetable getTimetableAfterStopEdit() {
+        TouchedStops stops = service.getCurrentStops();
+        stops.undo();
+        stops.appendStop(lastStop);
+        return service.getTimetable();
+    }
+
+}//class
@@ -0,0 +1,79 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the route editing operations of {@link TouchedStops}, on a route that misses only its last stop.
+ * The append is always measured together with its undo, so the route stays the same between the invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TouchedStopsBenchmark {
+
+    /**
+     * The number of touched stops of the whole route, including the station.
+     */
+    @Param({"2", "8", "24"})
+    public int routeLength;
+
+    /**
+     * The route without its last stop.
+     */
+    private TouchedStops stops;
+
+    /**
+     * The last stop of the route.
+     */
+    private int lastStop;
+
+    /**
+     * Creates the route without its last stop.
+     */
+    @Setup
+    public void setUp() {
+        int[] route = BenchmarkData.createRoute(routeLength);
+        stops = new TouchedStops();
+        for (int i = 1; i < route.length - 1; i++)
+            stops.appendStop(route[i]);
+        lastStop = route[route.length - 1];
+    }
+
+    @Benchmark
+    public int appendStopAndUndo() {
+        stops.appendStop(lastStop);
+        stops.undo();
+        return stops.getStopCount();
+    }
+
+    @Benchmark
+    public int[] getStops() {
+        return stops.getStops();
+    }
+
+    @Benchmark
+    public int[] getReachableStopIds() {
+        return stops.getReachableStopIds();
+    }
+
+    @Benchmark
+    public int[] getTravelTimes() {
+        return stops.getTravelTimes();
+    }
+
+}//class
@@ -0,0 +1,152 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reading of the city.xml file, which happens at every start of the program, and of a generated
+ * large city file, with the DOM, the StAX and the compiled binary reader. The files are temporary copies,
+ * so the compiled city of the user is not touched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CityReaderBenchmark {
+
+    /**
+     * The number of connections of every stop of the generated city.
+     */
+    private static final int CONNECTIONS_PER_STOP = 10;
+
+    /**
+     * The measured implementation, "dom", "stax" or "binary".
+     */
+    @Param({"dom", "stax", "binary"})
+    public String implementation;
+
+    /**
+     * The number of stops of the generated city, 0 to read a copy of the city.xml resource instead.
+     */
+    @Param({"0", "20000"})
+    public int generatedStops;
+
+    /**
+     * The city file, generated or copied from the city.xml resource.
+     */
+    private File cityFile;
+
+    /**
+     * The compiled form of the city file, for the binary reader.
+     */
+    private File compiledFile;
+
+    /**
+     * The measured reader.
+     */
+    private iCityReader reader;
+
+    /**
+     * Creates the city file and the reader. The binary reader compiles the city here, so only the loading
+     * of the compiled file is measured.
+     * @throws IOException if the city file cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        cityFile = File.createTempFile("easyPlanBenchmark", ".xml");
+        compiledFile = File.createTempFile("easyPlanBenchmark", ".bin");
+        if (generatedStops > 0)
+            writeCity(cityFile, generatedStops);
+        else
+            try (InputStream is = CityReaderBenchmark.class.getClassLoader().getResourceAsStream("city.xml")) {
+                Files.copy(is, cityFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        switch (implementation) {
+            case "dom":
+                reader = new CityReader(cityFile);
+                break;
+            case "stax":
+                reader = new StaxCityReader(cityFile);
+                break;
+            default:
+                reader = new BinaryCityReader(cityFile, compiledFile);
+                reader.readCompiledCity();
+        }
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    @TearDown
+    public void tearDown() {
+        for (File file : new File[] {cityFile, compiledFile})
+            if (!file.delete())
+                file.deleteOnExit();
+    }
+
+    /**
+     * Writes a city with random positions and connections in the format of city.xml.
+     * @param file the file to write
+     * @param stopCount the number of stops, including the bus station
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeCity(File file, int stopCount) throws IOException {
+        Random random = new Random(stopCount);
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<?xml version=\"1.0\"?>");
+            writer.println("<city>");
+            for (int id = 0; id < stopCount; id++) {
+                String tag = id == 0 ? "bus_station" : "bus_stop";
+                writer.println("    <" + tag + ">");
+                writer.println("        <id>" + id + "</id>");
+                writer.println("        <position>");
+                writer.println("            <x>" + random.nextInt(1000) + "</x>");
+                writer.println("            <y>" + random.nextInt(1000) + "</y>");
+                writer.println("        </position>");
+                writer.println("        <connections>");
+                for (int c = 0; c < CONNECTIONS_PER_STOP; c++) {
+                    writer.println("            <connection>");
+                    writer.println("                <refid>" + random.nextInt(stopCount) + "</refid>");
+                    writer.println("                <travel_time>" + (1 + random.nextInt(20)) + "</travel_time>");
+                    writer.println("            </connection>");
+                }
+                writer.println("        </connections>");
+                writer.println("    </" + tag + ">");
+            }
+            writer.println("</city>");
+        }
+    }
+
+    @Benchmark
+    public List<iBusStopData> readCityStops() {
+        return reader.readCityStops();
+    }
+
+    @Benchmark
+    public CompiledCity readCompiledCity() {
+        return reader.readCompiledCity();
+    }
+
+}//class
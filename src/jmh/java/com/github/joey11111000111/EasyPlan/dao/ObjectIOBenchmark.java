@@ -0,0 +1,89 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import com.github.joey11111000111.EasyPlan.core.BenchmarkData;
+import com.github.joey11111000111.EasyPlan.core.Controller;
+import com.github.joey11111000111.EasyPlan.core.Core;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the saving and reading of all the bus services. A temporary save file is used,
+ * the save file of the user is not touched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectIOBenchmark {
+
+    /**
+     * The number of saved bus services.
+     */
+    @Param({"1", "10", "100"})
+    public int serviceCount;
+
+    /**
+     * The temporary save file.
+     */
+    private File saveFile;
+
+    /**
+     * The measured object saver, that uses the temporary save file.
+     */
+    private iObjectIO objectIO;
+
+    /**
+     * The controller with the services to save.
+     */
+    private Controller controller;
+
+    /**
+     * Creates the services and saves them, so there is something to read.
+     * @throws IOException if the temporary save file cannot be created
+     * @throws ObjectSaveFailureException if the services cannot be saved
+     */
+    @Setup
+    public void setUp() throws IOException, ObjectSaveFailureException {
+        saveFile = File.createTempFile("easyPlanBenchmark", ".xml");
+        objectIO = new ObjectIO(saveFile);
+        controller = BenchmarkData.createController(serviceCount);
+        objectIO.saveObject(controller, Core.class);
+    }
+
+    /**
+     * Deletes the temporary save file.
+     */
+    @TearDown
+    public void tearDown() {
+        if (!saveFile.delete())
+            saveFile.deleteOnExit();
+    }
+
+    @Benchmark
+    public File saveObject() throws ObjectSaveFailureException {
+        objectIO.saveObject(controller, Core.class);
+        return saveFile;
+    }
+
+    @Benchmark
+    public Core readObject() throws ObjectReadFailureException {
+        return objectIO.readObject(Core.class);
+    }
+
+}//class
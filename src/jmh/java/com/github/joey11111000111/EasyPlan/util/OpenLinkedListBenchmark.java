@@ -0,0 +1,68 @@
+package com.github.joey11111000111.EasyPlan.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the removal of the second half of an {@link OpenLinkedList}, by index and by element.
+ * The removed chain is appended back right after, so the list stays the same between the invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenLinkedListBenchmark {
+
+    /**
+     * The number of elements in the list.
+     */
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    /**
+     * The list with the elements 0, 1, ... size - 1.
+     */
+    private OpenLinkedList<Integer> list;
+
+    /**
+     * The element in the middle of the list.
+     */
+    private Integer middle;
+
+    /**
+     * Fills the list.
+     */
+    @Setup
+    public void setUp() {
+        list = new OpenLinkedList<>();
+        for (int i = 0; i < size; i++)
+            list.append(i);
+        middle = size / 2;
+    }
+
+    @Benchmark
+    public int removeChainFromIndex() {
+        list.appendChain(list.removeChainFrom(size / 2));
+        return list.size();
+    }
+
+    @Benchmark
+    public int removeChainFromElement() {
+        list.appendChain(list.removeChainFrom(middle));
+        return list.size();
+    }
+
+}//class
@@ -1,15 +1,25 @@
 package com.github.joey11111000111.EasyPlan;
 
+import com.github.joey11111000111.EasyPlan.core.CityGraph;
 import com.github.joey11111000111.EasyPlan.core.Controller;
 import com.github.joey11111000111.EasyPlan.core.Core;
+import com.github.joey11111000111.EasyPlan.dao.CityFileWatcher;
 import com.github.joey11111000111.EasyPlan.dao.ObjectIO;
 import com.github.joey11111000111.EasyPlan.dao.ObjectReadFailureException;
 import com.github.joey11111000111.EasyPlan.dao.ObjectSaveFailureException;
+import com.github.joey11111000111.EasyPlan.dao.iCityReader;
 import com.github.joey11111000111.EasyPlan.dao.iObjectIO;
 import com.github.joey11111000111.EasyPlan.gui.Start;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
 /**
  * Tha class contains the main method for this project.
  * Links all the modules together, to create a single working
@@ -33,29 +43,41 @@ public class EasyPlan {
     public static void main(String[] args) {
 
         LOGGER.trace("called main method");
+        long startNanos = System.nanoTime();
 
         iObjectIO objectIO = new ObjectIO();
 
         LOGGER.trace("iObjectIO created");
 
-        // set up controller
-        Controller controller;
-        try {
-            controller = objectIO.readObject(Core.class);
-            controller.init();
-            LOGGER.debug("Controller was successfully read");
-        } catch (ObjectReadFailureException orfe) {
-            controller = new Core();
-            controller.createNewService();
-            LOGGER.debug("a new Controller was created");
-        }
+        // load the city and read the save file in the background, while the GUI toolkit starts
+        ExecutorService loader = Executors.newFixedThreadPool(2, task -> {
+            Thread thread = new Thread(task, "EasyPlan-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<CityGraph> cityFuture = CompletableFuture.supplyAsync(
+                () -> timed("city loading", startNanos, CityGraph::getDefault), loader);
+        CompletableFuture<Controller> controllerFuture = CompletableFuture.supplyAsync(
+                () -> timed("save file reading", startNanos, () -> readSavedController(objectIO)), loader)
+                .thenCombine(cityFuture, (saved, city) ->
+                        timed("controller setup", startNanos, () -> setUpController(saved, city)));
+        loader.shutdown();
 
-        // set up and launch GUI
-        Start.setController(controller);
+        // set up and launch GUI, the city is replaced while it runs whenever the city file changes
+        Start.setControllerFuture(controllerFuture);
+        CityFileWatcher watcher = watchCityFile();
         Start.start();
         LOGGER.debug("GUI was launched");
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ioe) {
+                LOGGER.warn("couldn't stop watching the city file: " + ioe.getMessage());
+            }
+        }
 
         // save if needed
+        Controller controller = controllerFuture.join();
         if (!controller.isSaved()) {
             try {
                 objectIO.saveObject(controller, Core.class);
@@ -69,4 +91,71 @@ public class EasyPlan {
 
     }//main
 
-}//class
\ No newline at end of file
+    /**
+     * Starts watching the city file that is set by the {@link iCityReader#CITY_FILE_PROPERTY} system property.
+     * The city.xml resource of the program cannot change, so it is not watched.
+     * @return the watcher of the city file, or null if there is no city file or it cannot be watched
+     */
+    private static CityFileWatcher watchCityFile() {
+        File cityFile = iCityReader.getCityFile();
+        if (cityFile == null)
+            return null;
+        try {
+            return new CityFileWatcher(cityFile, city -> Start.replaceCity(CityGraph.fromCompiledCity(city)));
+        } catch (IOException ioe) {
+            LOGGER.warn("couldn't watch the city file, it is only read at the start: " + ioe.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the controller from the save file.
+     * @param objectIO the object that reads the save file
+     * @return the saved controller which is not yet initialized, or null if there is no usable save file
+     */
+    private static Controller readSavedController(iObjectIO objectIO) {
+        try {
+            Controller controller = objectIO.readObject(Core.class);
+            LOGGER.debug("Controller was successfully read");
+            return controller;
+        } catch (ObjectReadFailureException orfe) {
+            LOGGER.debug("there is no saved Controller: " + orfe.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Initializes the saved controller, or creates a new one when there isn't any.
+     * @param saved the controller read from the save file, null if there isn't any
+     * @param city the loaded city, the new controller is created in it
+     * @return the controller ready to use
+     */
+    private static Controller setUpController(Controller saved, CityGraph city) {
+        if (saved != null) {
+            saved.init();
+            return saved;
+        }
+        Controller controller = new Core(city);
+        controller.createNewService();
+        LOGGER.debug("a new Controller was created");
+        return controller;
+    }
+
+    /**
+     * Runs the given startup phase and logs how long it took.
+     * @param phase the name of the phase in the log
+     * @param startNanos the {@link System#nanoTime()} when the application started
+     * @param task the phase to run
+     * @param <T> the type of the result of the phase
+     * @return the result of the phase
+     */
+    private static <T> T timed(String phase, long startNanos, Supplier<T> task) {
+        long phaseStart = System.nanoTime();
+        T result = task.get();
+        long end = System.nanoTime();
+        LOGGER.info(phase + " took " + (end - phaseStart) / 1000000 + " ms, finished "
+                + (end - startNanos) / 1000000 + " ms after the start");
+        return result;
+    }
+
+}//class
@@ -4,12 +4,18 @@ import com.github.joey11111000111.EasyPlan.util.DayTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This class acts as a buffer for the basic data of a bus service.
  * Basic data modifications only happen here, along with the validation of
  * the modifications. Also follows whether there were any new modifications.
+ * The modifications are recorded in an {@link EditLog}, usually shared with the {@link TouchedStops stops}
+ * of the same service, so they can be undone and redone.
  */
-class BasicServiceData {
+class BasicServiceData implements EditLog.Editor {
 
     /**
      * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
@@ -36,13 +42,32 @@ class BasicServiceData {
      */
     private DayTime boundaryTime;
 
+    /**
+     * Buffered {@link BusService#timeBands timeBands} of the wrapping {@link BusService}.
+     * It is read-only, and replaced as a whole when modified.
+     */
+    private List<TimeBand> timeBands;
+
     /**
      * Indicates whether there were any new modificatons.
      */
     private boolean modified;
 
     /**
-     * Creates a BasicServiceData object with all the initial data provided.
+     * Modification counter, increased by every change of the buffered data.
+     * Unlike {@link #modified}, it is never reset, so it can be used to decide whether
+     * something derived from the buffered data is still up to date.
+     */
+    private long version;
+
+    /**
+     * The log of the modifications, which can undo and redo them.
+     */
+    private final EditLog editLog;
+
+    /**
+     * Creates a BasicServiceData object with all the initial data provided, which has its own {@link EditLog}.
+     * See {@link #BasicServiceData(String, int, DayTime, DayTime, EditLog)} for more information.
      * @param name name of the service
      * @param timeGap minutes before the next bust of the service leaves the station
      * @param firstLeaveTime indicates the time of the day when the first bus of the service leaves the station
@@ -50,11 +75,29 @@ class BasicServiceData {
      *                     no more buses of the service can leave the station
      */
     public BasicServiceData(String name, int timeGap, DayTime firstLeaveTime, DayTime boundaryTime) {
+        this(name, timeGap, firstLeaveTime, boundaryTime, new EditLog());
+    }
+
+    /**
+     * Creates a BasicServiceData object with all the initial data provided.
+     * @param name name of the service
+     * @param timeGap minutes before the next bust of the service leaves the station
+     * @param firstLeaveTime indicates the time of the day when the first bus of the service leaves the station
+     * @param boundaryTime indicates the time of the day after which
+     *                     no more buses of the service can leave the station
+     * @param editLog the log of the modifications, possibly shared with the stops of the service
+     * @throws NullPointerException if the given log is null
+     */
+    BasicServiceData(String name, int timeGap, DayTime firstLeaveTime, DayTime boundaryTime, EditLog editLog) {
         LOGGER.trace("called BasicServiceData constructor");
+        if (editLog == null)
+            throw new NullPointerException("the given edit log is null");
+        this.editLog = editLog;
         this.name = name;
         this.timeGap = timeGap;
         this.firstLeaveTime = new DayTime(firstLeaveTime);
         this.boundaryTime = new DayTime(boundaryTime);
+        timeBands = Collections.emptyList();
         modified = false;
     }
 
@@ -65,6 +108,7 @@ class BasicServiceData {
      */
     private void markAsModified() {
         LOGGER.trace("called markAsModified");
+        version++;
         if (!modified) {
             modified = true;
             LOGGER.debug("now marked as modified");
@@ -75,6 +119,7 @@ class BasicServiceData {
      * Changes the state of the object from modified to saved, if it is not already saved.
      * The "saved" state indicates that the contents of the buffer are identical to the
      * contents found in the wrapping {@link BusService} object.
+     * The {@link #editLog} is cleared, even if it is shared, so there is nothing to undo or redo.
      */
     public void markAsSaved() {
         LOGGER.trace("called markAsSaved");
@@ -82,6 +127,7 @@ class BasicServiceData {
             modified = false;
             LOGGER.debug("now marked as saved");
         }
+        editLog.clear();
     }
 
     /**
@@ -93,6 +139,15 @@ class BasicServiceData {
         return modified;
     }
 
+    /**
+     * Returns the modification counter of this buffer.
+     * See {@link #version} for more information.
+     * @return the modification counter of this buffer
+     */
+    long getVersion() {
+        return version;
+    }
+
     /**
      * Returns the buffered {@link BusService#name name} of the wrapping bus service.
      * @return the buffered name of the wrapping bus service.
@@ -115,6 +170,7 @@ class BasicServiceData {
             throw new IllegalArgumentException("empty string must not be the name of a bus service");
         if (name.equals(this.name))
             return;
+        editLog.record(this, EditLog.Kind.NAME, 0, 0, this.name, name);
         this.name = name;
         markAsModified();
     }
@@ -142,6 +198,7 @@ class BasicServiceData {
             throw new IllegalArgumentException("timeGap must be less than one whole day: " + timeGap);
         if (this.timeGap == timeGap)
             return;
+        editLog.record(this, EditLog.Kind.TIME_GAP, this.timeGap, timeGap, null, null);
         this.timeGap = timeGap;
         markAsModified();
     }
@@ -154,10 +211,13 @@ class BasicServiceData {
      * @param minutes the first leaving minute
      */
     public void setFirstLeaveTime(int hours, int minutes) {
+        int oldMinutes = firstLeaveTime.getTimeAsMinutes();
         boolean hoursModified = firstLeaveTime.setHours(hours);
         boolean minutesModified = firstLeaveTime.setMinutes(minutes);
-        if (hoursModified || minutesModified)
+        if (hoursModified || minutesModified) {
+            recordTime(EditLog.Kind.FIRST_LEAVE_TIME, oldMinutes, firstLeaveTime);
             markAsModified();
+        }
     }
 
     /**
@@ -169,8 +229,13 @@ class BasicServiceData {
      * @param time the first leaving time
      */
     public void setFirstLeaveTime(DayTime time) {
-        firstLeaveTime.setHours(time.getHours());
-        firstLeaveTime.setMinutes(time.getMinutes());
+        int oldMinutes = firstLeaveTime.getTimeAsMinutes();
+        boolean hoursModified = firstLeaveTime.setHours(time.getHours());
+        boolean minutesModified = firstLeaveTime.setMinutes(time.getMinutes());
+        if (hoursModified || minutesModified) {
+            recordTime(EditLog.Kind.FIRST_LEAVE_TIME, oldMinutes, firstLeaveTime);
+            markAsModified();
+        }
     }
 
     /**
@@ -179,8 +244,11 @@ class BasicServiceData {
      * @param hours the new hour part of the buffered first leave time
      */
     public void setFirstLeaveHour(int hours) {
-        if (firstLeaveTime.setHours(hours))
+        int oldMinutes = firstLeaveTime.getTimeAsMinutes();
+        if (firstLeaveTime.setHours(hours)) {
+            recordTime(EditLog.Kind.FIRST_LEAVE_TIME, oldMinutes, firstLeaveTime);
             markAsModified();
+        }
     }
 
     /**
@@ -189,8 +257,11 @@ class BasicServiceData {
      * @param minutes the new minute part of the buffered first leave time
      */
     public void setFirstLeaveMinutes(int minutes) {
-        if (firstLeaveTime.setMinutes(minutes))
+        int oldMinutes = firstLeaveTime.getTimeAsMinutes();
+        if (firstLeaveTime.setMinutes(minutes)) {
+            recordTime(EditLog.Kind.FIRST_LEAVE_TIME, oldMinutes, firstLeaveTime);
             markAsModified();
+        }
     }
 
     /**
@@ -226,10 +297,13 @@ class BasicServiceData {
      * @param minutes the minute part of the new boundary time
      */
     public void setBoundaryTime(int hours, int minutes) {
+        int oldMinutes = boundaryTime.getTimeAsMinutes();
         boolean hoursModified = boundaryTime.setHours(hours);
         boolean minutesModified = boundaryTime.setMinutes(minutes);
-        if (hoursModified || minutesModified)
+        if (hoursModified || minutesModified) {
+            recordTime(EditLog.Kind.BOUNDARY_TIME, oldMinutes, boundaryTime);
             markAsModified();
+        }
     }
 
     /**
@@ -240,8 +314,13 @@ class BasicServiceData {
      * @param time the first leaving time
      */
     public void setBoundaryTime(DayTime time) {
-        boundaryTime.setHours(time.getHours());
-        boundaryTime.setMinutes(time.getMinutes());
+        int oldMinutes = boundaryTime.getTimeAsMinutes();
+        boolean hoursModified = boundaryTime.setHours(time.getHours());
+        boolean minutesModified = boundaryTime.setMinutes(time.getMinutes());
+        if (hoursModified || minutesModified) {
+            recordTime(EditLog.Kind.BOUNDARY_TIME, oldMinutes, boundaryTime);
+            markAsModified();
+        }
     }
 
     /**
@@ -249,16 +328,22 @@ class BasicServiceData {
      * @param hours the new hour part of the buffered boundary time
      */
     public void setBoundaryHours(int hours) {
-        if (boundaryTime.setHours(hours))
+        int oldMinutes = boundaryTime.getTimeAsMinutes();
+        if (boundaryTime.setHours(hours)) {
+            recordTime(EditLog.Kind.BOUNDARY_TIME, oldMinutes, boundaryTime);
             markAsModified();
+        }
     }
     /**
      * Sets the minute part of the buffered {@link BusService#boundaryTime boundaryTime}.
      * @param minutes the new minute part of the buffered boundary time
      */
     public void setBoundaryMinutes(int minutes) {
-        if (boundaryTime.setMinutes(minutes))
+        int oldMinutes = boundaryTime.getTimeAsMinutes();
+        if (boundaryTime.setMinutes(minutes)) {
+            recordTime(EditLog.Kind.BOUNDARY_TIME, oldMinutes, boundaryTime);
             markAsModified();
+        }
     }
 
     /**
@@ -283,4 +368,88 @@ class BasicServiceData {
     DayTime getBoundaryTime() {
         return new DayTime(boundaryTime);
     }
+
+    /**
+     * Returns the buffered {@link BusService#timeBands timeBands} of the wrapping service.
+     * @return a read-only list of the buffered time bands, in the order they were set
+     */
+    List<TimeBand> getTimeBands() {
+        return timeBands;
+    }
+
+    /**
+     * Sets the buffered {@link BusService#timeBands timeBands} of the wrapping service.
+     * The {@link BusService#timeGap timeGap} is used before the first time band of the day.
+     * @param timeBands the new time bands, in any order
+     * @throws NullPointerException if the given list or any of its elements is null
+     * @throws IllegalArgumentException if two time bands start at the same time
+     */
+    public void setTimeBands(List<TimeBand> timeBands) {
+        LOGGER.trace("called setTimeBands");
+        TimeBand.checkTimeBands(timeBands);
+        if (timeBands.equals(this.timeBands))
+            return;
+        List<TimeBand> oldTimeBands = this.timeBands;
+        this.timeBands = Collections.unmodifiableList(new ArrayList<>(timeBands));
+        editLog.record(this, EditLog.Kind.TIME_BANDS, 0, 0, oldTimeBands, this.timeBands);
+        markAsModified();
+    }
+
+    /**
+     * Records the modification of the first leave time or the boundary time in the {@link #editLog}.
+     * @param kind the kind of the modified time
+     * @param oldMinutes the minutes of the day before the modification
+     * @param time the modified time
+     */
+    private void recordTime(EditLog.Kind kind, int oldMinutes, DayTime time) {
+        editLog.record(this, kind, oldMinutes, time.getTimeAsMinutes(), null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The old value is set again, which counts as a modification.
+     */
+    @Override
+    public void undoEdit(EditLog.Kind kind, int oldValue, Object oldObject) {
+        restore(kind, oldValue, oldObject);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The new value is set again, which counts as a modification.
+     */
+    @Override
+    public void redoEdit(EditLog.Kind kind, int newValue, Object newObject) {
+        restore(kind, newValue, newObject);
+    }
+
+    /**
+     * Sets a recorded value of the basic data, without recording it again.
+     * @param kind the kind of the modification
+     * @param value the recorded value, for the time gap and the times
+     * @param object the recorded object, for the name and the time bands
+     */
+    @SuppressWarnings("unchecked")
+    private void restore(EditLog.Kind kind, int value, Object object) {
+        switch (kind) {
+            case NAME:
+                name = (String) object;
+                break;
+            case TIME_GAP:
+                timeGap = value;
+                break;
+            case FIRST_LEAVE_TIME:
+                firstLeaveTime = new DayTime(value / 60, value % 60);
+                break;
+            case BOUNDARY_TIME:
+                boundaryTime = new DayTime(value / 60, value % 60);
+                break;
+            case TIME_BANDS:
+                timeBands = (List<TimeBand>) object;
+                break;
+            default:
+                throw new IllegalArgumentException("not a basic data modification: " + kind);
+        }
+        markAsModified();
+    }
 }//class
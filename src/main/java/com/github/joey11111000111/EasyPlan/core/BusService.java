@@ -4,6 +4,7 @@ import com.github.joey11111000111.EasyPlan.util.DayTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,9 +29,16 @@ public class BusService {
     static final String DEFAULT_NAME = "new service";
 
     /**
-     * The ID -s of the already applied bus stops.
-     * The ID -s of the newly added bus stops will only be included in this list
+     * The already applied bus stops.
+     * The newly added bus stops will only be included in this route
      * after the {@link #applyChanges()} method was called.
+     * It shares its arrays with {@link #currentStops}, so applying and discarding the stops take constant time.
+     */
+    @XmlTransient private Route savedRoute;
+
+    /**
+     * The ID -s of the applied bus stops, as they are saved to file. It is only filled while the service is
+     * written, and after it is read, until {@link #initTransientFields()} turns it into the {@link #savedRoute}.
      */
     @XmlElement(name = "touchedStop") private List<Integer> savedStops;
 
@@ -57,6 +65,13 @@ public class BusService {
      */
     private DayTime boundaryTime;
 
+    /**
+     * The periods of the day with their own time gap, like the peak hours.
+     * The {@link #timeGap} is only used before the first time band of the day.
+     * See {@link TimeBand} for more information.
+     */
+    @XmlElement(name = "timeBand") private List<TimeBand> timeBands;
+
     /**
      * The buffer for the bus stops of this service.
      * Every modification of the stops happen here first, and get "committed"
@@ -73,21 +88,72 @@ public class BusService {
      */
     @XmlTransient private BasicServiceData currentServiceData;
 
+    /**
+     * The log of the unapplied modifications of both buffers, which can undo and redo them.
+     * See {@link EditLog} for more information.
+     */
+    @XmlTransient private EditLog editLog;
+
+    /**
+     * The last created timetable of this service, or null if there isn't one.
+     * It is only valid while the {@link BasicServiceData#getVersion() version} of {@link #currentServiceData}
+     * and the {@link TouchedStops#getVersion() version} of {@link #currentStops} are the same
+     * as at the time of its creation.
+     */
+    @XmlTransient private VirtualTimetable timetable;
+
+    /**
+     * The version of {@link #currentServiceData} the {@link #timetable} was created from.
+     */
+    @XmlTransient private long timetableDataVersion;
+
+    /**
+     * The version of {@link #currentStops} the {@link #timetable} was created from.
+     */
+    @XmlTransient private long timetableStopsVersion;
+
+    /**
+     * The number of stops at the beginning of {@link #currentStops} that haven't changed since the
+     * {@link #timetable} was created. When only the stops were modified, the timetable is not created
+     * again from scratch, these stops are kept, and only the rest of the stops are appended to it.
+     */
+    @XmlTransient private int unchangedStopCount;
+
+    /**
+     * The city whose bus stops this service touches.
+     */
+    @XmlTransient private CityGraph city;
+
     /**
      * Creates a bus service filled with default values. These values are:<br>
      *   - default name (new service)<br>
      *   - empty stop list<br>
      *   - 10 minutes time gap<br>
      *   - first leaves the station at 08:00<br>
-     *   - no bus leaves after 18:00
+     *   - no bus leaves after 18:00<br>
+     *   - no time bands<br>
+     * The service is in the {@link CityGraph#getDefault() default city}.
      */
     public BusService() {
+        this(CityGraph.getDefault());
+    }
+
+    /**
+     * Creates a bus service filled with default values, in the given city.
+     * See {@link #BusService()} for the default values.
+     * @param city the city whose bus stops the service touches
+     * @throws NullPointerException if the given city is null
+     */
+    public BusService(CityGraph city) {
         LOGGER.trace("called BusService constructor");
-        savedStops = new ArrayList<>();
+        if (city == null)
+            throw new NullPointerException("the given city is null");
+        this.city = city;
         name = DEFAULT_NAME;
         timeGap = 10;
         firstLeaveTime = new DayTime(8, 0);
         boundaryTime = new DayTime(18, 0);
+        timeBands = new ArrayList<>();
         initTransientFields();
     }
 
@@ -96,18 +162,106 @@ public class BusService {
      * Only the applied data are saved to file, so after reading
      * the file, the buffers don't get any valid value. This method
      * fills them with valid data.
+     * @param city the city whose bus stops the service touches
+     */
+    void initTransientFields(CityGraph city) {
+        this.city = city;
+        initTransientFields();
+    }
+
+    /**
+     * Fills the buffers with the saved data, in the city the service already has.
+     * See {@link #initTransientFields(CityGraph)} for more information.
      */
     void initTransientFields() {
         LOGGER.trace("called initTransientFields");
+        // the new buffers start with new versions, so the cached timetable is invalid
+        timetable = null;
+        editLog = new EditLog();
         // init CurrentServiceDate
-        currentServiceData = new BasicServiceData(name, timeGap, firstLeaveTime, boundaryTime);
+        currentServiceData = new BasicServiceData(name, timeGap, firstLeaveTime, boundaryTime, editLog);
+        // files saved before the time bands existed don't have any
+        if (timeBands == null)
+            timeBands = new ArrayList<>();
+        currentServiceData.setTimeBands(timeBands);
+        currentServiceData.markAsSaved();
         // init currentStops
-        currentStops = new TouchedStops();
-        if (savedStops.isEmpty())
-            return;
-        for (int i = 1; i < savedStops.size(); i++)
-            currentStops.appendStop(savedStops.get(i));
+        currentStops = new TouchedStops(city, editLog);
+        listenToStops();
+        if (savedStops != null) {
+            for (int i = 1; i < savedStops.size(); i++)
+                currentStops.appendStop(savedStops.get(i));
+            savedStops = null;
+        } else if (savedRoute != null) {
+            for (int i = 1; i < savedRoute.getStopCount(); i++)
+                currentStops.appendStop(savedRoute.getStop(i));
+        }
         currentStops.markAsSaved();
+        savedRoute = currentStops.getRoute();
+    }
+
+    /**
+     * Fills the {@link #savedStops} list before the service is written by JAXB.
+     * @param marshaller the marshaller that writes the service
+     */
+    private void beforeMarshal(Marshaller marshaller) {
+        savedStops = new ArrayList<>(savedRoute.getStopCount());
+        for (int i = 0; i < savedRoute.getStopCount(); i++)
+            savedStops.add(savedRoute.getStop(i));
+    }
+
+    /**
+     * Releases the {@link #savedStops} list after the service was written by JAXB.
+     * @param marshaller the marshaller that wrote the service
+     */
+    private void afterMarshal(Marshaller marshaller) {
+        savedStops = null;
+    }
+
+    /**
+     * Sets the listener of {@link #currentStops}, which keeps {@link #unchangedStopCount} up to date.
+     */
+    private void listenToStops() {
+        currentStops.setStopListener(fromIndex -> unchangedStopCount = Math.min(unchangedStopCount, fromIndex));
+    }
+
+    /**
+     * Moves this service into a new version of its city. When neither the applied stops nor the buffer of the
+     * stops (with its undo history) touch a changed stop, the route is the same in the new city, and the
+     * buffer is only moved. Otherwise the applied stops are appended again in the new city, and they are cut at
+     * the first stop that breaks a rule there. The buffer is filled with the remaining stops, so its unapplied
+     * modifications are lost, and the {@link #editLog} is cleared. The basic data are kept in both cases.
+     * @param newCity the new version of the city
+     * @param diff the stops that differ between the current and the new city
+     * @return true if the service touched a changed stop, so its stops were checked again
+     */
+    synchronized boolean changeCity(CityGraph newCity, CityDiff diff) {
+        LOGGER.trace("called changeCity");
+        // the timetable extends itself in the city it was created in
+        timetable = null;
+        if (!diff.touchesAny(savedRoute.getStopsView()) && !currentStops.touches(diff)) {
+            city = newCity;
+            currentStops.moveToCity(newCity);
+            return false;
+        }
+
+        city = newCity;
+        TouchedStops stops = new TouchedStops(newCity, editLog);
+        for (int i = 1; i < savedRoute.getStopCount(); i++) {
+            try {
+                stops.appendStop(savedRoute.getStop(i));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.warn("the stops of the service '" + name + "' are cut before the "
+                        + (i + 1) + ". stop: " + e.getMessage());
+                break;
+            }
+        }
+        stops.markAsSaved();
+        savedRoute = stops.getRoute();
+        currentStops = stops;
+        listenToStops();
+        LOGGER.debug("the stops of the service '" + name + "' were checked in the new city");
+        return true;
     }
 
     /**
@@ -134,15 +288,14 @@ public class BusService {
             currentServiceData.setTimeGap(timeGap);
             currentServiceData.setFirstLeaveTime(firstLeaveTime);
             currentServiceData.setBoundaryTime(boundaryTime);
+            currentServiceData.setTimeBands(timeBands);
             currentServiceData.markAsSaved();
             restoreHappened = true;
             LOGGER.debug("there are discarded basic data changes");
         }
         // discard stop changes, if there were any
         if (currentStops.isModified()) {
-            currentStops.clear();
-            for (int i = 1; i < savedStops.size(); i++)
-                currentStops.appendStop(savedStops.get(i));
+            currentStops.restore(savedRoute);
             currentStops.markAsSaved();
             if (!restoreHappened)
                 restoreHappened = true;
@@ -152,17 +305,14 @@ public class BusService {
     }
 
     /**
-     * Replaces the content of the {@link #savedStops} with the content
-     * of the buffer called {@link #currentStops}.
+     * Replaces the {@link #savedRoute} with a snapshot of the buffer called {@link #currentStops},
+     * in constant time.
      * This way the new bus stop modifications get saved, and the state of the buffer
      * will be set to "saved".
      */
     private void applyStops() {
         LOGGER.trace("called applyStops");
-        savedStops.clear();
-        int[] stops = currentStops.getStops();
-        for (int i = 0; i < stops.length; i++)
-            savedStops.add(stops[i]);
+        savedRoute = currentStops.getRoute();
     }
 
     /**
@@ -177,6 +327,7 @@ public class BusService {
         timeGap = currentServiceData.getTimeGap();
         firstLeaveTime = new DayTime(currentServiceData.getFirstLeaveTime());
         boundaryTime = new DayTime(currentServiceData.getBoundaryTime());
+        timeBands = new ArrayList<>(currentServiceData.getTimeBands());
     }
 
     /**
@@ -198,6 +349,15 @@ public class BusService {
     }
 
 
+    /**
+     * Returns the applied stops of the service, ignoring the unapplied modifications of the buffer.
+     * The route is immutable, so it can be used on another thread, for example by an export.
+     * @return the applied route of the service
+     */
+    public Route getAppliedRoute() {
+        return savedRoute;
+    }
+
     /**
      * Returns the buffer object that manages the modifications of the stop list of the bus service.
      * @return the buffer object that manages the modification of the stop list.
@@ -206,6 +366,14 @@ public class BusService {
         return currentStops;
     }
 
+    /**
+     * Returns the log of the unapplied modifications of the buffers, which can undo and redo them.
+     * @return the edit log of this service
+     */
+    EditLog getEditLog() {
+        return editLog;
+    }
+
     /**
      * Returns the buffer object that manages the modifications of the basic data of the bus service.
      * @return the buffer object that manages the modifications of the basic data.
@@ -215,12 +383,30 @@ public class BusService {
     }
 
     /**
-     * Creates and returns a filled {@link Timetable} object that represents all the statistical
-     * data of this bus service.
-     * @return the {@link Timetable} of this bus service.
+     * Creates and returns a filled {@link iTimetable} object that represents all the statistical
+     * data of this bus service. The returned timetable is a {@link VirtualTimetable}, its
+     * creation only takes time proportional to the number of touched stops.
+     * The timetable is only created again if the buffers were modified since the last call.
+     * If only the stops were modified, the last timetable is extended from the first changed stop,
+     * which takes time proportional to the number of changed stops.
+     * It is synchronized, so the timetables of different services can be requested from different threads.
+     * @return the {@link iTimetable} of this bus service.
      */
-    public iTimetable getTimetable() {
+    public synchronized iTimetable getTimetable() {
         LOGGER.trace("called getTimetable");
+        if (hasCachedTimetable()) {
+            LOGGER.debug("the timetable is up to date, no need to create a new one");
+            return timetable;
+        }
+        if (timetable != null && timetableDataVersion == currentServiceData.getVersion()) {
+            VirtualTimetable extended = timetable.truncate(unchangedStopCount);
+            timetable = extended.appendStops(currentStops.getStopsFrom(unchangedStopCount));
+            timetableStopsVersion = currentStops.getVersion();
+            unchangedStopCount = currentStops.getStopCount();
+            LOGGER.debug("the stops of the timetable are updated from index " + extended.getStopCount());
+            return timetable;
+        }
+
         iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
         args.setName(currentServiceData.getName());
         args.setStopIds(currentStops.getStops());
@@ -228,8 +414,44 @@ public class BusService {
         args.setTimeGap(currentServiceData.getTimeGap());
         args.setFirstLeaveTime(currentServiceData.getFirstLeaveTime());
         args.setBoundaryTime(currentServiceData.getBoundaryTime());
+        args.setTimeBands(currentServiceData.getTimeBands());
+        args.setCity(city);
 
-        return Timetable.createTimetable(args);
+        timetable = VirtualTimetable.createTimetable(args);
+        timetableDataVersion = currentServiceData.getVersion();
+        timetableStopsVersion = currentStops.getVersion();
+        unchangedStopCount = currentStops.getStopCount();
+        return timetable;
+    }
+
+    /**
+     * Creates a timetable from the applied data of this service, ignoring the unapplied modifications
+     * of the buffers. This is the timetable of the service as it is saved.
+     * @return a new timetable of the applied data of this service
+     */
+    VirtualTimetable createAppliedTimetable() {
+        LOGGER.trace("called createAppliedTimetable");
+        iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
+        args.setName(name);
+        args.setStopIds(savedRoute.getStops());
+        args.setTravelTimes(savedRoute.getTravelTimes());
+        args.setTimeGap(timeGap);
+        args.setFirstLeaveTime(firstLeaveTime);
+        args.setBoundaryTime(boundaryTime);
+        args.setTimeBands(timeBands);
+        args.setCity(city);
+        return VirtualTimetable.createTimetable(args);
+    }
+
+    /**
+     * Indicates whether the last created timetable is still up to date, so the
+     * next {@link #getTimetable()} call won't create a new one.
+     * @return true, if the buffers haven't changed since the last created timetable
+     */
+    synchronized boolean hasCachedTimetable() {
+        return timetable != null
+                && timetableDataVersion == currentServiceData.getVersion()
+                && timetableStopsVersion == currentStops.getVersion();
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.IntList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bus stops that differ between two versions of a {@link CityGraph city}, for the route editing rules.
+ * A stop is changed if it only exists in one of the cities, or its roads are not the same in the two cities:
+ * a road was added or removed, or its travel time changed. The position of a stop doesn't matter, as it
+ * has no effect on the routes. A route whose stops are all unchanged is valid in both cities, with the same
+ * travel times. Instances are immutable.
+ */
+public final class CityDiff {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CityDiff.class);
+
+    /**
+     * The changed stops as a bitset, with enough words for the stops of both cities.
+     */
+    private final long[] changedBits;
+
+    /**
+     * The number of changed stops.
+     */
+    private final int changedCount;
+
+    /**
+     * Creates a new instance from the already calculated set of changed stops.
+     * @param changedBits the changed stops as a bitset
+     * @param changedCount the number of changed stops
+     */
+    private CityDiff(long[] changedBits, int changedCount) {
+        this.changedBits = changedBits;
+        this.changedCount = changedCount;
+    }
+
+    /**
+     * Compares the roads of every stop of the two given cities, in time proportional to the number of roads.
+     * @param oldCity the current version of the city
+     * @param newCity the new version of the city
+     * @return the stops that are different in the new version
+     * @throws NullPointerException if either of the cities is null
+     */
+    public static CityDiff between(CityGraph oldCity, CityGraph newCity) {
+        LOGGER.trace("called between");
+        if (oldCity == null || newCity == null)
+            throw new NullPointerException("the given city is null");
+        int commonCount = Math.min(oldCity.getStopCount(), newCity.getStopCount());
+        int allCount = Math.max(oldCity.getStopCount(), newCity.getStopCount());
+        long[] changedBits = new long[(allCount + 63) >>> 6];
+        int changedCount = 0;
+        for (int id = 0; id < allCount; id++)
+            if (id >= commonCount || !sameRoads(oldCity, newCity, id)) {
+                changedBits[id >>> 6] |= 1L << id;
+                changedCount++;
+            }
+        LOGGER.debug(changedCount + " stops have changed");
+        return new CityDiff(changedBits, changedCount);
+    }
+
+    /**
+     * Returns true if the given stop has the same roads in the two cities, with the same travel times.
+     * @param oldCity one of the cities
+     * @param newCity the other city
+     * @param id the stop to compare, which is in both cities
+     * @return true if the roads of the stop are the same
+     */
+    private static boolean sameRoads(CityGraph oldCity, CityGraph newCity, int id) {
+        int oldRoad = oldCity.firstRoadOf(id);
+        int newRoad = newCity.firstRoadOf(id);
+        if (oldCity.roadEndOf(id) - oldRoad != newCity.roadEndOf(id) - newRoad)
+            return false;
+        for (; oldRoad < oldCity.roadEndOf(id); oldRoad++, newRoad++)
+            if (oldCity.targetOfRoad(oldRoad) != newCity.targetOfRoad(newRoad)
+                    || oldCity.minutesOfRoad(oldRoad) != newCity.minutesOfRoad(newRoad))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns true if no stop has changed, so every route is valid in both cities.
+     * @return true if the two cities have the same roads
+     */
+    public boolean isEmpty() {
+        return changedCount == 0;
+    }
+
+    /**
+     * Returns the number of changed stops.
+     * @return the number of changed stops
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Returns true if the given stop has changed. Stops that are in neither of the cities are unchanged.
+     * @param id the stop to check
+     * @return true if the stop is changed
+     */
+    public boolean isChanged(int id) {
+        return id >= 0 && (id >>> 6) < changedBits.length && (changedBits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns the ids of the changed stops.
+     * @return a new array with the ids of the changed stops, in ascending order
+     */
+    public int[] getChangedStopIds() {
+        int[] ids = new int[changedCount];
+        int count = 0;
+        for (int word = 0; word < changedBits.length; word++) {
+            long bits = changedBits[word];
+            while (bits != 0) {
+                ids[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns true if any of the given stops has changed.
+     * @param stopIds the stops to check
+     * @return true if at least one of the stops is changed
+     */
+    boolean touchesAny(IntList.Snapshot stopIds) {
+        for (int i = 0; i < stopIds.size(); i++)
+            if (isChanged(stopIds.get(i)))
+                return true;
+        return false;
+    }
+
+}//class
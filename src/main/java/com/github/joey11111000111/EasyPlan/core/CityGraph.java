@@ -0,0 +1,606 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.dao.CompiledCity;
+import com.github.joey11111000111.EasyPlan.dao.IntArrayCache;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
+import com.github.joey11111000111.EasyPlan.dao.iCityReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bus stops of a city and the roads between them, as an immutable directed graph.
+ * All the bus stops have a unique id, which (by convention) start from 0 and are increasing one by one,
+ * the bus station is the stop with the id 0.
+ * <p>
+ * The roads are stored in compressed sparse row form: the roads that start from the stop with a given id
+ * are at the indices [{@link #offsets offsets[id]}, offsets[id + 1]) of the {@link #targets} and
+ * {@link #travelMinutes} arrays, in ascending order of their target stop. So the reachable stops of a stop are
+ * found in constant time, and a single road in logarithmic time of the number of roads of the stop.
+ * Small cities also have a dense matrix of the travel times, where every road is found in constant time,
+ * and dense cities of up to {@link #REACHABLE_BITS_MAX_STOPS} stops have the reachable stops of every stop
+ * as a bitset, so the rules of the route editing are a few bitwise operations.
+ * No boxing happens in any of the lookups.
+ * <p>
+ * The stops can be anywhere on the plane. The nearest stop to a point and the stops in a rectangle are found
+ * with a {@link SpatialIndex spatial index}, in time proportional to the number of stops near the query.
+ * <p>
+ * The graph of the city.xml file is the {@link #getDefault() default} one, the other classes of the
+ * core take the graph they work on as a dependency.
+ */
+public final class CityGraph {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CityGraph.class);
+
+    /**
+     * Cities with at most this many stops get a {@link #matrix dense matrix} of the travel times.
+     */
+    static final int DENSE_MATRIX_MAX_STOPS = 256;
+
+    /**
+     * Only cities with at most this many stops get {@link #reachableBits reachability bitsets}, which take
+     * stopCount * stopCount / 8 bytes, 512 KiB at the limit. A row of a larger city is longer than the roads
+     * of its stops in any realistic city, so testing the roads one by one is faster there, and takes no memory.
+     * See {@link #usesReachableBits(int, int)}.
+     */
+    static final int REACHABLE_BITS_MAX_STOPS = 2048;
+
+    /**
+     * The initial value of the 64 bit FNV-1a hash of the {@link #fingerprint}.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * The multiplier of the 64 bit FNV-1a hash of the {@link #fingerprint}.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Holds the default graph, which is read from the city.xml file when it is first needed.
+     */
+    private static final class DefaultHolder {
+
+        /**
+         * The graph of the city.xml file.
+         */
+        private static final CityGraph DEFAULT = readDefault();
+
+        /**
+         * Reads the city.xml file and creates its graph. The program cannot work without it,
+         * so it terminates when the file is invalid.
+         * @return the graph of the city.xml file
+         */
+        private static CityGraph readDefault() {
+            try {
+                return fromCompiledCity(iCityReader.createDefault().readCompiledCity());
+            } catch (IllegalArgumentException iae) {
+                LOGGER.error(iae.getMessage() + ". Terminating...");
+                System.exit(1);
+                return null;
+            }
+        }
+    }//private static class
+
+    /**
+     * The X coordinate of every stop, by id.
+     */
+    private final int[] xCoords;
+
+    /**
+     * The Y coordinate of every stop, by id.
+     */
+    private final int[] yCoords;
+
+    /**
+     * The start of the roads of every stop in {@link #targets} and {@link #travelMinutes}, plus the
+     * number of all the roads as the last element.
+     */
+    private final int[] offsets;
+
+    /**
+     * The target stop of every road, grouped by the stop the road starts from.
+     */
+    private final int[] targets;
+
+    /**
+     * The travel time of every road in minutes, at the same index as its target in {@link #targets}.
+     */
+    private final int[] travelMinutes;
+
+    /**
+     * The travel times of all the roads in a row-major stopCount * stopCount matrix, where the row is the
+     * stop to go from, the column is the stop to go to, and 0 means there is no road.
+     * It is null for cities with more than {@link #DENSE_MATRIX_MAX_STOPS} stops.
+     */
+    private final int[] matrix;
+
+    /**
+     * The reachable stops of every stop as a bitset: the bit of the stop 'to' in the row of the stop 'from'
+     * is set if there is a road from 'from' to 'to'. Every row is {@link #wordCount} long values, the bit
+     * of a stop is bit (id % 64) of the word (id / 64). It is null when the city doesn't
+     * {@link #usesReachableBits(int, int) use} them.
+     */
+    private final long[] reachableBits;
+
+    /**
+     * The number of long values in a set of stops, see {@link #getWordCount()}.
+     */
+    private final int wordCount;
+
+    /**
+     * The index of the positions of the stops.
+     */
+    private final SpatialIndex spatialIndex;
+
+    /**
+     * The hash of all the data of the city, see {@link #getFingerprint()}.
+     */
+    private final long fingerprint;
+
+    /**
+     * The shortest paths between the stops, calculated or read from the cache at the first use.
+     */
+    private volatile ShortestPaths shortestPaths;
+
+    /**
+     * Creates a new instance from the already built arrays. The arrays are not copied.
+     * @param xCoords the X coordinate of every stop
+     * @param yCoords the Y coordinate of every stop
+     * @param offsets the start of the roads of every stop, and the number of roads
+     * @param targets the target stop of every road
+     * @param travelMinutes the travel time of every road
+     * @param withReachableBits true if the {@link #reachableBits reachability bitsets} are built
+     */
+    private CityGraph(int[] xCoords, int[] yCoords, int[] offsets, int[] targets, int[] travelMinutes,
+                      boolean withReachableBits) {
+        this.xCoords = xCoords;
+        this.yCoords = yCoords;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.travelMinutes = travelMinutes;
+        int stopCount = xCoords.length;
+        if (stopCount <= DENSE_MATRIX_MAX_STOPS) {
+            matrix = new int[stopCount * stopCount];
+            for (int from = 0; from < stopCount; from++)
+                for (int i = offsets[from]; i < offsets[from + 1]; i++)
+                    matrix[from * stopCount + targets[i]] = travelMinutes[i];
+        } else
+            matrix = null;
+        wordCount = (stopCount + 63) >>> 6;
+        if (withReachableBits) {
+            reachableBits = new long[stopCount * wordCount];
+            for (int from = 0; from < stopCount; from++)
+                for (int i = offsets[from]; i < offsets[from + 1]; i++)
+                    reachableBits[from * wordCount + (targets[i] >>> 6)] |= 1L << targets[i];
+        } else
+            reachableBits = null;
+        spatialIndex = new SpatialIndex(xCoords, yCoords);
+        long hash = mix(FNV_OFFSET_BASIS, stopCount);
+        for (int[] array : new int[][] {xCoords, yCoords, offsets, targets, travelMinutes})
+            for (int value : array)
+                hash = mix(hash, value);
+        fingerprint = hash;
+    }
+
+    /**
+     * Adds the bytes of the given value to the given 64 bit FNV-1a hash.
+     * @param hash the hash so far
+     * @param value the value to add
+     * @return the new hash
+     */
+    private static long mix(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the graph of the city.xml file. The file is read at the first call.
+     * @return the default graph
+     */
+    public static CityGraph getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * Creates the graph of the given bus stops, after validating them.
+     * @param stopsData the data of all the bus stops of the city, in any order
+     * @return the graph of the city
+     * @throws NullPointerException if the given list is null
+     * @throws IllegalArgumentException if the bus stop data is invalid:<br>
+     *          - there are no stops, or a stop data object is not filled<br>
+     *          - the ids are not 0, 1, ... stopCount - 1<br>
+     *          - a stop has no reachable stops, or a reachable stop doesn't exist<br>
+     *          - a travel time is less than 1 minute
+     */
+    public static CityGraph fromStopData(List<iBusStopData> stopsData) {
+        LOGGER.trace("called fromStopData");
+        return fromCompiledCity(CompiledCity.fromStopData(stopsData));
+    }
+
+    /**
+     * Creates the graph of the given compiled city, which is already validated.
+     * The arrays of the compiled city are shared, not copied.
+     * @param compiledCity the compiled form of the city
+     * @return the graph of the city
+     * @throws NullPointerException if the given city is null
+     */
+    public static CityGraph fromCompiledCity(CompiledCity compiledCity) {
+        LOGGER.trace("called fromCompiledCity");
+        if (compiledCity == null)
+            throw new NullPointerException("the given compiled city is null");
+        return fromCompiledCity(compiledCity,
+                usesReachableBits(compiledCity.getStopCount(), compiledCity.getRoadCount()));
+    }
+
+    /**
+     * Creates the graph of the given compiled city, with or without the reachability bitsets, regardless
+     * of the size of the city. Used by the tests and the benchmarks, to compare the two forms.
+     * @param compiledCity the compiled form of the city, not null
+     * @param withReachableBits true if the {@link #reachableBits reachability bitsets} are built
+     * @return the graph of the city
+     */
+    static CityGraph fromCompiledCity(CompiledCity compiledCity, boolean withReachableBits) {
+        LOGGER.debug("created city graph with " + compiledCity.getStopCount() + " stops and "
+                + compiledCity.getRoadCount() + " roads");
+        return new CityGraph(compiledCity.getXCoords(), compiledCity.getYCoords(), compiledCity.getOffsets(),
+                compiledCity.getTargets(), compiledCity.getTravelMinutes(), withReachableBits);
+    }
+
+    /**
+     * Decides whether a city gets {@link #reachableBits reachability bitsets}. A row of the bitsets takes one
+     * long value for every 64 stops, while the roads of a stop are tested one by one, so the bitsets are only
+     * worth their memory when the city is at most {@link #REACHABLE_BITS_MAX_STOPS} stops large, and its stops
+     * have at least as many roads on average as the number of long values in a row.
+     * @param stopCount the number of stops of the city
+     * @param roadCount the number of roads of the city
+     * @return true if the city gets the bitsets
+     */
+    static boolean usesReachableBits(int stopCount, int roadCount) {
+        int wordCount = (stopCount + 63) >>> 6;
+        return stopCount <= REACHABLE_BITS_MAX_STOPS && roadCount >= (long) stopCount * wordCount;
+    }
+
+    /**
+     * Indicates whether this city has {@link #reachableBits reachability bitsets}.
+     * @return true if the reachable stops are found with bitwise operations
+     */
+    boolean hasReachableBits() {
+        return reachableBits != null;
+    }
+
+    /**
+     * Returns the number of bus stops, including the bus station.
+     * @return the number of bus stops
+     */
+    public int getStopCount() {
+        return xCoords.length;
+    }
+
+    /**
+     * Returns the number of roads between the bus stops. A road only leads to one direction.
+     * @return the number of roads
+     */
+    public int getRoadCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns a 64 bit hash of all the stops, coordinates, roads and travel times of the city.
+     * Cities with the same data have the same fingerprint, so it can identify the city in caches.
+     * @return the fingerprint of the city
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the index of the first road of the given stop. The ids are not checked in the road
+     * methods, they are for the algorithms of the package that iterate over the roads:
+     * the roads of a stop are from {@code firstRoadOf(id)} (inclusive) to {@code roadEndOf(id)} (exclusive).
+     * @param id the stop the roads start from
+     * @return the index of the first road of the stop
+     */
+    int firstRoadOf(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * Returns the index after the last road of the given stop.
+     * @param id the stop the roads start from
+     * @return the index after the last road of the stop
+     */
+    int roadEndOf(int id) {
+        return offsets[id + 1];
+    }
+
+    /**
+     * Returns the stop the given road leads to.
+     * @param road the index of the road
+     * @return the target stop of the road
+     */
+    int targetOfRoad(int road) {
+        return targets[road];
+    }
+
+    /**
+     * Returns the travel time of the given road.
+     * @param road the index of the road
+     * @return the travel time of the road in minutes
+     */
+    int minutesOfRoad(int road) {
+        return travelMinutes[road];
+    }
+
+    /**
+     * Returns true if there is a bus stop with the given id.
+     * @param id the bus stop id whose validity shell be checked
+     * @return true if there is a bus stop with the given id
+     */
+    public boolean validId(int id) {
+        return id >= 0 && id < xCoords.length;
+    }
+
+    /**
+     * Throws an exception if there isn't a bus stop with the given id.
+     * @param id the id to check
+     * @param name the name of the id in the message of the exception
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    private void checkId(int id, String name) {
+        if (!validId(id))
+            throw new IndexOutOfBoundsException(name + " is out of range: " + id);
+    }
+
+    /**
+     * Returns the X coordinate of the specified bus stop.
+     * @param id specifies the bus stop, whose X coordinate shell be returned
+     * @return the X coordinate of the specified bus stop
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    public int getXCoordOf(int id) {
+        checkId(id, "id");
+        return xCoords[id];
+    }
+
+    /**
+     * Returns the Y coordinate of the specified bus stop.
+     * @param id specifies the bus stop, whose Y coordinate shell be returned
+     * @return the Y coordinate of the specified bus stop
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    public int getYCoordOf(int id) {
+        checkId(id, "id");
+        return yCoords[id];
+    }
+
+    /**
+     * Returns all the bus stop ids that can be the next stop after (thus reachable from) the given bus stop,
+     * in ascending order.
+     * @param id the current bus stop, from which to go
+     * @return a new array with all the bus stop ids that can be the next stop after the given bus stop
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    public int[] getReachableIdsOf(int id) {
+        checkId(id, "id");
+        return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+    }
+
+    /**
+     * Returns the number of long values a bitset of the stops of this city needs, where the bit of a stop
+     * is bit (id % 64) of the word (id / 64).
+     * @return the number of words of a set of stops
+     */
+    int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Returns the stops that are reachable from the given stop, except for the ones in the given set.
+     * With the reachability bitsets this is a single AND-NOT of the row of the stop and the given set,
+     * otherwise the roads of the stop are tested one by one. Nothing is allocated besides the result.
+     * @param id the current bus stop, from which to go, it must be valid
+     * @param excluded the bitset of the stops to leave out, {@link #getWordCount()} long values
+     * @return a new array with the reachable ids that are not in the set, in ascending order
+     */
+    int[] getReachableIdsExcept(int id, long[] excluded) {
+        if (reachableBits == null) {
+            int count = 0;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++)
+                if ((excluded[targets[i] >>> 6] & (1L << targets[i])) == 0)
+                    count++;
+            int[] ids = new int[count];
+            count = 0;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++)
+                if ((excluded[targets[i] >>> 6] & (1L << targets[i])) == 0)
+                    ids[count++] = targets[i];
+            return ids;
+        }
+
+        int row = id * wordCount;
+        int count = 0;
+        for (int word = 0; word < wordCount; word++)
+            count += Long.bitCount(reachableBits[row + word] & ~excluded[word]);
+        int[] ids = new int[count];
+        count = 0;
+        for (int word = 0; word < wordCount; word++) {
+            long bits = reachableBits[row + word] & ~excluded[word];
+            while (bits != 0) {
+                ids[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of bus stops that can be the next stop after the given bus stop.
+     * @param id the current bus stop, from which to go
+     * @return the number of reachable stops from the given stop
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    public int getReachableCountOf(int id) {
+        checkId(id, "id");
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Returns the travel time of the road between the given stops, or 0 if there is no such road.
+     * The ids must be valid.
+     * @param toId the bus stop to go to
+     * @param fromId the bus stop to go from
+     * @return the travel time in minutes, 0 if the bus stop at 'toId' is not reachable from 'fromId'
+     */
+    private int lookup(int toId, int fromId) {
+        if (matrix != null)
+            return matrix[fromId * xCoords.length + toId];
+        int index = Arrays.binarySearch(targets, offsets[fromId], offsets[fromId + 1], toId);
+        return index < 0 ? 0 : travelMinutes[index];
+    }
+
+    /**
+     * Returns true, if the bus stop of 'toId' can be the next from 'fromId'.
+     * @param toId the bus stop to go to
+     * @param fromId the bus stop to go from
+     * @return true when the bus stop at 'toId' can be the next from 'fromId'
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     */
+    public boolean isReachableToFrom(int toId, int fromId) {
+        checkId(toId, "toId");
+        checkId(fromId, "fromId");
+        if (reachableBits != null)
+            return (reachableBits[fromId * wordCount + (toId >>> 6)] & (1L << toId)) != 0;
+        return lookup(toId, fromId) != 0;
+    }
+
+    /**
+     * Returns the time (in minutes) that it takes to go from the bus stop with 'fromId' to the
+     * bus stop with 'toId'.
+     * @param toId the bus stop to go to
+     * @param fromId the bus stop to go from
+     * @return the travel time in minutes
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     * @throws IllegalArgumentException if the bus stop at 'toId' is not reachable from 'fromId'
+     */
+    public int travelTimeToFrom(int toId, int fromId) {
+        checkId(fromId, "fromId");
+        checkId(toId, "toId");
+        int minutes = lookup(toId, fromId);
+        if (minutes == 0)
+            throw new IllegalArgumentException("the bus stop '" + toId +
+                    "'  is not reachable from '" + fromId + "'");
+        return minutes;
+    }
+
+    /**
+     * Returns the stop that is the closest to the given point. Ties are broken by the smaller id.
+     * @param x the X coordinate of the point, can be outside of the city
+     * @param y the Y coordinate of the point, can be outside of the city
+     * @return the id of the nearest bus stop
+     */
+    public int nearestStop(double x, double y) {
+        return spatialIndex.nearestStop(x, y);
+    }
+
+    /**
+     * Returns the bus stops in the given rectangle, borders included.
+     * @param fromX the smallest X coordinate of the rectangle
+     * @param fromY the smallest Y coordinate of the rectangle
+     * @param toX the largest X coordinate of the rectangle
+     * @param toY the largest Y coordinate of the rectangle
+     * @return the ids of the stops in the rectangle in ascending order, an empty array if there aren't any
+     */
+    public int[] stopsInRectangle(int fromX, int fromY, int toX, int toY) {
+        return spatialIndex.stopsInRectangle(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * Returns the smallest X coordinate of the bus stops.
+     * @return the left side of the bounding box of the city
+     */
+    public int getMinX() {
+        return spatialIndex.getMinX();
+    }
+
+    /**
+     * Returns the largest X coordinate of the bus stops.
+     * @return the right side of the bounding box of the city
+     */
+    public int getMaxX() {
+        return spatialIndex.getMaxX();
+    }
+
+    /**
+     * Returns the smallest Y coordinate of the bus stops.
+     * @return the top side of the bounding box of the city
+     */
+    public int getMinY() {
+        return spatialIndex.getMinY();
+    }
+
+    /**
+     * Returns the largest Y coordinate of the bus stops.
+     * @return the bottom side of the bounding box of the city
+     */
+    public int getMaxY() {
+        return spatialIndex.getMaxY();
+    }
+
+    /**
+     * Returns the shortest paths between all the bus stops. At the first call they are read from the
+     * cache in the home library of the user, or calculated and cached when they are not there.
+     * @return the shortest paths of the city
+     * @throws IllegalStateException if the city has more than {@link ShortestPaths#MAX_STOPS} stops,
+     *          as the tables of the shortest paths would not fit into the memory
+     */
+    public ShortestPaths getShortestPaths() {
+        ShortestPaths paths = shortestPaths;
+        if (paths == null) {
+            if (getStopCount() > ShortestPaths.MAX_STOPS)
+                throw new IllegalStateException("the shortest paths are only available in cities of at most "
+                        + ShortestPaths.MAX_STOPS + " stops, this city has " + getStopCount());
+            synchronized (this) {
+                paths = shortestPaths;
+                if (paths == null)
+                    shortestPaths = paths = ShortestPaths.loadOrCompute(this, new IntArrayCache());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the shortest time (in minutes) it takes to go from the bus stop of 'fromId' to the bus stop of
+     * 'toId', through any number of other stops. See {@link ShortestPaths#shortestTravelTime(int, int)}.
+     * @param fromId the bus stop to go from
+     * @param toId the bus stop to go to
+     * @return the shortest travel time in minutes, 0 if the two stops are the same
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     * @throws IllegalArgumentException if there is no path between the stops
+     * @throws IllegalStateException if the city is too large, see {@link #getShortestPaths()}
+     */
+    public int shortestTravelTime(int fromId, int toId) {
+        return getShortestPaths().shortestTravelTime(fromId, toId);
+    }
+
+    /**
+     * Returns the stops of the shortest path from the bus stop of 'fromId' to the bus stop of 'toId'.
+     * See {@link ShortestPaths#shortestPath(int, int)}.
+     * @param fromId the bus stop to go from
+     * @param toId the bus stop to go to
+     * @return a new array with the ids of the stops, from 'fromId' to 'toId'
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     * @throws IllegalArgumentException if there is no path between the stops
+     * @throws IllegalStateException if the city is too large, see {@link #getShortestPaths()}
+     */
+    public int[] shortestPath(int fromId, int toId) {
+        return getShortestPaths().shortestPath(fromId, toId);
+    }
+
+}//class
@@ -4,6 +4,10 @@ import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException
 import com.github.joey11111000111.EasyPlan.core.exceptions.NoSelectedServiceException;
 import com.github.joey11111000111.EasyPlan.util.DayTime;
 
+import java.util.List;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
 /**
  * Wraps the whole {@link com.github.joey11111000111.EasyPlan.core core} package together,
  * to offer services as one module. This interface is the entry point to that module from the outside,
@@ -55,6 +59,113 @@ public interface Controller {
      */
     iTimetable getTimetableOf(String serviceName);
 
+    /**
+     * Returns the number of {@link #getTimetableOf(String) timetable requests} that were served by
+     * a previously created timetable, because the service hasn't changed since its creation.
+     * @return the number of timetable requests that didn't need to create a new timetable
+     */
+    long getTimetableCacheHits();
+
+    /**
+     * Returns the number of {@link #getTimetableOf(String) timetable requests} that needed to create
+     * a new timetable, because the service was changed or its timetable was never requested before.
+     * @return the number of timetable requests that created a new timetable
+     */
+    long getTimetableCacheMisses();
+
+    /**
+     * Returns the {@link iTimetable timetable} of every bus service, in the alphabetic order
+     * of the {@link #getServiceNames() service names}. The timetables are created in parallel,
+     * see {@link #setTimetableParallelism(int)}. The services must not be modified during the call.
+     * @return the timetables of all the services, ordered by the name of the services
+     */
+    List<iTimetable> getAllTimetables();
+
+    /**
+     * Passes the {@link iTimetable timetable} of every bus service to the given action, in the
+     * alphabetic order of the {@link #getServiceNames() service names}. The timetables are created
+     * in parallel, but the action is always called from the calling thread, one timetable at a time,
+     * as soon as the timetable and all the preceding ones are ready.
+     * The services must not be modified during the call.
+     * @param action the action to perform on each timetable
+     * @throws NullPointerException if the given action is null
+     */
+    void forEachTimetable(Consumer<? super iTimetable> action);
+
+    /**
+     * Returns the maximum number of threads used to create the timetables of all the services.
+     * By default it is the number of available processors.
+     * @return the maximum number of threads used by the bulk timetable creation
+     */
+    int getTimetableParallelism();
+
+    /**
+     * Sets the maximum number of threads used to create the timetables of all the services.
+     * See {@link #getAllTimetables()} and {@link #forEachTimetable(Consumer)}.
+     * @param parallelism the maximum number of threads to use
+     * @throws IllegalArgumentException if the given value is less than 1
+     */
+    void setTimetableParallelism(int parallelism);
+
+    /**
+     * Returns the city whose bus stops all the bus services touch.
+     * @return the graph of the city
+     */
+    CityGraph getCity();
+
+    /**
+     * Replaces the city of all the bus services with a new version of it, like a changed city.xml file.
+     * Only the services that touch a changed stop (see {@link CityDiff}) are checked again: their applied stops
+     * are cut at the first stop that breaks a rule in the new city, and their unapplied stop modifications
+     * are lost. The other services keep their stops, modifications and undo history.
+     * @param city the new version of the city
+     * @return the names of the services that were checked again, in the order of their names
+     * @throws NullPointerException if the given city is null
+     */
+    List<String> replaceCity(CityGraph city);
+
+    /**
+     * Returns the next departures of all the bus services from the given bus stop, at or after the given
+     * time, in the order of departure. Only the applied data of the services is used. After the last departure
+     * of the day, the departures of the next day follow. The last stop of a service is not a departure.
+     * The departures are not read from the timetables, they are calculated from an index that is updated
+     * whenever a service is applied, created or deleted.
+     * @param stopId the id of the bus stop
+     * @param time the time of the day from which the departures are requested
+     * @param count the maximum number of departures to return
+     * @return the next departures from the given bus stop, at most count of them
+     * @throws NullPointerException if the given time is null
+     * @throws IllegalArgumentException if the given count is negative
+     */
+    List<Departure> getNextDepartures(int stopId, DayTime time, int count);
+
+    /**
+     * Creates a {@link JourneyPlanner journey planner} from the applied data of all the bus services.
+     * The planner is a snapshot, it doesn't follow the later changes of the services, so it has to be
+     * created again after the services are modified. It can be used from multiple threads.
+     * @return a new journey planner over all the bus services
+     */
+    JourneyPlanner createJourneyPlanner();
+
+    /**
+     * Calculates the minimum number of vehicles that can run all the trips of all the bus services together,
+     * and assigns the trips to the vehicles. A vehicle can run the trips of any service, after it waited at
+     * the station for at least the given minutes. Only the applied data of the services is used.
+     * @param minLayoverMinutes the minimum minutes a vehicle waits at the station between two trips
+     * @return the network-wide vehicle schedule
+     * @throws IllegalArgumentException if the layover is negative
+     */
+    VehicleSchedule scheduleVehicles(int minLayoverMinutes);
+
+    /**
+     * Calculates the vehicle schedule of every bus service on its own, when the vehicles of a service
+     * only run the trips of that service. Only the applied data of the services is used.
+     * @param minLayoverMinutes the minimum minutes a vehicle waits at the station between two trips
+     * @return the vehicle schedule of every service, by the applied names of the services in alphabetical order
+     * @throws IllegalArgumentException if the layover is negative
+     */
+    SortedMap<String, VehicleSchedule> scheduleVehiclesByService(int minLayoverMinutes);
+
     /**
      * Returns the buffered name of the selected bus service. It can differ from the name
      * returned by the {@link #getServiceNames()}, if the name was changed but not applied yet.
@@ -149,6 +260,23 @@ public interface Controller {
      */
     void setBoundaryMinute(int minute);
 
+    /**
+     * Returns the buffered {@link BusService#timeBands timeBands} of the selected bus service.
+     * @return a read-only list of the buffered time bands of the selected bus service
+     * @throws NoSelectedServiceException if there isn't a selected bus service
+     */
+    List<TimeBand> getTimeBands();
+
+    /**
+     * Sets the buffered {@link BusService#timeBands timeBands} of the selected bus service.
+     * See {@link TimeBand} for more information.
+     * @param timeBands the new time bands of the selected bus service, in any order
+     * @throws NullPointerException if the given list or any of its elements is null
+     * @throws IllegalArgumentException if two time bands start at the same time
+     * @throws NoSelectedServiceException if there isn't a selected bus service
+     */
+    void setTimeBands(List<TimeBand> timeBands);
+
     /**
      * Appends the given bus stop id to the end of the stop list of the selected bus service.
      * @param id the id of the bus stop that should be appended
@@ -170,12 +298,20 @@ public interface Controller {
     boolean isClosed();
 
     /**
-     * Returns true if there are new, unsaved modifications in the selected bus service.
+     * Returns true if there are new, unsaved modifications in the selected bus service that can be undone.
+     * Only the latest {@link EditLog#LIMIT_PROPERTY EasyPlan.undoLimit} modifications can be undone.
      * @return true, if there are unsaved modification in the selected bus service
      * @throws NoSelectedServiceException if there isn't a selected bus service
      */
     boolean canUndo();
 
+    /**
+     * Returns true if there are undone modifications in the selected bus service that can be redone.
+     * @return true, if there are undone modifications in the selected bus service
+     * @throws NoSelectedServiceException if there isn't a selected bus service
+     */
+    boolean canRedo();
+
     /**
      * Returns an array that contains the id -s of the touched bus stops of the selected bus service.
      * See {@link TouchedStops#getStops()} for more information.
@@ -217,13 +353,21 @@ public interface Controller {
     void removeChainFrom(int fromId);
 
     /**
-     * Discards the latest unapplied modification of the stop list of the selected service,
-     * by committing the exact opposite operation.
-     * @throws IllegalStateException if there aren't any unsaved modifications
+     * Discards the latest unapplied modification of the selected service, by committing the exact opposite
+     * operation. It can be a modification of the stop list or of the basic data. The quickly following
+     * changes of the same time (like the changes of a spinner) are undone together.
+     * Does nothing if there aren't any modifications to undo.
      * @throws NoSelectedServiceException if there isn't a selected bus service
      */
     void undo();
 
+    /**
+     * Makes the latest undone modification of the selected service again. A new modification discards the
+     * undone ones. Does nothing if there aren't any modifications to redo.
+     * @throws NoSelectedServiceException if there isn't a selected bus service
+     */
+    void redo();
+
     /**
      * Returns the id -s of all the bus stops that can be the next bus stop of the selected bus service.
      * A bus stop is only included if it is reachable and hasn't been added twice already.
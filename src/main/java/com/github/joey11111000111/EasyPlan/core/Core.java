@@ -10,8 +10,15 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the {@link Controller} interface. Offers no more public services.
@@ -55,15 +62,62 @@ public class Core implements Controller {
     @XmlTransient private TouchedStops touchedStops;
 
     /**
-     * Creates a new instance filled with default values.
+     * The number of {@link #getTimetableOf(String) timetable requests} that were served
+     * by an up to date, previously created timetable.
+     */
+    @XmlTransient private final AtomicLong timetableCacheHits = new AtomicLong();
+
+    /**
+     * The number of {@link #getTimetableOf(String) timetable requests} that needed
+     * the creation of a new timetable.
+     */
+    @XmlTransient private final AtomicLong timetableCacheMisses = new AtomicLong();
+
+    /**
+     * The index of the departures of the applied services, by bus stop.
+     */
+    @XmlTransient private final DepartureIndex departureIndex = new DepartureIndex();
+
+    /**
+     * The maximum number of threads used by the bulk timetable creation.
+     */
+    @XmlTransient private int timetableParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The pool that creates the timetables of all the services in parallel.
+     * It is created at the first bulk request, and replaced when the parallelism changes.
+     */
+    @XmlTransient private ForkJoinPool timetablePool;
+
+    /**
+     * The city whose bus stops all the services touch. It is only replaced by {@link #replaceCity(CityGraph)},
+     * after all the services were moved into the new city.
+     */
+    @XmlTransient private volatile CityGraph city;
+
+    /**
+     * Creates a new instance filled with default values, in the {@link CityGraph#getDefault() default city}.
+     * See {@link #Core(CityGraph)} for more information.
+     */
+    public Core() {
+        this(CityGraph.getDefault());
+    }
+
+    /**
+     * Creates a new instance filled with default values, in the given city.
      * These values are:<br>
      *   - no service is selected (null)<br>
      *   - the buffers of the selected service are also null<br>
      *   - the services are considered to be saved<br>
      *   - empty map for the services
+     * @param city the city whose bus stops all the services touch
+     * @throws NullPointerException if the given city is null
      */
-    public Core() {
+    public Core(CityGraph city) {
         LOGGER.trace("creating Core instance...");
+        if (city == null)
+            throw new NullPointerException("the given city is null");
+        this.city = city;
 
         saved = true;
         services = new TreeMap<>();
@@ -78,7 +132,10 @@ public class Core implements Controller {
      */
     @Override
     public void init() {
-        services.values().stream().forEach(BusService::initTransientFields);
+        services.values().stream().forEach(service -> service.initTransientFields(city));
+        departureIndex.clear();
+        for (BusService service : services.values())
+            departureIndex.putService(service.getAppliedName(), service.createAppliedTimetable());
         selectFirstService();
     }
 
@@ -169,8 +226,196 @@ public class Core implements Controller {
         if (service == null)
             throw new IllegalArgumentException("the bus service with the given name '" + serviceName
                     + "' does not exist");
+        return timetableOf(service);
+    }
+
+    /**
+     * Returns the timetable of the given service, and counts whether it was a cache hit or miss.
+     * Can be called from multiple threads at the same time.
+     * @param service the service whose timetable shell be returned
+     * @return the timetable of the given service
+     */
+    private iTimetable timetableOf(BusService service) {
+        if (service.hasCachedTimetable()) {
+            timetableCacheHits.incrementAndGet();
+            LOGGER.debug("timetable cache hit for the service '" + service.getAppliedName() + "'");
+        } else {
+            timetableCacheMisses.incrementAndGet();
+            LOGGER.debug("timetable cache miss for the service '" + service.getAppliedName() + "'");
+        }
         return service.getTimetable();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimetableCacheHits() {
+        return timetableCacheHits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimetableCacheMisses() {
+        return timetableCacheMisses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CityGraph getCity() {
+        return city;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The departures of the services that were checked again are indexed again,
+     * the departures of the other services are the same in the new city.
+     */
+    @Override
+    public List<String> replaceCity(CityGraph newCity) {
+        LOGGER.trace("called replaceCity");
+        if (newCity == null)
+            throw new NullPointerException("the given city is null");
+        CityDiff diff = CityDiff.between(city, newCity);
+        List<String> checkedServices = new ArrayList<>();
+        for (BusService service : services.values())
+            if (service.changeCity(newCity, diff)) {
+                String name = service.getAppliedName();
+                checkedServices.add(name);
+                departureIndex.removeService(name);
+                departureIndex.putService(name, service.createAppliedTimetable());
+            }
+        city = newCity;
+        // the checked services have new buffers
+        if (hasSelectedService())
+            setSelectedService(selectedService);
+        if (!checkedServices.isEmpty())
+            saved = false;
+        LOGGER.info("replaced the city, " + diff.getChangedCount() + " stops have changed, the services "
+                + checkedServices + " were checked again");
+        return checkedServices;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Departure> getNextDepartures(int stopId, DayTime time, int count) {
+        LOGGER.trace("called getNextDepartures");
+        if (time == null)
+            throw new NullPointerException("the given time is null");
+        return departureIndex.nextDepartures(stopId, time.getTimeAsMinutes(), count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JourneyPlanner createJourneyPlanner() {
+        LOGGER.trace("called createJourneyPlanner");
+        List<VirtualTimetable> timetables = new ArrayList<>(services.size());
+        for (BusService service : services.values())
+            timetables.add(service.createAppliedTimetable());
+        return new JourneyPlanner(timetables, city.getStopCount());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VehicleSchedule scheduleVehicles(int minLayoverMinutes) {
+        LOGGER.trace("called scheduleVehicles");
+        List<VirtualTimetable> timetables = new ArrayList<>(services.size());
+        for (BusService service : services.values())
+            timetables.add(service.createAppliedTimetable());
+        return VehicleScheduler.schedule(timetables, minLayoverMinutes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedMap<String, VehicleSchedule> scheduleVehiclesByService(int minLayoverMinutes) {
+        LOGGER.trace("called scheduleVehiclesByService");
+        SortedMap<String, VehicleSchedule> schedules = new TreeMap<>();
+        for (BusService service : services.values())
+            schedules.put(service.getAppliedName(), VehicleScheduler.schedule(
+                    Collections.singletonList(service.createAppliedTimetable()), minLayoverMinutes));
+        return schedules;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<iTimetable> getAllTimetables() {
+        LOGGER.trace("called getAllTimetables");
+        List<iTimetable> timetables = new ArrayList<>(services.size());
+        forEachTimetable(timetables::add);
+        return timetables;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachTimetable(Consumer<? super iTimetable> action) {
+        LOGGER.trace("called forEachTimetable");
+        if (action == null)
+            throw new NullPointerException("the given action is null");
+        List<ForkJoinTask<iTimetable>> tasks = submitTimetableTasks();
+        // the services are sorted by name, so joining in the order of submission keeps that order
+        for (ForkJoinTask<iTimetable> task : tasks)
+            action.accept(task.join());
+        LOGGER.debug("created the timetables of " + tasks.size() + " services");
+    }
+
+    /**
+     * Submits the creation of the timetable of every service to the {@link #timetablePool}, creates the pool
+     * first if it doesn't exist yet. The whole submission holds the lock of this object, so
+     * {@link #setTimetableParallelism(int)} cannot shut the pool down in the middle of it.
+     * @return the tasks that create the timetables, in the order of the services
+     */
+    private synchronized List<ForkJoinTask<iTimetable>> submitTimetableTasks() {
+        if (timetablePool == null)
+            timetablePool = new ForkJoinPool(timetableParallelism);
+        List<ForkJoinTask<iTimetable>> tasks = new ArrayList<>(services.size());
+        for (BusService service : services.values())
+            tasks.add(timetablePool.submit(() -> timetableOf(service)));
+        return tasks;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getTimetableParallelism() {
+        return timetableParallelism;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setTimetableParallelism(int parallelism) {
+        LOGGER.trace("called setTimetableParallelism");
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        if (parallelism == timetableParallelism)
+            return;
+        timetableParallelism = parallelism;
+        if (timetablePool != null) {
+            // every submission to the old pool is complete, as it holds this lock too; the submitted
+            // tasks are still finished by the old pool, the new requests will use a new one
+            timetablePool.shutdown();
+            timetablePool = null;
+        }
+        LOGGER.debug("timetable parallelism is set to " + parallelism);
+    }
     // ---------------------------------
 
     /**
@@ -301,6 +546,27 @@ public class Core implements Controller {
         LOGGER.info("the boundary minute was set to " + minute);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TimeBand> getTimeBands() {
+        LOGGER.trace("called getTimeBands");
+        checkSelection();
+        return basicData.getTimeBands();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setTimeBands(List<TimeBand> timeBands) {
+        LOGGER.trace("called setTimeBands with time bands: " + timeBands);
+        checkSelection();
+        basicData.setTimeBands(timeBands);
+        LOGGER.info("the time bands were set to " + timeBands);
+    }
+
     // wrapper methods for the TouchedStops instance --------------------------
 
     /**
@@ -331,7 +597,17 @@ public class Core implements Controller {
     public boolean canUndo() {
         LOGGER.trace("called canUndo");
         checkSelection();
-        return touchedStops.canUndo();
+        return selectedService.getEditLog().canUndo();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canRedo() {
+        LOGGER.trace("called canRedo");
+        checkSelection();
+        return selectedService.getEditLog().canRedo();
     }
 
     /**
@@ -382,9 +658,9 @@ public class Core implements Controller {
     public void removeChainFrom(int fromId) {
         LOGGER.trace("called removeChainFrom with fromId: " + fromId);
         checkSelection();
-        int count = getStops().length;
+        int count = touchedStops.getStopCount();
         touchedStops.removeChainFrom(fromId);
-        if (count - getStops().length > 1)
+        if (count - touchedStops.getStopCount() > 1)
             LOGGER.info("all the stops were removed starting with the last appearance of '" + fromId + "'");
         else
             LOGGER.info("removed the latest bus stop (" + fromId + ") from the bus service");
@@ -397,11 +673,27 @@ public class Core implements Controller {
     public void undo() {
         LOGGER.trace("called undo");
         checkSelection();
-        if (canUndo()) {
-            touchedStops.undo();
-            LOGGER.info("the last bus stop modification operation was withdrawn");
+        if (!canUndo()) {
+            LOGGER.debug("tried to undo, but there is nothing to undo");
+            return;
+        }
+        selectedService.getEditLog().undo();
+        LOGGER.info("the last modification operation was withdrawn");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void redo() {
+        LOGGER.trace("called redo");
+        checkSelection();
+        if (!canRedo()) {
+            LOGGER.debug("tried to redo, but there is nothing to redo");
+            return;
         }
-        LOGGER.debug("tried to undo, but there is nothing to undo");
+        selectedService.getEditLog().redo();
+        LOGGER.info("the last withdrawn modification operation was made again");
     }
 
     /**
@@ -443,13 +735,14 @@ public class Core implements Controller {
     public void createNewService() {
         LOGGER.trace("called createNewService");
 
-        BusService newService = new BusService();
+        BusService newService = new BusService(city);
         StringBuilder sb = new StringBuilder(newService.getCurrentServiceData().getName());
         while (services.containsKey(sb.toString()))
             sb.append('*');
         newService.getCurrentServiceData().setName(sb.toString());
         newService.applyChanges();
         services.put(newService.getAppliedName(), newService);
+        departureIndex.putService(newService.getAppliedName(), newService.createAppliedTimetable());
         LOGGER.info("added a new bus service");
         setSelectedService(newService);
     }
@@ -478,9 +771,10 @@ public class Core implements Controller {
         }
 
         String name = selectedService.getAppliedName();
-        if (services.remove(name) != null)
+        if (services.remove(name) != null) {
+            departureIndex.removeService(name);
             LOGGER.info("removed the bus service '" + name + "'");
-        else {
+        } else {
             LOGGER.warn("could not remove the bus service '" + name + "'");
             return;
         }
@@ -505,6 +799,7 @@ public class Core implements Controller {
         }
 
         services.remove(serviceName);
+        departureIndex.removeService(serviceName);
         saved = false;
         LOGGER.info("removed the bus service '" + serviceName + "'");
     }
@@ -566,6 +861,8 @@ public class Core implements Controller {
         }
 
         selectedService.applyChanges();
+        departureIndex.removeService(oldName);
+        departureIndex.putService(newName, selectedService.createAppliedTimetable());
         saved = false;
         LOGGER.info("applied changes to the service '" + oldName + "' (old name)");
     }
@@ -0,0 +1,95 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+/**
+ * A single departure of a bus from a bus stop. Objects of this class are the entries of
+ * the departure board returned by {@link Controller#getNextDepartures(int, DayTime, int)}.
+ * Instances are immutable.
+ */
+public final class Departure {
+
+    /**
+     * The applied name of the bus service the departing bus belongs to.
+     */
+    private final String serviceName;
+
+    /**
+     * The id of the bus stop the bus departs from.
+     */
+    private final int stopId;
+
+    /**
+     * The index of the departing bus in the order the buses of the service leave the station.
+     */
+    private final int busIndex;
+
+    /**
+     * The time of the departure in minutes, in the range [0, 24 * 60).
+     */
+    private final int minutes;
+
+    /**
+     * Creates a new instance with the given data.
+     * @param serviceName the name of the bus service of the departing bus
+     * @param stopId the id of the bus stop the bus departs from
+     * @param busIndex the index of the departing bus
+     * @param minutes the time of the departure in minutes, in the range [0, 24 * 60)
+     */
+    Departure(String serviceName, int stopId, int busIndex, int minutes) {
+        this.serviceName = serviceName;
+        this.stopId = stopId;
+        this.busIndex = busIndex;
+        this.minutes = minutes;
+    }
+
+    /**
+     * Returns the applied name of the bus service the departing bus belongs to.
+     * @return the name of the bus service of the departing bus
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Returns the id of the bus stop the bus departs from.
+     * @return the id of the bus stop of the departure
+     */
+    public int getStopId() {
+        return stopId;
+    }
+
+    /**
+     * Returns the index of the departing bus. The first bus of the service that leaves the station has
+     * the index 0.
+     * @return the index of the departing bus
+     */
+    public int getBusIndex() {
+        return busIndex;
+    }
+
+    /**
+     * Returns the time of the departure.
+     * @return a new {@link DayTime} object that holds the time of the departure
+     */
+    public DayTime getTime() {
+        return new DayTime(minutes);
+    }
+
+    /**
+     * Returns the time of the departure in minutes.
+     * @return the time of the departure in minutes, in the range [0, 24 * 60)
+     */
+    public int getTimeAsMinutes() {
+        return minutes;
+    }
+
+    /**
+     * Returns a short, readable form of the departure, like "22Y 08:15 (bus 3)".
+     * @return the string form of the departure
+     */
+    @Override
+    public String toString() {
+        return serviceName + " " + getTime() + " (bus " + busIndex + ")";
+    }
+}//class
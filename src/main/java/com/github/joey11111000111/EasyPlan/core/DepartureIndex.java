@@ -0,0 +1,314 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static com.github.joey11111000111.EasyPlan.core.Timetable.MINUTES_PER_DAY;
+
+/**
+ * Index of the departures of all the applied bus services, by bus stop.
+ * The buses of a service leave the station in equal time gaps within a {@link TimeBand time band}, so the
+ * departures of a service from a single stop form an arithmetic progression in every time band:
+ * first departure, time gap and number of buses.
+ * The index only stores these progressions for every stop, the departures themselves are calculated
+ * when they are requested. The next departures from a stop are found by merging the progressions of the
+ * stop, which takes time proportional to the number of progressions plus the number of returned departures
+ * (multiplied by the logarithm of the number of progressions).
+ * The index is updated one service at a time, there is no need to rebuild it when a service changes.
+ */
+final class DepartureIndex {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DepartureIndex.class);
+
+    /**
+     * The departures of a single service from a single stop, within a single segment of the
+     * {@link HeadwaySchedule schedule} of the service. When a service touches a stop twice,
+     * there are progressions for both visits.
+     */
+    private static final class Progression {
+
+        /**
+         * The applied name of the service.
+         */
+        private final String serviceName;
+
+        /**
+         * The id of the stop the buses depart from.
+         */
+        private final int stopId;
+
+        /**
+         * The departure time of the first bus in minutes from the start of the day of the first leave time.
+         * It can be more than a day, because of the travel time from the station.
+         */
+        private final int firstMinutes;
+
+        /**
+         * The minutes between two subsequent departures.
+         */
+        private final int timeGap;
+
+        /**
+         * The number of departures.
+         */
+        private final int busCount;
+
+        /**
+         * The index of the bus of the first departure, among all the buses of the service.
+         */
+        private final int firstBus;
+
+        /**
+         * Creates a new instance with the given data.
+         * @param serviceName the applied name of the service
+         * @param stopId the id of the stop the buses depart from
+         * @param firstMinutes the departure time of the first bus in minutes, can be more than a day
+         * @param timeGap the minutes between two subsequent departures
+         * @param busCount the number of departures
+         * @param firstBus the index of the bus of the first departure
+         */
+        private Progression(String serviceName, int stopId, int firstMinutes, int timeGap, int busCount,
+                            int firstBus) {
+            this.serviceName = serviceName;
+            this.stopId = stopId;
+            this.firstMinutes = firstMinutes;
+            this.timeGap = timeGap;
+            this.busCount = busCount;
+            this.firstBus = firstBus;
+        }
+    }//private static class
+
+    /**
+     * Iterates over the departures of a {@link Progression} in the order they follow each other after a given
+     * time of the day. All the departures happen within a day from the first one, so the departures are either
+     * on the day of the given time or on the next day. Departures of the next day come after the ones of the
+     * given day, so the order is: from a split index to the last bus, then from the first bus to the split index.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        /**
+         * The progression whose departures are iterated.
+         */
+        private final Progression progression;
+
+        /**
+         * The index of the first bus in the iteration order.
+         */
+        private final int startIndex;
+
+        /**
+         * The number of departures that were already iterated.
+         */
+        private int done;
+
+        /**
+         * The minutes from the given time of the day to the current departure, in the range [0, 24 * 60).
+         */
+        private int wait;
+
+        /**
+         * The time of the day the iteration starts from in minutes.
+         */
+        private final int fromMinutes;
+
+        /**
+         * Creates a cursor that points to the first departure of the given progression, that
+         * happens at or after the given time of the day.
+         * @param progression the progression whose departures shell be iterated
+         * @param fromMinutes the time of the day in minutes, in the range [0, 24 * 60)
+         */
+        private Cursor(Progression progression, int fromMinutes) {
+            this.progression = progression;
+            this.fromMinutes = fromMinutes;
+            // the first bus whose departure falls on the next cycle of the given time of the day
+            int offset = progression.firstMinutes - fromMinutes;
+            int nextCycle = (Math.floorDiv(offset, MINUTES_PER_DAY) + 1) * MINUTES_PER_DAY;
+            int split = ceilDiv(nextCycle - offset, progression.timeGap);
+            startIndex = split < progression.busCount ? split : 0;
+            done = 0;
+            updateWait();
+        }
+
+        /**
+         * Returns the index of the current bus in the progression.
+         * @return the index of the current bus in the progression
+         */
+        private int getBusIndex() {
+            return (startIndex + done) % progression.busCount;
+        }
+
+        /**
+         * Calculates the {@link #wait} of the current departure.
+         */
+        private void updateWait() {
+            int minutes = progression.firstMinutes + getBusIndex() * progression.timeGap;
+            wait = Math.floorMod(minutes - fromMinutes, MINUTES_PER_DAY);
+        }
+
+        /**
+         * Returns true if there are departures that haven't been iterated yet.
+         * @return true if the cursor points to a departure
+         */
+        private boolean hasCurrent() {
+            return done < progression.busCount;
+        }
+
+        /**
+         * Steps to the next departure.
+         */
+        private void advance() {
+            done++;
+            if (hasCurrent())
+                updateWait();
+        }
+
+        /**
+         * Creates the {@link Departure} object of the current departure.
+         * @return the current departure
+         */
+        private Departure toDeparture() {
+            return new Departure(progression.serviceName, progression.stopId, progression.firstBus + getBusIndex(),
+                    (fromMinutes + wait) % MINUTES_PER_DAY);
+        }
+
+        /**
+         * Cursors are ordered by the wait time of their current departure, then by the name of the service.
+         * @param other the cursor to compare to
+         * @return negative, zero or positive, as this cursor is before, the same or after the other
+         */
+        @Override
+        public int compareTo(Cursor other) {
+            if (wait != other.wait)
+                return Integer.compare(wait, other.wait);
+            return progression.serviceName.compareTo(other.progression.serviceName);
+        }
+    }//private static class
+
+    /**
+     * The progressions of the departures from every stop. The key is the id of the stop.
+     */
+    private final Map<Integer, List<Progression>> progressionsByStop;
+
+    /**
+     * The progressions of every service, so they can be removed when the service changes.
+     * The key is the applied name of the service.
+     */
+    private final Map<String, List<Progression>> progressionsByService;
+
+    /**
+     * Creates an empty index.
+     */
+    DepartureIndex() {
+        progressionsByStop = new HashMap<>();
+        progressionsByService = new HashMap<>();
+    }
+
+    /**
+     * Integer division rounded towards positive infinity. The divisor must be positive.
+     * @param dividend the number to divide
+     * @param divisor the positive number to divide with
+     * @return the quotient rounded up
+     */
+    private static int ceilDiv(int dividend, int divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /**
+     * Adds the departures of the given timetable to the index, under the given service name.
+     * If there are departures registered with the name already, they are replaced.
+     * The last stop of the timetable is not a departure, the buses finish their trip there.
+     * @param serviceName the applied name of the service
+     * @param timetable the timetable of the applied data of the service
+     */
+    void putService(String serviceName, VirtualTimetable timetable) {
+        LOGGER.trace("called putService");
+        removeService(serviceName);
+        List<Progression> progressions = new ArrayList<>();
+        HeadwaySchedule schedule = timetable.getSchedule();
+        for (int i = 0; i < timetable.getStopCount() - 1; i++)
+            for (int segment = 0; segment < schedule.getSegmentCount(); segment++) {
+                Progression progression = new Progression(serviceName, timetable.getStopId(i),
+                        schedule.getSegmentStart(segment) + timetable.getTravelMinutes(i),
+                        schedule.getSegmentGap(segment), schedule.getSegmentBusCount(segment),
+                        schedule.getSegmentFirstBus(segment));
+                progressions.add(progression);
+                progressionsByStop.computeIfAbsent(progression.stopId, id -> new ArrayList<>()).add(progression);
+            }
+        if (!progressions.isEmpty())
+            progressionsByService.put(serviceName, progressions);
+        LOGGER.debug("indexed " + progressions.size() + " departure progressions of the service '"
+                + serviceName + "'");
+    }
+
+    /**
+     * Removes the departures of the service with the given name from the index.
+     * Has no effect, if there aren't any departures registered with the name.
+     * @param serviceName the applied name of the service
+     */
+    void removeService(String serviceName) {
+        LOGGER.trace("called removeService");
+        List<Progression> progressions = progressionsByService.remove(serviceName);
+        if (progressions == null)
+            return;
+        for (Progression progression : progressions) {
+            List<Progression> ofStop = progressionsByStop.get(progression.stopId);
+            ofStop.remove(progression);
+            if (ofStop.isEmpty())
+                progressionsByStop.remove(progression.stopId);
+        }
+    }
+
+    /**
+     * Removes every departure from the index.
+     */
+    void clear() {
+        progressionsByStop.clear();
+        progressionsByService.clear();
+    }
+
+    /**
+     * Returns the next departures of all the services from the given stop, at or after the given
+     * time of the day, in the order of departure. After the last departure of the day, the departures of
+     * the next day follow, so at most all the departures of a whole day are returned.
+     * Departures at the same time are ordered by the name of their services.
+     * @param stopId the id of the bus stop
+     * @param fromMinutes the time of the day in minutes, in the range [0, 24 * 60)
+     * @param count the maximum number of departures to return
+     * @return the next departures from the given stop, or an empty list if there aren't any
+     * @throws IllegalArgumentException if the time is out of range or the count is negative
+     */
+    List<Departure> nextDepartures(int stopId, int fromMinutes, int count) {
+        LOGGER.trace("called nextDepartures");
+        if (fromMinutes < 0 || fromMinutes >= MINUTES_PER_DAY)
+            throw new IllegalArgumentException("time of the day is out of range: " + fromMinutes);
+        if (count < 0)
+            throw new IllegalArgumentException("count of departures cannot be negative: " + count);
+        List<Progression> progressions = progressionsByStop.get(stopId);
+        if (progressions == null || count == 0)
+            return Collections.emptyList();
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(progressions.size());
+        for (Progression progression : progressions)
+            queue.add(new Cursor(progression, fromMinutes));
+        List<Departure> departures = new ArrayList<>(Math.min(count, 64));
+        while (departures.size() < count && !queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            departures.add(cursor.toDeparture());
+            cursor.advance();
+            if (cursor.hasCurrent())
+                queue.add(cursor);
+        }
+        return departures;
+    }
+
+}//class
@@ -0,0 +1,427 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The history of the unapplied modifications of a bus service, with undo and redo. Both buffers of a
+ * {@link BusService}, the {@link TouchedStops stops} and the {@link BasicServiceData basic data}, record
+ * their modifications into the same log, so the modifications are undone in the opposite order of how they
+ * were made, whichever buffer they belong to. A new modification discards the modifications that could be
+ * redone.
+ * <p>
+ * Every entry holds the old and the new value of the modification in parallel arrays, which are used as a
+ * ring buffer of at most {@link #getLimit() limit} entries. When the log is full, the oldest modification is
+ * forgotten, so it cannot be undone anymore. The changes of the time gap and the leave times that follow
+ * each other within {@link #COALESCE_NANOS} are merged into one entry, so a spinner that is held down
+ * is undone in one step.
+ */
+final class EditLog {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(EditLog.class);
+
+    /**
+     * The name of the system property that sets the maximum number of entries of a log.
+     */
+    static final String LIMIT_PROPERTY = "EasyPlan.undoLimit";
+
+    /**
+     * The maximum number of entries of a log, when the {@link #LIMIT_PROPERTY} is not set.
+     */
+    static final int DEFAULT_LIMIT = 500;
+
+    /**
+     * The modifications of the same value within this many nanoseconds are merged into one entry.
+     */
+    static final long COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(800);
+
+    /**
+     * The kinds of the recorded modifications.
+     */
+    enum Kind {
+
+        /**
+         * A bus stop was appended, the new value is its id.
+         */
+        APPEND_STOP(false),
+
+        /**
+         * Bus stops were removed from the end of the list, the old and new values are the index of the first
+         * removed stop, and the old object is the array of the removed stops.
+         */
+        REMOVE_STOPS(false),
+
+        /**
+         * The name was changed, the old and new objects are the names.
+         */
+        NAME(false),
+
+        /**
+         * The time gap was changed, the old and new values are the minutes.
+         */
+        TIME_GAP(true),
+
+        /**
+         * The first leave time was changed, the old and new values are the minutes of the day.
+         */
+        FIRST_LEAVE_TIME(true),
+
+        /**
+         * The boundary time was changed, the old and new values are the minutes of the day.
+         */
+        BOUNDARY_TIME(true),
+
+        /**
+         * The time bands were changed, the old and new objects are the read-only lists of the time bands.
+         */
+        TIME_BANDS(false);
+
+        /**
+         * Indicates whether the quickly following modifications of this kind are merged.
+         */
+        private final boolean coalescing;
+
+        /**
+         * Creates a kind of modification.
+         * @param coalescing true if the quickly following modifications of this kind are merged
+         */
+        Kind(boolean coalescing) {
+            this.coalescing = coalescing;
+        }
+    }
+
+    /**
+     * A buffer whose modifications are recorded in the log. The log calls it back to undo or redo them.
+     * The callbacks must not record anything.
+     */
+    interface Editor {
+
+        /**
+         * Restores the state before the given modification, which is the last one that is not undone.
+         * @param kind the kind of the modification
+         * @param oldValue the old value of the modification
+         * @param oldObject the old object of the modification
+         */
+        void undoEdit(Kind kind, int oldValue, Object oldObject);
+
+        /**
+         * Makes the given modification again, which is the first one that was undone.
+         * @param kind the kind of the modification
+         * @param newValue the new value of the modification
+         * @param newObject the new object of the modification
+         */
+        void redoEdit(Kind kind, int newValue, Object newObject);
+    }
+
+    /**
+     * Receives the entries of the log, see {@link #anyEntry(EntryTest)}.
+     */
+    interface EntryTest {
+
+        /**
+         * Tests an entry of the log.
+         * @param kind the kind of the modification
+         * @param oldValue the old value of the modification
+         * @param newValue the new value of the modification
+         * @param oldObject the old object of the modification
+         * @return true if the entry is the one searched for
+         */
+        boolean test(Kind kind, int oldValue, int newValue, Object oldObject);
+    }
+
+    /**
+     * The maximum number of entries.
+     */
+    private final int limit;
+
+    /**
+     * Returns the current time in nanoseconds, to decide which modifications are merged.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The kinds of the entries.
+     */
+    private Kind[] kinds;
+
+    /**
+     * The buffers that made the modifications of the entries.
+     */
+    private Editor[] editors;
+
+    /**
+     * The old values of the entries.
+     */
+    private int[] oldValues;
+
+    /**
+     * The new values of the entries.
+     */
+    private int[] newValues;
+
+    /**
+     * The old objects of the entries.
+     */
+    private Object[] oldObjects;
+
+    /**
+     * The new objects of the entries.
+     */
+    private Object[] newObjects;
+
+    /**
+     * The time the entries were recorded or last merged, from the {@link #clock}.
+     */
+    private long[] times;
+
+    /**
+     * The index of the oldest entry in the arrays.
+     */
+    private int head;
+
+    /**
+     * The number of entries that can be undone, they are the oldest ones.
+     */
+    private int undoCount;
+
+    /**
+     * The number of all the entries, the ones after the first {@link #undoCount} entries can be redone.
+     */
+    private int entryCount;
+
+    /**
+     * Indicates whether the last entry was recorded right before, so the next modification can be merged
+     * into it. Undo and redo stop the merging.
+     */
+    private boolean lastRecorded;
+
+    /**
+     * Creates an empty log, with the limit set by the {@link #LIMIT_PROPERTY} system property.
+     */
+    EditLog() {
+        this(limitFromProperty(), System::nanoTime);
+    }
+
+    /**
+     * Creates an empty log with the given limit.
+     * @param limit the maximum number of entries, 0 turns off the undo
+     * @param clock returns the current time in nanoseconds
+     * @throws IllegalArgumentException if the limit is negative
+     * @throws NullPointerException if the clock is null
+     */
+    EditLog(int limit, LongSupplier clock) {
+        if (limit < 0)
+            throw new IllegalArgumentException("the limit cannot be negative: " + limit);
+        if (clock == null)
+            throw new NullPointerException("the given clock is null");
+        this.limit = limit;
+        this.clock = clock;
+        allocate(Math.min(limit, 16));
+    }
+
+    /**
+     * Returns the limit set by the {@link #LIMIT_PROPERTY} system property, or the {@link #DEFAULT_LIMIT}.
+     * @return the maximum number of entries of a log
+     */
+    private static int limitFromProperty() {
+        Integer limit = Integer.getInteger(LIMIT_PROPERTY);
+        if (limit == null)
+            return DEFAULT_LIMIT;
+        if (limit < 0) {
+            LOGGER.warn("the undo limit cannot be negative: " + limit + ", using " + DEFAULT_LIMIT);
+            return DEFAULT_LIMIT;
+        }
+        return limit;
+    }
+
+    /**
+     * Replaces the arrays with empty ones of the given capacity.
+     * @param capacity the number of entries the arrays can hold
+     */
+    private void allocate(int capacity) {
+        kinds = new Kind[capacity];
+        editors = new Editor[capacity];
+        oldValues = new int[capacity];
+        newValues = new int[capacity];
+        oldObjects = new Object[capacity];
+        newObjects = new Object[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * Doubles the capacity of the arrays, up to the {@link #limit}. Only called while the log hasn't reached
+     * its limit, so the entries still start at the beginning of the arrays.
+     */
+    private void grow() {
+        int capacity = Math.min(limit, Math.max(16, 2 * kinds.length));
+        kinds = Arrays.copyOf(kinds, capacity);
+        editors = Arrays.copyOf(editors, capacity);
+        oldValues = Arrays.copyOf(oldValues, capacity);
+        newValues = Arrays.copyOf(newValues, capacity);
+        oldObjects = Arrays.copyOf(oldObjects, capacity);
+        newObjects = Arrays.copyOf(newObjects, capacity);
+        times = Arrays.copyOf(times, capacity);
+    }
+
+    /**
+     * Returns the index in the arrays of the entry with the given position.
+     * @param position the position of the entry, 0 is the oldest one
+     * @return the index of the entry in the arrays
+     */
+    private int slot(int position) {
+        int index = head + position;
+        return index < kinds.length ? index : index - kinds.length;
+    }
+
+    /**
+     * Releases the references of the entry in the given slot.
+     * @param slot the index of the entry in the arrays
+     */
+    private void release(int slot) {
+        kinds[slot] = null;
+        editors[slot] = null;
+        oldObjects[slot] = null;
+        newObjects[slot] = null;
+    }
+
+    /**
+     * Records a modification that was just made. The modifications that could be redone are discarded.
+     * @param editor the buffer that made the modification
+     * @param kind the kind of the modification
+     * @param oldValue the old value of the modification
+     * @param newValue the new value of the modification
+     * @param oldObject the old object of the modification
+     * @param newObject the new object of the modification
+     */
+    void record(Editor editor, Kind kind, int oldValue, int newValue, Object oldObject, Object newObject) {
+        for (int position = undoCount; position < entryCount; position++)
+            release(slot(position));
+        entryCount = undoCount;
+        if (limit == 0)
+            return;
+
+        long now = clock.getAsLong();
+        if (lastRecorded && kind.coalescing && undoCount > 0) {
+            int last = slot(undoCount - 1);
+            if (kinds[last] == kind && editors[last] == editor && now - times[last] <= COALESCE_NANOS) {
+                newValues[last] = newValue;
+                newObjects[last] = newObject;
+                times[last] = now;
+                if (oldValues[last] == newValue && Objects.equals(oldObjects[last], newObject)) {
+                    // the merged modifications cancel each other out
+                    release(last);
+                    undoCount--;
+                    entryCount--;
+                }
+                return;
+            }
+        }
+
+        if (undoCount == limit) {
+            release(head);
+            head = slot(1);
+            undoCount--;
+        } else if (undoCount == kinds.length) {
+            grow();
+        }
+        int slot = slot(undoCount);
+        kinds[slot] = kind;
+        editors[slot] = editor;
+        oldValues[slot] = oldValue;
+        newValues[slot] = newValue;
+        oldObjects[slot] = oldObject;
+        newObjects[slot] = newObject;
+        times[slot] = now;
+        undoCount++;
+        entryCount = undoCount;
+        lastRecorded = true;
+    }
+
+    /**
+     * Returns the maximum number of entries of this log.
+     * @return the maximum number of entries
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Indicates whether there is a modification that can be undone.
+     * @return true, if there is a modification that can be undone
+     */
+    boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    /**
+     * Indicates whether there is an undone modification that can be redone.
+     * @return true, if there is a modification that can be redone
+     */
+    boolean canRedo() {
+        return undoCount < entryCount;
+    }
+
+    /**
+     * Undoes the last modification that is not undone yet, through the buffer that made it.
+     * @throws IllegalStateException if there is nothing to undo
+     */
+    void undo() {
+        LOGGER.trace("called undo");
+        if (!canUndo())
+            throw new IllegalStateException("there is nothing to undo");
+        lastRecorded = false;
+        int slot = slot(--undoCount);
+        editors[slot].undoEdit(kinds[slot], oldValues[slot], oldObjects[slot]);
+        LOGGER.debug("undone a modification of the kind " + kinds[slot]);
+    }
+
+    /**
+     * Redoes the first undone modification, through the buffer that made it.
+     * @throws IllegalStateException if there is nothing to redo
+     */
+    void redo() {
+        LOGGER.trace("called redo");
+        if (!canRedo())
+            throw new IllegalStateException("there is nothing to redo");
+        lastRecorded = false;
+        int slot = slot(undoCount++);
+        editors[slot].redoEdit(kinds[slot], newValues[slot], newObjects[slot]);
+        LOGGER.debug("redone a modification of the kind " + kinds[slot]);
+    }
+
+    /**
+     * Tests the entries of the log, both the ones that can be undone and the ones that can be redone,
+     * until one of them passes the test.
+     * @param test the test of the entries
+     * @return true, if an entry passed the test
+     */
+    boolean anyEntry(EntryTest test) {
+        for (int position = 0; position < entryCount; position++) {
+            int slot = slot(position);
+            if (test.test(kinds[slot], oldValues[slot], newValues[slot], oldObjects[slot]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets all the entries, so there is nothing to undo or redo.
+     */
+    void clear() {
+        for (int position = 0; position < entryCount; position++)
+            release(slot(position));
+        head = 0;
+        undoCount = 0;
+        entryCount = 0;
+        lastRecorded = false;
+    }
+
+}//class
@@ -0,0 +1,213 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.joey11111000111.EasyPlan.core.Timetable.MINUTES_PER_DAY;
+
+/**
+ * The times when the buses of a bus service leave the station. The period from the first leave time to the
+ * boundary time is divided into segments by the {@link TimeBand time bands} of the service, the buses of a
+ * segment leave the station in equal time gaps, starting at the start of the segment. So the departures of
+ * a segment form an arithmetic progression. The first segment starts at the first leave time, and uses the
+ * time gap of the service, unless a time band starts at the first leave time too. Time bands that start
+ * after the boundary time (as seen from the first leave time) are ignored.
+ * <p>
+ * Only the segments are stored, the departures are calculated when they are needed: the departure of a
+ * bus and the first bus at or after a given time are both found with binary search over the segments.
+ * All the times are in minutes from the start of the day of the first leave time, so the departures after
+ * midnight are 24 * 60 or more. Instances are immutable.
+ */
+final class HeadwaySchedule {
+
+    /**
+     * The start of every segment, in minutes from the start of the day of the first leave time.
+     * The first bus of the segment leaves at this time.
+     */
+    private final int[] segmentStarts;
+
+    /**
+     * The time gap of every segment.
+     */
+    private final int[] segmentGaps;
+
+    /**
+     * The index of the first bus of every segment, plus the number of all the buses as the last element.
+     */
+    private final int[] segmentFirstBus;
+
+    /**
+     * Creates a new instance from the already calculated segments. The arrays are not copied.
+     * @param segmentStarts the start of every segment
+     * @param segmentGaps the time gap of every segment
+     * @param segmentFirstBus the index of the first bus of every segment, and the number of buses
+     */
+    private HeadwaySchedule(int[] segmentStarts, int[] segmentGaps, int[] segmentFirstBus) {
+        this.segmentStarts = segmentStarts;
+        this.segmentGaps = segmentGaps;
+        this.segmentFirstBus = segmentFirstBus;
+    }
+
+    /**
+     * Creates the schedule of a service from its basic data.
+     * When there aren't any time bands, the schedule has a single segment, where the buses leave every
+     * time gap from the first leave time until the boundary time, which is on the following day if it is
+     * earlier than the first leave time.
+     * @param firstLeaveMinutes the first leave time of the service in minutes, in the range [0, 24 * 60)
+     * @param boundaryMinutes the boundary time of the service in minutes, in the range [0, 24 * 60)
+     * @param timeGap the time gap of the service, used until the first time band
+     * @param timeBands the time bands of the service in any order, each must start at a different time
+     * @return the schedule of the service
+     * @throws IllegalArgumentException if two time bands start at the same time
+     */
+    static HeadwaySchedule create(int firstLeaveMinutes, int boundaryMinutes, int timeGap,
+                                  List<TimeBand> timeBands) {
+        int window = Math.floorMod(boundaryMinutes - firstLeaveMinutes, MINUTES_PER_DAY);
+
+        // the time bands as offsets from the first leave time, in order
+        long[] bands = new long[timeBands.size()];
+        int bandCount = 0;
+        for (TimeBand band : timeBands) {
+            int offset = Math.floorMod(band.getStartTime().getTimeAsMinutes() - firstLeaveMinutes, MINUTES_PER_DAY);
+            if (offset <= window)
+                bands[bandCount++] = ((long) offset << 32) | band.getTimeGap();
+        }
+        Arrays.sort(bands, 0, bandCount);
+
+        boolean startsWithBand = bandCount > 0 && (int) (bands[0] >>> 32) == 0;
+        int segmentCount = startsWithBand ? bandCount : bandCount + 1;
+        int[] starts = new int[segmentCount];
+        int[] gaps = new int[segmentCount];
+        int[] firstBus = new int[segmentCount + 1];
+        int segment = 0;
+        if (!startsWithBand) {
+            starts[0] = 0;
+            gaps[0] = timeGap;
+            segment++;
+        }
+        for (int i = 0; i < bandCount; i++, segment++) {
+            int offset = (int) (bands[i] >>> 32);
+            if (segment > 0 && offset == starts[segment - 1])
+                throw new IllegalArgumentException("two time bands start at the same time");
+            starts[segment] = offset;
+            gaps[segment] = (int) bands[i];
+        }
+
+        // the buses of a segment leave before the next segment starts, the last segment ends at the boundary
+        for (int i = 0; i < segmentCount; i++) {
+            int count = i < segmentCount - 1
+                    ? ceilDiv(starts[i + 1] - starts[i], gaps[i])
+                    : (window - starts[i]) / gaps[i] + 1;
+            firstBus[i + 1] = firstBus[i] + count;
+            starts[i] += firstLeaveMinutes;
+        }
+        return new HeadwaySchedule(starts, gaps, firstBus);
+    }
+
+    /**
+     * Integer division rounded towards positive infinity. The divisor must be positive.
+     * @param dividend the number to divide
+     * @param divisor the positive number to divide with
+     * @return the quotient rounded up
+     */
+    private static int ceilDiv(int dividend, int divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /**
+     * Returns the number of buses that leave the station.
+     * @return the number of buses, always at least one
+     */
+    int getBusCount() {
+        return segmentFirstBus[segmentFirstBus.length - 1];
+    }
+
+    /**
+     * Returns the time the first bus leaves the station, in minutes.
+     * @return the first leave time in minutes
+     */
+    int getFirstLeaveMinutes() {
+        return segmentStarts[0];
+    }
+
+    /**
+     * Returns the number of segments, each with its own time gap.
+     * @return the number of segments
+     */
+    int getSegmentCount() {
+        return segmentStarts.length;
+    }
+
+    /**
+     * Returns the time the first bus of the given segment leaves the station.
+     * @param segment the index of the segment
+     * @return the start of the segment in minutes from the start of the day of the first leave time
+     */
+    int getSegmentStart(int segment) {
+        return segmentStarts[segment];
+    }
+
+    /**
+     * Returns the time gap of the given segment.
+     * @param segment the index of the segment
+     * @return the minutes between two subsequent buses of the segment
+     */
+    int getSegmentGap(int segment) {
+        return segmentGaps[segment];
+    }
+
+    /**
+     * Returns the index of the first bus of the given segment.
+     * @param segment the index of the segment
+     * @return the index of the first bus of the segment
+     */
+    int getSegmentFirstBus(int segment) {
+        return segmentFirstBus[segment];
+    }
+
+    /**
+     * Returns the number of buses of the given segment.
+     * @param segment the index of the segment
+     * @return the number of buses of the segment
+     */
+    int getSegmentBusCount(int segment) {
+        return segmentFirstBus[segment + 1] - segmentFirstBus[segment];
+    }
+
+    /**
+     * Returns the time when the given bus leaves the station. Takes logarithmic time in the number of segments.
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return the departure in minutes from the start of the day of the first leave time
+     * @throws IndexOutOfBoundsException if the bus index is out of range
+     */
+    int getDepartureMinutes(int busIndex) {
+        if (busIndex < 0 || busIndex >= getBusCount())
+            throw new IndexOutOfBoundsException("bus index is out of range: " + busIndex);
+        // segments are never empty, so an exact match is the first bus of that segment
+        int segment = Arrays.binarySearch(segmentFirstBus, busIndex);
+        if (segment < 0)
+            segment = -segment - 2;
+        return segmentStarts[segment] + (busIndex - segmentFirstBus[segment]) * segmentGaps[segment];
+    }
+
+    /**
+     * Returns the index of the first bus that leaves the station at or after the given time.
+     * Takes logarithmic time in the number of segments.
+     * @param minutes the time in minutes from the start of the day of the first leave time, can be any value
+     * @return the index of the first bus that leaves at or after the given time, or the
+     *          {@link #getBusCount() number of buses} if there isn't such a bus
+     */
+    int firstBusAtOrAfter(int minutes) {
+        if (minutes <= segmentStarts[0])
+            return 0;
+        int segment = Arrays.binarySearch(segmentStarts, minutes);
+        if (segment >= 0)
+            return segmentFirstBus[segment];
+        segment = -segment - 2;
+        int bus = ceilDiv(minutes - segmentStarts[segment], segmentGaps[segment]);
+        if (bus < getSegmentBusCount(segment))
+            return segmentFirstBus[segment] + bus;
+        return segmentFirstBus[segment + 1];
+    }
+
+}//class
@@ -0,0 +1,201 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a {@link JourneyPlanner journey planner} query: the rides a passenger has to take to get
+ * from one bus stop to another. Every ride is a {@link Leg}, between two subsequent legs the passenger
+ * changes buses at the same bus stop. Instances are immutable.
+ * All the times are in minutes from the start of the day of the requested departure, so they can be
+ * 24 * 60 or more, if the journey ends on the next day.
+ */
+public final class Journey {
+
+    /**
+     * A single ride on a bus of a bus service, from the stop where the passenger gets on to
+     * the stop where they get off.
+     */
+    public static final class Leg {
+
+        /**
+         * The applied name of the bus service.
+         */
+        private final String serviceName;
+
+        /**
+         * The id of the bus stop where the passenger gets on the bus.
+         */
+        private final int fromStopId;
+
+        /**
+         * The id of the bus stop where the passenger gets off the bus.
+         */
+        private final int toStopId;
+
+        /**
+         * The time when the bus leaves the {@link #fromStopId first stop}, in minutes.
+         */
+        private final int departureMinutes;
+
+        /**
+         * The time when the bus arrives at the {@link #toStopId last stop}, in minutes.
+         */
+        private final int arrivalMinutes;
+
+        /**
+         * Creates a new instance with the given data.
+         * @param serviceName the applied name of the bus service
+         * @param fromStopId the id of the bus stop where the passenger gets on the bus
+         * @param toStopId the id of the bus stop where the passenger gets off the bus
+         * @param departureMinutes the time when the bus leaves the first stop, in minutes
+         * @param arrivalMinutes the time when the bus arrives at the last stop, in minutes
+         */
+        Leg(String serviceName, int fromStopId, int toStopId, int departureMinutes, int arrivalMinutes) {
+            this.serviceName = serviceName;
+            this.fromStopId = fromStopId;
+            this.toStopId = toStopId;
+            this.departureMinutes = departureMinutes;
+            this.arrivalMinutes = arrivalMinutes;
+        }
+
+        /**
+         * Returns the applied name of the bus service of the ride.
+         * @return the name of the bus service
+         */
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        /**
+         * Returns the id of the bus stop where the passenger gets on the bus.
+         * @return the id of the first stop of the ride
+         */
+        public int getFromStopId() {
+            return fromStopId;
+        }
+
+        /**
+         * Returns the id of the bus stop where the passenger gets off the bus.
+         * @return the id of the last stop of the ride
+         */
+        public int getToStopId() {
+            return toStopId;
+        }
+
+        /**
+         * Returns the time when the bus leaves the first stop of the ride, in minutes.
+         * @return the departure of the ride in minutes from the start of the day of the journey
+         */
+        public int getDepartureMinutes() {
+            return departureMinutes;
+        }
+
+        /**
+         * Returns the time when the bus arrives at the last stop of the ride, in minutes.
+         * @return the arrival of the ride in minutes from the start of the day of the journey
+         */
+        public int getArrivalMinutes() {
+            return arrivalMinutes;
+        }
+
+        /**
+         * Returns the time of the day when the bus leaves the first stop of the ride.
+         * @return a new {@link DayTime} object that holds the departure time
+         */
+        public DayTime getDepartureTime() {
+            return new DayTime(departureMinutes, true);
+        }
+
+        /**
+         * Returns the time of the day when the bus arrives at the last stop of the ride.
+         * @return a new {@link DayTime} object that holds the arrival time
+         */
+        public DayTime getArrivalTime() {
+            return new DayTime(arrivalMinutes, true);
+        }
+
+        /**
+         * Returns a short, readable form of the ride, like "22Y 3 (08:15) -> 7 (08:40)".
+         * @return the string form of the ride
+         */
+        @Override
+        public String toString() {
+            return serviceName + " " + fromStopId + " (" + getDepartureTime() + ") -> "
+                    + toStopId + " (" + getArrivalTime() + ")";
+        }
+    }//public static class
+
+    /**
+     * The time the passenger is ready to leave the first stop, in minutes.
+     */
+    private final int departureMinutes;
+
+    /**
+     * The rides of the journey in the order they are taken.
+     */
+    private final List<Leg> legs;
+
+    /**
+     * Creates a new instance with the given data.
+     * @param departureMinutes the time the passenger is ready to leave the first stop, in minutes
+     * @param legs the rides of the journey in the order they are taken, not copied
+     */
+    Journey(int departureMinutes, List<Leg> legs) {
+        this.departureMinutes = departureMinutes;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * Returns the rides of the journey in the order they are taken.
+     * It is empty if the passenger is already at the destination.
+     * @return a read-only list of the rides of the journey
+     */
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    /**
+     * Returns the number of times the passenger changes buses during the journey.
+     * @return the number of transfers
+     */
+    public int getTransferCount() {
+        return Math.max(0, legs.size() - 1);
+    }
+
+    /**
+     * Returns the time the passenger is ready to leave the first stop, in minutes.
+     * @return the requested departure time in minutes
+     */
+    public int getDepartureMinutes() {
+        return departureMinutes;
+    }
+
+    /**
+     * Returns the time the passenger arrives at the destination, in minutes from the start of the day of the
+     * requested departure.
+     * @return the arrival time in minutes, 24 * 60 or more if it is on the next day
+     */
+    public int getArrivalMinutes() {
+        return legs.isEmpty() ? departureMinutes : legs.get(legs.size() - 1).getArrivalMinutes();
+    }
+
+    /**
+     * Returns the time of the day the passenger arrives at the destination.
+     * @return a new {@link DayTime} object that holds the arrival time
+     */
+    public DayTime getArrivalTime() {
+        return new DayTime(getArrivalMinutes(), true);
+    }
+
+    /**
+     * Returns the rides of the journey, separated by commas.
+     * @return the string form of the journey
+     */
+    @Override
+    public String toString() {
+        return legs.toString();
+    }
+}//class
@@ -0,0 +1,470 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.joey11111000111.EasyPlan.core.Timetable.MINUTES_PER_DAY;
+
+/**
+ * Answers earliest arrival queries over the timetables of all the bus services: when can a passenger get
+ * from one bus stop to another at the earliest, leaving at a given time, with at most a given number
+ * of transfers. The search is round based (RAPTOR): round k finds the earliest arrivals that need k rides,
+ * by scanning only the services that touch a stop that was improved in the previous round.
+ * <p>
+ * The planner is an immutable snapshot of the timetables it was created from, it has to be created again
+ * when the services change. All the data is stored in primitive arrays, the departures are calculated from
+ * the {@link HeadwaySchedule schedules} and travel times of the services. Every thread reuses its own search state,
+ * so the queries don't allocate memory, except for the returned {@link Journey} object, and they can run
+ * in parallel. All times are in minutes from the start of the day of the query, so they may be more than
+ * a day, if the journey ends on the next day. Buses of the previous and of the next day are also used.
+ */
+public final class JourneyPlanner {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JourneyPlanner.class);
+
+    /**
+     * Value of the arrival times that are not reached (yet).
+     */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /**
+     * The arrays of a single search, reused by all the queries of a thread.
+     * The arrays that are indexed by rounds only grow, when a query needs more rounds than the previous ones.
+     */
+    private final class SearchState {
+
+        /**
+         * The earliest arrival at every stop after each round. arrivals[k][stop] is the earliest arrival
+         * at the stop with at most k rides.
+         */
+        private int[][] arrivals;
+
+        /**
+         * The index of the service of the last ride to the stop, for each round and stop.
+         */
+        private int[][] legRoute;
+
+        /**
+         * The position in the route of the service where the last ride to the stop started.
+         */
+        private int[][] legBoardPosition;
+
+        /**
+         * The time when the bus of the last ride to the stop left the bus station.
+         */
+        private int[][] legStationDeparture;
+
+        /**
+         * The round in which the arrival at the stop was found, the last ride is in that round.
+         */
+        private int[][] legRound;
+
+        /**
+         * The earliest arrival at every stop found so far, in any round.
+         */
+        private final int[] bestArrivals = new int[stopCount];
+
+        /**
+         * The stops that were improved in the current round.
+         */
+        private final int[] markedStops = new int[stopCount];
+
+        /**
+         * The number of elements in {@link #markedStops}.
+         */
+        private int markedCount;
+
+        /**
+         * True for the stops that are in {@link #markedStops}.
+         */
+        private final boolean[] isMarked = new boolean[stopCount];
+
+        /**
+         * The routes to scan in the current round.
+         */
+        private final int[] queuedRoutes = new int[routeCount];
+
+        /**
+         * The first position to scan for every route, or {@link #UNREACHED} if the route is not queued.
+         */
+        private final int[] routeStartPosition = new int[routeCount];
+
+        /**
+         * Creates a new instance with arrays for the given number of rounds.
+         * @param rounds the number of rounds to prepare for, not counting the initial round
+         */
+        private SearchState(int rounds) {
+            Arrays.fill(routeStartPosition, UNREACHED);
+            allocateRounds(rounds);
+        }
+
+        /**
+         * Creates new arrays that have room for the given number of rounds.
+         * @param rounds the number of rounds to prepare for, not counting the initial round
+         */
+        private void allocateRounds(int rounds) {
+            arrivals = new int[rounds + 1][stopCount];
+            legRoute = new int[rounds + 1][stopCount];
+            legBoardPosition = new int[rounds + 1][stopCount];
+            legStationDeparture = new int[rounds + 1][stopCount];
+            legRound = new int[rounds + 1][stopCount];
+        }
+
+        /**
+         * Makes sure the state is large enough for the given number of rounds, and resets the arrays
+         * of the first round.
+         * @param rounds the number of rounds of the next search
+         */
+        private void reset(int rounds) {
+            if (arrivals.length < rounds + 1)
+                allocateRounds(rounds);
+            Arrays.fill(arrivals[0], UNREACHED);
+            Arrays.fill(legRound[0], 0);
+            Arrays.fill(bestArrivals, UNREACHED);
+        }
+
+        /**
+         * Adds the given stop to the {@link #markedStops}, if it isn't there already.
+         * @param stop the id of the improved stop
+         */
+        private void mark(int stop) {
+            if (!isMarked[stop]) {
+                isMarked[stop] = true;
+                markedStops[markedCount++] = stop;
+            }
+        }
+
+        /**
+         * Copies the labels of the previous round into the given round, so the labels of a round always
+         * contain the best values with at most that many rides.
+         * @param round the round to initialize
+         */
+        private void startRound(int round) {
+            System.arraycopy(arrivals[round - 1], 0, arrivals[round], 0, stopCount);
+            System.arraycopy(legRoute[round - 1], 0, legRoute[round], 0, stopCount);
+            System.arraycopy(legBoardPosition[round - 1], 0, legBoardPosition[round], 0, stopCount);
+            System.arraycopy(legStationDeparture[round - 1], 0, legStationDeparture[round], 0, stopCount);
+            System.arraycopy(legRound[round - 1], 0, legRound[round], 0, stopCount);
+        }
+    }//private class
+
+    /**
+     * The number of bus stops, every stop id is less than this.
+     */
+    private final int stopCount;
+
+    /**
+     * The number of routes, one for every service that has at least one ride.
+     */
+    private final int routeCount;
+
+    /**
+     * The applied names of the services of the routes.
+     */
+    private final String[] routeNames;
+
+    /**
+     * The times when the buses of the service of each route leave the station.
+     */
+    private final HeadwaySchedule[] routeSchedules;
+
+    /**
+     * The start of the stops of each route in {@link #routeStops} and {@link #routeTravelTimes}.
+     * The stops of route r are from routeOffsets[r] (inclusive) to routeOffsets[r + 1] (exclusive).
+     */
+    private final int[] routeOffsets;
+
+    /**
+     * The stop id -s of all the routes, one after the other.
+     */
+    private final int[] routeStops;
+
+    /**
+     * The travel time from the station to every stop of all the routes, one after the other.
+     */
+    private final int[] routeTravelTimes;
+
+    /**
+     * The start of the route positions of each stop in {@link #stopRoutes} and {@link #stopPositions}.
+     */
+    private final int[] stopOffsets;
+
+    /**
+     * The routes that touch each stop, one stop after the other.
+     */
+    private final int[] stopRoutes;
+
+    /**
+     * The position of each stop in the routes of {@link #stopRoutes}, relative to the start of the route.
+     */
+    private final int[] stopPositions;
+
+    /**
+     * The search state of every thread that uses this planner.
+     */
+    private final ThreadLocal<SearchState> searchState;
+
+    /**
+     * Creates a planner that uses the given timetables. The timetables with less than
+     * two stops or without buses are ignored.
+     * @param timetables the timetables of the bus services
+     * @param stopCount the number of bus stops, every stop id of the timetables must be less than this
+     */
+    JourneyPlanner(List<VirtualTimetable> timetables, int stopCount) {
+        LOGGER.trace("called JourneyPlanner constructor");
+        this.stopCount = stopCount;
+        List<VirtualTimetable> usable = new ArrayList<>(timetables.size());
+        int positionCount = 0;
+        for (VirtualTimetable timetable : timetables)
+            if (timetable.getStopCount() > 1 && timetable.getBusCount() > 0) {
+                usable.add(timetable);
+                positionCount += timetable.getStopCount();
+            }
+
+        routeCount = usable.size();
+        routeNames = new String[routeCount];
+        routeSchedules = new HeadwaySchedule[routeCount];
+        routeOffsets = new int[routeCount + 1];
+        routeStops = new int[positionCount];
+        routeTravelTimes = new int[positionCount];
+        int[] stopDegrees = new int[stopCount + 1];
+        for (int r = 0; r < routeCount; r++) {
+            VirtualTimetable timetable = usable.get(r);
+            routeNames[r] = timetable.getServiceName();
+            routeSchedules[r] = timetable.getSchedule();
+            routeOffsets[r + 1] = routeOffsets[r] + timetable.getStopCount();
+            for (int i = 0; i < timetable.getStopCount(); i++) {
+                routeStops[routeOffsets[r] + i] = timetable.getStopId(i);
+                routeTravelTimes[routeOffsets[r] + i] = timetable.getTravelMinutes(i);
+                stopDegrees[timetable.getStopId(i) + 1]++;
+            }
+        }
+
+        // the routes of every stop, in compressed rows
+        stopOffsets = new int[stopCount + 1];
+        for (int s = 0; s < stopCount; s++)
+            stopOffsets[s + 1] = stopOffsets[s] + stopDegrees[s + 1];
+        stopRoutes = new int[positionCount];
+        stopPositions = new int[positionCount];
+        int[] fill = Arrays.copyOf(stopOffsets, stopCount);
+        for (int r = 0; r < routeCount; r++)
+            for (int p = routeOffsets[r]; p < routeOffsets[r + 1]; p++) {
+                int slot = fill[routeStops[p]]++;
+                stopRoutes[slot] = r;
+                stopPositions[slot] = p - routeOffsets[r];
+            }
+
+        searchState = ThreadLocal.withInitial(() -> new SearchState(4));
+        LOGGER.debug("journey planner created with " + routeCount + " routes and " + stopCount + " stops");
+    }
+
+    /**
+     * Returns the number of routes the planner uses, one for every service that has at least one ride.
+     * @return the number of routes
+     */
+    int getRouteCount() {
+        return routeCount;
+    }
+
+    /**
+     * Finds the earliest bus of the given route that leaves the stop at the given position at or after
+     * the given time. The buses of the previous, the same and the next day are considered.
+     * Takes logarithmic time in the number of time bands of the service.
+     * @param route the index of the route
+     * @param position the position of the stop in the route
+     * @param minutes the earliest time the bus may leave the stop
+     * @return the time the found bus left the bus station, or {@link #UNREACHED} if there is no such bus
+     */
+    private int earliestStationDeparture(int route, int position, int minutes) {
+        HeadwaySchedule schedule = routeSchedules[route];
+        int travelTime = routeTravelTimes[routeOffsets[route] + position];
+        int best = UNREACHED;
+        for (int day = -MINUTES_PER_DAY; day <= MINUTES_PER_DAY; day += MINUTES_PER_DAY) {
+            int bus = schedule.firstBusAtOrAfter(minutes - travelTime - day);
+            if (bus < schedule.getBusCount())
+                best = Math.min(best, schedule.getDepartureMinutes(bus) + day);
+        }
+        return best;
+    }
+
+    /**
+     * Checks the arguments of a query.
+     * @param fromStopId the id of the stop where the journey starts
+     * @param toStopId the id of the destination stop
+     * @param departureMinutes the time of the day the passenger is ready to leave, in minutes
+     * @param maxTransfers the maximum number of transfers
+     * @throws IllegalArgumentException if any of the arguments is invalid
+     */
+    private void checkQuery(int fromStopId, int toStopId, int departureMinutes, int maxTransfers) {
+        if (fromStopId < 0 || fromStopId >= stopCount)
+            throw new IllegalArgumentException("invalid stop id: " + fromStopId);
+        if (toStopId < 0 || toStopId >= stopCount)
+            throw new IllegalArgumentException("invalid stop id: " + toStopId);
+        if (departureMinutes < 0 || departureMinutes >= MINUTES_PER_DAY)
+            throw new IllegalArgumentException("time of the day is out of range: " + departureMinutes);
+        if (maxTransfers < 0)
+            throw new IllegalArgumentException("the maximum number of transfers cannot be negative: "
+                    + maxTransfers);
+    }
+
+    /**
+     * Returns the number of rounds of a search with the given number of transfers. A journey never needs more
+     * rides than the number of routes, as riding a route again is never faster than staying on it, so the
+     * rounds are bounded by the route count. This keeps the search state small, and avoids the overflow of
+     * a huge limit.
+     * @param maxTransfers the maximum number of transfers, not negative
+     * @return the maximum number of rides of the search
+     */
+    private int roundsFor(int maxTransfers) {
+        return Math.min(maxTransfers, routeCount) + 1;
+    }
+
+    /**
+     * Runs the rounds of the search, and leaves the result in the given state.
+     * @param state the search state of the calling thread
+     * @param fromStopId the id of the stop where the journey starts
+     * @param toStopId the id of the destination stop
+     * @param departureMinutes the time the passenger is ready to leave, in minutes
+     * @param rounds the maximum number of rides
+     * @return the number of rounds that were run
+     */
+    private int search(SearchState state, int fromStopId, int toStopId, int departureMinutes, int rounds) {
+        state.reset(rounds);
+        state.arrivals[0][fromStopId] = departureMinutes;
+        state.bestArrivals[fromStopId] = departureMinutes;
+        state.mark(fromStopId);
+
+        int round = 0;
+        while (round < rounds && state.markedCount > 0) {
+            round++;
+            state.startRound(round);
+            int[] previous = state.arrivals[round - 1];
+            int[] current = state.arrivals[round];
+
+            // queue the routes of the marked stops, from the first marked position
+            int queuedCount = 0;
+            for (int m = 0; m < state.markedCount; m++) {
+                int stop = state.markedStops[m];
+                state.isMarked[stop] = false;
+                for (int i = stopOffsets[stop]; i < stopOffsets[stop + 1]; i++) {
+                    int route = stopRoutes[i];
+                    if (state.routeStartPosition[route] == UNREACHED)
+                        state.queuedRoutes[queuedCount++] = route;
+                    state.routeStartPosition[route] = Math.min(state.routeStartPosition[route], stopPositions[i]);
+                }
+            }
+            state.markedCount = 0;
+
+            // scan the queued routes
+            for (int q = 0; q < queuedCount; q++) {
+                int route = state.queuedRoutes[q];
+                int offset = routeOffsets[route];
+                int length = routeOffsets[route + 1] - offset;
+                int stationDeparture = UNREACHED;
+                int boardPosition = -1;
+                for (int p = state.routeStartPosition[route]; p < length; p++) {
+                    int stop = routeStops[offset + p];
+                    if (stationDeparture != UNREACHED) {
+                        int arrival = stationDeparture + routeTravelTimes[offset + p];
+                        if (arrival < state.bestArrivals[stop] && arrival < state.bestArrivals[toStopId]) {
+                            current[stop] = arrival;
+                            state.bestArrivals[stop] = arrival;
+                            state.legRoute[round][stop] = route;
+                            state.legBoardPosition[round][stop] = boardPosition;
+                            state.legStationDeparture[round][stop] = stationDeparture;
+                            state.legRound[round][stop] = round;
+                            state.mark(stop);
+                        }
+                    }
+                    if (previous[stop] != UNREACHED && p < length - 1) {
+                        int departure = earliestStationDeparture(route, p, previous[stop]);
+                        if (departure < stationDeparture) {
+                            stationDeparture = departure;
+                            boardPosition = p;
+                        }
+                    }
+                }
+                state.routeStartPosition[route] = UNREACHED;
+            }
+        }
+        // leave the marks clean for the next query
+        for (int m = 0; m < state.markedCount; m++)
+            state.isMarked[state.markedStops[m]] = false;
+        state.markedCount = 0;
+        return round;
+    }
+
+    /**
+     * Returns the earliest time a passenger can arrive at the destination stop, leaving the starting stop
+     * at the given time of the day, with at most the given number of transfers.
+     * Doesn't allocate memory after the first query of the thread with the same or larger number of transfers.
+     * @param fromStopId the id of the stop where the journey starts
+     * @param toStopId the id of the destination stop
+     * @param departureMinutes the time of the day the passenger is ready to leave, in the range [0, 24 * 60)
+     * @param maxTransfers the maximum number of transfers
+     * @return the earliest arrival in minutes from the start of the day of the departure,
+     *          or -1 if the destination cannot be reached
+     * @throws IllegalArgumentException if a stop id or the time is out of range,
+     *          or the maximum number of transfers is negative
+     */
+    public int earliestArrival(int fromStopId, int toStopId, int departureMinutes, int maxTransfers) {
+        checkQuery(fromStopId, toStopId, departureMinutes, maxTransfers);
+        SearchState state = searchState.get();
+        int rounds = search(state, fromStopId, toStopId, departureMinutes, roundsFor(maxTransfers));
+        int arrival = state.arrivals[rounds][toStopId];
+        return arrival == UNREACHED ? -1 : arrival;
+    }
+
+    /**
+     * Finds the journey with the earliest arrival from the starting stop to the destination stop, leaving
+     * at the given time of the day, with at most the given number of transfers. From the journeys with the
+     * same arrival, the one with the least transfers is returned.
+     * @param fromStopId the id of the stop where the journey starts
+     * @param toStopId the id of the destination stop
+     * @param departureMinutes the time of the day the passenger is ready to leave, in the range [0, 24 * 60)
+     * @param maxTransfers the maximum number of transfers
+     * @return the journey with the earliest arrival, or null if the destination cannot be reached
+     * @throws IllegalArgumentException if a stop id or the time is out of range,
+     *          or the maximum number of transfers is negative
+     */
+    public Journey findJourney(int fromStopId, int toStopId, int departureMinutes, int maxTransfers) {
+        LOGGER.trace("called findJourney");
+        checkQuery(fromStopId, toStopId, departureMinutes, maxTransfers);
+        SearchState state = searchState.get();
+        int rounds = search(state, fromStopId, toStopId, departureMinutes, roundsFor(maxTransfers));
+        int arrival = state.arrivals[rounds][toStopId];
+        if (arrival == UNREACHED)
+            return null;
+
+        // the first round that reached the best arrival has the least rides
+        int round = 0;
+        while (state.arrivals[round][toStopId] != arrival)
+            round++;
+        List<Journey.Leg> legs = new ArrayList<>(round);
+        int stop = toStopId;
+        round = state.legRound[round][stop];
+        while (round > 0) {
+            int route = state.legRoute[round][stop];
+            int offset = routeOffsets[route];
+            int boardPosition = state.legBoardPosition[round][stop];
+            int stationDeparture = state.legStationDeparture[round][stop];
+            int boardStop = routeStops[offset + boardPosition];
+            legs.add(new Journey.Leg(routeNames[route], boardStop, stop,
+                    stationDeparture + routeTravelTimes[offset + boardPosition],
+                    state.arrivals[round][stop]));
+            stop = boardStop;
+            round = state.legRound[round - 1][stop];
+        }
+        Collections.reverse(legs);
+        return new Journey(departureMinutes, legs);
+    }
+
+}//class
@@ -0,0 +1,102 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import java.util.Arrays;
+
+/**
+ * A minimum heap of long values, without boxing. The users pack a time or a distance in the upper 32 bits
+ * and an index in the lower 32 bits of the values, so the heap is ordered by the packed key.
+ */
+final class LongHeap {
+
+    /**
+     * The elements of the heap, the children of index i are at 2i+1 and 2i+2.
+     */
+    private long[] elements;
+
+    /**
+     * The number of elements in the heap.
+     */
+    private int size;
+
+    /**
+     * Creates an empty heap with the given initial capacity.
+     * @param capacity the initial capacity, at least 1
+     */
+    LongHeap(int capacity) {
+        elements = new long[capacity];
+        size = 0;
+    }
+
+    /**
+     * Returns true if the heap has no elements.
+     * @return true if the heap is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the elements, the capacity is kept.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the smallest element without removing it. The heap must not be empty.
+     * @return the smallest element
+     */
+    long peek() {
+        return elements[0];
+    }
+
+    /**
+     * Adds the given element to the heap.
+     * @param value the element to add
+     */
+    void add(long value) {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, size * 2);
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (elements[parent] <= value)
+                break;
+            elements[i] = elements[parent];
+            i = parent;
+        }
+        elements[i] = value;
+    }
+
+    /**
+     * Removes and returns the smallest element. The heap must not be empty.
+     * @return the smallest element
+     */
+    long poll() {
+        long top = elements[0];
+        long last = elements[--size];
+        if (size > 0)
+            replaceTop(last);
+        return top;
+    }
+
+    /**
+     * Replaces the smallest element with the given one. The heap must not be empty.
+     * @param value the new element
+     */
+    void replaceTop(long value) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && elements[child + 1] < elements[child])
+                child++;
+            if (value <= elements[child])
+                break;
+            elements[i] = elements[child];
+            i = child;
+        }
+        elements[i] = value;
+    }
+
+}//class
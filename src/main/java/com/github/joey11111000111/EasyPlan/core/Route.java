@@ -0,0 +1,140 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.IntList;
+
+/**
+ * A read-only snapshot of the bus stops of a {@link TouchedStops} buffer, with their travel times and
+ * occurrence counts. It is taken and restored in constant time, as it shares its arrays with the buffer:
+ * the buffer only copies an array when it would overwrite a shared element, see {@link IntList}.
+ * So the applied stops of a {@link BusService} are kept as a route, applying and discarding the modifications
+ * of the stops are pointer swaps, and the route can be handed to other threads without copying.
+ * Instances are immutable.
+ */
+public final class Route {
+
+    /**
+     * The ids of the bus stops, the first one is the bus station.
+     */
+    private final IntList.Snapshot stops;
+
+    /**
+     * The minutes it takes to travel from the bus station to each of the {@link #stops}, at the same index.
+     */
+    private final IntList.Snapshot travelTimes;
+
+    /**
+     * The set of the stops that are in the route at least once, as a bitset, shared with the buffer.
+     * It is never modified.
+     */
+    private final long[] usedOnce;
+
+    /**
+     * The set of the stops that are in the route twice, as a bitset, shared with the buffer.
+     * It is never modified.
+     */
+    private final long[] usedTwice;
+
+    /**
+     * Creates a route from the snapshots of the arrays of a buffer.
+     * @param stops the ids of the bus stops
+     * @param travelTimes the travel times from the station to the stops
+     * @param usedOnce the stops that are in the route at least once
+     * @param usedTwice the stops that are in the route twice
+     */
+    Route(IntList.Snapshot stops, IntList.Snapshot travelTimes, long[] usedOnce, long[] usedTwice) {
+        this.stops = stops;
+        this.travelTimes = travelTimes;
+        this.usedOnce = usedOnce;
+        this.usedTwice = usedTwice;
+    }
+
+    /**
+     * Returns the number of stops of the route, included the first appearance of the bus station.
+     * @return the number of stops, at least 1
+     */
+    public int getStopCount() {
+        return stops.size();
+    }
+
+    /**
+     * Returns the id of the stop at the given index.
+     * @param index the index of the stop, 0 is the bus station
+     * @return the id of the stop
+     * @throws IndexOutOfBoundsException if the index is negative, or not smaller than the stop count
+     */
+    public int getStop(int index) {
+        return stops.get(index);
+    }
+
+    /**
+     * Returns the minutes it takes to travel from the bus station to the stop at the given index.
+     * @param index the index of the stop, 0 is the bus station
+     * @return the travel time to the stop, 0 for the bus station
+     * @throws IndexOutOfBoundsException if the index is negative, or not smaller than the stop count
+     */
+    public int getTravelTime(int index) {
+        return travelTimes.get(index);
+    }
+
+    /**
+     * Returns the ids of the stops, in the same format as {@link TouchedStops#getStops()}.
+     * @return a new array with the ids of the stops, in their order
+     */
+    public int[] getStops() {
+        return stops.toArray();
+    }
+
+    /**
+     * Returns the travel times of the stops, in the same format as {@link TouchedStops#getTravelTimes()},
+     * so without the first appearance of the bus station.
+     * @return a new array with the travel times from the station to the stops after it
+     */
+    public int[] getTravelTimes() {
+        int[] times = new int[travelTimes.size() - 1];
+        for (int i = 0; i < times.length; i++)
+            times[i] = travelTimes.get(i + 1);
+        return times;
+    }
+
+    /**
+     * Returns the read-only view of the ids of the stops, without copying them.
+     * @return the snapshot of the ids of the stops
+     */
+    public IntList.Snapshot getStopsView() {
+        return stops;
+    }
+
+    /**
+     * Returns the read-only view of the travel times of the stops, without copying them. Its indexes are the
+     * same as the indexes of the {@link #getStopsView() stops}.
+     * @return the snapshot of the travel times of the stops
+     */
+    public IntList.Snapshot getTravelTimesView() {
+        return travelTimes;
+    }
+
+    /**
+     * Indicates whether the route is closed, see {@link TouchedStops#isClosed()}.
+     * @return true, if the route returns to the bus station
+     */
+    public boolean isClosed() {
+        return stops.size() > 2 && stops.get(stops.size() - 1) == 0;
+    }
+
+    /**
+     * Returns the set of the stops that are in the route at least once. The array must not be modified.
+     * @return the shared bitset of the stops
+     */
+    long[] getUsedOnce() {
+        return usedOnce;
+    }
+
+    /**
+     * Returns the set of the stops that are in the route twice. The array must not be modified.
+     * @return the shared bitset of the stops
+     */
+    long[] getUsedTwice() {
+        return usedTwice;
+    }
+
+}//class
@@ -0,0 +1,363 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Enumerates all the valid closed routes of a {@link CityGraph city}, following the same rules as the
+ * {@link TouchedStops} class: every route starts at the bus station, every next stop is reachable from the
+ * previous one, a stop appears at most twice, and the route is closed when it gets back to the station.
+ * The routes are searched depth-first, where the first {@link #FORK_DEPTH} levels of the search are split
+ * into fork-join tasks, so the branches are searched in parallel on all the cores.
+ * <p>
+ * A branch is pruned as soon as even the shortest way back to the station would break the limits of the
+ * enumeration, either in travel time or in the number of stops. The shortest ways back are calculated once,
+ * when the enumerator is created. Instances are immutable, so they can be used from several threads.
+ */
+public final class RouteEnumerator {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(RouteEnumerator.class);
+
+    /**
+     * The routes that are shorter than this (in number of stops) are extended in separate tasks,
+     * the longer ones are searched sequentially by the task that reached them.
+     */
+    static final int FORK_DEPTH = 5;
+
+    /**
+     * The value of the stops that cannot get back to the station.
+     */
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * The city of the routes.
+     */
+    private final CityGraph city;
+
+    /**
+     * The shortest travel time in minutes from every stop back to the station.
+     */
+    private final int[] minutesToStation;
+
+    /**
+     * The smallest number of roads from every stop back to the station.
+     */
+    private final int[] roadsToStation;
+
+    /**
+     * Creates an enumerator for the given city, and calculates the shortest ways back to the station.
+     * @param city the city of the routes
+     * @throws NullPointerException if the given city is null
+     */
+    public RouteEnumerator(CityGraph city) {
+        LOGGER.trace("called RouteEnumerator constructor");
+        if (city == null)
+            throw new NullPointerException("the given city is null");
+        this.city = city;
+        int stopCount = city.getStopCount();
+
+        // the roads in reverse direction, in compressed sparse row form
+        int[] reverseOffsets = new int[stopCount + 1];
+        for (int road = 0; road < city.getRoadCount(); road++)
+            reverseOffsets[city.targetOfRoad(road) + 1]++;
+        for (int id = 0; id < stopCount; id++)
+            reverseOffsets[id + 1] += reverseOffsets[id];
+        int[] reverseFrom = new int[city.getRoadCount()];
+        int[] reverseRoad = new int[city.getRoadCount()];
+        int[] fill = Arrays.copyOf(reverseOffsets, stopCount);
+        for (int from = 0; from < stopCount; from++)
+            for (int road = city.firstRoadOf(from); road < city.roadEndOf(from); road++) {
+                int index = fill[city.targetOfRoad(road)]++;
+                reverseFrom[index] = from;
+                reverseRoad[index] = road;
+            }
+
+        minutesToStation = new int[stopCount];
+        Arrays.fill(minutesToStation, UNREACHABLE);
+        minutesToStation[0] = 0;
+        LongHeap heap = new LongHeap(16);
+        heap.add(0);
+        while (!heap.isEmpty()) {
+            long top = heap.poll();
+            int stop = (int) top;
+            int minutes = (int) (top >>> 32);
+            if (minutes > minutesToStation[stop])
+                continue;       // a shorter way was found after this one was added
+            for (int i = reverseOffsets[stop]; i < reverseOffsets[stop + 1]; i++) {
+                long newMinutes = (long) minutes + city.minutesOfRoad(reverseRoad[i]);
+                if (newMinutes < minutesToStation[reverseFrom[i]]) {
+                    minutesToStation[reverseFrom[i]] = (int) newMinutes;
+                    heap.add((newMinutes << 32) | reverseFrom[i]);
+                }
+            }
+        }
+
+        roadsToStation = new int[stopCount];
+        Arrays.fill(roadsToStation, UNREACHABLE);
+        roadsToStation[0] = 0;
+        int[] queue = new int[stopCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int stop = queue[head++];
+            for (int i = reverseOffsets[stop]; i < reverseOffsets[stop + 1]; i++)
+                if (roadsToStation[reverseFrom[i]] == UNREACHABLE) {
+                    roadsToStation[reverseFrom[i]] = roadsToStation[stop] + 1;
+                    queue[tail++] = reverseFrom[i];
+                }
+        }
+    }
+
+    /**
+     * Returns the city of the routes.
+     * @return the city of the routes
+     */
+    public CityGraph getCity() {
+        return city;
+    }
+
+    /**
+     * Passes every valid closed route to the given consumer, that has at most the given number of stops
+     * (counting both appearances of the station) and takes at most the given number of minutes.
+     * The routes are not collected, each one is passed to the consumer as soon as it is found.
+     * The search runs in the common fork-join pool, so the consumer is called from several threads at
+     * the same time, in no particular order, and it must be thread-safe.
+     * @param maxStops the maximum number of stops of a route, a closed route has at least 3
+     * @param maxMinutes the maximum travel time of a route
+     * @param consumer receives every route as a new array of stop ids, from the station to the station
+     * @return the number of the routes that were passed to the consumer
+     * @throws IllegalArgumentException if either of the limits is negative
+     * @throws NullPointerException if the given consumer is null
+     */
+    public long enumerate(int maxStops, int maxMinutes, Consumer<int[]> consumer) {
+        LOGGER.trace("called enumerate");
+        if (maxStops < 0 || maxMinutes < 0)
+            throw new IllegalArgumentException("the limits cannot be negative: " + maxStops + ", " + maxMinutes);
+        if (consumer == null)
+            throw new NullPointerException("the given consumer is null");
+        // every stop appears at most twice, and the first appearance of the station only once
+        int stopLimit = (int) Math.min(maxStops, 2L * city.getStopCount() + 1);
+        if (stopLimit < 3)
+            return 0;
+
+        Search root = new Search(stopLimit, maxMinutes, consumer);
+        root.push(0, 0);
+        long count = ForkJoinPool.commonPool().invoke(root);
+        LOGGER.debug("enumerated " + count + " routes");
+        return count;
+    }
+
+    /**
+     * A branch of the search: the routes that start with a given path. The path is extended in separate tasks
+     * while it is shorter than {@link #FORK_DEPTH}, and is searched sequentially after that.
+     * The result of the task is the number of the routes that were found.
+     */
+    private class Search extends RecursiveTask<Long> {
+
+        /**
+         * The maximum number of stops of a route.
+         */
+        private final int maxStops;
+
+        /**
+         * The maximum travel time of a route.
+         */
+        private final int maxMinutes;
+
+        /**
+         * Receives the routes that are found.
+         */
+        private final Consumer<int[]> consumer;
+
+        /**
+         * The stops of the current path, the first {@link #size} elements are used.
+         */
+        private final int[] path;
+
+        /**
+         * The travel time from the station to every stop of the path.
+         */
+        private final int[] minutes;
+
+        /**
+         * The number of stops in the path.
+         */
+        private int size;
+
+        /**
+         * The stops that are in the path at least once, as a bitset.
+         */
+        private final long[] usedOnce;
+
+        /**
+         * The stops that are in the path twice, as a bitset.
+         */
+        private final long[] usedTwice;
+
+        /**
+         * The number of routes found by this task itself, without its subtasks.
+         */
+        private long found;
+
+        /**
+         * Creates the root of the search, with an empty path.
+         * @param maxStops the maximum number of stops of a route
+         * @param maxMinutes the maximum travel time of a route
+         * @param consumer receives the routes that are found
+         */
+        private Search(int maxStops, int maxMinutes, Consumer<int[]> consumer) {
+            this.maxStops = maxStops;
+            this.maxMinutes = maxMinutes;
+            this.consumer = consumer;
+            path = new int[maxStops];
+            minutes = new int[maxStops];
+            usedOnce = new long[city.getWordCount()];
+            usedTwice = new long[city.getWordCount()];
+        }
+
+        /**
+         * Creates a branch that continues the path of the given search with the given stop.
+         * @param parent the search to continue
+         * @param stop the next stop of the path
+         * @param stopMinutes the travel time from the station to the next stop
+         */
+        private Search(Search parent, int stop, int stopMinutes) {
+            maxStops = parent.maxStops;
+            maxMinutes = parent.maxMinutes;
+            consumer = parent.consumer;
+            path = parent.path.clone();
+            minutes = parent.minutes.clone();
+            size = parent.size;
+            usedOnce = parent.usedOnce.clone();
+            usedTwice = parent.usedTwice.clone();
+            push(stop, stopMinutes);
+        }
+
+        /**
+         * Counts a new occurrence of the given stop in the {@link #usedOnce} and {@link #usedTwice} sets.
+         * @param stop the stop that is added to the path
+         */
+        private void count(int stop) {
+            long bit = 1L << stop;
+            if ((usedOnce[stop >>> 6] & bit) == 0)
+                usedOnce[stop >>> 6] |= bit;
+            else
+                usedTwice[stop >>> 6] |= bit;
+        }
+
+        /**
+         * Removes an occurrence of the given stop from the {@link #usedOnce} and {@link #usedTwice} sets.
+         * @param stop the stop that is removed from the path
+         */
+        private void uncount(int stop) {
+            long bit = 1L << stop;
+            if ((usedTwice[stop >>> 6] & bit) != 0)
+                usedTwice[stop >>> 6] &= ~bit;
+            else
+                usedOnce[stop >>> 6] &= ~bit;
+        }
+
+        /**
+         * Appends the given stop to the path.
+         * @param stop the next stop of the path
+         * @param stopMinutes the travel time from the station to the stop
+         */
+        private void push(int stop, int stopMinutes) {
+            path[size] = stop;
+            minutes[size] = stopMinutes;
+            size++;
+            count(stop);
+        }
+
+        /**
+         * Decides what to do with the given road from the last stop of the path: the road either closes
+         * a route, which is passed to the consumer, or continues the path, or breaks a rule or a limit.
+         * @param road the road to take from the last stop of the path
+         * @return the travel time to the end of the road if the path can be continued with it, -1 otherwise
+         */
+        private int tryRoad(int road) {
+            int to = city.targetOfRoad(road);
+            if ((usedTwice[to >>> 6] & (1L << to)) != 0)
+                return -1;
+            long toMinutes = (long) minutes[size - 1] + city.minutesOfRoad(road);
+            if (roadsToStation[to] == UNREACHABLE || toMinutes + minutesToStation[to] > maxMinutes
+                    || size + 1 + roadsToStation[to] > maxStops)
+                return -1;
+            if (to == 0) {
+                if (size > 1) {
+                    int[] route = Arrays.copyOf(path, size + 1);
+                    route[size] = 0;
+                    consumer.accept(route);
+                    found++;
+                }
+                return -1;      // a route is closed at the station, and 0 -> 0 can never be closed
+            }
+            return (int) toMinutes;
+        }
+
+        /**
+         * {@inheritDoc}
+         * Splits the search into subtasks, or searches sequentially if the path is long enough.
+         * @return the number of the routes that start with the path of this task
+         */
+        @Override
+        protected Long compute() {
+            if (size >= FORK_DEPTH) {
+                searchSequentially();
+                return found;
+            }
+            int last = path[size - 1];
+            List<Search> branches = new ArrayList<>(city.roadEndOf(last) - city.firstRoadOf(last));
+            for (int road = city.firstRoadOf(last); road < city.roadEndOf(last); road++) {
+                int toMinutes = tryRoad(road);
+                if (toMinutes >= 0)
+                    branches.add(new Search(this, city.targetOfRoad(road), toMinutes));
+            }
+            long total = found;
+            for (Search branch : invokeAll(branches))
+                total += branch.join();
+            return total;
+        }
+
+        /**
+         * Searches all the routes that start with the current path, with an iterative depth-first search.
+         * The path is the same after the search as it was before it.
+         */
+        private void searchSequentially() {
+            int base = size;
+            // the next road to try from every stop of the path
+            int[] nextRoad = new int[maxStops];
+            nextRoad[size - 1] = city.firstRoadOf(path[size - 1]);
+            while (true) {
+                int last = path[size - 1];
+                if (nextRoad[size - 1] == city.roadEndOf(last)) {
+                    if (size == base)
+                        return;
+                    uncount(last);
+                    size--;
+                    continue;
+                }
+                int road = nextRoad[size - 1]++;
+                int toMinutes = tryRoad(road);
+                if (toMinutes >= 0) {
+                    int to = city.targetOfRoad(road);
+                    push(to, toMinutes);
+                    nextRoad[size - 1] = city.firstRoadOf(to);
+                }
+            }
+        }
+
+    }//private class
+
+}//class
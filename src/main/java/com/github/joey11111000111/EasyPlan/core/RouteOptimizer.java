@@ -0,0 +1,488 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a closed route from the bus station, that serves all the given bus stops of a {@link CityGraph city}
+ * with as short a total travel time as it can find in the given time. The route follows the same rules as the
+ * {@link TouchedStops} class, so it can be {@link #writeRoute(int[], Controller) written} into a bus service.
+ * <p>
+ * The order of the required stops is optimized first, where the cost of going from one required stop to the
+ * next is the shortest travel time between them. The first order is built with the nearest neighbour
+ * heuristic, then it is improved with 2-opt and or-opt moves until none of them helps. While there is time
+ * left, the best order is perturbed with random double-bridge moves and improved again (iterated local
+ * search). Finally the order is expanded into stops, with a shortest path between every two required stops,
+ * which avoids the station and the stops that are already in the route twice. The required stops that an
+ * earlier path passes through are not visited again. Instances are immutable, so they can be used from
+ * several threads.
+ */
+public final class RouteOptimizer {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(RouteOptimizer.class);
+
+    /**
+     * The longest chain of required stops that an or-opt move relocates.
+     */
+    static final int MAX_SEGMENT = 3;
+
+    /**
+     * The iterated local search stops after this many perturbations in a row that didn't improve the best order,
+     * even if there is time left.
+     */
+    static final int MAX_FAILED_KICKS = 200;
+
+    /**
+     * The double-bridge perturbation needs at least this many required stops.
+     */
+    private static final int MIN_KICK_STOPS = 8;
+
+    /**
+     * The travel time between stops that cannot reach each other.
+     */
+    private static final int NO_PATH = Integer.MAX_VALUE;
+
+    /**
+     * The city of the routes.
+     */
+    private final CityGraph city;
+
+    /**
+     * Creates an optimizer for the given city.
+     * @param city the city of the routes
+     * @throws NullPointerException if the given city is null
+     */
+    public RouteOptimizer(CityGraph city) {
+        LOGGER.trace("called RouteOptimizer constructor");
+        if (city == null)
+            throw new NullPointerException("the given city is null");
+        this.city = city;
+    }
+
+    /**
+     * Returns the city of the routes.
+     * @return the city of the routes
+     */
+    public CityGraph getCity() {
+        return city;
+    }
+
+    /**
+     * Builds a closed route that serves all the given bus stops, and takes as little travel time as the
+     * optimizer can find within the given time limit. The station is always served, it may be among the
+     * given stops, as well as the same stop more than once.
+     * @param requiredStops the ids of the bus stops the route has to touch
+     * @param timeLimitMillis the time the optimization may take in milliseconds, the expansion of the
+     *                        best order into stops is done after it
+     * @return a new array with the stops of the route, starting and ending with the station
+     * @throws NullPointerException if the given array is null
+     * @throws IndexOutOfBoundsException if one of the given ids is invalid
+     * @throws IllegalArgumentException if the time limit is negative, there are no stops to serve beside
+     *          the station, or a required stop cannot be reached from the station or cannot get back to it
+     * @throws IllegalStateException if the best order cannot be turned into a route without touching a stop
+     *          more than twice
+     */
+    public int[] optimize(int[] requiredStops, long timeLimitMillis) {
+        LOGGER.trace("called optimize");
+        if (requiredStops == null)
+            throw new NullPointerException("the given array of stops is null");
+        if (timeLimitMillis < 0)
+            throw new IllegalArgumentException("the time limit cannot be negative: " + timeLimitMillis);
+        long deadline = System.nanoTime() + timeLimitMillis * 1_000_000;
+
+        // the station is the point 0, the distinct required stops follow
+        long[] seen = new long[city.getWordCount()];
+        int[] points = new int[requiredStops.length + 1];
+        int pointCount = 1;
+        for (int id : requiredStops) {
+            if (!city.validId(id))
+                throw new IndexOutOfBoundsException("stop id is out of range: " + id);
+            if ((seen[id >>> 6] & (1L << id)) == 0 && id != 0) {
+                seen[id >>> 6] |= 1L << id;
+                points[pointCount++] = id;
+            }
+        }
+        if (pointCount == 1)
+            throw new IllegalArgumentException("there are no stops to serve beside the station");
+        points = Arrays.copyOf(points, pointCount);
+
+        int[] costs = costsBetween(points);
+        for (int p = 1; p < pointCount; p++)
+            if (costs[p] == NO_PATH || costs[p * pointCount] == NO_PATH)
+                throw new IllegalArgumentException("the stop '" + points[p]
+                        + "' cannot be reached from the station, or cannot get back to it");
+
+        Tour best = new Tour(costs, pointCount, nearestNeighbourOrder(costs, pointCount));
+        best.improve(deadline);
+        LOGGER.debug("the first local optimum takes " + best.cost() + " minutes");
+        if (pointCount - 1 >= MIN_KICK_STOPS) {
+            Random random = new Random(pointCount);
+            int failedKicks = 0;
+            while (failedKicks < MAX_FAILED_KICKS && System.nanoTime() < deadline) {
+                Tour candidate = new Tour(costs, pointCount, best.doubleBridge(random));
+                candidate.improve(deadline);
+                if (candidate.cost() < best.cost()) {
+                    best = candidate;
+                    failedKicks = 0;
+                } else
+                    failedKicks++;
+            }
+        }
+        LOGGER.debug("the best order takes " + best.cost() + " minutes");
+        return expand(points, best.order);
+    }
+
+    /**
+     * Replaces the stops of the selected bus service of the given controller with the given route,
+     * through {@link Controller#appendStop(int)}. The change can be undone like any other edit.
+     * @param route the stops of the route, starting with the station
+     * @param controller the controller with the selected bus service
+     * @throws NullPointerException if either of the arguments is null
+     * @throws IllegalArgumentException if the route is empty, doesn't start with the station or breaks the
+     *          rules of {@link Controller#appendStop(int)}, the stops before the invalid one are kept
+     * @throws com.github.joey11111000111.EasyPlan.core.exceptions.NoSelectedServiceException
+     *          if there isn't a selected bus service
+     */
+    public static void writeRoute(int[] route, Controller controller) {
+        LOGGER.trace("called writeRoute");
+        if (route == null || controller == null)
+            throw new NullPointerException("the given route or controller is null");
+        if (route.length == 0 || route[0] != 0)
+            throw new IllegalArgumentException("the route doesn't start with the bus station");
+        controller.clearStops();
+        for (int i = 1; i < route.length; i++)
+            controller.appendStop(route[i]);
+    }
+
+    /**
+     * Calculates the shortest travel times between all the given points, with a Dijkstra search from every
+     * point. The searches run in parallel, and never go on from the station, as it would close the route.
+     * @param points the stops to connect, the first one is the station
+     * @return the row-major table of the travel times between the points, {@link #NO_PATH} if there is no path
+     */
+    private int[] costsBetween(int[] points) {
+        int pointCount = points.length;
+        int[] costs = new int[pointCount * pointCount];
+        IntStream.range(0, pointCount).parallel().forEach(from -> {
+            int[] distances = new int[city.getStopCount()];
+            shortestPaths(points[from], -1, null, null, distances, null);
+            for (int to = 0; to < pointCount; to++)
+                costs[from * pointCount + to] = distances[points[to]];
+        });
+        return costs;
+    }
+
+    /**
+     * A Dijkstra search from the given stop, that doesn't go on from the station and doesn't enter the
+     * excluded stops.
+     * @param from the stop to start from
+     * @param target the search stops when this stop is reached, -1 to search the whole city
+     * @param excluded the bitset of the stops that cannot be entered, or null
+     * @param heap the heap of the search, or null to create one
+     * @param distances filled with the travel times from the start, {@link #NO_PATH} for the stops not reached
+     * @param predecessors filled with the stop before every reached stop, or null if not needed
+     */
+    private void shortestPaths(int from, int target, long[] excluded, LongHeap heap,
+                               int[] distances, int[] predecessors) {
+        Arrays.fill(distances, NO_PATH);
+        if (heap == null)
+            heap = new LongHeap(16);
+        else
+            heap.clear();
+        distances[from] = 0;
+        heap.add(from);
+        while (!heap.isEmpty()) {
+            long top = heap.poll();
+            int stop = (int) top;
+            int minutes = (int) (top >>> 32);
+            if (minutes > distances[stop])
+                continue;       // a shorter path was found after this one was added
+            if (stop == target)
+                return;
+            if (stop == 0 && from != 0)
+                continue;       // the route would be closed at the station
+            for (int road = city.firstRoadOf(stop); road < city.roadEndOf(stop); road++) {
+                int to = city.targetOfRoad(road);
+                if (excluded != null && (excluded[to >>> 6] & (1L << to)) != 0)
+                    continue;
+                long newMinutes = (long) minutes + city.minutesOfRoad(road);
+                if (newMinutes < distances[to]) {
+                    distances[to] = (int) newMinutes;
+                    if (predecessors != null)
+                        predecessors[to] = stop;
+                    heap.add((newMinutes << 32) | to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds an order of the points with the nearest neighbour heuristic: it always goes on to the closest
+     * point that wasn't visited yet.
+     * @param costs the travel times between the points
+     * @param pointCount the number of points, including the station
+     * @return the order of the points, starting and ending with the station
+     */
+    private static int[] nearestNeighbourOrder(int[] costs, int pointCount) {
+        int[] order = new int[pointCount + 1];
+        boolean[] visited = new boolean[pointCount];
+        visited[0] = true;
+        for (int i = 1; i < pointCount; i++) {
+            int current = order[i - 1];
+            int next = -1;
+            for (int p = 1; p < pointCount; p++)
+                if (!visited[p] && (next == -1 || costs[current * pointCount + p] < costs[current * pointCount + next]))
+                    next = p;
+            visited[next] = true;
+            order[i] = next;
+        }
+        return order;
+    }
+
+    /**
+     * Turns the given order of the points into the stops of a route, with the shortest paths between them
+     * that keep the rules of the route editing.
+     * @param points the stops of the points
+     * @param order the order of the points, starting and ending with the station
+     * @return the stops of the route
+     * @throws IllegalStateException if a path cannot be found without touching a stop more than twice
+     */
+    private int[] expand(int[] points, int[] order) {
+        int stopCount = city.getStopCount();
+        long[] usedOnce = new long[city.getWordCount()];
+        long[] usedTwice = new long[city.getWordCount()];
+        usedOnce[0] = 1L;
+        int[] distances = new int[stopCount];
+        int[] predecessors = new int[stopCount];
+        LongHeap heap = new LongHeap(16);
+        int[] route = new int[16];
+        route[0] = 0;
+        int size = 1;
+        for (int i = 1; i < order.length; i++) {
+            int target = points[order[i]];
+            if (target != 0 && (usedOnce[target >>> 6] & (1L << target)) != 0)
+                continue;       // an earlier path has already served it
+            int from = route[size - 1];
+            shortestPaths(from, target, usedTwice, heap, distances, predecessors);
+            if (distances[target] == NO_PATH)
+                throw new IllegalStateException("the stop '" + target + "' cannot be reached from '" + from
+                        + "' without touching a stop more than twice");
+            int length = 0;
+            for (int stop = target; stop != from; stop = predecessors[stop])
+                length++;
+            if (size + length > route.length)
+                route = Arrays.copyOf(route, Math.max(2 * route.length, size + length));
+            for (int k = size + length - 1, stop = target; k >= size; k--, stop = predecessors[stop]) {
+                route[k] = stop;
+                long bit = 1L << stop;
+                if ((usedOnce[stop >>> 6] & bit) == 0)
+                    usedOnce[stop >>> 6] |= bit;
+                else
+                    usedTwice[stop >>> 6] |= bit;
+            }
+            size += length;
+        }
+        return Arrays.copyOf(route, size);
+    }
+
+    /**
+     * An order of the points, with the local search moves that improve it. The order starts and ends with the
+     * station, and the travel times of its prefixes are kept in both directions, so the cost of a reversed
+     * section is known in constant time.
+     */
+    private static class Tour {
+
+        /**
+         * The travel times between the points, in a row-major table.
+         */
+        private final int[] costs;
+
+        /**
+         * The number of points, including the station.
+         */
+        private final int pointCount;
+
+        /**
+         * The points in the order of the tour, the first and the last one is the station.
+         */
+        private final int[] order;
+
+        /**
+         * forward[i] is the travel time from the start of the tour to its i-th point.
+         */
+        private final long[] forward;
+
+        /**
+         * backward[i] is the travel time of the first i legs of the tour, when each of them is taken in the
+         * opposite direction.
+         */
+        private final long[] backward;
+
+        /**
+         * Creates a tour of the given order. The order is not copied.
+         * @param costs the travel times between the points
+         * @param pointCount the number of points, including the station
+         * @param order the order of the points, starting and ending with the station
+         */
+        private Tour(int[] costs, int pointCount, int[] order) {
+            this.costs = costs;
+            this.pointCount = pointCount;
+            this.order = order;
+            forward = new long[order.length];
+            backward = new long[order.length];
+            updateSums();
+        }
+
+        /**
+         * Returns the travel time between the given points.
+         * @param from the point to go from
+         * @param to the point to go to
+         * @return the travel time, {@link #NO_PATH} if there is no path
+         */
+        private long cost(int from, int to) {
+            return costs[from * pointCount + to];
+        }
+
+        /**
+         * Returns the total travel time of the tour.
+         * @return the travel time of the tour
+         */
+        private long cost() {
+            return forward[order.length - 1];
+        }
+
+        /**
+         * Recalculates the travel times of the prefixes of the tour.
+         */
+        private void updateSums() {
+            for (int i = 1; i < order.length; i++) {
+                forward[i] = forward[i - 1] + cost(order[i - 1], order[i]);
+                backward[i] = backward[i - 1] + cost(order[i], order[i - 1]);
+            }
+        }
+
+        /**
+         * Applies improving 2-opt and or-opt moves until there isn't any, or the deadline passes.
+         * @param deadline the value of {@link System#nanoTime()} after which no more moves are searched
+         */
+        private void improve(long deadline) {
+            boolean improved = true;
+            while (improved && System.nanoTime() < deadline)
+                improved = twoOpt() || orOpt();
+        }
+
+        /**
+         * Finds and applies the first 2-opt move that makes the tour shorter: the section between two
+         * legs is reversed.
+         * @return true if a move was applied
+         */
+        private boolean twoOpt() {
+            int last = order.length - 1;
+            for (int i = 0; i < last - 2; i++)
+                for (int j = i + 2; j < last; j++) {
+                    // the legs i -> i+1 and j -> j+1 are replaced, the section i+1 .. j is reversed
+                    long delta = cost(order[i], order[j]) + cost(order[i + 1], order[j + 1])
+                            - cost(order[i], order[i + 1]) - cost(order[j], order[j + 1])
+                            + (backward[j] - backward[i + 1]) - (forward[j] - forward[i + 1]);
+                    if (delta < 0) {
+                        for (int a = i + 1, b = j; a < b; a++, b--) {
+                            int swap = order[a];
+                            order[a] = order[b];
+                            order[b] = swap;
+                        }
+                        updateSums();
+                        return true;
+                    }
+                }
+            return false;
+        }
+
+        /**
+         * Finds and applies the first or-opt move that makes the tour shorter: a section of at most
+         * {@link #MAX_SEGMENT} points is moved to another place, in the same direction.
+         * @return true if a move was applied
+         */
+        private boolean orOpt() {
+            int last = order.length - 1;
+            for (int length = 1; length <= MAX_SEGMENT; length++)
+                for (int start = 1; start + length <= last; start++) {
+                    int end = start + length - 1;
+                    long removed = cost(order[start - 1], order[end + 1])
+                            - cost(order[start - 1], order[start]) - cost(order[end], order[end + 1]);
+                    for (int p = 0; p < last; p++) {
+                        if (p >= start - 1 && p <= end)
+                            continue;       // the section would stay at its place
+                        long delta = removed + cost(order[p], order[start]) + cost(order[end], order[p + 1])
+                                - cost(order[p], order[p + 1]);
+                        if (delta < 0) {
+                            move(start, end, p);
+                            updateSums();
+                            return true;
+                        }
+                    }
+                }
+            return false;
+        }
+
+        /**
+         * Moves the section start .. end of the order after the point at the given position.
+         * @param start the position of the first point of the section
+         * @param end the position of the last point of the section
+         * @param p the position of the point the section is put after, outside of start - 1 .. end
+         */
+        private void move(int start, int end, int p) {
+            int[] section = Arrays.copyOfRange(order, start, end + 1);
+            int length = section.length;
+            if (p > end) {
+                System.arraycopy(order, end + 1, order, start, p - end);
+                System.arraycopy(section, 0, order, p - length + 1, length);
+            } else {
+                System.arraycopy(order, p + 1, order, p + 1 + length, start - p - 1);
+                System.arraycopy(section, 0, order, p + 1, length);
+            }
+        }
+
+        /**
+         * Returns a perturbed copy of the order: it is cut into four sections at random, and the middle two
+         * are swapped.
+         * @param random the source of the cuts
+         * @return the new order
+         */
+        private int[] doubleBridge(Random random) {
+            int inner = order.length - 2;       // the points between the two appearances of the station
+            int[] cuts = new int[3];
+            for (int c = 0; c < 3; c++)
+                cuts[c] = 1 + random.nextInt(inner);
+            Arrays.sort(cuts);
+            int[] result = new int[order.length];
+            int k = 0;
+            k = copy(result, k, 0, cuts[0]);
+            k = copy(result, k, cuts[1], cuts[2]);
+            k = copy(result, k, cuts[0], cuts[1]);
+            copy(result, k, cuts[2], order.length);
+            return result;
+        }
+
+        /**
+         * Copies a section of the order into the given array.
+         * @param target the array to copy to
+         * @param at the position in the target to copy to
+         * @param from the first position of the section
+         * @param to the position after the section
+         * @return the position in the target after the copied section
+         */
+        private int copy(int[] target, int at, int from, int to) {
+            System.arraycopy(order, from, target, at, to - from);
+            return at + to - from;
+        }
+
+    }//private static class
+
+}//class
@@ -0,0 +1,344 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.dao.IntArrayCache;
+import com.github.joey11111000111.EasyPlan.dao.ObjectReadFailureException;
+import com.github.joey11111000111.EasyPlan.dao.ObjectSaveFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The shortest travel times and paths between all the pairs of bus stops of a {@link CityGraph city},
+ * following the roads of the city. Both are stored in row-major stopCount * stopCount tables, so a travel
+ * time is a single array lookup, and a path is rebuilt from the predecessors in time proportional to its length.
+ * The tables take 8 * stopCount * stopCount bytes, so they are only calculated for cities with at most
+ * {@link #MAX_STOPS} stops, which take 128 MiB.
+ * <p>
+ * Small cities are calculated with the Floyd-Warshall algorithm, larger ones with a Dijkstra search from
+ * every stop, where the searches run in parallel. As the city doesn't change while the program runs, the
+ * tables can be {@link #loadOrCompute(CityGraph, IntArrayCache) cached} on the disk, keyed by the
+ * {@link CityGraph#getFingerprint() fingerprint} of the city. Instances are immutable.
+ */
+public final class ShortestPaths {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ShortestPaths.class);
+
+    /**
+     * Cities with at most this many stops are calculated with the Floyd-Warshall algorithm.
+     */
+    static final int FLOYD_WARSHALL_MAX_STOPS = 256;
+
+    /**
+     * The largest city whose tables are calculated. The tables grow with the square of the stop count,
+     * so a larger city would need gigabytes of memory, and above 46340 stops their size doesn't fit into an int.
+     */
+    public static final int MAX_STOPS = 4096;
+
+    /**
+     * The name of the cache of the tables.
+     */
+    static final String CACHE_NAME = "shortest-paths";
+
+    /**
+     * The distance of the stops that cannot be reached.
+     */
+    private static final int NO_PATH = Integer.MAX_VALUE;
+
+    /**
+     * The number of bus stops of the city.
+     */
+    private final int stopCount;
+
+    /**
+     * The shortest travel time in minutes from the stop of the row to the stop of the column,
+     * {@link #NO_PATH} if there is no path.
+     */
+    private final int[] distances;
+
+    /**
+     * The stop before the stop of the column on the shortest path from the stop of the row,
+     * -1 if the two stops are the same or there is no path.
+     */
+    private final int[] predecessors;
+
+    /**
+     * Creates a new instance from the already calculated tables. The arrays are not copied.
+     * @param stopCount the number of bus stops
+     * @param distances the shortest travel times
+     * @param predecessors the predecessors on the shortest paths
+     */
+    private ShortestPaths(int stopCount, int[] distances, int[] predecessors) {
+        this.stopCount = stopCount;
+        this.distances = distances;
+        this.predecessors = predecessors;
+    }
+
+    /**
+     * Checks whether the tables of a city with the given number of stops can be calculated.
+     * @param stopCount the number of bus stops of the city
+     * @return the number of elements of a table
+     * @throws IllegalArgumentException if the city has more than {@link #MAX_STOPS} stops
+     */
+    static int tableSize(int stopCount) {
+        long size = (long) stopCount * stopCount;
+        if (stopCount > MAX_STOPS)
+            throw new IllegalArgumentException("the city has " + stopCount + " stops, the shortest paths can only "
+                    + "be calculated for at most " + MAX_STOPS + " stops, as the tables would have " + size
+                    + " elements");
+        return (int) size;
+    }
+
+    /**
+     * Calculates the shortest paths of the given city, with the algorithm that suits its size.
+     * @param city the city to calculate
+     * @return the shortest paths between all the stops of the city
+     * @throws NullPointerException if the given city is null
+     * @throws IllegalArgumentException if the city has more than {@link #MAX_STOPS} stops
+     */
+    public static ShortestPaths compute(CityGraph city) {
+        LOGGER.trace("called compute");
+        if (city == null)
+            throw new NullPointerException("the given city is null");
+        tableSize(city.getStopCount());
+        if (city.getStopCount() <= FLOYD_WARSHALL_MAX_STOPS)
+            return floydWarshall(city);
+        return dijkstra(city);
+    }
+
+    /**
+     * Reads the shortest paths of the given city from the given cache. When they are not in the cache
+     * (or the cache belongs to a different city), they are calculated and saved into the cache.
+     * Problems of the cache are only logged, the result is always available.
+     * @param city the city to calculate
+     * @param cache the cache of the tables
+     * @return the shortest paths between all the stops of the city
+     * @throws NullPointerException if either of the arguments is null
+     * @throws IllegalArgumentException if the city has more than {@link #MAX_STOPS} stops
+     */
+    public static ShortestPaths loadOrCompute(CityGraph city, IntArrayCache cache) {
+        LOGGER.trace("called loadOrCompute");
+        if (city == null || cache == null)
+            throw new NullPointerException("the given city or cache is null");
+        tableSize(city.getStopCount());
+        long key = city.getFingerprint();
+        try {
+            int[][] tables = cache.read(CACHE_NAME, key);
+            ShortestPaths loaded = fromTables(city.getStopCount(), tables);
+            if (loaded != null) {
+                LOGGER.debug("shortest paths are loaded from the cache");
+                return loaded;
+            }
+            LOGGER.warn("the cache of the shortest paths is invalid");
+        } catch (ObjectReadFailureException orfe) {
+            LOGGER.debug("shortest paths are not cached: " + orfe.getMessage());
+        }
+
+        ShortestPaths computed = compute(city);
+        try {
+            cache.save(CACHE_NAME, key, computed.distances, computed.predecessors);
+        } catch (ObjectSaveFailureException osfe) {
+            LOGGER.warn("cannot cache the shortest paths: " + osfe.getMessage());
+        }
+        return computed;
+    }
+
+    /**
+     * Creates an instance from the tables read from the cache, after checking them.
+     * @param stopCount the number of bus stops of the city
+     * @param tables the distances and the predecessors
+     * @return the new instance, or null if the tables are not valid for the city
+     */
+    private static ShortestPaths fromTables(int stopCount, int[][] tables) {
+        int size = tableSize(stopCount);
+        if (tables.length != 2 || tables[0].length != size || tables[1].length != size)
+            return null;
+        // every predecessor must be strictly closer than its successor (the roads take at least a minute),
+        // so following the predecessors always gets back to the start of the path
+        int[] distances = tables[0];
+        int[] predecessors = tables[1];
+        for (int i = 0; i < size; i++) {
+            int row = i - i % stopCount;
+            boolean start = row + i / stopCount == i;
+            if (start || distances[i] == NO_PATH) {
+                if (predecessors[i] != -1 || (start && distances[i] != 0))
+                    return null;
+            } else if (distances[i] < 1 || predecessors[i] < 0 || predecessors[i] >= stopCount
+                    || distances[row + predecessors[i]] >= distances[i])
+                return null;
+        }
+        return new ShortestPaths(stopCount, distances, predecessors);
+    }
+
+    /**
+     * Calculates the shortest paths with the Floyd-Warshall algorithm, in O(n^3) time.
+     * @param city the city to calculate
+     * @return the shortest paths between all the stops of the city
+     */
+    static ShortestPaths floydWarshall(CityGraph city) {
+        LOGGER.trace("called floydWarshall");
+        int n = city.getStopCount();
+        int[] distances = new int[tableSize(n)];
+        int[] predecessors = new int[distances.length];
+        Arrays.fill(distances, NO_PATH);
+        Arrays.fill(predecessors, -1);
+        for (int from = 0; from < n; from++) {
+            distances[from * n + from] = 0;
+            for (int road = city.firstRoadOf(from); road < city.roadEndOf(from); road++) {
+                int to = city.targetOfRoad(road);
+                if (to != from) {
+                    distances[from * n + to] = city.minutesOfRoad(road);
+                    predecessors[from * n + to] = from;
+                }
+            }
+        }
+
+        for (int via = 0; via < n; via++) {
+            int viaRow = via * n;
+            for (int from = 0; from < n; from++) {
+                int fromRow = from * n;
+                int toVia = distances[fromRow + via];
+                if (toVia == NO_PATH || from == via)
+                    continue;
+                for (int to = 0; to < n; to++) {
+                    int fromVia = distances[viaRow + to];
+                    if (fromVia == NO_PATH)
+                        continue;
+                    if ((long) toVia + fromVia < distances[fromRow + to]) {
+                        distances[fromRow + to] = toVia + fromVia;
+                        predecessors[fromRow + to] = predecessors[viaRow + to];
+                    }
+                }
+            }
+        }
+        LOGGER.debug("calculated the shortest paths of " + n + " stops with Floyd-Warshall");
+        return new ShortestPaths(n, distances, predecessors);
+    }
+
+    /**
+     * Calculates the shortest paths with a Dijkstra search from every stop, in O(n * m log m) time for
+     * n stops and m roads. The searches run in parallel in the common fork-join pool.
+     * @param city the city to calculate
+     * @return the shortest paths between all the stops of the city
+     */
+    static ShortestPaths dijkstra(CityGraph city) {
+        LOGGER.trace("called dijkstra");
+        int n = city.getStopCount();
+        int[] distances = new int[tableSize(n)];
+        int[] predecessors = new int[distances.length];
+        Arrays.fill(distances, NO_PATH);
+        Arrays.fill(predecessors, -1);
+        IntStream.range(0, n).parallel().forEach(from -> search(city, from, distances, predecessors));
+        LOGGER.debug("calculated the shortest paths of " + n + " stops with Dijkstra");
+        return new ShortestPaths(n, distances, predecessors);
+    }
+
+    /**
+     * Fills the row of the given stop in the tables, with a Dijkstra search that has a lazy deletion heap.
+     * @param city the city to search in
+     * @param from the stop to start from
+     * @param distances the table of the distances, the row of the stop is filled with {@link #NO_PATH}
+     * @param predecessors the table of the predecessors, the row of the stop is filled with -1
+     */
+    private static void search(CityGraph city, int from, int[] distances, int[] predecessors) {
+        int n = city.getStopCount();
+        int row = from * n;
+        LongHeap heap = new LongHeap(16);
+        distances[row + from] = 0;
+        heap.add(from);
+        while (!heap.isEmpty()) {
+            long top = heap.poll();
+            int stop = (int) top;
+            int distance = (int) (top >>> 32);
+            if (distance > distances[row + stop])
+                continue;       // a shorter path was found after this one was added
+            for (int road = city.firstRoadOf(stop); road < city.roadEndOf(stop); road++) {
+                int to = city.targetOfRoad(road);
+                long newDistance = (long) distance + city.minutesOfRoad(road);
+                if (newDistance < distances[row + to]) {
+                    distances[row + to] = (int) newDistance;
+                    predecessors[row + to] = stop;
+                    heap.add((newDistance << 32) | to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Throws an exception if there isn't a bus stop with the given id.
+     * @param id the id to check
+     * @param name the name of the id in the message of the exception
+     * @throws IndexOutOfBoundsException if there isn't a bus stop with the given id
+     */
+    private void checkId(int id, String name) {
+        if (id < 0 || id >= stopCount)
+            throw new IndexOutOfBoundsException(name + " is out of range: " + id);
+    }
+
+    /**
+     * Returns the number of bus stops of the city.
+     * @return the number of bus stops
+     */
+    public int getStopCount() {
+        return stopCount;
+    }
+
+    /**
+     * Returns true if the bus stop of 'toId' can be reached from the bus stop of 'fromId'.
+     * A stop can always be reached from itself.
+     * @param fromId the bus stop to go from
+     * @param toId the bus stop to go to
+     * @return true if there is a path between the stops
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     */
+    public boolean hasPath(int fromId, int toId) {
+        checkId(fromId, "fromId");
+        checkId(toId, "toId");
+        return distances[fromId * stopCount + toId] != NO_PATH;
+    }
+
+    /**
+     * Returns the shortest time (in minutes) it takes to go from the bus stop of 'fromId' to the bus stop of
+     * 'toId', through any number of other stops.
+     * @param fromId the bus stop to go from
+     * @param toId the bus stop to go to
+     * @return the shortest travel time in minutes, 0 if the two stops are the same
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     * @throws IllegalArgumentException if there is no path between the stops
+     */
+    public int shortestTravelTime(int fromId, int toId) {
+        checkId(fromId, "fromId");
+        checkId(toId, "toId");
+        int minutes = distances[fromId * stopCount + toId];
+        if (minutes == NO_PATH)
+            throw new IllegalArgumentException("the bus stop '" + toId
+                    + "' cannot be reached from '" + fromId + "'");
+        return minutes;
+    }
+
+    /**
+     * Returns the stops of the shortest path from the bus stop of 'fromId' to the bus stop of 'toId'.
+     * @param fromId the bus stop to go from
+     * @param toId the bus stop to go to
+     * @return a new array with the ids of the stops, starting with 'fromId' and ending with 'toId',
+     *          just 'fromId' if the two stops are the same
+     * @throws IndexOutOfBoundsException if either of the given ids are invalid
+     * @throws IllegalArgumentException if there is no path between the stops
+     */
+    public int[] shortestPath(int fromId, int toId) {
+        shortestTravelTime(fromId, toId);       // checks the arguments
+        int row = fromId * stopCount;
+        int length = 1;
+        for (int stop = toId; stop != fromId; stop = predecessors[row + stop])
+            length++;
+        int[] path = new int[length];
+        for (int i = length - 1, stop = toId; i >= 0; i--, stop = predecessors[row + stop])
+            path[i] = stop;
+        return path;
+    }
+
+}//class
@@ -0,0 +1,295 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid index over the positions of the bus stops of a city, for nearest-stop and
+ * stops-in-rectangle queries. The bounding box of the stops is divided into equal cells, so that there are
+ * about {@link #STOPS_PER_CELL} stops in a cell on average. The stops are stored in compressed sparse row
+ * form: the stops of the cell with a given index are at the indices [{@link #cellStarts cellStarts[cell]},
+ * cellStarts[cell + 1]) of the {@link #cellStops} array.
+ * <p>
+ * A rectangle query only visits the cells that overlap the rectangle. A nearest-stop query visits the cells
+ * in growing rings around the cell of the given point, and stops as soon as no unvisited cell can be closer
+ * than the best stop found so far. For evenly spread stops both take time proportional to the number of
+ * stops near the query, independently of the size of the city. Instances are immutable.
+ */
+final class SpatialIndex {
+
+    /**
+     * The average number of stops in a cell the grid is sized for.
+     */
+    static final int STOPS_PER_CELL = 2;
+
+    /**
+     * The X coordinate of every stop, by id.
+     */
+    private final int[] xCoords;
+
+    /**
+     * The Y coordinate of every stop, by id.
+     */
+    private final int[] yCoords;
+
+    /**
+     * The smallest X coordinate of the stops, the left side of the grid.
+     */
+    private final int minX;
+
+    /**
+     * The smallest Y coordinate of the stops, the top side of the grid.
+     */
+    private final int minY;
+
+    /**
+     * The largest X coordinate of the stops.
+     */
+    private final int maxX;
+
+    /**
+     * The largest Y coordinate of the stops.
+     */
+    private final int maxY;
+
+    /**
+     * The width of a cell, at least 1.
+     */
+    private final long cellWidth;
+
+    /**
+     * The height of a cell, at least 1.
+     */
+    private final long cellHeight;
+
+    /**
+     * The number of cell columns.
+     */
+    private final int columns;
+
+    /**
+     * The number of cell rows.
+     */
+    private final int rows;
+
+    /**
+     * The start of the stops of every cell in {@link #cellStops}, plus the number of stops as the last element.
+     * The cells are in row-major order.
+     */
+    private final int[] cellStarts;
+
+    /**
+     * The ids of the stops, grouped by their cells, in ascending order within a cell.
+     */
+    private final int[] cellStops;
+
+    /**
+     * Creates the index of the stops at the given coordinates. The arrays are not copied.
+     * @param xCoords the X coordinate of every stop, by id, there is at least one stop
+     * @param yCoords the Y coordinate of every stop, by id
+     */
+    SpatialIndex(int[] xCoords, int[] yCoords) {
+        this.xCoords = xCoords;
+        this.yCoords = yCoords;
+        int stopCount = xCoords.length;
+        int smallestX = xCoords[0];
+        int smallestY = yCoords[0];
+        int largestX = xCoords[0];
+        int largestY = yCoords[0];
+        for (int id = 1; id < stopCount; id++) {
+            smallestX = Math.min(smallestX, xCoords[id]);
+            smallestY = Math.min(smallestY, yCoords[id]);
+            largestX = Math.max(largestX, xCoords[id]);
+            largestY = Math.max(largestY, yCoords[id]);
+        }
+        minX = smallestX;
+        minY = smallestY;
+        maxX = largestX;
+        maxY = largestY;
+
+        // square cells, so that there are about STOPS_PER_CELL stops in a cell on average
+        long width = (long) maxX - minX + 1;
+        long height = (long) maxY - minY + 1;
+        double cellCount = Math.max(1.0, (double) stopCount / STOPS_PER_CELL);
+        long side = Math.max(1, (long) Math.ceil(Math.sqrt((double) width * height / cellCount)));
+        cellWidth = side;
+        cellHeight = side;
+        columns = (int) Math.min(stopCount, (width + side - 1) / side);
+        rows = (int) Math.min(stopCount, (height + side - 1) / side);
+
+        // counting sort of the stops by their cells
+        cellStarts = new int[columns * rows + 1];
+        for (int id = 0; id < stopCount; id++)
+            cellStarts[cellOf(id) + 1]++;
+        for (int cell = 0; cell < columns * rows; cell++)
+            cellStarts[cell + 1] += cellStarts[cell];
+        cellStops = new int[stopCount];
+        int[] next = Arrays.copyOf(cellStarts, columns * rows);
+        for (int id = 0; id < stopCount; id++)
+            cellStops[next[cellOf(id)]++] = id;
+    }
+
+    /**
+     * Returns the smallest X coordinate of the stops.
+     * @return the left side of the bounding box
+     */
+    int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Returns the largest X coordinate of the stops.
+     * @return the right side of the bounding box
+     */
+    int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Returns the smallest Y coordinate of the stops.
+     * @return the top side of the bounding box
+     */
+    int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Returns the largest Y coordinate of the stops.
+     * @return the bottom side of the bounding box
+     */
+    int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Returns the column of the given X coordinate, clamped to the grid.
+     * @param x the X coordinate
+     * @return the column of the coordinate, in the range [0, columns)
+     */
+    private int columnOf(long x) {
+        return (int) Math.max(0, Math.min(columns - 1, Math.floorDiv(x - minX, cellWidth)));
+    }
+
+    /**
+     * Returns the row of the given Y coordinate, clamped to the grid.
+     * @param y the Y coordinate
+     * @return the row of the coordinate, in the range [0, rows)
+     */
+    private int rowOf(long y) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floorDiv(y - minY, cellHeight)));
+    }
+
+    /**
+     * Returns the index of the cell of the given stop.
+     * @param id the id of the stop
+     * @return the row-major index of the cell of the stop
+     */
+    private int cellOf(int id) {
+        return rowOf(yCoords[id]) * columns + columnOf(xCoords[id]);
+    }
+
+    /**
+     * Returns the squared distance between the given point and stop.
+     * @param x the X coordinate of the point
+     * @param y the Y coordinate of the point
+     * @param id the id of the stop
+     * @return the squared euclidean distance
+     */
+    private double squaredDistance(double x, double y, int id) {
+        double dx = xCoords[id] - x;
+        double dy = yCoords[id] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns the stop that is the closest to the given point. Ties are broken by the smaller id.
+     * @param x the X coordinate of the point, can be outside of the city
+     * @param y the Y coordinate of the point, can be outside of the city
+     * @return the id of the nearest stop
+     */
+    int nearestStop(double x, double y) {
+        int centerColumn = columnOf((long) Math.floor(x));
+        int centerRow = rowOf((long) Math.floor(y));
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int maxRing = Math.max(columns, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // every cell of a farther ring is at least this far from the point
+            if (ring > 0 && best >= 0) {
+                double reach = ringDistance(x, y, centerColumn, centerRow, ring);
+                if (reach * reach > bestDistance)
+                    break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows)
+                    continue;
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += Math.max(1, step)) {
+                    if (column < 0 || column >= columns)
+                        continue;
+                    int cell = row * columns + column;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        int id = cellStops[i];
+                        double distance = squaredDistance(x, y, id);
+                        if (distance < bestDistance || (distance == bestDistance && id < best)) {
+                            best = id;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a lower bound of the distance between the given point and the cells of the given ring.
+     * The ring consists of the cells whose column or row differs from the center by exactly the ring number.
+     * @param x the X coordinate of the point
+     * @param y the Y coordinate of the point
+     * @param centerColumn the column of the cell of the point
+     * @param centerRow the row of the cell of the point
+     * @param ring the number of the ring, at least 1
+     * @return the distance from the point to the border of the cells within the previous ring
+     */
+    private double ringDistance(double x, double y, int centerColumn, int centerRow, int ring) {
+        // the cells inside the ring cover [left, right) x [top, bottom)
+        double left = minX + (double) (centerColumn - ring + 1) * cellWidth;
+        double right = minX + (double) (centerColumn + ring) * cellWidth;
+        double top = minY + (double) (centerRow - ring + 1) * cellHeight;
+        double bottom = minY + (double) (centerRow + ring) * cellHeight;
+        return Math.max(0, Math.min(Math.min(x - left, right - x), Math.min(y - top, bottom - y)));
+    }
+
+    /**
+     * Returns the stops in the given rectangle, borders included, in ascending order of their id.
+     * @param fromX the smallest X coordinate of the rectangle
+     * @param fromY the smallest Y coordinate of the rectangle
+     * @param toX the largest X coordinate of the rectangle
+     * @param toY the largest Y coordinate of the rectangle
+     * @return the ids of the stops in the rectangle, an empty array if there aren't any
+     */
+    int[] stopsInRectangle(int fromX, int fromY, int toX, int toY) {
+        if (fromX > toX || fromY > toY)
+            return new int[0];
+        int[] found = new int[16];
+        int count = 0;
+        for (int row = rowOf(fromY); row <= rowOf(toY); row++)
+            for (int column = columnOf(fromX); column <= columnOf(toX); column++) {
+                int cell = row * columns + column;
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    int id = cellStops[i];
+                    int x = xCoords[id];
+                    int y = yCoords[id];
+                    if (x < fromX || x > toX || y < fromY || y > toY)
+                        continue;
+                    if (count == found.length)
+                        found = Arrays.copyOf(found, count * 2);
+                    found[count++] = id;
+                }
+            }
+        Arrays.sort(found, 0, count);
+        return Arrays.copyOf(found, count);
+    }
+
+}//class
@@ -0,0 +1,128 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A period of the day with its own time gap between the buses of a bus service, like the peak hours.
+ * A time band starts at its {@link #startTime} and lasts until the start of the next time band of the
+ * service, or until the {@link BusService#boundaryTime boundaryTime}. Before the first time band
+ * the {@link BusService#timeGap timeGap} of the service is used.
+ * Instances are immutable. This class also have the setups to be handled with
+ * {@link javax.xml.bind.JAXB JAXB}.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class TimeBand {
+
+    /**
+     * The time of the day when the time band starts. The first bus of the time band leaves the station
+     * at this time.
+     */
+    @XmlElement private DayTime startTime;
+
+    /**
+     * The minutes between two subsequent buses in this time band.
+     * By the convention it must be greater than 0 and less than 24 * 60.
+     */
+    @XmlAttribute private int timeGap;
+
+    /**
+     * Creates a time band that starts at 00:00 with a 10 minutes time gap.
+     * The main reason for this constructor to exist is to support JAXB,
+     * which requires a public no parameter constructor.
+     */
+    public TimeBand() {
+        startTime = new DayTime();
+        timeGap = 10;
+    }
+
+    /**
+     * Creates a new time band with the given data.
+     * @param startTime the time of the day when the time band starts
+     * @param timeGap the minutes between two subsequent buses in the time band
+     * @throws NullPointerException if the given start time is null
+     * @throws IllegalArgumentException if the time gap is less than 1 or not less than one whole day
+     */
+    public TimeBand(DayTime startTime, int timeGap) {
+        if (startTime == null)
+            throw new NullPointerException("start time of time band must not be null");
+        if (timeGap < 1 || timeGap >= Timetable.MINUTES_PER_DAY)
+            throw new IllegalArgumentException("timeGap must be in the range [1, 24 * 60): " + timeGap);
+        this.startTime = new DayTime(startTime);
+        this.timeGap = timeGap;
+    }
+
+    /**
+     * Checks the time bands of a service, in time proportional to their number.
+     * @param timeBands the time bands of a service, in any order
+     * @throws NullPointerException if the given list or any of its elements is null
+     * @throws IllegalArgumentException if two time bands start at the same time
+     */
+    static void checkTimeBands(List<TimeBand> timeBands) {
+        if (timeBands == null)
+            throw new NullPointerException("time bands must not be null");
+        Set<DayTime> startTimes = new HashSet<>();
+        for (TimeBand band : timeBands) {
+            if (band == null)
+                throw new NullPointerException("time band must not be null");
+            if (!startTimes.add(band.startTime))
+                throw new IllegalArgumentException("two time bands start at " + band.startTime);
+        }
+    }
+
+    /**
+     * Returns the time of the day when the time band starts.
+     * @return a copy of the start time
+     */
+    public DayTime getStartTime() {
+        return new DayTime(startTime);
+    }
+
+    /**
+     * Returns the minutes between two subsequent buses in this time band.
+     * @return the time gap of the time band
+     */
+    public int getTimeGap() {
+        return timeGap;
+    }
+
+    /**
+     * Time bands are equal if they start at the same time and have the same time gap.
+     * @param o the object to compare to
+     * @return true if the given object is an equal time band
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TimeBand band = (TimeBand) o;
+
+        return timeGap == band.timeGap && startTime.equals(band.startTime);
+    }
+
+    /**
+     * Returns the hash code calculated from the start time and the time gap.
+     * @return the hash code of this time band
+     */
+    @Override
+    public int hashCode() {
+        return 31 * startTime.hashCode() + timeGap;
+    }
+
+    /**
+     * Returns a short, readable form of the time band, like "07:00 / 5".
+     * @return the string form of the time band
+     */
+    @Override
+    public String toString() {
+        return startTime + " / " + timeGap;
+    }
+}//class
@@ -3,12 +3,71 @@ package com.github.joey11111000111.EasyPlan.core;
 import com.github.joey11111000111.EasyPlan.util.DayTime;
 
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Implements all functionality of the {@link iTimetable} interface and does nothing more.
+ * All the stop times are stored in one flat matrix of minutes (stops &times; buses), the
+ * {@link DayTime} objects are only created when they are actually read.
  */
 public class Timetable implements iTimetable {
 
+    /**
+     * The number of minutes in one day. Stop times are stored as minutes of day, in range of [0 - 1439].
+     */
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * A read-only list of {@link DayTime} objects that doesn't store any of them.
+     * Every element is calculated from a minute-of-day value when it is read, so the
+     * list only costs as much memory as the underlying primitive storage.
+     * All the modification methods throw {@link UnsupportedOperationException}.
+     */
+    static class DayTimeView extends AbstractList<DayTime> implements RandomAccess {
+
+        /**
+         * The number of elements in the list.
+         */
+        private final int size;
+
+        /**
+         * Returns the time (in minutes) represented by the element at the given index.
+         * The returned minutes can overflow one day, see {@link DayTime#DayTime(int, boolean)}.
+         */
+        private final IntUnaryOperator minutesAt;
+
+        /**
+         * Creates a view of the given size.
+         * @param size the number of elements in the list
+         * @param minutesAt returns the time (in minutes) of the element at the given index
+         */
+        DayTimeView(int size, IntUnaryOperator minutesAt) {
+            this.size = size;
+            this.minutesAt = minutesAt;
+        }
+
+        /**
+         * Creates and returns a new {@link DayTime} object representing the element at the given index.
+         * @param index the index of the element
+         * @return a new {@link DayTime} object representing the element at the given index
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        @Override
+        public DayTime get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+            return new DayTime(minutesAt.applyAsInt(index), true);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+    }//static class
+
     /**
      * Implements all functionality of the {@link iStopTimes iStopTimes} interface.
      * The only method in addition is a {@link #toString()}.
@@ -61,6 +120,20 @@ public class Timetable implements iTimetable {
             }
         }
 
+        /**
+         * Creates an instance that uses the given read-only view as the list of arrive times.
+         * Since a {@link DayTimeView} is never modifiable, that check is omitted.
+         * @param id the id of the bus stop whose arrive times is stored in the instance
+         * @param times a read-only view of the arrive times to the given bus stop
+         * @throws IllegalArgumentException when the list is empty
+         */
+        StopTimes(int id, DayTimeView times) {
+            if (times.size() == 0)
+                throw new IllegalArgumentException("there must be at least one stop time for a stop or a station");
+            this.id = Integer.toString(id);
+            this.times = times;
+        }
+
         /**
          * Returns a string representing this object in a form of "id: 'id'  stop times: 'time'  'time' ...".
          * @return a string representing this object
@@ -119,6 +192,17 @@ public class Timetable implements iTimetable {
          */
         private int timeGap;
 
+        /**
+         * The time bands of the represented service, an empty list by default.
+         * See {@link #setTimeBands(List)} for more information.
+         */
+        private List<TimeBand> timeBands;
+
+        /**
+         * The city of the represented service, the default city by default.
+         * See {@link #setCity(CityGraph)} for more information.
+         */
+        private CityGraph city;
 
         /**
          * Creates a new instance completely filled with invalid data.
@@ -131,6 +215,8 @@ public class Timetable implements iTimetable {
             firstLeaveTime = null;
             boundaryTime = null;
             timeGap = -1;
+            timeBands = Collections.emptyList();
+            city = CityGraph.getDefault();
         }
 
         /**
@@ -161,9 +247,7 @@ public class Timetable implements iTimetable {
                 throw new IllegalArgumentException("the number of stop id -s must be one more "
                         + "than the number of travel times");
 
-            for (int i = 1; i < stopIds.length; i++)
-                if (!BusStop.validId(stopIds[i]))
-                    throw new IllegalArgumentException("invalid array element");
+            checkStopIds(stopIds, city);
 
             // TODO array-copy
             this.stopIds = new int[stopIds.length];
@@ -171,6 +255,18 @@ public class Timetable implements iTimetable {
                 this.stopIds[i] = stopIds[i];
         }
 
+        /**
+         * Throws an exception if any of the given stop ids (except the bus station) is invalid in the given city.
+         * @param stopIds the stop ids to check
+         * @param city the city the stops must be in
+         * @throws IllegalArgumentException if there is an invalid id
+         */
+        private static void checkStopIds(int[] stopIds, CityGraph city) {
+            for (int i = 1; i < stopIds.length; i++)
+                if (!city.validId(stopIds[i]))
+                    throw new IllegalArgumentException("invalid array element");
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -225,6 +321,28 @@ public class Timetable implements iTimetable {
             this.timeGap = timeGap;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setTimeBands(List<TimeBand> timeBands) {
+            TimeBand.checkTimeBands(timeBands);
+            // the time bands are immutable, so a shallow copy is enough
+            this.timeBands = Collections.unmodifiableList(new ArrayList<>(timeBands));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setCity(CityGraph city) {
+            if (city == null)
+                throw new NullPointerException("city must not be null");
+            if (stopIds != null)
+                checkStopIds(stopIds, city);
+            this.city = city;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -274,6 +392,22 @@ public class Timetable implements iTimetable {
             return timeGap;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<TimeBand> getTimeBands() {
+            return timeBands;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CityGraph getCity() {
+            return city;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -295,6 +429,12 @@ public class Timetable implements iTimetable {
      * The order of the instances is the same as the order of the touched stops in the bus service.
      */
     private List<iStopTimes> stopTimes;
+    /**
+     * The arrive times of all the buses at all the touched stops, as minutes of day.
+     * The times of one stop are stored next to each other, so the time of the bus with
+     * the index 'bus' at the stop with the index 'stop' is at the index {@code stop * busCount + bus}.
+     */
+    private short[] minuteMatrix;
     /**
      * Contains the number of buses that will leave the station between
      * {@link BusService#firstLeaveTime firstLeaveTime} and {@link BusService#boundaryTime boundaryTime}.
@@ -349,6 +489,22 @@ public class Timetable implements iTimetable {
         return totalTravelTime;
     }
 
+    /**
+     * Returns the time when the specified bus arrives at the specified stop, as minutes of day.
+     * No {@link DayTime} object is created.
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return the arrive time in minutes, in range of [0 - 1439]
+     * @throws IndexOutOfBoundsException if either of the indexes is out of range
+     */
+    int getMinutesAt(int stopIndex, int busIndex) {
+        if (stopIndex < 0 || stopIndex >= stopTimes.size())
+            throw new IndexOutOfBoundsException("stop index is out of range: " + stopIndex);
+        if (busIndex < 0 || busIndex >= busCount)
+            throw new IndexOutOfBoundsException("bus index is out of range: " + busIndex);
+        return minuteMatrix[stopIndex * busCount + busIndex];
+    }
+
     /**
      * Creates and returns a new iTimetable - instance.
      * Since the iTimetable doesn't give modification methods, all the contained data
@@ -368,53 +524,56 @@ public class Timetable implements iTimetable {
                 tta.getName(),
                 tta.getStopIds(),
                 tta.getTravelTimes(),
-                tta.getFirstLeaveTime(),
-                tta.getBoundaryTime(),
+                createSchedule(tta),
                 tta.getTimeGap()
         );
     }
 
+    /**
+     * Creates the {@link HeadwaySchedule schedule} of the buses from the given arguments.
+     * @param tta the valid data - container object of the timetable
+     * @return the times when the buses leave the station
+     */
+    static HeadwaySchedule createSchedule(iTimetableArguments tta) {
+        return HeadwaySchedule.create(tta.getFirstLeaveTime().getTimeAsMinutes(),
+                tta.getBoundaryTime().getTimeAsMinutes(), tta.getTimeGap(), tta.getTimeBands());
+    }
+
     /**
      * Constructor only used by the {@link #createTimetable(iTimetableArguments)} static factory method.
      * @param name {@link BusService#name name} of service
      * @param stopIds id -s of bus stops the represented service touches
      * @param travelTimes the minutes it takes to travel to each of the touched stops, relative to the station
-     * @param firstLeaveTime the {@link BusService#firstLeaveTime time} of day when the
-     *                       first bus of the service leaves the station
-     * @param boundaryTime the {@link BusService#boundaryTime time} of day after which
-     *                     no more buses of the represented service can leave the station
+     * @param schedule the times when the buses of the service leave the station
      * @param timeGap the {@link BusService#timeGap wait time} in minutes between two
-     *                subsequent buses of the represented service
+     *                subsequent buses of the represented service, outside of the time bands
      */
-    private Timetable(String name, int[] stopIds, int[] travelTimes,
-                      DayTime firstLeaveTime, DayTime boundaryTime, int timeGap) {
+    private Timetable(String name, int[] stopIds, int[] travelTimes, HeadwaySchedule schedule, int timeGap) {
 
         this.name = name;
         List<StopTimes> allStopTimes = new ArrayList<StopTimes>(stopIds.length);
 
+        // the departures from the station, generated time band by time band
+        int busCount = schedule.getBusCount();
+        int[] departures = new int[busCount];
+        for (int segment = 0; segment < schedule.getSegmentCount(); segment++) {
+            int bus = schedule.getSegmentFirstBus(segment);
+            int minutes = schedule.getSegmentStart(segment);
+            for (int i = 0; i < schedule.getSegmentBusCount(segment); i++, bus++) {
+                departures[bus] = minutes;
+                minutes += schedule.getSegmentGap(segment);
+            }
+        }
 
-        // convert time to minutes
-        int firstLeaveMinutes = firstLeaveTime.getTimeAsMinutes();
-        int boundaryMinutes = boundaryTime.getTimeAsMinutes();
+        // fill the matrix, the station has no travel time
+        minuteMatrix = new short[stopIds.length * busCount];
+        fillStopTimes(0, departures, 0);
+        for (int i = 1; i < stopIds.length; i++)
+            fillStopTimes(i, departures, travelTimes[i-1]);
 
-        // calculate the number of buses to go since firstLeaveTime until boundaryTime
-        int busCount;
-        if (boundaryMinutes < firstLeaveMinutes)
-            busCount = boundaryMinutes + 24 * 60 - firstLeaveMinutes;
-        else
-            busCount = boundaryMinutes - firstLeaveMinutes;
-        busCount = Math.abs(busCount);
-        busCount /= timeGap; // there must not be any bus after the boundaryTime, so the remaining is ignored
-        busCount += 1;       // because the first bus leaves at firstLeaveTime, with no time gap
-
-        // add the starting times at the station
-        StopTimes st = getStopTimes(0, busCount, timeGap, firstLeaveMinutes, 0);
-        allStopTimes.add(st);
-        // add the times at the bus stops
-        for (int i = 1; i < stopIds.length; i++) {
-            st = getStopTimes(stopIds[i], busCount, timeGap, firstLeaveMinutes, travelTimes[i-1]);
-            allStopTimes.add(st);
-        }
+        // create the views of the rows
+        for (int i = 0; i < stopIds.length; i++)
+            allStopTimes.add(getStopTimes(stopIds[i], i * busCount, busCount));
 
         // everything is added, the list is now completed
         stopTimes = Collections.unmodifiableList(allStopTimes);
@@ -429,25 +588,30 @@ public class Timetable implements iTimetable {
     }
 
     /**
-     * Creates and returns a new {@link StopTimes} object that contains the id of the stop and all the the times
-     * when a bus of the represented service stops at this bus stop, in ascending order.
-     * @param id id of the represented bus stop
-     * @param busCount the number of times a bus of the service stops at this bus stop
-     * @param timeGap the minutes between two subsequent buses of the service stop at this bus stop
-     * @param firstLeaveMinutes the {@link BusService#firstLeaveTime firstLeaveTime} of the represented
-     *                          service converted into minutes
+     * Fills the row of the given stop in the {@link #minuteMatrix} with all the times
+     * when a bus of the represented service stops at the bus stop, in ascending order.
+     * @param stopIndex the index of the stop in the order of the touched stops
+     * @param departures the times when the buses leave the station, in minutes
      * @param travelTime The time in minutes that it takes to travel from the bus station to this bus stop
      *                   through all the intervening bus stops. Acts as an offset value.
+     */
+    private void fillStopTimes(int stopIndex, int[] departures, int travelTime) {
+        int offset = stopIndex * departures.length;
+        for (int i = 0; i < departures.length; i++)
+            minuteMatrix[offset + i] = (short) ((departures[i] + travelTime) % MINUTES_PER_DAY);
+    }
+
+    /**
+     * Creates and returns a new {@link StopTimes} object that contains the id of the stop and a
+     * read-only view of its row in the {@link #minuteMatrix}.
+     * @param id id of the represented bus stop
+     * @param offset the index of the first element of the row in the {@link #minuteMatrix}
+     * @param busCount the number of times a bus of the service stops at this bus stop
      * @return a new {@link StopTimes} object that contains the id of the given stop and the times
      *      of arriving buses of the represented service.
      */
-    private StopTimes getStopTimes(int id, int busCount, int timeGap, int firstLeaveMinutes, int travelTime) {
-        List<DayTime> list = new ArrayList<>(busCount);
-        for (int i = 0; i < busCount; i++) {
-            int minutes = i * timeGap + firstLeaveMinutes + travelTime;
-            list.add(new DayTime(minutes, true));
-        }
-        list = Collections.unmodifiableList(list);
-        return new StopTimes(id, list);
+    private StopTimes getStopTimes(int id, int offset, int busCount) {
+        short[] matrix = minuteMatrix;
+        return new StopTimes(id, new DayTimeView(busCount, bus -> matrix[offset + bus]));
     }
 }//class
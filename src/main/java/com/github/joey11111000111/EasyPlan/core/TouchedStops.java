@@ -1,20 +1,18 @@
 package com.github.joey11111000111.EasyPlan.core;
 
-import com.github.joey11111000111.EasyPlan.util.OpenLinkedList;
+import com.github.joey11111000111.EasyPlan.util.IntList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
-
-import static com.github.joey11111000111.EasyPlan.util.OpenLinkedList.Node;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 /**
  * The TouchedStops class manages the modifications to the bus stops of the wrapping bus service, as a buffer.
  * Implements all the modification rules, so it promises that the list of bus stops is always valid.
- * Also implements an undo function, to discard the last change. It is possible
- * to undo the modifications one by one until the last unapplied modification is withdrawn.
+ * The modifications are recorded in an {@link EditLog}, which can undo them one by one until the last
+ * unapplied modification is withdrawn, and redo the undone ones. The log can be shared with the
+ * {@link BasicServiceData basic data} of the same service.
  */
 public class TouchedStops {
 
@@ -24,135 +22,138 @@ public class TouchedStops {
     static final Logger LOGGER = LoggerFactory.getLogger(TouchedStops.class);
 
     /**
-     * This class shows what operation shell be done in order to restore a former state of the buffer.
-     * An object of this class is created when a modification occurs on the buffer. That object holds
-     * the counteraction of that modification. The only possible operations on the buffer are
-     * appending a single bus stop or deleting one or multiple stops. Which means that the only
-     * counteractions are deleting a single stop or appending one or multiple stops. When appending,
-     * the objects of this class stores a chain of stops to append. This class relies on the
-     * {@link OpenLinkedList} and its {@link Node Node} classes, that's why it is generic.
-     * The type parameter show what type of objects are there to deal with when it comes to appending.
-     * @param <E> the type of objects in the append-chain
+     * Receives a notification after every change of the stop list of a {@link TouchedStops} object.
+     * Every change (including {@link #undo() undo}) either removes stops from the end of the list,
+     * or appends stops to it, so the stops before the notified index are always unchanged.
      */
-    private static class UndoOperation<E> {
+    interface StopListener {
 
         /**
-         * Indicates which of the two operations the {@link UndoOperation UndoOperation} holds.
+         * Called after the stop list was changed.
+         * @param fromIndex the index of the first stop that was removed or appended, the stops
+         *                  before this index are the same as before the change
          */
-        public enum OperationType {
-
-            /**
-             * The wrapping {@link UndoOperation UndoOperation} object holds a delete operation.
-             * This kind of operation doesn't need the {@link #chain append-chain},
-             * because all it does is deleting the last bus stop in the
-             * {@link TouchedStops#stops stop-list} of the buffer.
-             */
-            DELETE,
-
-            /**
-             * The wrapping {@link UndoOperation UndoOperation} object holds an append operation.
-             * This kind of operation will append the contained {@link #chain append-chain}
-             * to the {@link TouchedStops#stops stop-list} of the buffer.
-             */
-            APPEND
-        }
+        void stopsChanged(int fromIndex);
+    }
 
-        /**
-         * The type of the operation this object holds.
-         */
-        private OperationType operationType;
+    /**
+     * The initial capacity of the {@link #stops} list, enough for most of the routes.
+     */
+    private static final int INITIAL_CAPACITY = 16;
 
-        /**
-         * When committing an append operation, this chain is appended to the
-         * {@link TouchedStops#stops stop-list} of the buffer.
-         * See {@link OpenLinkedList} for more information.
-         */
-        private Node<E> chain;
+    /**
+     * List of the bus stops that this buffer contains in their append order.
+     */
+    private IntList stops;
 
-        /**
-         * Creates an object of the given type with the given append-chain.
-         * Note that since this is a private class, nothing will interact with it from
-         * outside of the wrapping {@link TouchedStops} class. Thus no argument validation
-         * is present.
-         *
-         * @param operationType the type of operation the new object will have
-         * @param chain The chain of elements to append to the {@link TouchedStops#stops stop-list} of the buffer.
-         *      If the operationType is represents a {@link OperationType#DELETE DELETE} type,
-         *      the value of this argument has no effect. That time it can be null.
-         *
-         */
-        private UndoOperation(OperationType operationType, Node<E> chain) {
-            this.operationType = operationType;
-            this.chain = chain;
-        }
+    /**
+     * The minutes it takes to travel from the bus station to each of the bus stops of the {@link #stops} list,
+     * at the same index. The first element belongs to the first appearance of the station, so it is 0.
+     * It is kept up to date by every change of the list, only the changed part of the list is calculated.
+     */
+    private IntList travelTimes;
 
-        /**
-         * Returns the type of operation this objects holds.
-         * @return the type of operation this object holds.
-         */
-        public OperationType getOperationType() {
-            return operationType;
-        }
+    /**
+     * The log of the modifications, which can undo and redo them. An append is recorded with the id of the
+     * stop, a removal with the index of the first removed stop and the array of the removed stops.
+     */
+    private final EditLog editLog;
 
-        /**
-         * Returns the {@link #chain} of elements.
-         * @return The {@link #chain} of elements. It is possible for this
-         * method to return null.
-         */
-        public Node<E> getChain() {
-            return chain;
+    /**
+     * Undoes and redoes the modifications of this buffer that are recorded in the {@link #editLog}.
+     */
+    private final EditLog.Editor editor = new EditLog.Editor() {
+        @Override
+        public void undoEdit(EditLog.Kind kind, int oldValue, Object oldObject) {
+            undoStopEdit(kind, oldObject);
         }
 
-        /**
-         * Static factory method that returns a {@link OperationType#DELETE DELETE}
-         * type operation.
-         * @param <E> The type of objects in the {@link #chain append-chain}. That chain has
-         *           no importance the returned {@link OperationType#DELETE DELETE} operation.
-         * @return a new {@link UndoOperation UndoOperation} instance of type {@link OperationType#DELETE DELETE}
-         */
-        public static <E> UndoOperation<E> newDeleteInstance() {
-            return new UndoOperation<>(OperationType.DELETE, null);
+        @Override
+        public void redoEdit(EditLog.Kind kind, int newValue, Object newObject) {
+            redoStopEdit(kind, newValue);
         }
+    };
 
-        /**
-         * Static factory method that returns an {@link OperationType#APPEND APPEND}
-         * type operation using the given append-chain.
-         * @param chain the chain of elements that are to be used when committing this operation
-         * @param <E> the type of objects held by the chain
-         * @return a new {@link UndoOperation UndoOperation} instance of type {@link OperationType#APPEND APPEND}
-         */
-        public static <E> UndoOperation<E> newAppendInstance(Node<E> chain) {
-            return new UndoOperation<>(OperationType.APPEND, chain);
-        }
-    }//private static class
+    /**
+     * Indicates whether this object is in the state of "modified" or "saved".
+     * See {@link #markAsModified()} or {@link #markAsSaved()} for more information.
+     */
+    private boolean modified;
 
     /**
-     * List of the bus stops that this buffer contains in their append order.
+     * Modification counter, increased by every change of the stop list (including undo).
+     * Unlike {@link #modified}, it is never reset, so it can be used to decide whether
+     * something derived from the stop list is still up to date.
      */
-    private OpenLinkedList<Integer> stops;
+    private long version;
 
     /**
-     * This stack contains a counteraction for every modification.
-     * The order they get out of the stack is the opposite of how
-     * the new modifications were made.
+     * The set of the stops that are in the list at least once, as a bitset of the
+     * {@link CityGraph#getWordCount() size} of the city. Together with {@link #usedTwice} it is a two bit
+     * counter of the occurrences of every stop, kept up to date by every change of the list.
      */
-    private Stack<UndoOperation<Integer>> undoStack;
+    private long[] usedOnce;
 
     /**
-     * Indicates whether this object is in the state of "modified" or "saved".
-     * See {@link #markAsModified()} or {@link #markAsSaved()} for more information.
+     * The set of the stops that are in the list twice, so they cannot be appended again.
+     * See {@link #usedOnce} for more information.
      */
-    private boolean modified;
+    private long[] usedTwice;
 
     /**
-     * Creates a new buffer instance with a bus stop list that only contains the bus station.
-     * It is not closed, not modified, and there is nothing to undo.
+     * Indicates whether the {@link #usedOnce} and {@link #usedTwice} arrays are shared with a {@link Route},
+     * so they must be copied before they are modified.
+     */
+    private boolean countersShared;
+
+    /**
+     * The listener that is notified about the changes of the stop list, or null if there isn't one.
+     */
+    private StopListener listener;
+
+    /**
+     * The city whose bus stops are touched.
+     */
+    private CityGraph city;
+
+    /**
+     * Creates a new buffer instance in the {@link CityGraph#getDefault() default city}.
+     * See {@link #TouchedStops(CityGraph)} for more information.
      */
     public TouchedStops() {
+        this(CityGraph.getDefault());
+    }
+
+    /**
+     * Creates a new buffer instance with a bus stop list that only contains the bus station.
+     * It is not closed, not modified, and there is nothing to undo. The buffer has its own {@link EditLog}.
+     * @param city the city whose bus stops are touched
+     * @throws NullPointerException if the given city is null
+     */
+    public TouchedStops(CityGraph city) {
+        this(city, new EditLog());
+    }
+
+    /**
+     * Creates a new buffer instance that records its modifications into the given log.
+     * See {@link #TouchedStops(CityGraph)} for more information.
+     * @param city the city whose bus stops are touched
+     * @param editLog the log of the modifications, possibly shared with the basic data of the service
+     * @throws NullPointerException if the given city or log is null
+     */
+    TouchedStops(CityGraph city, EditLog editLog) {
         LOGGER.trace("called TouchedStops constructor");
-        stops = new OpenLinkedList<>();
+        if (city == null || editLog == null)
+            throw new NullPointerException("the given city or edit log is null");
+        this.city = city;
+        this.editLog = editLog;
+        stops = new IntList(INITIAL_CAPACITY);
         stops.append(0);
-        undoStack = new Stack<>();
+        travelTimes = new IntList(INITIAL_CAPACITY);
+        travelTimes.append(0);
+        usedOnce = new long[city.getWordCount()];
+        usedTwice = new long[city.getWordCount()];
+        countStop(0);
         modified = false;
     }
 
@@ -164,6 +165,7 @@ public class TouchedStops {
      */
     private void markAsModified() {
         LOGGER.trace("called markAsModified");
+        version++;
         if (!modified) {
             modified = true;
             LOGGER.debug("now it's marked as modified");
@@ -175,7 +177,7 @@ public class TouchedStops {
      * The "saved" state indicates that the contents of the buffer are identical to the
      * contents found in the wrapping {@link BusService} object.
      * After this method call all the modifications are considered to be saved,
-     * so there is nothing to undo.
+     * so there is nothing to undo or redo. The {@link #editLog} is cleared, even if it is shared.
      */
     void markAsSaved() {
         LOGGER.trace("called markAsSaved");
@@ -183,7 +185,7 @@ public class TouchedStops {
             modified = false;
             LOGGER.debug("now it's marked as saved");
         }
-        undoStack.clear();
+        editLog.clear();
     }
 
     /**
@@ -195,6 +197,102 @@ public class TouchedStops {
         return modified;
     }
 
+    /**
+     * Returns the modification counter of this buffer.
+     * See {@link #version} for more information.
+     * @return the modification counter of this buffer
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the listener that is notified after every change of the stop list.
+     * Only one listener is kept, the previous one is replaced.
+     * @param listener the new listener, or null to remove the current one
+     */
+    void setStopListener(StopListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Notifies the {@link #listener}, if there is one, that the stop list has changed.
+     * @param fromIndex the index of the first removed or appended stop
+     */
+    private void fireStopsChanged(int fromIndex) {
+        if (listener != null)
+            listener.stopsChanged(fromIndex);
+    }
+
+    /**
+     * Indicates whether the list of stops, or any of the stops that {@link #undo() undo} or {@link #redo() redo}
+     * could append again, is changed in the given difference of two cities.
+     * @param diff the difference of the current city and its new version
+     * @return true if a changed stop is in the list or in the edit log
+     */
+    boolean touches(CityDiff diff) {
+        for (int i = 0; i < stops.size(); i++)
+            if (diff.isChanged(stops.get(i)))
+                return true;
+        return editLog.anyEntry((kind, oldValue, newValue, oldObject) -> {
+            if (kind == EditLog.Kind.APPEND_STOP)
+                return diff.isChanged(newValue);
+            if (kind == EditLog.Kind.REMOVE_STOPS)
+                for (int id : (int[]) oldObject)
+                    if (diff.isChanged(id))
+                        return true;
+            return false;
+        });
+    }
+
+    /**
+     * Moves this buffer into a new version of its city, keeping the stops and the undo history.
+     * It is only valid if the buffer doesn't {@link #touches(CityDiff) touch} any changed stop,
+     * as then all the roads it uses are the same in the new city.
+     * @param newCity the new version of the city
+     */
+    void moveToCity(CityGraph newCity) {
+        city = newCity;
+        usedOnce = Arrays.copyOf(usedOnce, newCity.getWordCount());
+        usedTwice = Arrays.copyOf(usedTwice, newCity.getWordCount());
+        countersShared = false;
+    }
+
+    /**
+     * Returns a read-only snapshot of the current stops, in constant time. The snapshot shares the arrays of
+     * this buffer, and the buffer copies them when it would modify a shared part.
+     * See {@link Route} for more information.
+     * @return the snapshot of the stops, with their travel times
+     */
+    public Route getRoute() {
+        countersShared = true;
+        return new Route(stops.snapshot(), travelTimes.snapshot(), usedOnce, usedTwice);
+    }
+
+    /**
+     * Replaces the stops with the ones of the given route, in constant time, without validating them again.
+     * It is not recorded in the {@link #editLog}, it is meant for discarding the modifications, so
+     * {@link #markAsSaved()} should follow. The route must have been taken in the current city, or in an earlier
+     * version of it that didn't change any of its stops.
+     * @param route the snapshot of a former state of this buffer
+     * @throws NullPointerException if the given route is null
+     */
+    void restore(Route route) {
+        LOGGER.trace("called restore");
+        if (route == null)
+            throw new NullPointerException("the given route is null");
+        stops = new IntList(route.getStopsView());
+        travelTimes = new IntList(route.getTravelTimesView());
+        usedOnce = route.getUsedOnce();
+        usedTwice = route.getUsedTwice();
+        countersShared = true;
+        // the route might be taken in an earlier version of the city, with fewer stops
+        if (usedOnce.length != city.getWordCount())
+            moveToCity(city);
+        markAsModified();
+        fireStopsChanged(1);
+    }
+
     /**
      * Indicates whether this object is in a "closed" state.
      * Being "closed" means that the last added bus stop is the bus station, and there is at least one
@@ -206,17 +304,26 @@ public class TouchedStops {
      * @return true, if this object is in a closed state
      */
     public boolean isClosed() {
-        return stops.getTail().getElement() == 0 && stops.size() > 2;
+        return stops.getLast() == 0 && stops.size() > 2;
     }
 
     /**
      * Indicates whether there is at least one modification that can be undone.
-     * Only the unapplied modification can be undone, so this method is equivalent
-     * to the {@link #isModified()} method. Only exists for convenience reasons.
+     * Only the unapplied modifications can be undone, and the oldest ones are forgotten when there are
+     * more of them than the {@link EditLog#getLimit() limit} of the log.
      * @return true, if there is at least one modification that can be undone
      */
     public boolean canUndo() {
-        return !undoStack.isEmpty();
+        return editLog.canUndo();
+    }
+
+    /**
+     * Indicates whether there is at least one undone modification that can be redone.
+     * A new modification discards the undone ones.
+     * @return true, if there is at least one modification that can be redone
+     */
+    public boolean canRedo() {
+        return editLog.canRedo();
     }
 
     /**
@@ -233,48 +340,89 @@ public class TouchedStops {
         if (isClosed())
             throw new IllegalStateException("bus service is closed, cannot add new stop to the list");
         // id validation
-        if (!BusStop.validId(id))
+        if (!city.validId(id))
             throw new IllegalArgumentException("given id '" + id + "' is not valid");
         // check reachable rule 1
-        int lastId = stops.getTail().getElement();
-        if (!BusStop.isReachableToFrom(id, lastId))
+        int lastId = stops.getLast();
+        if (!city.isReachableToFrom(id, lastId))
             throw new IllegalArgumentException("given stop '" + id + "' is not "
                     + "reachable from the stop '" + lastId + "'");
         // check reachable rule 2
-        if (addedTwiceAlready(id))
+        if ((usedTwice[id >>> 6] & (1L << id)) != 0)
             throw new IllegalArgumentException("given bus stop '" + id
                 + "' has already appeared twice in the list");
 
-        // append bus stop and create the undo operation for this append operation
+        // append bus stop and record the append operation
         stops.append(id);
+        countStop(id);
+        appendTravelTimes();
         markAsModified();
-        undoStack.push(UndoOperation.newDeleteInstance());
+        editLog.record(editor, EditLog.Kind.APPEND_STOP, -1, id, null, null);
+        fireStopsChanged(stops.size() - 1);
         LOGGER.debug("new stop successfully appended");
     }
 
     /**
-     * Indicates whether the bus stop with the given id has already added twice to this buffer.
-     * This method is in use because there is a convention that forbids the adding of a single
-     * bus stop more than twice.
-     * @param id the id of the bus stop to check
-     * @return true, if the given bus stop was added twice already
+     * Counts a new occurrence of the given bus stop in the {@link #usedOnce} and {@link #usedTwice} sets.
+     * @param id the id of the appended bus stop
      */
-    private boolean addedTwiceAlready(int id) {
-        LOGGER.trace("called addedTwiceAlready");
-        if (stops.size() > 4) {
-            Node<Integer> node = stops.getTail();
-            int counter = 0;
-            while (node.hasPrevious()) {
-                node = node.previous();
-                if (id == node.getElement())
-                    if (++counter == 2) {
-                        LOGGER.debug("the stop " + id + " was added twice already");
-                        return true;
-                    }
-            }
-        }
-        LOGGER.trace("the stop " + id + " was added less than twice");
-        return false;
+    private void countStop(int id) {
+        unshareCounters();
+        long bit = 1L << id;
+        if ((usedOnce[id >>> 6] & bit) == 0)
+            usedOnce[id >>> 6] |= bit;
+        else
+            usedTwice[id >>> 6] |= bit;
+    }
+
+    /**
+     * Removes an occurrence of the given bus stop from the {@link #usedOnce} and {@link #usedTwice} sets.
+     * @param id the id of the removed bus stop
+     */
+    private void uncountStop(int id) {
+        unshareCounters();
+        long bit = 1L << id;
+        if ((usedTwice[id >>> 6] & bit) != 0)
+            usedTwice[id >>> 6] &= ~bit;
+        else
+            usedOnce[id >>> 6] &= ~bit;
+    }
+
+    /**
+     * Copies the {@link #usedOnce} and {@link #usedTwice} arrays, if they are shared with a {@link Route}.
+     */
+    private void unshareCounters() {
+        if (!countersShared)
+            return;
+        usedOnce = usedOnce.clone();
+        usedTwice = usedTwice.clone();
+        countersShared = false;
+    }
+
+    /**
+     * Returns how many times the given bus stop is in the list, read from the {@link #usedOnce} and
+     * {@link #usedTwice} sets in constant time.
+     * @param id the id of the bus stop
+     * @return the number of occurrences of the stop, 0, 1 or 2
+     * @throws IllegalArgumentException if there is no bus stop with the given id
+     */
+    public int getOccurrenceCount(int id) {
+        if (!city.validId(id))
+            throw new IllegalArgumentException("given id '" + id + "' is not valid");
+        long bit = 1L << id;
+        if ((usedTwice[id >>> 6] & bit) != 0)
+            return 2;
+        return (usedOnce[id >>> 6] & bit) != 0 ? 1 : 0;
+    }
+
+    /**
+     * Calls the given counting method with every bus stop of the given chain.
+     * @param chain the chain of appended or removed stops
+     * @param counter either {@link #countStop(int)} or {@link #uncountStop(int)}
+     */
+    private void countChain(int[] chain, IntConsumer counter) {
+        for (int id : chain)
+            counter.accept(id);
     }
 
     /**
@@ -284,15 +432,31 @@ public class TouchedStops {
      */
     public int[] getStops() {
         LOGGER.trace("called getStops");
-        int[] stopIds = new int[stops.size()];
-        Node<Integer> node = stops.getHead();
-        stopIds[0] = node.getElement();
-        int counter = 1;
-        while (node.hasNext()) {
-            node = node.next();
-            stopIds[counter++] = node.getElement();
-        }
-        return stopIds;
+        return stops.toArray();
+    }
+
+    /**
+     * Returns a read-only view of the touched bus stops, in the order of append. Unlike {@link #getStops()},
+     * it doesn't copy the stops. The view is a snapshot, it doesn't follow the later changes of this buffer.
+     * @return a snapshot of the id -s of the touched bus stops
+     */
+    public IntList.Snapshot getStopsView() {
+        return stops.snapshot();
+    }
+
+    /**
+     * Returns an array that contains the id -s of the touched bus stops from the given index
+     * to the end of the list, in the order of append. Takes time proportional to the
+     * number of returned stops, not to the number of all the touched stops.
+     * @param fromIndex the index of the first stop to return
+     * @return an array containing the id -s of the touched bus stops from the given index
+     * @throws IndexOutOfBoundsException if the index is negative or greater than the stop count
+     */
+    int[] getStopsFrom(int fromIndex) {
+        LOGGER.trace("called getStopsFrom");
+        if (fromIndex < 0 || fromIndex > stops.size())
+            throw new IndexOutOfBoundsException("stop index is out of range: " + fromIndex);
+        return stops.toArray(fromIndex);
     }
 
     /**
@@ -312,7 +476,7 @@ public class TouchedStops {
      * @return the id of the last bus stop in the list
      */
     public int getLastStop() {
-        return stops.getTail().getElement();
+        return stops.getLast();
     }
 
     /**
@@ -326,74 +490,123 @@ public class TouchedStops {
             LOGGER.debug("there is nothing to clear");
             return;
         }
-        Node<Integer> chain;
-        chain = stops.removeChainFrom(1);
+        int[] chain = stops.removeFrom(1);
+        travelTimes.truncate(1);
+        countChain(chain, this::uncountStop);
         LOGGER.debug("removing finished successfully");
 
-        undoStack.push(UndoOperation.newAppendInstance(chain));
+        editLog.record(editor, EditLog.Kind.REMOVE_STOPS, 1, 1, chain, null);
         LOGGER.debug("undo operation successfully added");
         markAsModified();
+        fireStopsChanged(1);
     }
 
     /**
      * Removes the last occurrence of a bus stop from the buffer along with all the following
      * bus stops.
-     * This is also a wrapper for the {@link OpenLinkedList#removeChainFrom(Object) removeChainFrom}
-     * method. If there are no added bus stops to remove, this method has no effect.
+     * If there are no added bus stops to remove, this method has no effect.
      * @param fromId the bus stop from which the removal shell start (the given bus stop is
      *               included too)
      * @throws IllegalArgumentException when the given bus stop id is not in the list
      */
     public void removeChainFrom(int fromId) {
         LOGGER.trace("called removeChainFrom");
-        Node<Integer> chain;
+        int fromIndex;
         if (!isClosed() && fromId == 0) {
             if (stops.size() == 1) {
                 LOGGER.debug("there is nothing to remove");
                 return;
             }
-            chain = stops.removeChainFrom(1);
+            fromIndex = 1;
         } else {
-            try {
-                chain = stops.removeChainFrom(new Integer(fromId));
-            } catch (IllegalStateException ise) {
-                LOGGER.warn("The program shouldn't have reached this point!");
-                throw new IllegalStateException("there is no bus stop to remove");
-            } catch (IllegalArgumentException iae) {
+            fromIndex = stops.lastIndexOf(fromId);
+            if (fromIndex < 0)
                 throw new IllegalArgumentException("the given id '" + fromId + "' is invalid");
-            }
         }
+        int[] chain = stops.removeFrom(fromIndex);
+        travelTimes.truncate(fromIndex);
+        countChain(chain, this::uncountStop);
 
-        undoStack.push(UndoOperation.newAppendInstance(chain));
+        editLog.record(editor, EditLog.Kind.REMOVE_STOPS, fromIndex, fromIndex, chain, null);
         LOGGER.debug("undo operation successfully added");
         markAsModified();
+        fireStopsChanged(stops.size());
     }
 
     /**
-     * Discards the latest modification, if it is not applied already.
+     * Discards the latest modification, if it is not applied already. When the {@link #editLog} is shared,
+     * the latest modification of the service is discarded, which might be a modification of its basic data.
      * See {@link #markAsModified()} and {@link #markAsSaved()} for more information.
      * @throws IllegalStateException if there aren't any unapplied modifications
      */
     public void undo() {
         LOGGER.trace("called undo");
         if (!canUndo())
-            throw new IllegalStateException("undo stack is empty, there is nothing to undo");
+            throw new IllegalStateException("the edit log is empty, there is nothing to undo");
+        editLog.undo();
+    }
 
-        UndoOperation<Integer> operation = undoStack.pop();
-        UndoOperation.OperationType type = operation.getOperationType();
-        if (type == UndoOperation.OperationType.DELETE) {
-            stops.removeLast();
+    /**
+     * Makes the latest undone modification again. See {@link #undo()} for more information.
+     * @throws IllegalStateException if there aren't any undone modifications
+     */
+    public void redo() {
+        LOGGER.trace("called redo");
+        if (!canRedo())
+            throw new IllegalStateException("there is nothing to redo");
+        editLog.redo();
+    }
+
+    /**
+     * Undoes a modification of the stop list: an append is undone by removing the last stop, and a removal
+     * by appending the removed stops again.
+     * @param kind the kind of the modification
+     * @param removedStops the array of the removed stops, in case of a removal
+     */
+    private void undoStopEdit(EditLog.Kind kind, Object removedStops) {
+        version++;
+        int sizeBefore = stops.size();
+        if (kind == EditLog.Kind.APPEND_STOP) {
+            uncountStop(stops.removeLast());
+            travelTimes.removeLast();
             LOGGER.debug("delete operation happened");
         } else {
-            Node<Integer> chain = operation.getChain();
-            stops.appendChain(chain);
+            int[] chain = (int[]) removedStops;
+            stops.appendAll(chain);
+            countChain(chain, this::countStop);
+            appendTravelTimes();
             LOGGER.debug("append operation happened");
         }
+        fireStopsChanged(Math.min(sizeBefore, stops.size()));
+    }
+
+    /**
+     * Makes an undone modification of the stop list again. The stops are not validated again, as the list
+     * is the same as it was before the modification was undone.
+     * @param kind the kind of the modification
+     * @param newValue the appended stop, or the index of the first removed stop
+     */
+    private void redoStopEdit(EditLog.Kind kind, int newValue) {
+        markAsModified();
+        if (kind == EditLog.Kind.APPEND_STOP) {
+            stops.append(newValue);
+            countStop(newValue);
+            appendTravelTimes();
+            fireStopsChanged(stops.size() - 1);
+        } else {
+            for (int i = newValue; i < stops.size(); i++)
+                uncountStop(stops.get(i));
+            stops.truncate(newValue);
+            travelTimes.truncate(newValue);
+            fireStopsChanged(newValue);
+        }
     }
 
     /**
      * Returns an array that contains the id -s of all the bus stops that are allowed to be the
      * next stop according to the rules.
+     * The stops that are reachable from the last stop and are not {@link #usedTwice used twice} are
+     * selected with the bitwise operations of {@link CityGraph#getReachableIdsExcept(int, long[])}.
      * See {@link #appendStop(int)} for more information.
      * @return an array with all the ids of all the reachable bus stops
      */
@@ -404,18 +617,16 @@ public class TouchedStops {
             return new int[0];
         }
 
-        int lastId = stops.getTail().getElement();
-        int[] ids = BusStop.getReachableIdsOf(lastId);
-
-        List<Integer> validIds = new ArrayList<Integer>(ids.length);
-        for (int i : ids)
-            if (!addedTwiceAlready(i))
-                validIds.add(i);
+        return city.getReachableIdsExcept(stops.getLast(), usedTwice);
+    }
 
-        int[] resultIds = new int[validIds.size()];
-        for (int i = 0; i < resultIds.length; i++)
-            resultIds[i] = validIds.get(i);
-        return resultIds;
+    /**
+     * Calculates the {@link #travelTimes travel times} of the stops that were appended to the list
+     * since the last update, in time proportional to the number of the appended stops.
+     */
+    private void appendTravelTimes() {
+        for (int i = travelTimes.size(); i < stops.size(); i++)
+            travelTimes.append(travelTimes.get(i - 1) + city.travelTimeToFrom(stops.get(i), stops.get(i - 1)));
     }
 
     /**
@@ -424,34 +635,24 @@ public class TouchedStops {
      * {@link BusService#firstLeaveTime firstLeaveTime}.
      * All the bus services start at the bus station, so there is no travel time for the first
      * appearance of the station.
+     * The travel times are not calculated again, they are copied from the kept up to date {@link #travelTimes}.
      * @return an array with the travel times to each touched bus stop, relative
      *           to when the bus leaves the station
      */
     public int[] getTravelTimes() {
         LOGGER.trace("called getTravelTimes");
-        if (stops.size() < 2) {
-            LOGGER.debug("nowhere to travel -> no travel time");
-            return new int[0];
-        }
-
-        int[] times = new int[stops.size() - 1];       // there is one more stop than travel time
-        Node<Integer> node = stops.getHead();
-        int counter = 0;
-        while (true) {
-            int from = node.getElement();
-            node = node.next();
-            int to = node.getElement();
-            times[counter++] = BusStop.travelTimeToFrom(to, from);
-            if (!node.hasNext())
-                break;
-        }
-
-        // now I have to individual travel times, from stop to stop
-        // convert them to be relative to the station
-        for (int i = 1; i < times.length; i++)
-            times[i] += times[i-1];
+        return travelTimes.toArray(1);
+    }
 
-        return times;
+    /**
+     * Returns a read-only view of the minutes that it takes to travel from the bus station to each of the
+     * touched bus stops, without copying them. Unlike {@link #getTravelTimes()}, the view has an element for
+     * the first appearance of the station too, which is 0, so its indexes are the same as the indexes of
+     * the {@link #getStopsView() stops}. The view doesn't change with the later changes of this buffer.
+     * @return a snapshot of the travel times of the touched bus stops
+     */
+    public IntList.Snapshot getTravelTimesView() {
+        return travelTimes.snapshot();
     }
 
 }//class
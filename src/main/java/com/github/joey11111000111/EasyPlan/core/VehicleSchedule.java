@@ -0,0 +1,182 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+/**
+ * The result of a {@link VehicleScheduler vehicle scheduling}: the trips of one or more bus services,
+ * and the vehicle that runs each of them. A trip is a single run of a bus from the station to the last stop
+ * of its service, so the number of trips of a service is its {@link iTimetable#getBusCount() bus count},
+ * while the number of vehicles is usually much less, because a vehicle that finished a trip can run another.
+ * The trips are in the order of their start, all the times are in minutes from the start of the day, so they
+ * may be 24 * 60 or more. Instances are immutable.
+ */
+public final class VehicleSchedule {
+
+    /**
+     * The applied names of the scheduled services.
+     */
+    private final String[] serviceNames;
+
+    /**
+     * The index of the service of each trip in {@link #serviceNames}.
+     */
+    private final int[] tripServices;
+
+    /**
+     * The index of the bus of each trip among the buses of its service.
+     */
+    private final int[] tripBuses;
+
+    /**
+     * The time each trip leaves the station, in minutes.
+     */
+    private final int[] tripStarts;
+
+    /**
+     * The time each trip arrives at the last stop of its service, in minutes.
+     */
+    private final int[] tripEnds;
+
+    /**
+     * The vehicle that runs each trip, vehicles are numbered from 0.
+     */
+    private final int[] tripVehicles;
+
+    /**
+     * The number of vehicles needed to run all the trips.
+     */
+    private final int vehicleCount;
+
+    /**
+     * The minimum minutes a vehicle waits at the station between two trips.
+     */
+    private final int minLayoverMinutes;
+
+    /**
+     * Creates a new instance with the given data. The arrays are not copied.
+     * @param serviceNames the applied names of the scheduled services
+     * @param tripServices the index of the service of each trip
+     * @param tripBuses the index of the bus of each trip among the buses of its service
+     * @param tripStarts the time each trip leaves the station
+     * @param tripEnds the time each trip arrives at the last stop
+     * @param tripVehicles the vehicle that runs each trip
+     * @param vehicleCount the number of vehicles
+     * @param minLayoverMinutes the minimum minutes a vehicle waits between two trips
+     */
+    VehicleSchedule(String[] serviceNames, int[] tripServices, int[] tripBuses, int[] tripStarts, int[] tripEnds,
+                    int[] tripVehicles, int vehicleCount, int minLayoverMinutes) {
+        this.serviceNames = serviceNames;
+        this.tripServices = tripServices;
+        this.tripBuses = tripBuses;
+        this.tripStarts = tripStarts;
+        this.tripEnds = tripEnds;
+        this.tripVehicles = tripVehicles;
+        this.vehicleCount = vehicleCount;
+        this.minLayoverMinutes = minLayoverMinutes;
+    }
+
+    /**
+     * Returns the minimum number of vehicles that can run all the trips.
+     * @return the size of the fleet
+     */
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    /**
+     * Returns the number of vehicles that run at least one trip of the service with the given name.
+     * When more services are scheduled together, a vehicle can run the trips of more services.
+     * @param serviceName the applied name of the service
+     * @return the number of vehicles that run the service, 0 if the service is not in this schedule
+     * @throws NullPointerException if the given name is null
+     */
+    public int getVehicleCountOf(String serviceName) {
+        if (serviceName == null)
+            throw new NullPointerException("the given service name is null");
+        int service = 0;
+        while (service < serviceNames.length && !serviceNames[service].equals(serviceName))
+            service++;
+        boolean[] used = new boolean[vehicleCount];
+        int count = 0;
+        for (int trip = 0; trip < tripServices.length; trip++)
+            if (tripServices[trip] == service && !used[tripVehicles[trip]]) {
+                used[tripVehicles[trip]] = true;
+                count++;
+            }
+        return count;
+    }
+
+    /**
+     * Returns the minimum minutes a vehicle waits at the station between two trips.
+     * @return the minimum layover in minutes
+     */
+    public int getMinLayoverMinutes() {
+        return minLayoverMinutes;
+    }
+
+    /**
+     * Returns the number of trips, which is the sum of the bus counts of the scheduled services.
+     * @return the number of trips
+     */
+    public int getTripCount() {
+        return tripStarts.length;
+    }
+
+    /**
+     * Returns the applied name of the service of the given trip.
+     * @param trip the index of the trip, in the order of their start
+     * @return the name of the service of the trip
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getServiceNameOf(int trip) {
+        return serviceNames[tripServices[trip]];
+    }
+
+    /**
+     * Returns the index of the bus of the given trip among the buses of its service.
+     * @param trip the index of the trip, in the order of their start
+     * @return the index of the bus of the trip, 0 is the first bus of the service
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getBusIndexOf(int trip) {
+        return tripBuses[trip];
+    }
+
+    /**
+     * Returns the time the given trip leaves the station, in minutes.
+     * @param trip the index of the trip, in the order of their start
+     * @return the start of the trip in minutes from the start of the day
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getStartMinutesOf(int trip) {
+        return tripStarts[trip];
+    }
+
+    /**
+     * Returns the time the given trip arrives at the last stop of its service, in minutes.
+     * @param trip the index of the trip, in the order of their start
+     * @return the end of the trip in minutes from the start of the day
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getEndMinutesOf(int trip) {
+        return tripEnds[trip];
+    }
+
+    /**
+     * Returns the vehicle that runs the given trip.
+     * @param trip the index of the trip, in the order of their start
+     * @return the number of the vehicle, in the range [0, {@link #getVehicleCount()})
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getVehicleOf(int trip) {
+        return tripVehicles[trip];
+    }
+
+    /**
+     * Returns a short summary of the schedule, like "3 vehicles for 120 trips (layover 5)".
+     * @return the string form of the schedule
+     */
+    @Override
+    public String toString() {
+        return vehicleCount + " vehicles for " + getTripCount() + " trips (layover "
+                + minLayoverMinutes + ")";
+    }
+}//class
@@ -0,0 +1,116 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calculates the minimum number of vehicles that can run all the trips of one or more bus services, and
+ * assigns the trips to the vehicles. The {@link iTimetable#getBusCount() bus count} of a timetable is the
+ * number of trips, not the number of vehicles: a vehicle that finished its trip can start another one after
+ * waiting at least the minimum layover time.
+ * <p>
+ * Every trip starts at the bus station, so a vehicle can run the trip of any service after it is free.
+ * A trip occupies its vehicle from its departure until the arrival at the last stop plus the layover.
+ * Routes that don't end at the station are treated the same way, the way back is not modelled.
+ * The trips form an interval graph, whose minimum coloring is found by a greedy algorithm: the trips are
+ * taken in the order of their start, and each is given to the vehicle that became free the earliest, or
+ * to a new vehicle if none of them is free. The free times of the vehicles are kept in a binary heap, so
+ * the whole scheduling takes O(n log n) time for n trips.
+ * All the times are in minutes from the start of the day, a single operating day is scheduled.
+ */
+final class VehicleScheduler {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(VehicleScheduler.class);
+
+    /**
+     * Mask of the lower 32 bits of a long, where the index of a trip or a vehicle is packed.
+     */
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    /**
+     * This class only has static methods.
+     */
+    private VehicleScheduler() {}
+
+    /**
+     * Schedules the trips of all the given timetables together, so a vehicle can run the trips of more
+     * services. Timetables with only the bus station have no trips to run.
+     * @param timetables the timetables of the services, with different service names
+     * @param minLayoverMinutes the minimum minutes a vehicle waits at the station between two trips
+     * @return the schedule with the minimum number of vehicles
+     * @throws NullPointerException if the given list or any of its elements is null
+     * @throws IllegalArgumentException if the layover is negative
+     */
+    static VehicleSchedule schedule(List<VirtualTimetable> timetables, int minLayoverMinutes) {
+        LOGGER.trace("called schedule");
+        if (timetables == null)
+            throw new NullPointerException("the given list of timetables is null");
+        if (minLayoverMinutes < 0)
+            throw new IllegalArgumentException("minimum layover cannot be negative: " + minLayoverMinutes);
+
+        int tripCount = 0;
+        for (VirtualTimetable timetable : timetables)
+            if (timetable.getStopCount() > 1)
+                tripCount += timetable.getBusCount();
+
+        // collect the trips, with the start packed before the index so sorting orders them by start
+        String[] serviceNames = new String[timetables.size()];
+        int[] services = new int[tripCount];
+        int[] buses = new int[tripCount];
+        int[] starts = new int[tripCount];
+        int[] ends = new int[tripCount];
+        long[] order = new long[tripCount];
+        int trip = 0;
+        for (int service = 0; service < serviceNames.length; service++) {
+            VirtualTimetable timetable = timetables.get(service);
+            serviceNames[service] = timetable.getServiceName();
+            if (timetable.getStopCount() < 2)
+                continue;
+            HeadwaySchedule schedule = timetable.getSchedule();
+            int duration = timetable.getTravelMinutes(timetable.getStopCount() - 1);
+            for (int bus = 0; bus < schedule.getBusCount(); bus++, trip++) {
+                services[trip] = service;
+                buses[trip] = bus;
+                starts[trip] = schedule.getDepartureMinutes(bus);
+                ends[trip] = starts[trip] + duration;
+                order[trip] = ((long) starts[trip] << 32) | trip;
+            }
+        }
+        Arrays.sort(order);
+
+        // greedy assignment, the heap holds the time each vehicle becomes free
+        int[] sortedServices = new int[tripCount];
+        int[] sortedBuses = new int[tripCount];
+        int[] sortedStarts = new int[tripCount];
+        int[] sortedEnds = new int[tripCount];
+        int[] vehicles = new int[tripCount];
+        LongHeap freeVehicles = new LongHeap(Math.max(16, tripCount / 8));
+        int vehicleCount = 0;
+        for (int i = 0; i < tripCount; i++) {
+            int original = (int) (order[i] & LOW_BITS);
+            sortedServices[i] = services[original];
+            sortedBuses[i] = buses[original];
+            sortedStarts[i] = starts[original];
+            sortedEnds[i] = ends[original];
+            long freeAt = ((long) (ends[original] + minLayoverMinutes)) << 32;
+            if (!freeVehicles.isEmpty() && (int) (freeVehicles.peek() >>> 32) <= starts[original]) {
+                vehicles[i] = (int) (freeVehicles.peek() & LOW_BITS);
+                freeVehicles.replaceTop(freeAt | vehicles[i]);
+            } else {
+                vehicles[i] = vehicleCount++;
+                freeVehicles.add(freeAt | vehicles[i]);
+            }
+        }
+        LOGGER.debug(vehicleCount + " vehicles are needed for " + tripCount + " trips of "
+                + serviceNames.length + " services");
+        return new VehicleSchedule(serviceNames, sortedServices, sortedBuses, sortedStarts, sortedEnds,
+                vehicles, vehicleCount, minLayoverMinutes);
+    }
+
+}//class
@@ -0,0 +1,382 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.joey11111000111.EasyPlan.core.Timetable.DayTimeView;
+import static com.github.joey11111000111.EasyPlan.core.Timetable.MINUTES_PER_DAY;
+import static com.github.joey11111000111.EasyPlan.core.Timetable.StopTimes;
+
+/**
+ * An {@link iTimetable} implementation that never materializes the departures.
+ * The buses of a service leave the station in equal time gaps within every {@link TimeBand time band},
+ * so the time of any bus at any stop can be calculated from the {@link HeadwaySchedule schedule} of the
+ * service and the travel time of the stop. This class only stores these values, and calculates every cell,
+ * row and column of the timetable on demand, in logarithmic time in the number of time bands.
+ * Creating an instance takes time proportional to the number of touched stops and time bands only.
+ * A timetable with more or fewer stops at the end can be derived from an existing one with
+ * {@link #appendStops(int[])} and {@link #truncate(int)}, without creating it from scratch.
+ */
+final class VirtualTimetable implements iTimetable {
+
+    /**
+     * The storage of the stop id -s and travel times, which can be shared by multiple timetables.
+     * Timetables only read the elements below their own {@link #stopCount}, and these elements are
+     * never overwritten. The arrays are never replaced, and new elements can only be written above the
+     * {@link #size}, into the free capacity of the arrays. So only the timetable whose stop count equals to
+     * the size is allowed to append in place, after it {@link #claim(int, int) claimed} the new elements,
+     * all the others, and the appends that don't fit, must create new columns.
+     * The timetables that share the columns can be read from other threads, as every element they read
+     * was written before they were created, and they reach the arrays through final fields.
+     */
+    private static final class Columns {
+
+        /**
+         * The id -s of the touched stops, the first one is always the bus station.
+         */
+        private final int[] stopIds;
+
+        /**
+         * The minutes it takes to travel from the station to each of the touched stops.
+         * The travel time of the station (first element) is 0.
+         */
+        private final int[] travelTimes;
+
+        /**
+         * The number of elements that were written (or claimed to be written) into the arrays.
+         */
+        private final AtomicInteger size;
+
+        /**
+         * Creates a new instance with the given arrays.
+         * @param stopIds the id -s of the touched stops
+         * @param travelTimes the travel times of the touched stops, same length as the stopIds
+         * @param size the number of elements that are already written into the arrays
+         */
+        private Columns(int[] stopIds, int[] travelTimes, int size) {
+            this.stopIds = stopIds;
+            this.travelTimes = travelTimes;
+            this.size = new AtomicInteger(size);
+        }
+
+        /**
+         * Claims the elements from the given size to the given new size, if they fit into the arrays
+         * and nobody has written above the given size yet.
+         * @param oldSize the stop count of the timetable that appends
+         * @param newSize the stop count after the append
+         * @return true if the elements can be written in place
+         */
+        private boolean claim(int oldSize, int newSize) {
+            return newSize <= stopIds.length && size.compareAndSet(oldSize, newSize);
+        }
+    }//private static class
+
+    /**
+     * A read-only list of {@link iStopTimes} objects, one for every touched stop.
+     * The elements are created when they are read.
+     */
+    private final class StopTimesView extends AbstractList<iStopTimes> implements RandomAccess {
+
+        /**
+         * Returns the arrive times of the stop at the given index.
+         * @param index the index of the stop in the order of the touched stops (0 is the bus station)
+         * @return the arrive times of the stop at the given index
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        @Override
+        public iStopTimes get(int index) {
+            return getStopTimesOf(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return stopCount;
+        }
+    }//private class
+
+    /**
+     * Name of the represented bus service.
+     */
+    private final String name;
+
+    /**
+     * The id -s and travel times of the touched stops, see {@link Columns}.
+     */
+    private final Columns columns;
+
+    /**
+     * The number of touched stops (including the bus station) of this timetable.
+     */
+    private final int stopCount;
+
+    /**
+     * The times when the buses of the represented service leave the station.
+     */
+    private final HeadwaySchedule schedule;
+
+    /**
+     * The minutes to wait before the next bus of the service leaves the station after the previous one,
+     * outside of the time bands.
+     */
+    private final int timeGap;
+
+    /**
+     * The city whose bus stops are touched, used when stops are appended.
+     */
+    private final CityGraph city;
+
+    /**
+     * The read-only view of the stop times, see {@link #getStopTimes()}.
+     */
+    private final List<iStopTimes> stopTimes;
+
+    /**
+     * Creates and returns a new {@link VirtualTimetable} instance.
+     * @param tta The data - container object used for the creation
+     * @return a new {@link VirtualTimetable} instance
+     * @throws IllegalArgumentException if the given argument is invalid
+     *          See {@link iTimetableArguments#isValid()} for more information.
+     */
+    static VirtualTimetable createTimetable(iTimetableArguments tta) {
+        if (!tta.isValid())
+            throw new IllegalArgumentException("given arguments are not in a ready state: "
+                    + System.getProperty("line.separator")
+                    + tta.toString());
+
+        int[] argTravelTimes = tta.getTravelTimes();
+        int[] travelTimes = new int[argTravelTimes.length + 1];
+        System.arraycopy(argTravelTimes, 0, travelTimes, 1, argTravelTimes.length);
+
+        Columns columns = new Columns(tta.getStopIds().clone(), travelTimes, travelTimes.length);
+        return new VirtualTimetable(tta.getName(), columns, travelTimes.length, Timetable.createSchedule(tta),
+                tta.getTimeGap(), tta.getCity());
+    }
+
+    /**
+     * Constructor only used by the static factory methods. The columns are shared, not copied.
+     * @param name {@link BusService#name name} of service
+     * @param columns the id -s and travel times of the touched stops
+     * @param stopCount the number of touched stops in this timetable
+     * @param schedule the times when the buses of the service leave the station
+     * @param timeGap the wait time in minutes between two subsequent buses, outside of the time bands
+     * @param city the city whose bus stops are touched
+     */
+    private VirtualTimetable(String name, Columns columns, int stopCount, HeadwaySchedule schedule, int timeGap,
+                             CityGraph city) {
+        this.name = name;
+        this.columns = columns;
+        this.stopCount = stopCount;
+        this.schedule = schedule;
+        this.timeGap = timeGap;
+        this.city = city;
+        stopTimes = new StopTimesView();
+    }
+
+    /**
+     * Returns a timetable that has the given stops appended to the stops of this timetable.
+     * Everything else is the same as in this timetable, which is not modified.
+     * Takes time proportional to the number of appended stops, unless the columns
+     * have to be copied, because they are full, or another timetable already appended to them.
+     * @param newStopIds the id -s of the stops to append
+     * @return a timetable with the given stops appended
+     * @throws IndexOutOfBoundsException if any of the given stop id -s is invalid
+     * @throws IllegalArgumentException if a stop is not reachable from the previous stop
+     */
+    VirtualTimetable appendStops(int[] newStopIds) {
+        int newStopCount = stopCount + newStopIds.length;
+        Columns target = columns;
+        if (!columns.claim(stopCount, newStopCount)) {
+            // the elements above the stop count are owned by another timetable, or there is no room for them
+            int capacity = Math.max(newStopCount, 2 * stopCount);
+            target = new Columns(Arrays.copyOf(columns.stopIds, capacity),
+                    Arrays.copyOf(columns.travelTimes, capacity), newStopCount);
+        }
+
+        int previousId = target.stopIds[stopCount - 1];
+        int travelTime = target.travelTimes[stopCount - 1];
+        for (int i = 0; i < newStopIds.length; i++) {
+            travelTime += city.travelTimeToFrom(newStopIds[i], previousId);
+            target.stopIds[stopCount + i] = newStopIds[i];
+            target.travelTimes[stopCount + i] = travelTime;
+            previousId = newStopIds[i];
+        }
+        return new VirtualTimetable(name, target, newStopCount, schedule, timeGap, city);
+    }
+
+    /**
+     * Returns a timetable that only has the given number of stops from the beginning of the stops
+     * of this timetable. Everything else is the same as in this timetable, which is not modified.
+     * Takes constant time.
+     * @param newStopCount the number of stops to keep, including the bus station
+     * @return a timetable with the stops from the given count removed
+     * @throws IllegalArgumentException if the given count is less than one or more than the current count
+     */
+    VirtualTimetable truncate(int newStopCount) {
+        if (newStopCount < 1 || newStopCount > stopCount)
+            throw new IllegalArgumentException("invalid stop count: " + newStopCount);
+        return new VirtualTimetable(name, columns, newStopCount, schedule, timeGap, city);
+    }
+
+    /**
+     * Checks whether the given stop index is in range of this timetable.
+     * @param stopIndex the index to check
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    private void checkStopIndex(int stopIndex) {
+        if (stopIndex < 0 || stopIndex >= stopCount)
+            throw new IndexOutOfBoundsException("stop index is out of range: " + stopIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getServiceName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The returned list and its elements are views, no times are stored.
+     */
+    @Override
+    public List<iStopTimes> getStopTimes() {
+        return stopTimes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getBusCount() {
+        return schedule.getBusCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTimeGap() {
+        return timeGap;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DayTime getTotalTravelTime() {
+        return new DayTime(columns.travelTimes[stopCount - 1]);
+    }
+
+    /**
+     * Returns the number of touched stops, including the bus station.
+     * @return the number of touched stops
+     */
+    int getStopCount() {
+        return stopCount;
+    }
+
+    /**
+     * Returns the id of the stop at the given index.
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @return the id of the stop at the given index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    int getStopId(int stopIndex) {
+        checkStopIndex(stopIndex);
+        return columns.stopIds[stopIndex];
+    }
+
+    /**
+     * Returns the minutes it takes to travel from the bus station to the stop at the given index.
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @return the travel time to the stop at the given index, 0 for the station
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    int getTravelMinutes(int stopIndex) {
+        checkStopIndex(stopIndex);
+        return columns.travelTimes[stopIndex];
+    }
+
+    /**
+     * Returns the {@link BusService#firstLeaveTime firstLeaveTime} of the represented service in minutes.
+     * @return the first leave time in minutes
+     */
+    int getFirstLeaveMinutes() {
+        return schedule.getFirstLeaveMinutes();
+    }
+
+    /**
+     * Returns the times when the buses of the represented service leave the station.
+     * @return the schedule of the buses
+     */
+    HeadwaySchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Returns the time when the specified bus leaves the station, in minutes since the midnight
+     * before the first leave time. The result can be more than one day.
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return the leave time of the bus in minutes
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    int getDepartureMinutes(int busIndex) {
+        return schedule.getDepartureMinutes(busIndex);
+    }
+
+    /**
+     * Returns the time when the specified bus arrives at the specified stop, in minutes since the midnight
+     * before the first leave time. The result can be more than one day.
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return the arrive time in minutes
+     * @throws IndexOutOfBoundsException if either of the indexes is out of range
+     */
+    int getArrivalMinutes(int stopIndex, int busIndex) {
+        return getDepartureMinutes(busIndex) + getTravelMinutes(stopIndex);
+    }
+
+    /**
+     * Returns the time when the specified bus arrives at the specified stop, as minutes of day.
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return the arrive time in minutes, in range of [0 - 1439]
+     * @throws IndexOutOfBoundsException if either of the indexes is out of range
+     */
+    int getMinutesAt(int stopIndex, int busIndex) {
+        return getArrivalMinutes(stopIndex, busIndex) % MINUTES_PER_DAY;
+    }
+
+    /**
+     * Returns the arrive times of all the buses at the stop with the given index (a row of the timetable).
+     * @param stopIndex the index of the stop in the order of the touched stops (0 is the bus station)
+     * @return the arrive times of the given stop
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    iStopTimes getStopTimesOf(int stopIndex) {
+        int travelTime = getTravelMinutes(stopIndex);
+        return new StopTimes(columns.stopIds[stopIndex], new DayTimeView(schedule.getBusCount(),
+                bus -> schedule.getDepartureMinutes(bus) + travelTime));
+    }
+
+    /**
+     * Returns the arrive times of the given bus at all the touched stops (a column of the timetable).
+     * @param busIndex the index of the bus, 0 is the bus that leaves at the first leave time
+     * @return a read-only view of the arrive times of the given bus, one for every touched stop
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    List<DayTime> getTimesOfBus(int busIndex) {
+        int departure = getDepartureMinutes(busIndex);
+        int[] travelTimes = columns.travelTimes;
+        return new DayTimeView(stopCount, stop -> departure + travelTimes[stop]);
+    }
+}//class
@@ -143,6 +143,24 @@ public interface iTimetable {
          */
         void setTimeGap(int timeGap);
 
+        /**
+         * Sets the {@link TimeBand time bands} of the represented bus service. It is optional,
+         * the default is an empty list, which means the {@link #setTimeGap(int) timeGap} is used all day.
+         * @param timeBands the time bands of the represented bus service, in any order
+         * @throws NullPointerException if the given list or any of its elements is null
+         * @throws IllegalArgumentException if two time bands start at the same time
+         */
+        void setTimeBands(List<TimeBand> timeBands);
+
+        /**
+         * Sets the city whose bus stops the represented bus service touches. It is optional,
+         * the default is the {@link CityGraph#getDefault() default city}.
+         * @param city the city of the represented bus service
+         * @throws NullPointerException if the given city is null
+         * @throws IllegalArgumentException if the already set stop ids aren't all valid in the given city
+         */
+        void setCity(CityGraph city);
+
         /**
          * Returns the name of the represented bus service or null if it wasn't set yet.
          * @return the name of the represented bus service or null
@@ -189,6 +207,19 @@ public interface iTimetable {
          */
         int getTimeGap();
 
+        /**
+         * Returns the {@link TimeBand time bands} of the represented bus service.
+         * It is an empty list if they weren't set.
+         * @return a read-only list of the time bands of the represented service
+         */
+        List<TimeBand> getTimeBands();
+
+        /**
+         * Returns the city whose bus stops the represented bus service touches.
+         * It is the {@link CityGraph#getDefault() default city} if it wasn't set.
+         * @return the city of the represented bus service
+         */
+        CityGraph getCity();
 
         /**
          * Indicates whether all the variables have been set. It is enough to decide whether this
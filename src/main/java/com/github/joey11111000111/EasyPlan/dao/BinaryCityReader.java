@@ -0,0 +1,110 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Implementation of the {@link iCityReader} interface, that reads the {@link CityCompiler compiled} form of
+ * the city file. The compiled file is used when it was compiled from the current content of the city file,
+ * which is checked with a checksum of the XML. Otherwise the XML is parsed with a {@link StaxCityReader},
+ * and compiled again for the next start. Problems of the compiled file are only logged, the XML can always
+ * be used instead. Includes logging.
+ */
+public class BinaryCityReader implements iCityReader {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(BinaryCityReader.class);
+
+    /**
+     * The default compiled file of the city.xml resource.
+     */
+    static final File COMPILED_FILE = Paths.get(System.getProperty("user.home"),
+                                                ".EasyPlan",
+                                                "cache",
+                                                "city.bin")
+                                                .toFile();
+
+    /**
+     * The city file to read, null for the city.xml resource.
+     */
+    private final File cityFile;
+
+    /**
+     * The compiled form of the city file.
+     */
+    private final File compiledFile;
+
+    /**
+     * Creates an instance that reads the city.xml resource of the program, and keeps its compiled form
+     * in the cache library of the user.
+     */
+    public BinaryCityReader() {
+        cityFile = null;
+        compiledFile = COMPILED_FILE;
+    }
+
+    /**
+     * Creates an instance that reads the given city file, and keeps its compiled form in the other given file.
+     * @param cityFile the city file to read, in the format of city.xml
+     * @param compiledFile the compiled form of the city file, it is created when it doesn't exist
+     * @throws NullPointerException if either of the given files is null
+     */
+    public BinaryCityReader(File cityFile, File compiledFile) {
+        if (cityFile == null || compiledFile == null)
+            throw new NullPointerException("the given city file or compiled file is null");
+        this.cityFile = cityFile;
+        this.compiledFile = compiledFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The stops are created from the compiled city, in the order of their id.
+     */
+    @Override
+    public List<iBusStopData> readCityStops() {
+        LOGGER.trace("called readCityStops");
+        return readCompiledCity().toStopData();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The compiled file is loaded through memory mapping when it is up to date, otherwise it is compiled again.
+     */
+    @Override
+    public CompiledCity readCompiledCity() {
+        LOGGER.trace("called readCompiledCity");
+        long checksum;
+        try {
+            checksum = CityCompiler.checksumOf(CityReader.openCityFile(cityFile));
+        } catch (IOException ioe) {
+            LOGGER.error("city.xml cannot be read!", ioe);
+            System.exit(1);
+            return null;
+        }
+
+        try {
+            CompiledCity city = CityCompiler.load(compiledFile, checksum);
+            LOGGER.debug("loaded the compiled city");
+            return city;
+        } catch (ObjectReadFailureException orfe) {
+            LOGGER.info("compiling the city: " + orfe.getMessage());
+        }
+
+        iCityReader xmlReader = cityFile == null ? new StaxCityReader() : new StaxCityReader(cityFile);
+        CompiledCity city = CompiledCity.fromStopData(xmlReader.readCityStops());
+        try {
+            CityCompiler.write(city, checksum, compiledFile);
+        } catch (ObjectSaveFailureException osfe) {
+            LOGGER.warn("cannot save the compiled city: " + osfe.getMessage());
+        }
+        return city;
+    }
+
+}//class
@@ -0,0 +1,192 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles a city into a compact binary file, and loads it back through memory mapping.
+ * The file has a fixed size header and the arrays of the {@link CompiledCity} after it:
+ * <pre>
+ *   int  magic number "EPCB"      long checksum of the source XML
+ *   int  format version           long checksum of the arrays
+ *   int  stop count               int  road count
+ *   int[stopCount] X coordinates, int[stopCount] Y coordinates, int[stopCount + 1] offsets,
+ *   int[roadCount] targets, int[roadCount] travel minutes
+ * </pre>
+ * All the values are big-endian, the checksums are CRC-32 values. The checksum of the source tells whether
+ * the file was compiled from the current city.xml, the checksum of the arrays detects a damaged file.
+ * This class only has static methods.
+ */
+public final class CityCompiler {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CityCompiler.class);
+
+    /**
+     * The first int of every compiled city file, "EPCB" in ASCII.
+     */
+    static final int MAGIC = 0x45504342;
+
+    /**
+     * The version of the format, files of other versions are compiled again.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    /**
+     * This class only has static methods.
+     */
+    private CityCompiler() {}
+
+    /**
+     * Calculates the CRC-32 checksum of all the bytes of the given stream, and closes it.
+     * @param source the stream to read, usually a city.xml file
+     * @return the checksum of the stream
+     * @throws IOException if the stream cannot be read
+     * @throws NullPointerException if the given stream is null
+     */
+    public static long checksumOf(InputStream source) throws IOException {
+        if (source == null)
+            throw new NullPointerException("the given stream is null");
+        CRC32 crc = new CRC32();
+        try (InputStream is = source) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+                crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the given city into the given file in the compiled format. The file is first written under a
+     * temporary name and then renamed, so an interrupted compilation never leaves a partial file behind.
+     * @param city the city to write
+     * @param sourceChecksum the checksum of the XML the city was read from
+     * @param target the file to write
+     * @throws ObjectSaveFailureException if the file cannot be written
+     * @throws NullPointerException if the city or the file is null
+     */
+    public static void write(CompiledCity city, long sourceChecksum, File target) throws ObjectSaveFailureException {
+        LOGGER.trace("called write");
+        if (city == null || target == null)
+            throw new NullPointerException("the given city or file is null");
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs())
+            throw new ObjectSaveFailureException("cannot create parent library");
+
+        int stopCount = city.getStopCount();
+        int roadCount = city.getRoadCount();
+        ByteBuffer payload = ByteBuffer.allocate(4 * (3 * stopCount + 1 + 2 * roadCount));
+        IntBuffer ints = payload.asIntBuffer();
+        ints.put(city.getXCoords()).put(city.getYCoords()).put(city.getOffsets())
+                .put(city.getTargets()).put(city.getTravelMinutes());
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(sourceChecksum).putLong(crc.getValue())
+                .putInt(stopCount).putInt(roadCount);
+        header.flip();
+
+        File temporary = new File(parent, target.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining())
+                channel.write(header);
+            while (payload.hasRemaining())
+                channel.write(payload);
+        } catch (IOException ioe) {
+            if (!temporary.delete())
+                LOGGER.warn("cannot delete temporary city file");
+            throw new ObjectSaveFailureException("cannot write compiled city: " + ioe.getMessage());
+        }
+        try {
+            try {
+                Files.move(temporary.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ioe) {
+            throw new ObjectSaveFailureException("cannot replace compiled city: " + ioe.getMessage());
+        }
+        LOGGER.debug("compiled city with " + stopCount + " stops and " + roadCount + " roads");
+    }
+
+    /**
+     * Loads the city from the given compiled file through memory mapping. The arrays are copied out of the
+     * mapping in bulk, without any parsing.
+     * @param source the compiled city file
+     * @param sourceChecksum the checksum of the current XML, the file must have been compiled from it
+     * @return the loaded city
+     * @throws ObjectReadFailureException if there is no such file, it was compiled from a different XML
+     *          or in a different format, or the file is damaged
+     * @throws NullPointerException if the given file is null
+     */
+    public static CompiledCity load(File source, long sourceChecksum) throws ObjectReadFailureException {
+        LOGGER.trace("called load");
+        if (source == null)
+            throw new NullPointerException("the given file is null");
+        if (!source.isFile())
+            throw new ObjectReadFailureException("compiled city is not found");
+        try (RandomAccessFile file = new RandomAccessFile(source, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new ObjectReadFailureException("compiled city is damaged");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new ObjectReadFailureException("not a compiled city of the current format");
+            if (buffer.getLong() != sourceChecksum)
+                throw new ObjectReadFailureException("compiled city is stale");
+            long payloadChecksum = buffer.getLong();
+            int stopCount = buffer.getInt();
+            int roadCount = buffer.getInt();
+            if (stopCount < 0 || roadCount < 0
+                    || size != HEADER_SIZE + 4L * (3L * stopCount + 1 + 2L * roadCount))
+                throw new ObjectReadFailureException("compiled city is damaged");
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if (crc.getValue() != payloadChecksum)
+                throw new ObjectReadFailureException("compiled city is damaged");
+
+            IntBuffer ints = buffer.asIntBuffer();
+            int[] xCoords = new int[stopCount];
+            int[] yCoords = new int[stopCount];
+            int[] offsets = new int[stopCount + 1];
+            int[] targets = new int[roadCount];
+            int[] travelMinutes = new int[roadCount];
+            ints.get(xCoords).get(yCoords).get(offsets).get(targets).get(travelMinutes);
+            try {
+                return new CompiledCity(xCoords, yCoords, offsets, targets, travelMinutes);
+            } catch (IllegalArgumentException iae) {
+                throw new ObjectReadFailureException("compiled city is invalid: " + iae.getMessage());
+            }
+        } catch (IOException ioe) {
+            throw new ObjectReadFailureException("cannot read compiled city: " + ioe.getMessage());
+        }
+    }
+
+}//class
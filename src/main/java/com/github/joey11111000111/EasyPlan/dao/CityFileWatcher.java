@@ -0,0 +1,162 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a city file with a {@link WatchService}, and reads it again on a background thread whenever it
+ * changes. The new city is only passed to the listener when it is valid, otherwise the problem is logged and
+ * the listener keeps the current city. As editors often save a file in several steps, the file is only read
+ * when it hasn't changed for {@link #SETTLE_MILLIS} milliseconds. Includes logging.
+ */
+public class CityFileWatcher implements Closeable {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CityFileWatcher.class);
+
+    /**
+     * The file is read when it hasn't changed for this many milliseconds.
+     */
+    static final long SETTLE_MILLIS = 200;
+
+    /**
+     * The watched city file.
+     */
+    private final File cityFile;
+
+    /**
+     * Receives every valid new version of the city.
+     */
+    private final Consumer<CompiledCity> listener;
+
+    /**
+     * The service that reports the changes of the library of the city file.
+     */
+    private final WatchService watchService;
+
+    /**
+     * The thread that waits for the changes and reads the file.
+     */
+    private final Thread thread;
+
+    /**
+     * Starts watching the given city file. The listener is called on the background thread of the watcher.
+     * @param cityFile the city file to watch, in the format of city.xml
+     * @param listener receives the new city after every change of the file that leaves it valid
+     * @throws IOException if the library of the file cannot be watched
+     * @throws NullPointerException if either of the arguments is null
+     */
+    public CityFileWatcher(File cityFile, Consumer<CompiledCity> listener) throws IOException {
+        LOGGER.trace("called CityFileWatcher constructor");
+        if (cityFile == null || listener == null)
+            throw new NullPointerException("the given city file or listener is null");
+        this.cityFile = cityFile.getAbsoluteFile();
+        this.listener = listener;
+        Path directory = this.cityFile.getParentFile().toPath();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "EasyPlan-city-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("watching the city file " + this.cityFile);
+    }
+
+    /**
+     * Reads the given city file and validates its content.
+     * @param cityFile the city file to read, in the format of city.xml
+     * @return the compiled form of the city
+     * @throws CityReadFailureException if the file cannot be read or it is not a valid city
+     * @throws NullPointerException if the given file is null
+     */
+    public static CompiledCity readCity(File cityFile) throws CityReadFailureException {
+        LOGGER.trace("called readCity");
+        List<iBusStopData> stops = new StaxCityReader(cityFile).tryReadCityStops();
+        try {
+            return CompiledCity.fromStopData(stops);
+        } catch (IllegalArgumentException iae) {
+            throw new CityReadFailureException("the city is invalid: " + iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Waits for the changes of the city file until the watcher is {@link #close() closed}.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                if (!isCityChanged(watchService.take()))
+                    continue;
+                // wait until the file settles
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                    isCityChanged(key);
+                reload();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            LOGGER.debug("stopped watching the city file");
+        }
+    }
+
+    /**
+     * Checks whether the events of the given key are about the city file, and resets the key.
+     * @param key the key with the events of the library
+     * @return true if the city file was created or modified
+     */
+    private boolean isCityChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (context instanceof Path && ((Path) context).toString().equals(cityFile.getName())))
+                changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Reads the city file and passes it to the listener, if it is valid.
+     */
+    private void reload() {
+        LOGGER.trace("called reload");
+        CompiledCity city;
+        try {
+            city = readCity(cityFile);
+        } catch (CityReadFailureException crfe) {
+            LOGGER.warn("the changed city file is not used: " + crfe.getMessage());
+            return;
+        }
+        LOGGER.info("the city file has changed, it has " + city.getStopCount() + " stops");
+        try {
+            listener.accept(city);
+        } catch (RuntimeException re) {
+            LOGGER.error("the new city cannot be used", re);
+        }
+    }
+
+    /**
+     * Stops watching the city file. The background thread stops, even if it is reading the file.
+     */
+    @Override
+    public void close() throws IOException {
+        LOGGER.trace("called close");
+        watchService.close();
+        thread.interrupt();
+    }
+
+}//class
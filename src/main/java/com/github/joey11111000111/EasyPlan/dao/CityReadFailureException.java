@@ -0,0 +1,26 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+/**
+ * Thrown when a city file cannot be read, or its content is not a valid city.
+ * Unlike at the start of the program, a city file that is read again while the program runs
+ * may be invalid, and the current city is kept in that case.
+ */
+public class CityReadFailureException extends Exception {
+
+    /**
+     * Creates a new instance with the given error message.
+     * @param message the error message of the exception
+     */
+    public CityReadFailureException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new instance with the given error message and cause.
+     * @param message the error message of the exception
+     * @param cause the problem that made the city file unusable
+     */
+    public CityReadFailureException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -8,6 +8,11 @@ import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -15,7 +20,9 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Implementation of the {@link iCityReader} interface. Includes logging.
+ * Implementation of the {@link iCityReader} interface, that parses the whole city file into a DOM tree
+ * before reading the bus stops. See {@link StaxCityReader} for a reader that needs less memory and time.
+ * Includes logging.
  */
 public class CityReader implements iCityReader {
 
@@ -24,15 +31,56 @@ public class CityReader implements iCityReader {
      */
     static final Logger LOGGER = LoggerFactory.getLogger(CityReader.class);
 
+    /**
+     * The name of the city file among the resources of the program.
+     */
+    static final String CITY_RESOURCE = "city.xml";
+
+    /**
+     * The city file to read, null for the city.xml resource.
+     */
+    private final File cityFile;
+
+    /**
+     * Creates an instance that reads the city.xml resource of the program.
+     */
+    public CityReader() {
+        cityFile = null;
+    }
+
+    /**
+     * Creates an instance that reads the given city file, which has the same format as city.xml.
+     * @param cityFile the city file to read
+     * @throws NullPointerException if the given file is null
+     */
+    public CityReader(File cityFile) {
+        if (cityFile == null)
+            throw new NullPointerException("the given city file is null");
+        this.cityFile = cityFile;
+    }
+
+    /**
+     * Opens the given city file, or the city.xml resource if the file is null.
+     * @param cityFile the city file to open, can be null
+     * @return the stream of the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    static InputStream openCityFile(File cityFile) throws IOException {
+        if (cityFile != null)
+            return new BufferedInputStream(new FileInputStream(cityFile), 1 << 16);
+        InputStream is = CityReader.class.getClassLoader().getResourceAsStream(CITY_RESOURCE);
+        if (is == null)
+            throw new FileNotFoundException(CITY_RESOURCE + " is not found among the resources");
+        return is;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<iBusStopData> readCityStops() {
         List<iBusStopData> allStopsList = new LinkedList<>();
-        try {
-            // get the 'city.xml' file as an InputStream
-            InputStream is = CityReader.class.getClassLoader().getResourceAsStream("city.xml");
+        try (InputStream is = openCityFile(cityFile)) {
             // create a document builder
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
@@ -0,0 +1,247 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The validated data of all the bus stops of a city in compressed sparse row form, as it is stored in the
+ * {@link CityCompiler compiled city file}. The roads that start from the stop with a given id are at the
+ * indices [offsets[id], offsets[id + 1]) of the targets and the travel minutes, in ascending order of their
+ * target stop. This is the form the {@link com.github.joey11111000111.EasyPlan.core.CityGraph CityGraph}
+ * class is built from, so a compiled city needs no per-stop objects at all.
+ * <p>
+ * The getters return the arrays themselves, so they must not be modified.
+ */
+public final class CompiledCity {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CompiledCity.class);
+
+    /**
+     * The X coordinate of every stop, by id.
+     */
+    private final int[] xCoords;
+
+    /**
+     * The Y coordinate of every stop, by id.
+     */
+    private final int[] yCoords;
+
+    /**
+     * The start of the roads of every stop, plus the number of all the roads as the last element.
+     */
+    private final int[] offsets;
+
+    /**
+     * The target stop of every road, grouped by the stop the road starts from.
+     */
+    private final int[] targets;
+
+    /**
+     * The travel time of every road in minutes, at the same index as its target.
+     */
+    private final int[] travelMinutes;
+
+    /**
+     * Creates a new instance from the given arrays, after validating them. The arrays are not copied.
+     * @param xCoords the X coordinate of every stop
+     * @param yCoords the Y coordinate of every stop
+     * @param offsets the start of the roads of every stop, and the number of roads
+     * @param targets the target stop of every road
+     * @param travelMinutes the travel time of every road
+     * @throws NullPointerException if any of the arrays is null
+     * @throws IllegalArgumentException if the arrays don't describe a valid city:<br>
+     *          - there are no stops, or the lengths of the arrays don't match<br>
+     *          - the offsets don't start from 0 or are not increasing, or a stop has no roads<br>
+     *          - a target doesn't exist, or the targets of a stop are not in ascending order<br>
+     *          - a travel time is less than 1 minute
+     */
+    public CompiledCity(int[] xCoords, int[] yCoords, int[] offsets, int[] targets, int[] travelMinutes) {
+        if (xCoords == null || yCoords == null || offsets == null || targets == null || travelMinutes == null)
+            throw new NullPointerException("one of the given arrays is null");
+        int stopCount = xCoords.length;
+        if (stopCount == 0)
+            throw new IllegalArgumentException("there are no bus stops");
+        if (yCoords.length != stopCount || offsets.length != stopCount + 1
+                || targets.length != travelMinutes.length || offsets[stopCount] != targets.length)
+            throw new IllegalArgumentException("the lengths of the arrays don't match");
+        if (offsets[0] != 0)
+            throw new IllegalArgumentException("the offsets don't start from 0");
+        for (int id = 0; id < stopCount; id++) {
+            if (offsets[id + 1] <= offsets[id])
+                throw new IllegalArgumentException("No reachables for stop: " + id);
+            for (int road = offsets[id]; road < offsets[id + 1]; road++) {
+                int target = targets[road];
+                if (target < 0 || target >= stopCount)
+                    throw new IllegalArgumentException("Invalid reachable stop ID: " + target
+                            + " from the stop: " + id);
+                if (road > offsets[id] && targets[road - 1] >= target)
+                    throw new IllegalArgumentException("The reachable stops are not in ascending order"
+                            + " from the stop: " + id);
+                if (travelMinutes[road] < 1)
+                    throw new IllegalArgumentException("Invalid travel minutes: " + travelMinutes[road]
+                            + " from the stop: " + id + " to the stop: " + target);
+            }
+        }
+        this.xCoords = xCoords;
+        this.yCoords = yCoords;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.travelMinutes = travelMinutes;
+    }
+
+    /**
+     * Creates the compiled form of the given bus stops, after validating them.
+     * @param stopsData the data of all the bus stops of the city, in any order
+     * @return the compiled city
+     * @throws NullPointerException if the given list is null
+     * @throws IllegalArgumentException if the bus stop data is invalid:<br>
+     *          - there are no stops, or a stop data object is not filled<br>
+     *          - the ids are not 0, 1, ... stopCount - 1<br>
+     *          - a stop has no reachable stops, or a reachable stop doesn't exist<br>
+     *          - a travel time is less than 1 minute
+     */
+    public static CompiledCity fromStopData(List<iBusStopData> stopsData) {
+        LOGGER.trace("called fromStopData");
+        if (stopsData == null)
+            throw new NullPointerException("the given list of bus stop data is null");
+        int stopCount = stopsData.size();
+        if (stopCount == 0)
+            throw new IllegalArgumentException("there are no bus stops");
+
+        iBusStopData[] byId = new iBusStopData[stopCount];
+        int roadCount = 0;
+        for (iBusStopData stopData : stopsData) {
+            if (!stopData.isValid())
+                throw new IllegalArgumentException("Invalid bus stop data object");
+            int id = stopData.getId();
+            if (id < 0 || id >= stopCount)
+                throw new IllegalArgumentException("Invalid bus stop ID: " + id);
+            if (byId[id] != null)
+                throw new IllegalArgumentException("Corrupt bus stop ID: " + id);
+            byId[id] = stopData;
+            roadCount += stopData.getReachableStops().size();
+        }
+
+        int[] xCoords = new int[stopCount];
+        int[] yCoords = new int[stopCount];
+        int[] offsets = new int[stopCount + 1];
+        int[] targets = new int[roadCount];
+        int[] travelMinutes = new int[roadCount];
+        long[] row = new long[stopCount];
+        for (int id = 0; id < stopCount; id++) {
+            iBusStopData stopData = byId[id];
+            xCoords[id] = stopData.getX();
+            yCoords[id] = stopData.getY();
+
+            Map<Integer, Integer> reachables = stopData.getReachableStops();     // never null
+            if (reachables.isEmpty())
+                throw new IllegalArgumentException("No reachables for stop: " + id);
+            // the roads of the stop, with the target packed before the travel time to sort them by target
+            int rowSize = 0;
+            for (Map.Entry<Integer, Integer> entry : reachables.entrySet()) {
+                int target = entry.getKey();
+                int minutes = entry.getValue();
+                if (target < 0 || target >= stopCount)
+                    throw new IllegalArgumentException("Invalid reachable stop ID: " + target
+                            + " from the stop: " + id);
+                if (minutes < 1)
+                    throw new IllegalArgumentException("Invalid travel minutes: " + minutes
+                            + " from the stop: " + id + " to the stop: " + target);
+                row[rowSize++] = ((long) target << 32) | minutes;
+            }
+            Arrays.sort(row, 0, rowSize);
+            offsets[id + 1] = offsets[id] + rowSize;
+            for (int i = 0; i < rowSize; i++) {
+                targets[offsets[id] + i] = (int) (row[i] >>> 32);
+                travelMinutes[offsets[id] + i] = (int) row[i];
+            }
+        }
+        return new CompiledCity(xCoords, yCoords, offsets, targets, travelMinutes);
+    }
+
+    /**
+     * Creates the bus stop data objects of the city, in the order of their id, so the bus station is the first.
+     * @return a new list with the data of all the bus stops
+     */
+    public List<iBusStopData> toStopData() {
+        List<iBusStopData> stopsData = new ArrayList<>(xCoords.length);
+        for (int id = 0; id < xCoords.length; id++) {
+            iBusStopData stopData = new BusStopData();
+            stopData.setId(id);
+            stopData.setX(xCoords[id]);
+            stopData.setY(yCoords[id]);
+            Map<Integer, Integer> reachables = new HashMap<>();
+            for (int road = offsets[id]; road < offsets[id + 1]; road++)
+                reachables.put(targets[road], travelMinutes[road]);
+            stopData.setReachableStops(reachables);
+            stopsData.add(stopData);
+        }
+        return stopsData;
+    }
+
+    /**
+     * Returns the number of bus stops, including the bus station.
+     * @return the number of bus stops
+     */
+    public int getStopCount() {
+        return xCoords.length;
+    }
+
+    /**
+     * Returns the number of roads between the bus stops.
+     * @return the number of roads
+     */
+    public int getRoadCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the X coordinates of the stops, by id. The array must not be modified.
+     * @return the X coordinate of every stop
+     */
+    public int[] getXCoords() {
+        return xCoords;
+    }
+
+    /**
+     * Returns the Y coordinates of the stops, by id. The array must not be modified.
+     * @return the Y coordinate of every stop
+     */
+    public int[] getYCoords() {
+        return yCoords;
+    }
+
+    /**
+     * Returns the start of the roads of every stop, plus the number of roads. The array must not be modified.
+     * @return the offsets of the roads
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the target stop of every road. The array must not be modified.
+     * @return the targets of the roads
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Returns the travel time of every road in minutes. The array must not be modified.
+     * @return the travel minutes of the roads
+     */
+    public int[] getTravelMinutes() {
+        return travelMinutes;
+    }
+
+}//class
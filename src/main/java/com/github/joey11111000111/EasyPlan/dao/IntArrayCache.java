@@ -0,0 +1,187 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saves and reads arrays of int values in binary files, so data that is expensive to calculate
+ * doesn't have to be recalculated at every startup. Every cache file has a name, and it is saved with a key,
+ * which is usually a hash of the data the arrays were calculated from. Reading a file that was saved with a
+ * different key fails, so stale data is never returned.
+ * <p>
+ * The format of a file is: the {@link #MAGIC magic number}, the key, the number of arrays, then the length
+ * and the elements of every array, all in big-endian order. A file is first written under a temporary
+ * name and then renamed, so an interrupted save never leaves a partial file behind.
+ */
+public class IntArrayCache {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(IntArrayCache.class);
+
+    /**
+     * The default directory of the cache files.
+     */
+    static final File CACHE_DIRECTORY = Paths.get(System.getProperty("user.home"),
+                                                  ".EasyPlan",
+                                                  "cache")
+                                                  .toFile();
+
+    /**
+     * The first int of every cache file, "EPC1" in ASCII.
+     */
+    static final int MAGIC = 0x45504331;
+
+    /**
+     * The extension of the cache files.
+     */
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * The directory the cache files are saved to and read from.
+     */
+    private final File directory;
+
+    /**
+     * Creates an instance that uses the default cache directory in the home library of the user.
+     */
+    public IntArrayCache() {
+        this(CACHE_DIRECTORY);
+    }
+
+    /**
+     * Creates an instance that uses the given directory instead of the default one.
+     * @param directory the directory of the cache files, it is created at the first save when it doesn't exist
+     * @throws NullPointerException if the given directory is null
+     */
+    public IntArrayCache(File directory) {
+        if (directory == null)
+            throw new NullPointerException("the given cache directory is null");
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the file of the cache with the given name.
+     * @param name the name of the cache
+     * @return the cache file in the cache directory
+     * @throws NullPointerException if the given name is null
+     * @throws IllegalArgumentException if the name is empty or contains a path separator
+     */
+    File fileOf(String name) {
+        if (name == null)
+            throw new NullPointerException("the given cache name is null");
+        if (name.isEmpty() || name.indexOf('/') >= 0 || name.indexOf(File.separatorChar) >= 0)
+            throw new IllegalArgumentException("invalid cache name: '" + name + "'");
+        return new File(directory, name + EXTENSION);
+    }
+
+    /**
+     * Saves the given arrays with the given key, replacing the previous content of the cache.
+     * @param name the name of the cache
+     * @param key the key of the data, usually a hash of what the arrays were calculated from
+     * @param arrays the arrays to save
+     * @throws ObjectSaveFailureException if the file cannot be written
+     * @throws NullPointerException if the name, the array of arrays or any of the arrays is null
+     * @throws IllegalArgumentException if the name is empty or contains a path separator
+     */
+    public void save(String name, long key, int[]... arrays) throws ObjectSaveFailureException {
+        LOGGER.trace("called save");
+        File file = fileOf(name);
+        if (arrays == null)
+            throw new NullPointerException("the given arrays are null");
+        for (int[] array : arrays)
+            if (array == null)
+                throw new NullPointerException("one of the given arrays is null");
+        if (!directory.exists() && !directory.mkdirs())
+            throw new ObjectSaveFailureException("cannot create cache directory");
+
+        File temporary = new File(directory, name + EXTENSION + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeLong(key);
+            output.writeInt(arrays.length);
+            for (int[] array : arrays) {
+                output.writeInt(array.length);
+                for (int value : array)
+                    output.writeInt(value);
+            }
+        } catch (IOException ioe) {
+            if (!temporary.delete())
+                LOGGER.warn("cannot delete temporary cache file");
+            throw new ObjectSaveFailureException("cannot write cache file: " + ioe.getMessage());
+        }
+
+        try {
+            try {
+                Files.move(temporary.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ioe) {
+            throw new ObjectSaveFailureException("cannot replace cache file: " + ioe.getMessage());
+        }
+        LOGGER.debug("saved " + arrays.length + " arrays into cache '" + name + "'");
+    }
+
+    /**
+     * Reads the arrays of the cache with the given name, if they were saved with the given key.
+     * @param name the name of the cache
+     * @param key the key the arrays must have been saved with
+     * @return the saved arrays, in the order they were saved
+     * @throws ObjectReadFailureException if there is no such cache, it was saved with a different key,
+     *          or the file is corrupt
+     * @throws NullPointerException if the given name is null
+     * @throws IllegalArgumentException if the name is empty or contains a path separator
+     */
+    public int[][] read(String name, long key) throws ObjectReadFailureException {
+        LOGGER.trace("called read");
+        File file = fileOf(name);
+        // every value is at least 4 bytes, so longer arrays than this cannot be in the file
+        long maxValues = file.length() / 4;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC)
+                throw new ObjectReadFailureException("'" + name + "' is not a cache file");
+            if (input.readLong() != key)
+                throw new ObjectReadFailureException("cache '" + name + "' is stale");
+            int count = input.readInt();
+            if (count < 0 || count > maxValues)
+                throw new ObjectReadFailureException("cache '" + name + "' is corrupt");
+            int[][] arrays = new int[count][];
+            for (int i = 0; i < count; i++) {
+                int length = input.readInt();
+                if (length < 0 || length > maxValues)
+                    throw new ObjectReadFailureException("cache '" + name + "' is corrupt");
+                arrays[i] = new int[length];
+                for (int j = 0; j < length; j++)
+                    arrays[i][j] = input.readInt();
+            }
+            if (input.read() != -1)
+                throw new ObjectReadFailureException("cache '" + name + "' is corrupt");
+            LOGGER.debug("read " + count + " arrays from cache '" + name + "'");
+            return arrays;
+        } catch (FileNotFoundException fnfe) {
+            throw new ObjectReadFailureException("cache '" + name + "' is not found");
+        } catch (IOException ioe) {
+            throw new ObjectReadFailureException("cannot read cache '" + name + "': " + ioe.getMessage());
+        }
+    }
+
+}//class
@@ -34,18 +34,43 @@ public class ObjectIO implements iObjectIO {
                               .toFile();
     }
 
+    /**
+     * The file the objects are saved to and read from.
+     */
+    private final File saveFile;
+
+    /**
+     * Creates an instance that uses the default save file in the home library of the user.
+     */
+    public ObjectIO() {
+        this(SAVE_FILE);
+    }
+
+    /**
+     * Creates an instance that uses the given save file instead of the default one.
+     * Useful when the save file of the user must not be touched, like in benchmarks.
+     * @param saveFile the file to save the objects to and read them from
+     * @throws NullPointerException if the given file is null
+     */
+    public ObjectIO(File saveFile) {
+        if (saveFile == null)
+            throw new NullPointerException("the given save file is null");
+        this.saveFile = saveFile;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void saveObject(Object object, Class<?> clazz) throws ObjectSaveFailureException {
         LOGGER.trace("called saveObject");
-        if (!SAVE_FILE.exists()) {
+        if (!saveFile.exists()) {
             LOGGER.debug("save file doesn't exist");
-            if (!SAVE_FILE.getParentFile().exists() && !SAVE_FILE.getParentFile().mkdirs())
+            File parent = saveFile.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs())
                     throw new ObjectSaveFailureException("cannot create parent library");
             try {
-                if (!SAVE_FILE.createNewFile())
+                if (!saveFile.createNewFile())
                     throw new ObjectSaveFailureException("cannot explicitly create save file");
             } catch (IOException ioe) {
                 throw new ObjectSaveFailureException("cannot explicitly create save file: " + ioe.getMessage());
@@ -55,7 +80,7 @@ public class ObjectIO implements iObjectIO {
 
         OutputStream outputStream = null;
         try {
-            outputStream = new FileOutputStream(SAVE_FILE);
+            outputStream = new FileOutputStream(saveFile);
         } catch (FileNotFoundException e) {
             throw new ObjectSaveFailureException("save file cannot be created: " + e.getMessage());
         }
@@ -84,7 +109,7 @@ public class ObjectIO implements iObjectIO {
         LOGGER.trace("called readObject");
         InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream(SAVE_FILE);
+            inputStream = new FileInputStream(saveFile);
         } catch (FileNotFoundException e) {
             throw new ObjectReadFailureException("save file is not found");
         }
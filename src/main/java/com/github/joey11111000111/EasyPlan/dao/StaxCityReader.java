@@ -0,0 +1,215 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Implementation of the {@link iCityReader} interface, that reads the city file with a StAX
+ * {@link XMLStreamReader} in a single forward pass. Unlike the DOM based {@link CityReader}, it never holds
+ * more of the file in memory than the current element, and every element is visited only once,
+ * so it takes linear time in the size of the file. Includes logging.
+ */
+public class StaxCityReader implements iCityReader {
+
+    /**
+     * The <a href="http://www.slf4j.org/">slf4j</a> logger object for this class.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(StaxCityReader.class);
+
+    /**
+     * The factory of the stream readers, which is thread-safe after its configuration.
+     */
+    private static final XMLInputFactory FACTORY;
+
+    /**
+     * Configures the {@link #FACTORY}: DTDs and external entities are not needed in a city file,
+     * and adjacent text is returned as a single piece.
+     */
+    static {
+        FACTORY = XMLInputFactory.newInstance();
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * The city file to read, null for the city.xml resource.
+     */
+    private final File cityFile;
+
+    /**
+     * Creates an instance that reads the city.xml resource of the program.
+     */
+    public StaxCityReader() {
+        cityFile = null;
+    }
+
+    /**
+     * Creates an instance that reads the given city file, which has the same format as city.xml.
+     * @param cityFile the city file to read
+     * @throws NullPointerException if the given file is null
+     */
+    public StaxCityReader(File cityFile) {
+        if (cityFile == null)
+            throw new NullPointerException("the given city file is null");
+        this.cityFile = cityFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The program cannot work without the city, so it terminates when the file cannot be read.
+     */
+    @Override
+    public List<iBusStopData> readCityStops() {
+        LOGGER.trace("called readCityStops");
+        try {
+            return tryReadCityStops();
+        } catch (CityReadFailureException crfe) {
+            LOGGER.error("city.xml is corrupt!", crfe.getCause());
+            System.exit(1);
+            return null;
+        }
+    }//readCityStops
+
+    /**
+     * Reads the city file like {@link #readCityStops()}, but reports the problems of the file with an
+     * exception instead of terminating the program. It is used when the city file is read again while
+     * the program runs.
+     * @return a list containing the data of all the bus stops of the file
+     * @throws CityReadFailureException if the file cannot be read, or it is not in the format of city.xml
+     */
+    public List<iBusStopData> tryReadCityStops() throws CityReadFailureException {
+        LOGGER.trace("called tryReadCityStops");
+        List<iBusStopData> allStopsList = new ArrayList<>();
+        try (InputStream is = CityReader.openCityFile(cityFile)) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(is);
+            try {
+                readStops(reader, allStopsList);
+            } finally {
+                reader.close();
+            }
+        }
+        catch (Exception e) {
+            throw new CityReadFailureException("cannot read the city file: " + e.getMessage(), e);
+        }
+
+        LOGGER.debug("read " + allStopsList.size() + " bus stops");
+        return allStopsList;
+    }//tryReadCityStops
+
+    /**
+     * Reads all the bus stops from the given reader. The bus station is put to the front of the list,
+     * the bus stops follow in the order of the file.
+     * @param reader the reader positioned before the root element
+     * @param allStopsList the list to add the stops to
+     * @throws XMLStreamException if the file is not well-formed or an element is not where it should be
+     * @throws NumberFormatException if the content of a numeric tag is not a number
+     */
+    private static void readStops(XMLStreamReader reader, List<iBusStopData> allStopsList)
+            throws XMLStreamException {
+        iBusStopData current = null;
+        boolean station = false;
+        boolean stationFound = false;
+        int refId = 0;
+        int travelTime = 0;
+        // the child tags of the current connection that were read, 1 for refid and 2 for travel_time
+        int connectionTags = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                switch (name) {
+                    case "bus_station":
+                    case "bus_stop":
+                        if (current != null)
+                            throw new XMLStreamException("nested bus stop", reader.getLocation());
+                        station = name.equals("bus_station");
+                        current = new BusStopData();
+                        current.setReachableStops(new HashMap<>());
+                        break;
+                    case "id":
+                        checkInStop(current, reader).setId(readInt(reader));
+                        break;
+                    case "x":
+                        checkInStop(current, reader).setX(readInt(reader));
+                        break;
+                    case "y":
+                        checkInStop(current, reader).setY(readInt(reader));
+                        break;
+                    case "connection":
+                        checkInStop(current, reader);
+                        connectionTags = 0;
+                        break;
+                    case "refid":
+                        checkInStop(current, reader);
+                        refId = readInt(reader);
+                        connectionTags |= 1;
+                        break;
+                    case "travel_time":
+                        checkInStop(current, reader);
+                        travelTime = readInt(reader);
+                        connectionTags |= 2;
+                        break;
+                    default:
+                        break;      // city, position, connections
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("connection")) {
+                    if (connectionTags != 3)
+                        throw new XMLStreamException("incomplete connection", reader.getLocation());
+                    current.addReachableStop(refId, travelTime);
+                } else if (name.equals("bus_station") || name.equals("bus_stop")) {
+                    if (station) {
+                        if (stationFound)
+                            throw new XMLStreamException("more bus stations", reader.getLocation());
+                        stationFound = true;
+                        allStopsList.add(0, current);
+                    } else
+                        allStopsList.add(current);
+                    current = null;
+                }
+            }
+        }
+        if (!stationFound)
+            throw new XMLStreamException("there is no bus station");
+    }//readStops
+
+    /**
+     * Returns the given bus stop, after checking that the reader is inside of a bus stop element.
+     * @param current the bus stop that is being read, null if the reader is not inside of a bus stop
+     * @param reader the reader, for the location in the error message
+     * @return the given bus stop
+     * @throws XMLStreamException if the reader is not inside of a bus stop element
+     */
+    private static iBusStopData checkInStop(iBusStopData current, XMLStreamReader reader)
+            throws XMLStreamException {
+        if (current == null)
+            throw new XMLStreamException("'" + reader.getLocalName() + "' is outside of a bus stop",
+                    reader.getLocation());
+        return current;
+    }
+
+    /**
+     * Reads the text content of the current element as a number, and moves the reader to the end of the element.
+     * @param reader the reader positioned at the start of a text-only element
+     * @return the content of the element as a single number
+     * @throws XMLStreamException if the element has child elements
+     * @throws NumberFormatException if the content is not a number
+     */
+    private static int readInt(XMLStreamReader reader) throws XMLStreamException {
+        return Integer.parseInt(reader.getElementText().trim());
+    }
+
+}//class
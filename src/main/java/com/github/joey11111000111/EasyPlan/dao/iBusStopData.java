@@ -4,10 +4,9 @@ import java.util.Map;
 
 /**
  * This interface is used in the data flow from the city.xml file to the
- * {@link com.github.joey11111000111.EasyPlan.core.BusStop BusStop} class.
- * The purpose of this interface is to collect all the data of a read
- * {@link com.github.joey11111000111.EasyPlan.core.BusStop BusStop} object in a form that is
- * expected by the {@link com.github.joey11111000111.EasyPlan.core.BusStop BusStop} class.
+ * {@link com.github.joey11111000111.EasyPlan.core.CityGraph CityGraph} class.
+ * The purpose of this interface is to collect all the data of a read bus stop in a form that is
+ * expected by the {@link com.github.joey11111000111.EasyPlan.core.CityGraph CityGraph} class.
  */
 public interface iBusStopData {
 
@@ -1,5 +1,6 @@
 package com.github.joey11111000111.EasyPlan.dao;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -8,6 +9,44 @@ import java.util.List;
  */
 public interface iCityReader {
 
+    /**
+     * The name of the system property that selects the implementation {@link #createDefault()} returns:
+     * "dom" for {@link CityReader}, "stax" for {@link StaxCityReader}, anything else (or no value)
+     * for {@link BinaryCityReader}.
+     */
+    String READER_PROPERTY = "EasyPlan.cityReader";
+
+    /**
+     * The name of the system property that sets the path of the city file. Without a value the city.xml
+     * resource of the program is read.
+     */
+    String CITY_FILE_PROPERTY = "EasyPlan.cityFile";
+
+    /**
+     * Returns the city file set by the {@link #CITY_FILE_PROPERTY} system property.
+     * @return the city file to read, or null if the city.xml resource is read
+     */
+    static File getCityFile() {
+        String path = System.getProperty(CITY_FILE_PROPERTY);
+        return path == null || path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * Creates the reader of the city file that is selected by the {@link #READER_PROPERTY}
+     * system property. The file is the one {@link #getCityFile()} returns.
+     * @return a new reader of the city file
+     */
+    static iCityReader createDefault() {
+        String reader = System.getProperty(READER_PROPERTY);
+        File cityFile = getCityFile();
+        if ("dom".equalsIgnoreCase(reader))
+            return cityFile == null ? new CityReader() : new CityReader(cityFile);
+        if ("stax".equalsIgnoreCase(reader))
+            return cityFile == null ? new StaxCityReader() : new StaxCityReader(cityFile);
+        return cityFile == null ? new BinaryCityReader()
+                                : new BinaryCityReader(cityFile, BinaryCityReader.COMPILED_FILE);
+    }
+
     /**
      * Reads the city.xml file, puts its contents into the form specified by {@link iBusStopData}
      * and returns a list containing all the read and refactored data.
@@ -15,4 +54,14 @@ public interface iCityReader {
      */
     List<iBusStopData> readCityStops();
 
+    /**
+     * Reads the city.xml file into its compiled form, which is validated.
+     * By default the {@link #readCityStops() read stops} are compiled.
+     * @return the compiled form of the city file
+     * @throws IllegalArgumentException if the data of the city file is invalid
+     */
+    default CompiledCity readCompiledCity() {
+        return CompiledCity.fromStopData(readCityStops());
+    }
+
 }
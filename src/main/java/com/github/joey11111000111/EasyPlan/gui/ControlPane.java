@@ -4,6 +4,7 @@ import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException
 import com.github.joey11111000111.EasyPlan.util.DayTime;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.concurrent.Task;
@@ -183,9 +184,13 @@ public class ControlPane {
     private void showService() {
         if (serviceChangeProperty != null)
             serviceChangeProperty.set(!serviceChangeProperty.get());
-        String name = controller.getName();
-        nameField.setText(name);
-        serviceComboBox.setValue(name);
+        serviceComboBox.setValue(controller.getName());
+        showServiceData();
+    }
+
+    // the spinners only call the controller with the values it already has, so nothing is modified
+    private void showServiceData() {
+        nameField.setText(controller.getName());
         // spinners
         DayTime firstLeaveTime = controller.getFirstLeaveTime();
         DayTime boundaryTime = controller.getBoundaryTime();
@@ -340,6 +345,13 @@ public class ControlPane {
         serviceChangeProperty = changeProperty;
     }
 
+    // the basic data of the service can be changed by an undo or redo
+    public void addHistoryProperty(ReadOnlyBooleanProperty historyProperty) {
+        if (historyProperty == null)
+            throw new NullPointerException("history property must not be null");
+        historyProperty.addListener((observable, oldValue, newValue) -> showServiceData());
+    }
+
     public void addTimetableHandler(EventHandler<ActionEvent> handler) {
         if (handler == null)
             throw new NullPointerException("timetable handler can not be null");
@@ -1,6 +1,6 @@
 package com.github.joey11111000111.EasyPlan.gui;
 
-import com.github.joey11111000111.EasyPlan.core.BusStop;
+import com.github.joey11111000111.EasyPlan.core.CityGraph;
 import javafx.animation.FadeTransition;
 import javafx.animation.ParallelTransition;
 import javafx.animation.Transition;
@@ -24,19 +24,26 @@ import javafx.util.Duration;
 import java.io.InputStream;
 import java.util.Arrays;
 
-import static com.github.joey11111000111.EasyPlan.gui.Start.LOGGER;
 import static com.github.joey11111000111.EasyPlan.gui.Start.controller;
 
 // CHECKSTYLE:OFF
 public class DrawStack {
 
-    private static final int ROW_COL_NUM = 10;
+    private static final int MIN_ROW_COL_NUM = 10;
+    private static final int MAX_ROW_COL_NUM = 40;     // larger cities are scaled into this many cells
+    private final int originX;
+    private final int originY;
+    private final int columnNum;
+    private final int rowNum;
+    private final double scaleX;                        // cells per coordinate unit
+    private final double scaleY;
     private DoubleProperty widthProperty;
     private DoubleProperty heightProperty;
     private DoubleProperty cellWidth;
     private DoubleProperty cellHeight;
     private StringProperty stopsStringProperty;
     private BooleanProperty serviceChangeProperty;
+    private BooleanProperty historyProperty;     // flipped after every undo and redo
 
     private int padding = 10;
     private Group root;
@@ -45,6 +52,7 @@ public class DrawStack {
     private Group directions;
     private Group stops;           // includes the bus station
 
+    private final CityGraph city;
     private MarkableShape[] allStops;
     private boolean animating;
     private Thread fadeInAllThread;
@@ -53,10 +61,23 @@ public class DrawStack {
     private static Color PATH_START = Color.rgb(254, 214, 0, .9);
     private static Color PATH_END = Color.rgb(245, 222, 179, .9);
 
-    public DrawStack(ReadOnlyDoubleProperty widthProperty,
+    public DrawStack(CityGraph city, ReadOnlyDoubleProperty widthProperty,
                      ReadOnlyDoubleProperty heightProperty) {
-        if (widthProperty == null || heightProperty == null)
+        if (city == null || widthProperty == null || heightProperty == null)
             throw new NullPointerException();
+        this.city = city;
+        // the grid covers at least the original 10x10 cells, and grows with the bounding box of the city,
+        // a bounding box larger than the maximum grid is scaled into it, without the empty space around it
+        long spanX = (long) city.getMaxX() - Math.min(0, city.getMinX());
+        long spanY = (long) city.getMaxY() - Math.min(0, city.getMinY());
+        originX = spanX < MAX_ROW_COL_NUM ? Math.min(0, city.getMinX()) : city.getMinX();
+        originY = spanY < MAX_ROW_COL_NUM ? Math.min(0, city.getMinY()) : city.getMinY();
+        spanX = (long) city.getMaxX() - originX;
+        spanY = (long) city.getMaxY() - originY;
+        columnNum = (int) Math.max(MIN_ROW_COL_NUM, Math.min(MAX_ROW_COL_NUM, spanX + 1));
+        rowNum = (int) Math.max(MIN_ROW_COL_NUM, Math.min(MAX_ROW_COL_NUM, spanY + 1));
+        scaleX = spanX < columnNum ? 1 : (columnNum - 1) / (double) spanX;
+        scaleY = spanY < rowNum ? 1 : (rowNum - 1) / (double) spanY;
 
         animating = false;
 
@@ -69,12 +90,13 @@ public class DrawStack {
         stopsStringProperty = new SimpleStringProperty();
         serviceChangeProperty = new SimpleBooleanProperty();
         serviceChangeProperty.addListener((observable, oldValue, newValue) -> showServiceData());
+        historyProperty = new SimpleBooleanProperty();
 
         // init cell sizes
         cellWidth = new SimpleDoubleProperty();
-        cellWidth.bind(widthProperty.subtract(padding * 2).divide(ROW_COL_NUM));
+        cellWidth.bind(widthProperty.subtract(padding * 2).divide(columnNum));
         cellHeight = new SimpleDoubleProperty();
-        cellHeight.bind(heightProperty.subtract(padding * 2).divide(ROW_COL_NUM));
+        cellHeight.bind(heightProperty.subtract(padding * 2).divide(rowNum));
 
         // init containers
         root = new Group();
@@ -82,10 +104,23 @@ public class DrawStack {
         lines = new Group();
         directions = new Group();
         stops = new Group();
-        // commit undo if the middle mouse button is pressed
+        // commit undo if the middle mouse button is pressed, and redo if shift is held down too,
+        // the other buttons edit the stop under the mouse, found through the spatial index of the city
         root.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
-            if (event.getButton() == MouseButton.MIDDLE && !animating && controller.canUndo())
-                undo();
+            if (event.getButton() == MouseButton.MIDDLE) {
+                if (event.isShiftDown())
+                    redo();
+                else
+                    undo();
+                return;
+            }
+            int id = stopAt(event.getX(), event.getY());
+            if (id < 0)
+                return;
+            if (event.getButton() == MouseButton.PRIMARY && !controller.isClosed())
+                addStop(id);
+            else if (event.getButton() == MouseButton.SECONDARY && !animating)
+                removeStop(id);
         });
 
         // load image and create background in a different thread
@@ -95,7 +130,7 @@ public class DrawStack {
         BusStopShape.radiusProperty().bind(widthProperty.divide(45)
                 .add(heightProperty.divide(40)));
         // init and fill allStops
-        allStops = new MarkableShape[BusStop.getStopCount()];
+        allStops = new MarkableShape[city.getStopCount()];
         for (int i = 0; i < allStops.length; i++) {
             allStops[i] = createStopShape(i);
             stops.getChildren().add(allStops[i].getRoot());
@@ -139,6 +174,29 @@ public class DrawStack {
         return bkgImage;
     }
 
+    private double gridX(int id) {
+        return ((long) city.getXCoordOf(id) - originX) * scaleX;
+    }
+
+    private double gridY(int id) {
+        return ((long) city.getYCoordOf(id) - originY) * scaleY;
+    }
+
+    // the stop whose shape is under the given point of the root, or -1 if there isn't any
+    private int stopAt(double x, double y) {
+        double cw = cellWidth.get();
+        double ch = cellHeight.get();
+        if (cw <= 0 || ch <= 0)
+            return -1;
+        // the station is not drawn at the center of its cell
+        if (allStops[0].getRoot().getBoundsInParent().contains(x, y))
+            return 0;
+        double cityX = originX + ((x - padding) / cw - .5) / scaleX;
+        double cityY = originY + ((y - padding) / ch - .5) / scaleY;
+        int id = city.nearestStop(cityX, cityY);
+        return allStops[id].getRoot().getBoundsInParent().contains(x, y) ? id : -1;
+    }
+
     private MarkableShape createStopShape(int id) {
         MarkableShape shape;
         if (id == 0)
@@ -147,8 +205,8 @@ public class DrawStack {
             shape = new BusStopShape(id);
         // bind to the specified coordinates
         Group stop = shape.getRoot();
-        int x = BusStop.getXCoordOf(id);
-        int y = BusStop.getYCoordOf(id);
+        double x = gridX(id);
+        double y = gridY(id);
         DoubleBinding shapeXProperty;
         DoubleBinding shapeYProperty;
         // create coordinate binding for the bus station
@@ -204,19 +262,6 @@ public class DrawStack {
         stop.translateXProperty().bind(shapeXProperty);
         stop.translateYProperty().bind(shapeYProperty);
 
-        // add event handler
-        stop.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
-            if (event == null) {
-                LOGGER.warn("mouse error, event is null");
-                return;
-            }
-            if (event.getButton() == MouseButton.PRIMARY && !controller.isClosed())
-                addStop(id);
-            else if (event.getButton() == MouseButton.SECONDARY && !animating) {
-                removeStop(id);
-            }
-        });
-
         return shape;
     }
 
@@ -271,7 +316,7 @@ public class DrawStack {
         yProperty.bind(station.getRoot().translateYProperty()
                 .add(station.heightProperty().divide(2)));
     }
-    private void bindToGridCenter(DoubleProperty xProperty, DoubleProperty yProperty, int xGrid, int yGrid) {
+    private void bindToGridCenter(DoubleProperty xProperty, DoubleProperty yProperty, double xGrid, double yGrid) {
         DoubleBinding xBind = new DoubleBinding() {
             {
                 super.bind(cellWidth, xProperty);
@@ -297,10 +342,10 @@ public class DrawStack {
     }//bindToGridCenter
 
     private void bindLineCoordinates(Line path, Line direction, int fromId, int toId) {
-        int fromX = BusStop.getXCoordOf(fromId);
-        int toX = BusStop.getXCoordOf(toId);
-        int fromY = BusStop.getYCoordOf(fromId);
-        int toY = BusStop.getYCoordOf(toId);
+        double fromX = gridX(fromId);
+        double toX = gridX(toId);
+        double fromY = gridY(fromId);
+        double toY = gridY(toId);
 
         if (fromId == 0) {
             bindToStationCenter(path.startXProperty(), path.startYProperty());
@@ -482,10 +527,25 @@ public class DrawStack {
         }
     }
 
-    private void undo() {
+    public void undo() {
+        if (!animating && controller.canUndo())
+            stepHistory(false);
+    }
+
+    public void redo() {
+        if (!animating && controller.canRedo())
+            stepHistory(true);
+    }
+
+    // the step can change the basic data instead of the stops, the listeners of the history property show them
+    private void stepHistory(boolean redo) {
         int[] stopsBefore = controller.getStops();
-        controller.undo();
+        if (redo)
+            controller.redo();
+        else
+            controller.undo();
         int[] stopsAfter = controller.getStops();
+        historyProperty.set(!historyProperty.get());
         if (stopsBefore.length - stopsAfter.length != 0)
             refreshStringProperty();
         // if stop(s) was/were added by the undo operation
@@ -497,9 +557,9 @@ public class DrawStack {
             }
             markStops();
         }
-        // if a stop was deleted by the undo operation
-        else if (stopsBefore.length - stopsAfter.length == 1) {
-            fadeOutLastLines(1);
+        // if stop(s) was/were deleted by the operation
+        else if (stopsBefore.length > stopsAfter.length) {
+            fadeOutLastLines(stopsBefore.length - stopsAfter.length);
             markStops();
         }
     }
@@ -524,4 +584,8 @@ public class DrawStack {
     public BooleanProperty serviceChangeProperty() {
         return serviceChangeProperty;
     }
+
+    public ReadOnlyBooleanProperty historyProperty() {
+        return historyProperty;
+    }
 }//class
@@ -1,44 +1,96 @@
 package com.github.joey11111000111.EasyPlan.gui;
 
+import com.github.joey11111000111.EasyPlan.core.CityGraph;
 import com.github.joey11111000111.EasyPlan.core.Controller;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 // CHECKSTYLE:OFF
 public class Start extends Application {
 
     static Controller controller;
+    private static CompletableFuture<Controller> controllerFuture;
     static Logger LOGGER = LoggerFactory.getLogger(Start.class);
+    private static volatile Start instance;
+    private static final KeyCombination UNDO_KEYS = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO_KEYS = new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination ALTERNATIVE_REDO_KEYS = new KeyCodeCombination(KeyCode.Z,
+            KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
     Stage stage;
     private Scene editorScene;
 
     public static void setController(Controller c) {
         if (c == null)
             throw new NullPointerException("given controller is null");
-        controller = c;
+        controllerFuture = CompletableFuture.completedFuture(c);
+    }
+
+    // the controller can still be loading, it is only waited for when the first scene is created
+    public static void setControllerFuture(CompletableFuture<Controller> future) {
+        if (future == null)
+            throw new NullPointerException("given controller future is null");
+        controllerFuture = future;
     }
 
     public static void start() {
-        if (controller == null)
+        if (controllerFuture == null)
             throw new IllegalStateException("controller is null, no connection to the underlying layers");
         Application.launch();
     }
 
 
+    // can be called from any thread, the city is replaced on the JavaFX thread and the editor is drawn again
+    public static void replaceCity(CityGraph city) {
+        if (city == null)
+            throw new NullPointerException("given city is null");
+        if (instance == null) {
+            LOGGER.warn("the GUI is not running, the new city is not used");
+            return;
+        }
+        Platform.runLater(() -> {
+            List<String> checkedServices = controller.replaceCity(city);
+            if (!checkedServices.isEmpty())
+                LOGGER.info("the stops of these services were checked in the new city: " + checkedServices);
+            boolean editorShown = instance.stage.getScene() == instance.editorScene;
+            instance.editorScene = instance.createEditorScene();
+            if (editorShown)
+                instance.stage.setScene(instance.editorScene);
+        });
+    }
+
     @Override
     public void start(Stage primaryStage) throws Exception {
+        long waitStart = System.nanoTime();
+        controller = controllerFuture.join();
+        LOGGER.info("the GUI waited " + (System.nanoTime() - waitStart) / 1000000 + " ms for the controller");
+
         stage = primaryStage;
         stage.setMinHeight(600);
         stage.setMinWidth(770);
 
+        editorScene = createEditorScene();
+        primaryStage.setScene(editorScene);
+        primaryStage.show();
+        instance = this;
+    }
+
+    private Scene createEditorScene() {
         GridPane root = new GridPane();
-        editorScene = new Scene(root, 770, 700);
+        Scene editorScene = stage.getScene() == null ? new Scene(root, 770, 700)
+                : new Scene(root, stage.getScene().getWidth(), stage.getScene().getHeight());
         // try to add the css styling to the editor scene
         try {
             editorScene.getStylesheets().add(Start.class.getClassLoader().
@@ -50,20 +102,27 @@ public class Start extends Application {
         // create draw stack for the bus service illustrations
         DoubleProperty widthProperty = new SimpleDoubleProperty();
         widthProperty.bind(editorScene.widthProperty().multiply(2.0 / 3));
-        DrawStack drawStack = new DrawStack(widthProperty, editorScene.heightProperty());
+        DrawStack drawStack = new DrawStack(controller.getCity(), widthProperty, editorScene.heightProperty());
 
         // create the control pane
         widthProperty = new SimpleDoubleProperty();
         widthProperty.bind(editorScene.widthProperty().multiply(1.0 / 3));
         ControlPane controlPane = new ControlPane(widthProperty, drawStack.stopsStringProperty());
         controlPane.addServiceChangeProperty(drawStack.serviceChangeProperty());
+        controlPane.addHistoryProperty(drawStack.historyProperty());
         controlPane.addTimetableHandler(event -> switchToTimetable());
 
         root.add(drawStack.getRoot(), 0, 0);
         root.add(controlPane.getRoot(), 1, 0);
 
-        primaryStage.setScene(editorScene);
-        primaryStage.show();
+        // undo and redo, unless a text field used the keys already
+        editorScene.setOnKeyPressed(event -> {
+            if (UNDO_KEYS.match(event))
+                drawStack.undo();
+            else if (REDO_KEYS.match(event) || ALTERNATIVE_REDO_KEYS.match(event))
+                drawStack.redo();
+        });
+        return editorScene;
     }
 
     private void switchToTimetable() {
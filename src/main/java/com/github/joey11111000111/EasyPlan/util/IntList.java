@@ -0,0 +1,271 @@
+package com.github.joey11111000111.EasyPlan.util;
+
+import java.util.Arrays;
+
+/**
+ * The IntList class is a growable list of primitive int values, stored in an array, with the capability of
+ * removing a part chain from the end of the list and appending it back later, like {@link OpenLinkedList}.
+ * Appending doesn't allocate anything while the array has free space, and the array only grows by doubling.
+ * <p>
+ * The current content of the list can be taken as a read-only {@link Snapshot}, without copying. The snapshot
+ * shares the array of the list, which is copied once, when the list would overwrite a shared element. As every
+ * modification happens at the end of the list, this only occurs when elements were removed and new ones
+ * are appended in their place, so the snapshots of a list that only grows are free.
+ */
+public class IntList {
+
+    /**
+     * A read-only view of the content of an {@link IntList} at the time the snapshot was taken.
+     * Later modifications of the list don't change the snapshot. Instances are immutable, so they are
+     * safe to share between threads.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The array that contains the elements, possibly shared with the list and other snapshots.
+         * Only the first {@link #size} elements belong to the snapshot.
+         */
+        private final int[] elements;
+
+        /**
+         * The number of elements in the snapshot.
+         */
+        private final int size;
+
+        /**
+         * Creates a view of the first given number of elements of the given array.
+         * @param elements the array that contains the elements
+         * @param size the number of elements in the snapshot
+         */
+        private Snapshot(int[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of elements in the snapshot.
+         * @return the number of elements in the snapshot
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the element at the given index.
+         * @param index the index of the element
+         * @return the element at the given index
+         * @throws IndexOutOfBoundsException if the index is negative, or not smaller than the size
+         */
+        public int get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("invalid snapshot index: " + index);
+            return elements[index];
+        }
+
+        /**
+         * Returns a new array with the elements of the snapshot.
+         * @return a new array with the elements of the snapshot, in their order
+         */
+        public int[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+    }//public static class
+
+    /**
+     * The array that contains the elements, only the first {@link #size} elements are used.
+     */
+    private int[] elements;
+
+    /**
+     * The number of elements in the list.
+     */
+    private int size;
+
+    /**
+     * The number of elements of the {@link #elements} array that are shared with {@link Snapshot snapshots},
+     * they must not be overwritten.
+     */
+    private int sharedSize;
+
+    /**
+     * Creates an empty list with the given initial capacity.
+     * @param initialCapacity the number of elements the list can contain before it grows
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public IntList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("the capacity cannot be negative: " + initialCapacity);
+        elements = new int[initialCapacity];
+    }
+
+    /**
+     * Creates a list with the content of the given snapshot, without copying the elements. As the array of the
+     * snapshot might be shared with other lists, that append after the elements of the snapshot, the whole
+     * array is considered shared, so it is copied once, by the first append to the new list.
+     * @param snapshot the content of the new list
+     * @throws NullPointerException if the given snapshot is null
+     */
+    public IntList(Snapshot snapshot) {
+        if (snapshot == null)
+            throw new NullPointerException("the given snapshot is null");
+        elements = snapshot.elements;
+        size = snapshot.size;
+        sharedSize = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of elements in the list.
+     * @return the number of elements in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true, if the list doesn't contain any elements.
+     * @return true, if the list is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the element at the given index.
+     * @param index the index of the element
+     * @return the element at the given index
+     * @throws IndexOutOfBoundsException if the index is negative, or not smaller than the size
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("invalid list index: " + index);
+        return elements[index];
+    }
+
+    /**
+     * Returns the last element of the list.
+     * @return the last element of the list
+     * @throws IllegalStateException when the list is empty
+     */
+    public int getLast() {
+        if (size == 0)
+            throw new IllegalStateException("the list is empty");
+        return elements[size - 1];
+    }
+
+    /**
+     * Returns the index of the last occurrence of the given element.
+     * @param element the element to search
+     * @return the highest index of the element, or -1 if the list doesn't contain it
+     */
+    public int lastIndexOf(int element) {
+        for (int i = size - 1; i >= 0; i--)
+            if (elements[i] == element)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Makes sure that the given number of elements can be appended to the list without overwriting
+     * an element that is shared with a snapshot.
+     * @param count the number of elements that will be appended
+     */
+    private void prepareAppend(int count) {
+        int newSize = size + count;
+        if (newSize > elements.length)
+            elements = Arrays.copyOf(elements, Math.max(newSize, Math.max(4, 2 * elements.length)));
+        else if (size < sharedSize)
+            elements = elements.clone();
+        else
+            return;
+        sharedSize = 0;
+    }
+
+    /**
+     * Appends the given element to the end of the list.
+     * @param element the element to append
+     */
+    public void append(int element) {
+        prepareAppend(1);
+        elements[size++] = element;
+    }
+
+    /**
+     * Appends all the given elements to the end of the list, in their order.
+     * @param chain the elements to append
+     * @throws NullPointerException if the given array is null
+     */
+    public void appendAll(int[] chain) {
+        if (chain == null)
+            throw new NullPointerException("cannot append null to the list");
+        prepareAppend(chain.length);
+        System.arraycopy(chain, 0, elements, size, chain.length);
+        size += chain.length;
+    }
+
+    /**
+     * Removes the last element of the list and returns it.
+     * @return the last element of the list
+     * @throws IllegalStateException when the list is empty
+     */
+    public int removeLast() {
+        if (size == 0)
+            throw new IllegalStateException("the list is empty");
+        return elements[--size];
+    }
+
+    /**
+     * Removes the element at the specified index, with all the following elements, and returns them.
+     * The size of the modified list will be 'index'.
+     * @param index specifies the first element to remove
+     * @return a new array with the removed elements, in their order
+     * @throws IndexOutOfBoundsException when the specified index is out of range
+     */
+    public int[] removeFrom(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("invalid list index: " + index);
+        int[] chain = Arrays.copyOfRange(elements, index, size);
+        size = index;
+        return chain;
+    }
+
+    /**
+     * Removes the elements from the given index to the end of the list, without returning them.
+     * @param newSize the number of elements to keep
+     * @throws IndexOutOfBoundsException if the new size is negative or greater than the size
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size)
+            throw new IndexOutOfBoundsException("invalid list size: " + newSize);
+        size = newSize;
+    }
+
+    /**
+     * Returns a new array with the elements of the list from the given index to the end of the list.
+     * @param fromIndex the index of the first element to return
+     * @return a new array with the elements from the given index, in their order
+     * @throws IndexOutOfBoundsException if the index is negative or greater than the size
+     */
+    public int[] toArray(int fromIndex) {
+        if (fromIndex < 0 || fromIndex > size)
+            throw new IndexOutOfBoundsException("invalid list index: " + fromIndex);
+        return Arrays.copyOfRange(elements, fromIndex, size);
+    }
+
+    /**
+     * Returns a new array with all the elements of the list.
+     * @return a new array with the elements of the list, in their order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Returns a read-only view of the current content of the list, without copying the elements.
+     * @return a snapshot of the list
+     */
+    public Snapshot snapshot() {
+        sharedSize = Math.max(sharedSize, size);
+        return new Snapshot(elements, size);
+    }
+
+}//class
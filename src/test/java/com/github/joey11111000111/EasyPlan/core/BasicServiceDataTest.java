@@ -5,6 +5,10 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class BasicServiceDataTest {
 
     BasicServiceData bsd;
@@ -158,6 +162,41 @@ public class BasicServiceDataTest {
         // markAsSaved again should have no effect
         bsd.markAsSaved();
         assertFalse(bsd.isModified());
+
+        // the DayTime setters are modifications too, so what can be undone is never unapplied
+        bsd.setFirstLeaveTime(new DayTime(9, 30));
+        assertTrue(bsd.isModified());
+        bsd.markAsSaved();
+        bsd.setBoundaryTime(new DayTime(20, 0));
+        assertTrue(bsd.isModified());
+        bsd.markAsSaved();
+        bsd.setBoundaryTime(new DayTime(20, 0));
+        assertFalse(bsd.isModified());
+    }
+
+    @Test
+    public void testTimeBands() {
+        assertTrue(bsd.getTimeBands().isEmpty());
+        List<TimeBand> bands = Arrays.asList(new TimeBand(new DayTime(7, 0), 5), new TimeBand(new DayTime(9, 0), 15));
+        bsd.setTimeBands(bands);
+        assertTrue(bsd.isModified());
+        assertEquals(bands, bsd.getTimeBands());
+        bsd.markAsSaved();
+        bsd.setTimeBands(new ArrayList<>(bands));
+        assertFalse(bsd.isModified());
+
+        try {
+            bsd.setTimeBands(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            bsd.setTimeBands(Arrays.asList(new TimeBand(new DayTime(7, 0), 5), new TimeBand(new DayTime(7, 0), 6)));
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            bsd.getTimeBands().clear();
+            assertTrue(false);
+        } catch (UnsupportedOperationException uoe) {}
     }
 
 }//class
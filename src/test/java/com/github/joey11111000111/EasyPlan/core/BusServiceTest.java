@@ -106,6 +106,48 @@ public class BusServiceTest {
         assertEquals(6, ts.getLastStop());
     }
     
+    @Test
+    public void testAppliedRoute() {
+        BusService bs = new BusService();
+        TouchedStops ts = bs.getCurrentStops();
+        assertArrayEquals(new int[] {0}, bs.getAppliedRoute().getStops());
+
+        ts.appendStop(1);
+        ts.appendStop(4);
+        bs.applyChanges();
+        Route route = bs.getAppliedRoute();
+        assertArrayEquals(new int[] {0, 1, 4}, route.getStops());
+        assertArrayEquals(new int[] {8, 21}, route.getTravelTimes());
+        assertEquals(21, route.getTravelTime(2));
+        assertFalse(route.isClosed());
+
+        // the applied route doesn't change with the buffer
+        ts.removeChainFrom(1);
+        ts.appendStop(4);
+        assertArrayEquals(new int[] {0, 1, 4}, route.getStops());
+        assertSame(route, bs.getAppliedRoute());
+
+        assertTrue(bs.discardChanges());
+        assertArrayEquals(new int[] {0, 1, 4}, ts.getStops());
+        assertArrayEquals(new int[] {8, 21}, ts.getTravelTimes());
+        assertEquals(1, ts.getOccurrenceCount(4));
+        assertEquals(0, ts.getOccurrenceCount(6));
+        assertFalse(ts.isModified());
+        assertFalse(ts.canUndo());
+
+        // the restored buffer still follows the rules, and doesn't change the route
+        ts.removeChainFrom(4);
+        ts.appendStop(0);
+        assertTrue(ts.isClosed());
+        assertEquals(0, ts.getOccurrenceCount(4));
+        assertEquals(2, ts.getOccurrenceCount(0));
+        assertArrayEquals(new int[] {0, 1, 4}, route.getStops());
+        assertArrayEquals(new int[] {0, 8, 21}, route.getTravelTimesView().toArray());
+        bs.discardChanges();
+        assertEquals(1, ts.getOccurrenceCount(4));
+        assertEquals(1, ts.getOccurrenceCount(0));
+    }
+
     @Test
     public void testTimetableCreation() {
         BusService bs = new BusService();
@@ -121,6 +163,47 @@ public class BusServiceTest {
         // no exceptions means pass
     }
 
+    @Test
+    public void testTimetableCache() {
+        BusService bs = new BusService();
+        TouchedStops ts = bs.getCurrentStops();
+        BasicServiceData bsd = bs.getCurrentServiceData();
+        assertFalse(bs.hasCachedTimetable());
+
+        iTimetable timetable = bs.getTimetable();
+        assertTrue(bs.hasCachedTimetable());
+        assertSame(timetable, bs.getTimetable());
+
+        // every kind of modification invalidates the timetable
+        ts.appendStop(4);
+        assertFalse(bs.hasCachedTimetable());
+        timetable = bs.getTimetable();
+        assertEquals(2, timetable.getStopTimes().size());
+        assertSame(timetable, bs.getTimetable());
+
+        ts.undo();
+        assertFalse(bs.hasCachedTimetable());
+        assertEquals(1, bs.getTimetable().getStopTimes().size());
+
+        bsd.setTimeGap(30);
+        assertFalse(bs.hasCachedTimetable());
+        assertEquals(30, bs.getTimetable().getTimeGap());
+
+        bsd.setName("22Y");
+        assertFalse(bs.hasCachedTimetable());
+        assertEquals("22Y", bs.getTimetable().getServiceName());
+
+        // restoring the data through discard also invalidates it
+        bs.discardChanges();
+        assertFalse(bs.hasCachedTimetable());
+        assertEquals(10, bs.getTimetable().getTimeGap());
+
+        // setting the same value is not a modification
+        bsd.setTimeGap(10);
+        bsd.setFirstLeaveTime(new DayTime(8, 0));
+        assertTrue(bs.hasCachedTimetable());
+    }
+
     @Test
     public void testEqualsAndHashCode() {
         BusService bs1 = new BusService();
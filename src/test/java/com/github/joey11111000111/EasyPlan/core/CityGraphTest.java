@@ -0,0 +1,331 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException;
+import com.github.joey11111000111.EasyPlan.dao.BusStopData;
+import com.github.joey11111000111.EasyPlan.dao.CompiledCity;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
+import com.github.joey11111000111.EasyPlan.util.IntList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CityGraphTest {
+
+    private iBusStopData createStop(int id, Map<Integer, Integer> reachables) {
+        iBusStopData stop = new BusStopData();
+        stop.setId(id);
+        stop.setX(id % 10);
+        stop.setY(id / 10 % 10);
+        stop.setReachableStops(reachables);
+        return stop;
+    }
+
+    // a ring of stops: every stop goes to the next one, the travel time is the id of the target plus one
+    private List<iBusStopData> createRing(int stopCount) {
+        List<iBusStopData> stops = new ArrayList<>();
+        for (int id = 0; id < stopCount; id++) {
+            Map<Integer, Integer> reachables = new HashMap<>();
+            reachables.put((id + 1) % stopCount, (id + 1) % stopCount + 1);
+            stops.add(createStop(id, reachables));
+        }
+        return stops;
+    }
+
+    private List<Map<Integer, Integer>> randomCity(Random random, int stopCount) {
+        List<Map<Integer, Integer>> roads = new ArrayList<>();
+        for (int id = 0; id < stopCount; id++) {
+            Map<Integer, Integer> reachables = new HashMap<>();
+            int count = 1 + random.nextInt(Math.min(6, stopCount));
+            while (reachables.size() < count)
+                reachables.put(random.nextInt(stopCount), 1 + random.nextInt(30));
+            roads.add(reachables);
+        }
+        return roads;
+    }
+
+    private void assertSameRoads(List<Map<Integer, Integer>> roads, CityGraph city) {
+        assertEquals(roads.size(), city.getStopCount());
+        int roadCount = 0;
+        for (int from = 0; from < roads.size(); from++) {
+            Map<Integer, Integer> reachables = roads.get(from);
+            roadCount += reachables.size();
+            int[] ids = city.getReachableIdsOf(from);
+            assertEquals(reachables.size(), ids.length);
+            assertEquals(reachables.size(), city.getReachableCountOf(from));
+            for (int i = 1; i < ids.length; i++)
+                assertTrue(ids[i - 1] < ids[i]);
+            for (int to = 0; to < roads.size(); to++) {
+                assertEquals(reachables.containsKey(to), city.isReachableToFrom(to, from));
+                if (reachables.containsKey(to))
+                    assertEquals((int) reachables.get(to), city.travelTimeToFrom(to, from));
+            }
+        }
+        assertEquals(roadCount, city.getRoadCount());
+    }
+
+    @Test
+    public void testDefaultCity() {
+        CityGraph city = CityGraph.getDefault();
+        assertSame(city, CityGraph.getDefault());
+        assertEquals(BusStop.getStopCount(), city.getStopCount());
+        for (int from = 0; from < city.getStopCount(); from++) {
+            assertEquals(BusStop.getXCoordOf(from), city.getXCoordOf(from));
+            assertEquals(BusStop.getYCoordOf(from), city.getYCoordOf(from));
+            for (int to = 0; to < city.getStopCount(); to++)
+                assertEquals(BusStop.isReachableToFrom(to, from), city.isReachableToFrom(to, from));
+        }
+        assertEquals(8, city.travelTimeToFrom(1, 0));
+        assertEquals(13, city.travelTimeToFrom(4, 1));
+    }
+
+    @Test
+    public void testDenseAndSparseLookups() {
+        Random random = new Random(42);
+        // the small city has a dense matrix, the large one only the sparse rows
+        for (int stopCount : new int[]{1, 16, CityGraph.DENSE_MATRIX_MAX_STOPS + 50}) {
+            List<Map<Integer, Integer>> roads = randomCity(random, stopCount);
+            List<iBusStopData> stops = new ArrayList<>();
+            for (int id = 0; id < stopCount; id++)
+                stops.add(createStop(id, roads.get(id)));
+            Collections.shuffle(stops, random);
+            assertSameRoads(roads, CityGraph.fromStopData(stops));
+        }
+    }
+
+    @Test
+    public void testReachableIdsExcept() {
+        Random random = new Random(17);
+        // both forms of every city give the same stops, with the bitsets and road by road
+        for (int stopCount : new int[]{1, 70, CityGraph.REACHABLE_BITS_MAX_STOPS + 1}) {
+            List<Map<Integer, Integer>> roads = randomCity(random, stopCount);
+            List<iBusStopData> stops = new ArrayList<>();
+            for (int id = 0; id < stopCount; id++)
+                stops.add(createStop(id, roads.get(id)));
+            CompiledCity compiledCity = CompiledCity.fromStopData(stops);
+            long[] excluded = new long[(stopCount + 63) / 64];
+            for (int i = 0; i < stopCount / 3; i++) {
+                int id = random.nextInt(stopCount);
+                excluded[id / 64] |= 1L << id;
+            }
+            for (boolean withReachableBits : new boolean[]{true, false}) {
+                CityGraph city = CityGraph.fromCompiledCity(compiledCity, withReachableBits);
+                assertEquals(withReachableBits, city.hasReachableBits());
+                assertEquals(excluded.length, city.getWordCount());
+                for (int from = 0; from < stopCount; from += 1 + stopCount / 200) {
+                    int[] ids = city.getReachableIdsExcept(from, excluded);
+                    int count = 0;
+                    for (int to : city.getReachableIdsOf(from))
+                        if ((excluded[to / 64] & 1L << to) == 0)
+                            assertEquals(to, ids[count++]);
+                    assertEquals(count, ids.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReachableBitsChoice() {
+        // the bitsets are only built when the stops have at least as many roads as the long values in a row
+        assertTrue(CityGraph.getDefault().hasReachableBits());
+        assertTrue(CityGraph.usesReachableBits(64, 64));
+        assertFalse(CityGraph.usesReachableBits(64, 63));
+        assertTrue(CityGraph.usesReachableBits(CityGraph.REACHABLE_BITS_MAX_STOPS,
+                CityGraph.REACHABLE_BITS_MAX_STOPS * CityGraph.REACHABLE_BITS_MAX_STOPS / 64));
+        assertFalse(CityGraph.usesReachableBits(CityGraph.REACHABLE_BITS_MAX_STOPS,
+                CityGraph.REACHABLE_BITS_MAX_STOPS * 6));
+        assertFalse(CityGraph.usesReachableBits(CityGraph.REACHABLE_BITS_MAX_STOPS + 1, Integer.MAX_VALUE));
+        Random random = new Random(5);
+        List<Map<Integer, Integer>> roads = randomCity(random, 1000);
+        List<iBusStopData> stops = new ArrayList<>();
+        for (int id = 0; id < roads.size(); id++)
+            stops.add(createStop(id, roads.get(id)));
+        assertFalse(CityGraph.fromStopData(stops).hasReachableBits());
+    }
+
+    @Test
+    public void testSelfLoopAppearsTwice() {
+        Map<Integer, Integer> stationRoads = new HashMap<>();
+        stationRoads.put(1, 3);
+        Map<Integer, Integer> loopRoads = new HashMap<>();
+        loopRoads.put(0, 3);
+        loopRoads.put(1, 1);
+        List<iBusStopData> stops = new ArrayList<>();
+        stops.add(createStop(0, stationRoads));
+        stops.add(createStop(1, loopRoads));
+        TouchedStops touched = new TouchedStops(CityGraph.fromStopData(stops));
+        touched.appendStop(1);
+        assertArrayEquals(new int[]{0, 1}, touched.getReachableStopIds());
+        touched.appendStop(1);
+        assertArrayEquals(new int[]{0}, touched.getReachableStopIds());
+        try {
+            touched.appendStop(1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        touched.undo();
+        assertArrayEquals(new int[]{0, 1}, touched.getReachableStopIds());
+        touched.appendStop(1);
+        touched.removeChainFrom(1);
+        assertArrayEquals(new int[]{0, 1}, touched.getReachableStopIds());
+        touched.undo();
+        assertArrayEquals(new int[]{0}, touched.getReachableStopIds());
+    }
+
+    @Test
+    public void testCustomCityInServices() {
+        CityGraph ring = CityGraph.fromStopData(createRing(5));
+        TouchedStops stops = new TouchedStops(ring);
+        assertArrayEquals(new int[]{1}, stops.getReachableStopIds());
+        for (int id = 1; id < 5; id++)
+            stops.appendStop(id);
+        stops.appendStop(0);
+        assertTrue(stops.isClosed());
+        assertArrayEquals(new int[]{2, 5, 9, 14, 15}, stops.getTravelTimes());
+        try {
+            new TouchedStops(ring).appendStop(2);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+
+        Core core = new Core(ring);
+        assertSame(ring, core.getCity());
+        core.createNewService();
+        core.appendStop(1);
+        core.appendStop(2);
+        try {
+            core.applyChanges();
+        } catch (NameConflictException nce) {
+            assertTrue(false);
+        }
+        assertEquals(2 + 3, core.getTimetableOf(core.getName()).getTotalTravelTime().getTimeAsMinutes());
+        assertEquals(8 * 60 + 2 + 3, core.createJourneyPlanner().earliestArrival(0, 2, 8 * 60, 0));
+    }
+
+    @Test
+    public void testLargeCoordinates() {
+        List<iBusStopData> stops = createRing(4);
+        int[][] positions = {{-500, 20}, {12000, -7}, {40, 40}, {41, 39}};
+        for (int id = 0; id < positions.length; id++) {
+            stops.get(id).setX(positions[id][0]);
+            stops.get(id).setY(positions[id][1]);
+        }
+        CityGraph city = CityGraph.fromStopData(stops);
+        assertEquals(-500, city.getMinX());
+        assertEquals(12000, city.getMaxX());
+        assertEquals(-7, city.getMinY());
+        assertEquals(40, city.getMaxY());
+        assertEquals(12000, city.getXCoordOf(1));
+        assertEquals(0, city.nearestStop(-10000, 0));
+        assertEquals(1, city.nearestStop(11000.5, 3));
+        assertEquals(2, city.nearestStop(40.4, 40));
+        assertEquals(3, city.nearestStop(40.7, 39.6));
+        assertArrayEquals(new int[] {2, 3}, city.stopsInRectangle(0, 0, 100, 100));
+        assertArrayEquals(new int[] {0, 2, 3}, city.stopsInRectangle(-500, 0, 41, 40));
+
+        CityGraph defaultCity = CityGraph.getDefault();
+        for (int id = 0; id < defaultCity.getStopCount(); id++)
+            assertEquals(id, defaultCity.nearestStop(defaultCity.getXCoordOf(id), defaultCity.getYCoordOf(id)));
+    }
+
+    @Test
+    public void testInvalidData() {
+        try {
+            CityGraph.fromStopData(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            CityGraph.fromStopData(new ArrayList<>());
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            new TouchedStops(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            new Core(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+
+        // duplicate id
+        List<iBusStopData> stops = createRing(3);
+        stops.get(2).setId(1);
+        try {
+            CityGraph.fromStopData(stops);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // reachable stop that doesn't exist
+        stops = createRing(3);
+        stops.get(1).addReachableStop(3, 5);
+        try {
+            CityGraph.fromStopData(stops);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // no travel time
+        stops = createRing(3);
+        stops.get(1).addReachableStop(0, 0);
+        try {
+            CityGraph.fromStopData(stops);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // no reachable stops
+        stops = createRing(3);
+        stops.get(1).setReachableStops(new HashMap<>());
+        try {
+            CityGraph.fromStopData(stops);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+
+        CityGraph city = CityGraph.fromStopData(createRing(3));
+        try {
+            city.travelTimeToFrom(0, 1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            city.isReachableToFrom(3, 0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            city.getReachableIdsOf(-1);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+    }
+
+    @Test
+    public void testCityDiff() {
+        CityGraph ring = CityGraph.fromStopData(createRing(5));
+        CityDiff diff = CityDiff.between(ring, CityGraph.fromStopData(createRing(5)));
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getChangedStopIds().length);
+
+        // a new road, a changed travel time and a new stop
+        List<iBusStopData> stops = createRing(6);
+        stops.get(1).addReachableStop(3, 4);
+        stops.get(2).addReachableStop(3, 9);
+        stops.get(4).addReachableStop(0, 1);
+        stops.get(5).addReachableStop(0, 1);
+        diff = CityDiff.between(ring, CityGraph.fromStopData(stops));
+        assertFalse(diff.isEmpty());
+        assertEquals(4, diff.getChangedCount());
+        assertArrayEquals(new int[] {1, 2, 4, 5}, diff.getChangedStopIds());
+        assertTrue(diff.isChanged(5));
+        assertFalse(diff.isChanged(0));
+        assertFalse(diff.isChanged(64));
+        assertFalse(diff.isChanged(-1));
+        IntList route = new IntList(4);
+        route.append(0);
+        route.append(3);
+        assertFalse(diff.touchesAny(route.snapshot()));
+        route.append(2);
+        assertTrue(diff.touchesAny(route.snapshot()));
+        try {
+            CityDiff.between(ring, null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+}
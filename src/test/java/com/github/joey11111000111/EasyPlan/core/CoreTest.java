@@ -3,6 +3,8 @@ package com.github.joey11111000111.EasyPlan.core;
 import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException;
 import com.github.joey11111000111.EasyPlan.core.exceptions.NoSelectedServiceException;
 import com.github.joey11111000111.EasyPlan.dao.ObjectIO;
+import com.github.joey11111000111.EasyPlan.dao.StaxCityReader;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
 import com.github.joey11111000111.EasyPlan.util.DayTime;
 import org.junit.After;
 import org.junit.Before;
@@ -11,7 +13,10 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -295,9 +300,221 @@ public class CoreTest {
         core.appendStop(1);
         iTimetable timetable = core.getTimetableOf(core.getName());
         // no problem means pass
+    }
+
+    @Test
+    public void testTimetableCacheCounters() {
+        core.createNewService();
+        String name = core.getName();
+        assertEquals(0, core.getTimetableCacheHits());
+        assertEquals(0, core.getTimetableCacheMisses());
+
+        iTimetable timetable = core.getTimetableOf(name);
+        assertSame(timetable, core.getTimetableOf(name));
+        assertSame(timetable, core.getTimetableOf(name));
+        assertEquals(2, core.getTimetableCacheHits());
+        assertEquals(1, core.getTimetableCacheMisses());
+
+        core.appendStop(1);
+        assertNotSame(timetable, core.getTimetableOf(name));
+        assertEquals(2, core.getTimetableCacheHits());
+        assertEquals(2, core.getTimetableCacheMisses());
 
 
 
     }
     
+    @Test
+    public void testAllTimetables() {
+        assertTrue(core.getAllTimetables().isEmpty());
+        for (int i = 0; i < 20; i++) {
+            core.createNewService();
+            core.appendStop(1 + (i % 2) * 3);
+        }
+        String[] names = core.getServiceNames();
+        for (int parallelism : new int[]{1, 4}) {
+            core.setTimetableParallelism(parallelism);
+            assertEquals(parallelism, core.getTimetableParallelism());
+            List<iTimetable> timetables = core.getAllTimetables();
+            assertEquals(names.length, timetables.size());
+            for (int i = 0; i < names.length; i++)
+                assertSame(core.getTimetableOf(names[i]), timetables.get(i));
+        }
+
+        List<String> streamedNames = new ArrayList<>();
+        core.forEachTimetable(timetable -> streamedNames.add(timetable.getServiceName()));
+        assertEquals(Arrays.asList(names), streamedNames);
+
+        testForException(core::setTimetableParallelism, 0, IllegalArgumentException.class);
+        testForException(core::forEachTimetable, null, NullPointerException.class);
+    }
+
+    @Test
+    public void testParallelismChangedWhileCreatingTimetables() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            core.createNewService();
+            core.appendStop(1 + (i % 2) * 3);
+        }
+        int serviceCount = core.getServiceNames().length;
+        AtomicBoolean done = new AtomicBoolean();
+        Thread changer = new Thread(() -> {
+            for (int parallelism = 1; !done.get(); parallelism = parallelism % 4 + 1)
+                core.setTimetableParallelism(parallelism);
+        });
+        changer.start();
+        try {
+            // a pool shut down during the submission would reject the tasks
+            for (int i = 0; i < 2000; i++)
+                assertEquals(serviceCount, core.getAllTimetables().size());
+        } finally {
+            done.set(true);
+            changer.join();
+        }
+    }
+
+    @Test
+    public void testNextDepartures() {
+        core.createNewService();
+        core.appendStop(4);
+        core.appendStop(0);
+        assertTrue(core.getNextDepartures(4, new DayTime(8, 0), 3).isEmpty());
+        tryApplyChanges(SHOULD_PASS);
+        List<Departure> departures = core.getNextDepartures(4, new DayTime(8, 0), 3);
+        assertEquals(3, departures.size());
+        assertEquals(new DayTime(8, 6), departures.get(0).getTime());
+        assertEquals(new DayTime(8, 16), departures.get(1).getTime());
+
+        core.setName("22Y");
+        core.setTimeGap(30);
+        tryApplyChanges(SHOULD_PASS);
+        departures = core.getNextDepartures(4, new DayTime(8, 10), 1);
+        assertEquals("22Y", departures.get(0).getServiceName());
+        assertEquals(new DayTime(8, 36), departures.get(0).getTime());
+
+        core.deleteSelectedService();
+        assertTrue(core.getNextDepartures(4, new DayTime(8, 0), 3).isEmpty());
+        testForException(() -> core.getNextDepartures(4, null, 1), NullPointerException.class);
+    }
+
+    @Test
+    public void testJourneyPlanner() {
+        core.createNewService();
+        core.appendStop(4);
+        assertEquals(0, core.createJourneyPlanner().getRouteCount());
+        tryApplyChanges(SHOULD_PASS);
+        JourneyPlanner planner = core.createJourneyPlanner();
+        assertEquals(1, planner.getRouteCount());
+        assertEquals(8 * 60 + 6, planner.earliestArrival(0, 4, 8 * 60, 0));
+    }
+
+    @Test
+    public void testScheduleVehicles() {
+        core.createNewService();
+        core.appendStop(1);
+        core.appendStop(0);
+        assertEquals(0, core.scheduleVehicles(0).getTripCount());
+        tryApplyChanges(SHOULD_PASS);
+        String first = core.getName();
+        core.createNewService();
+        core.appendStop(1);
+        core.appendStop(0);
+        core.setFirstLeaveMinute(5);
+        tryApplyChanges(SHOULD_PASS);
+
+        int duration = 8 + BusStop.travelTimeToFrom(0, 1);
+        int alone = (duration + 9) / 10;
+        assertEquals(2, core.scheduleVehiclesByService(0).size());
+        assertEquals(alone, core.scheduleVehiclesByService(0).get(first).getVehicleCount());
+        VehicleSchedule network = core.scheduleVehicles(0);
+        assertEquals(61 + 60, network.getTripCount());
+        assertTrue(network.getVehicleCount() <= 2 * alone);
+        try {
+            core.scheduleVehicles(-1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    @Test
+    public void testReplaceCity() {
+        core.createNewService();
+        core.setName("A");
+        core.appendStop(2);
+        core.appendStop(0);
+        tryApplyChanges(SHOULD_PASS);
+        core.createNewService();
+        core.setName("B");
+        core.appendStop(1);
+        core.appendStop(4);
+        core.appendStop(0);
+        tryApplyChanges(SHOULD_PASS);
+        core.removeChainFrom(0);
+        assertTrue(core.isModified());
+
+        // the same city again changes nothing
+        CityGraph oldCity = core.getCity();
+        assertTrue(core.replaceCity(CityGraph.fromStopData(new StaxCityReader().readCityStops())).isEmpty());
+        assertNotSame(oldCity, core.getCity());
+        assertTrue(core.isModified());
+
+        // without the road from 2 to the station, A is cut and B is unchanged
+        List<iBusStopData> stops = new StaxCityReader().readCityStops();
+        for (iBusStopData stop : stops)
+            if (stop.getId() == 2)
+                stop.getReachableStops().remove(0);
+        CityGraph newCity = CityGraph.fromStopData(stops);
+        assertEquals(Arrays.asList("A"), core.replaceCity(newCity));
+        assertSame(newCity, core.getCity());
+        assertFalse(core.isSaved());
+        assertEquals("B", core.getName());
+        assertTrue(core.isModified());
+        assertTrue(core.canUndo());
+        core.undo();
+        assertArrayEquals(new int[] {0, 1, 4, 0}, core.getStops());
+
+        core.selectService("A");
+        assertArrayEquals(new int[] {0, 2}, core.getStops());
+        assertFalse(core.isModified());
+        assertFalse(core.isClosed());
+        assertEquals(5, core.getTimetableOf("A").getTotalTravelTime().getTimeAsMinutes());
+        assertTrue(core.getNextDepartures(2, new DayTime(8, 0), 1).isEmpty());
+        assertEquals("A", core.getNextDepartures(0, new DayTime(8, 0), 1).get(0).getServiceName());
+        try {
+            core.appendStop(0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            core.replaceCity(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+    @Test
+    public void testUndoAndRedo() {
+        testForException(core::redo, NoSelectedServiceException.class);
+        core.createNewService();
+        assertFalse(core.canUndo());
+        core.undo();        // nothing to undo
+        core.setName("A");
+        core.appendStop(2);
+        core.setTimeGap(25);
+        core.undo();
+        assertEquals(10, core.getTimeGap());
+        core.undo();
+        assertEquals(1, core.getStopCount());
+        assertTrue(core.canRedo());
+        core.redo();
+        assertArrayEquals(new int[] {0, 2}, core.getStops());
+        core.setTimeGap(30);
+        assertFalse(core.canRedo());
+        core.redo();        // nothing to redo
+        assertEquals(30, core.getTimeGap());
+        core.undo();
+        core.undo();
+        core.undo();
+        assertEquals("new service", core.getName());
+        tryApplyChanges(SHOULD_PASS);
+        assertFalse(core.canUndo());
+        assertFalse(core.canRedo());
+    }
+
 }//class
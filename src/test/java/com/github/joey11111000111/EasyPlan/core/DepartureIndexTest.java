@@ -0,0 +1,109 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.joey11111000111.EasyPlan.core.TimetableFixtures.*;
+import static org.junit.Assert.*;
+
+public class DepartureIndexTest {
+
+    private List<String> bruteForce(List<VirtualTimetable> timetables, int stopId, int fromMinutes, int count) {
+        List<int[]> found = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (VirtualTimetable tt : timetables)
+            for (int stop = 0; stop < tt.getStopCount() - 1; stop++) {
+                if (tt.getStopId(stop) != stopId)
+                    continue;
+                for (int bus = 0; bus < tt.getBusCount(); bus++) {
+                    int wait = Math.floorMod(tt.getMinutesAt(stop, bus) - fromMinutes, 24 * 60);
+                    found.add(new int[]{wait, names.size()});
+                    names.add(tt.getServiceName());
+                }
+            }
+        Collections.sort(found, (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : names.get(a[1]).compareTo(names.get(b[1])));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, found.size()); i++)
+            result.add(names.get(found.get(i)[1]) + "@" + (fromMinutes + found.get(i)[0]) % (24 * 60));
+        return result;
+    }
+
+    private List<String> asStrings(List<Departure> departures) {
+        List<String> result = new ArrayList<>();
+        for (Departure departure : departures)
+            result.add(departure.getServiceName() + "@" + departure.getTimeAsMinutes());
+        return result;
+    }
+
+    @Test
+    public void testOverMidnight() {
+        DepartureIndex index = new DepartureIndex();
+        index.putService("22Y", createTimetable("22Y", new DayTime(23, 0), new DayTime(1, 0), 30,
+                new int[]{0, 4, 0}));
+        List<Departure> departures = index.nextDepartures(4, 23 * 60 + 10, 10);
+        assertEquals(5, departures.size());
+        assertEquals(new DayTime(23, 36), departures.get(0).getTime());
+        assertEquals(1, departures.get(0).getBusIndex());
+        assertEquals(new DayTime(0, 6), departures.get(1).getTime());
+        assertEquals(new DayTime(0, 36), departures.get(2).getTime());
+        assertEquals(new DayTime(1, 6), departures.get(3).getTime());
+        // the first bus of the day comes last
+        assertEquals(new DayTime(23, 6), departures.get(4).getTime());
+        assertEquals(0, departures.get(4).getBusIndex());
+
+        // the last stop is not a departure
+        assertTrue(index.nextDepartures(0, 0, 10).size() == 5);
+        assertTrue(index.nextDepartures(6, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testSameAsBruteForce() {
+        Random random = new Random(7);
+        DepartureIndex index = new DepartureIndex();
+        List<VirtualTimetable> timetables = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            VirtualTimetable tt = createTimetable("service" + i, new DayTime(random.nextInt(24 * 60)),
+                    new DayTime(random.nextInt(24 * 60)), 1 + random.nextInt(180), randomRoute(random), randomTimeBands(random));
+            timetables.add(tt);
+            index.putService(tt.getServiceName(), tt);
+        }
+        // replacing and removing services
+        for (int i = 0; i < 10; i++) {
+            VirtualTimetable tt = createTimetable("service" + i, new DayTime(random.nextInt(24 * 60)),
+                    new DayTime(random.nextInt(24 * 60)), 1 + random.nextInt(180), randomRoute(random), randomTimeBands(random));
+            timetables.set(i, tt);
+            index.putService(tt.getServiceName(), tt);
+        }
+        for (int i = 29; i >= 25; i--)
+            index.removeService(timetables.remove(i).getServiceName());
+
+        for (int query = 0; query < 300; query++) {
+            int stopId = random.nextInt(BusStop.getStopCount());
+            int fromMinutes = random.nextInt(24 * 60);
+            int count = random.nextInt(200);
+            assertEquals(bruteForce(timetables, stopId, fromMinutes, count),
+                    asStrings(index.nextDepartures(stopId, fromMinutes, count)));
+        }
+    }
+
+    @Test
+    public void testWithInvalidArgs() {
+        DepartureIndex index = new DepartureIndex();
+        try {
+            index.nextDepartures(0, 24 * 60, 1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            index.nextDepartures(0, 0, -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        assertTrue(index.nextDepartures(0, 0, 5).isEmpty());
+    }
+
+}//class
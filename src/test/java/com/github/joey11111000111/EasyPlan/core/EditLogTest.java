@@ -0,0 +1,183 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EditLogTest {
+
+    private long now;
+    private EditLog log;
+    private TouchedStops stops;
+    private BasicServiceData data;
+
+    private void init(int limit) {
+        log = new EditLog(limit, () -> now);
+        stops = new TouchedStops(CityGraph.getDefault(), log);
+        data = new BasicServiceData("A", 10, new DayTime(8, 0), new DayTime(18, 0), log);
+    }
+
+    private void advanceClock(int millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Before
+    public void setUp() {
+        init(EditLog.DEFAULT_LIMIT);
+    }
+
+    @Test
+    public void testUndoAndRedoOfBothBuffers() {
+        data.setName("B");
+        stops.appendStop(1);
+        stops.appendStop(4);
+        data.setTimeGap(20);
+        stops.removeChainFrom(1);
+        data.setTimeBands(Collections.singletonList(new TimeBand(new DayTime(7, 0), 5)));
+
+        log.undo();
+        assertTrue(data.getTimeBands().isEmpty());
+        log.undo();
+        assertArrayEquals(new int[] {0, 1, 4}, stops.getStops());
+        log.undo();
+        assertEquals(10, data.getTimeGap());
+        stops.undo();       // the stops can undo the shared log too
+        log.undo();
+        assertArrayEquals(new int[] {0}, stops.getStops());
+        assertEquals("B", data.getName());
+        log.undo();
+        assertEquals("A", data.getName());
+        assertFalse(log.canUndo());
+        assertTrue(data.isModified());
+        assertTrue(stops.isModified());
+
+        log.redo();
+        log.redo();
+        stops.redo();
+        log.redo();
+        assertEquals("B", data.getName());
+        assertEquals(20, data.getTimeGap());
+        assertArrayEquals(new int[] {0, 1, 4}, stops.getStops());
+        assertArrayEquals(new int[] {8, 21}, stops.getTravelTimes());
+        log.redo();
+        assertArrayEquals(new int[] {0}, stops.getStops());
+
+        // a new modification discards the undone ones
+        log.undo();
+        stops.appendStop(0);
+        assertFalse(log.canRedo());
+        assertTrue(stops.isClosed());
+        try {
+            log.redo();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+        try {
+            stops.redo();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+
+        data.markAsSaved();
+        assertFalse(log.canUndo());
+        assertFalse(stops.canUndo());
+        try {
+            log.undo();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+    }
+
+    @Test
+    public void testLimit() {
+        init(3);
+        int[] route = new int[6];
+        for (int i = 1; i < route.length; i++) {
+            int[] reachableIds = stops.getReachableStopIds();
+            route[i] = reachableIds[0] != 0 ? reachableIds[0] : reachableIds[1];
+            stops.appendStop(route[i]);
+        }
+        int undoCount = 0;
+        while (log.canUndo()) {
+            log.undo();
+            undoCount++;
+        }
+        assertEquals(3, undoCount);
+        assertArrayEquals(new int[] {0, route[1], route[2]}, stops.getStops());
+        while (log.canRedo())
+            log.redo();
+        assertArrayEquals(route, stops.getStops());
+
+        // the ring buffer keeps working after several turns
+        for (int i = 0; i < 10; i++) {
+            data.setTimeGap(11 + i);
+            advanceClock(1000);
+        }
+        for (int i = 0; i < 3; i++)
+            log.undo();
+        assertFalse(log.canUndo());
+        assertEquals(17, data.getTimeGap());
+
+        init(0);
+        stops.appendStop(1);
+        assertFalse(log.canUndo());
+        try {
+            new EditLog(-1, () -> 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            new EditLog(1, null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+    @Test
+    public void testCoalescing() {
+        // a spinner that is held down
+        for (int gap = 11; gap <= 15; gap++) {
+            data.setTimeGap(gap);
+            advanceClock(100);
+        }
+        // the hour and the minute of the same time are merged too
+        data.setFirstLeaveHour(9);
+        advanceClock(100);
+        data.setFirstLeaveMinutes(30);
+        advanceClock(100);
+        data.setFirstLeaveHour(10);
+        advanceClock(1000);
+        data.setFirstLeaveMinutes(45);
+
+        log.undo();
+        assertEquals(10, data.getFirstLeaveHours());
+        assertEquals(30, data.getFirstLeaveMinutes());
+        log.undo();
+        assertEquals(8, data.getFirstLeaveHours());
+        assertEquals(0, data.getFirstLeaveMinutes());
+        log.undo();
+        assertEquals(10, data.getTimeGap());
+        assertFalse(log.canUndo());
+
+        // an undo stops the merging
+        log.redo();
+        data.setTimeGap(16);
+        log.undo();
+        assertEquals(15, data.getTimeGap());
+
+        // changes that cancel each other out leave nothing to undo
+        data.markAsSaved();
+        data.setBoundaryHours(19);
+        advanceClock(100);
+        data.setBoundaryHours(18);
+        assertFalse(log.canUndo());
+
+        // other buffers and kinds are not merged
+        data.setTimeGap(20);
+        stops.appendStop(1);
+        data.setTimeGap(21);
+        log.undo();
+        assertEquals(20, data.getTimeGap());
+    }
+
+}//class
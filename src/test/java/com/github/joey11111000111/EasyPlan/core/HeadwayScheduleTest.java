@@ -0,0 +1,112 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HeadwayScheduleTest {
+
+    // all the departures, by stepping minute by minute through the day
+    private List<Integer> bruteForce(int firstLeave, int boundary, int timeGap, List<TimeBand> bands) {
+        int window = Math.floorMod(boundary - firstLeave, 24 * 60);
+        List<Integer> departures = new ArrayList<>();
+        int gap = timeGap;
+        int next = 0;
+        for (int minute = 0; minute <= window; minute++) {
+            for (TimeBand band : bands)
+                if (band.getStartTime().getTimeAsMinutes() == (firstLeave + minute) % (24 * 60)) {
+                    gap = band.getTimeGap();
+                    next = minute;
+                }
+            if (minute == next) {
+                departures.add(firstLeave + minute);
+                next += gap;
+            }
+        }
+        return departures;
+    }
+
+    @Test
+    public void testWithoutTimeBands() {
+        HeadwaySchedule schedule = HeadwaySchedule.create(8 * 60, 18 * 60, 10, Collections.<TimeBand>emptyList());
+        assertEquals(10 * 60 / 10 + 1, schedule.getBusCount());
+        assertEquals(1, schedule.getSegmentCount());
+        assertEquals(8 * 60 + 30, schedule.getDepartureMinutes(3));
+        assertEquals(4, schedule.firstBusAtOrAfter(8 * 60 + 31));
+        assertEquals(0, schedule.firstBusAtOrAfter(-100));
+        assertEquals(schedule.getBusCount(), schedule.firstBusAtOrAfter(18 * 60 + 1));
+        // the boundary time is on the next day
+        schedule = HeadwaySchedule.create(22 * 60, 60, 20, Collections.<TimeBand>emptyList());
+        assertEquals(3 * 60 / 20 + 1, schedule.getBusCount());
+    }
+
+    @Test
+    public void testPeakHours() {
+        List<TimeBand> bands = Arrays.asList(new TimeBand(new DayTime(16, 0), 5),
+                new TimeBand(new DayTime(7, 0), 4), new TimeBand(new DayTime(9, 0), 15));
+        HeadwaySchedule schedule = HeadwaySchedule.create(6 * 60, 18 * 60, 30, bands);
+        assertEquals(4, schedule.getSegmentCount());
+        // 06:00, 06:30, then 07:00 - 08:56 every 4 minutes
+        assertEquals(7 * 60, schedule.getDepartureMinutes(2));
+        assertEquals(7 * 60 + 4, schedule.getDepartureMinutes(3));
+        assertEquals(bruteForce(6 * 60, 18 * 60, 30, bands).size(), schedule.getBusCount());
+        assertEquals(3, schedule.firstBusAtOrAfter(7 * 60 + 1));
+    }
+
+    @Test
+    public void testSameAsBruteForce() {
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            int firstLeave = random.nextInt(24 * 60);
+            int boundary = random.nextInt(24 * 60);
+            List<TimeBand> bands = new ArrayList<>();
+            List<Integer> starts = new ArrayList<>();
+            for (int b = random.nextInt(5); b > 0; b--) {
+                int start = random.nextInt(24 * 60);
+                if (!starts.contains(start)) {
+                    starts.add(start);
+                    bands.add(new TimeBand(new DayTime(start), 1 + random.nextInt(90)));
+                }
+            }
+            int timeGap = 1 + random.nextInt(90);
+            List<Integer> expected = bruteForce(firstLeave, boundary, timeGap, bands);
+            HeadwaySchedule schedule = HeadwaySchedule.create(firstLeave, boundary, timeGap, bands);
+            assertEquals(expected.size(), schedule.getBusCount());
+            for (int bus = 0; bus < expected.size(); bus++)
+                assertEquals((int) expected.get(bus), schedule.getDepartureMinutes(bus));
+            for (int query = 0; query < 50; query++) {
+                int minutes = firstLeave - 10 + random.nextInt(24 * 60 + 20);
+                int bus = 0;
+                while (bus < expected.size() && expected.get(bus) < minutes)
+                    bus++;
+                assertEquals(bus, schedule.firstBusAtOrAfter(minutes));
+            }
+        }
+    }
+
+    @Test
+    public void testWithInvalidArgs() {
+        HeadwaySchedule schedule = HeadwaySchedule.create(0, 60, 10, Collections.<TimeBand>emptyList());
+        try {
+            schedule.getDepartureMinutes(7);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            HeadwaySchedule.create(0, 60, 10, Arrays.asList(new TimeBand(new DayTime(0, 10), 5),
+                    new TimeBand(new DayTime(0, 10), 6)));
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            new TimeBand(new DayTime(0, 10), 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+}//class
@@ -0,0 +1,146 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.joey11111000111.EasyPlan.core.TimetableFixtures.*;
+import static org.junit.Assert.*;
+
+public class JourneyPlannerTest {
+
+    // earliest arrival with unlimited transfers, by checking every bus of the three days
+    private int bruteForce(List<VirtualTimetable> timetables, int from, int to, int departure) {
+        int[] arrivals = new int[BusStop.getStopCount()];
+        Arrays.fill(arrivals, Integer.MAX_VALUE);
+        arrivals[from] = departure;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (VirtualTimetable tt : timetables)
+                for (int bus = 0; bus < tt.getBusCount(); bus++)
+                    for (int day = -1; day <= 1; day++) {
+                        boolean onBoard = false;
+                        for (int i = 0; i < tt.getStopCount(); i++) {
+                            int time = tt.getArrivalMinutes(i, bus) + day * 24 * 60;
+                            int stop = tt.getStopId(i);
+                            if (onBoard && time < arrivals[stop]) {
+                                arrivals[stop] = time;
+                                changed = true;
+                            }
+                            if (arrivals[stop] <= time && i < tt.getStopCount() - 1)
+                                onBoard = true;
+                        }
+                    }
+        }
+        return arrivals[to] == Integer.MAX_VALUE ? -1 : arrivals[to];
+    }
+
+    @Test
+    public void testSimpleJourney() {
+        List<VirtualTimetable> timetables = new ArrayList<>();
+        timetables.add(createTimetable("A", new DayTime(8, 0), new DayTime(18, 0), 30, new int[]{0, 1}));
+        timetables.add(createTimetable("B", new DayTime(8, 0), new DayTime(18, 0), 20, new int[]{0, 4, 1}));
+        timetables.add(createTimetable("C", new DayTime(8, 5), new DayTime(18, 0), 15, new int[]{0, 2}));
+        JourneyPlanner planner = new JourneyPlanner(timetables, BusStop.getStopCount());
+        assertEquals(3, planner.getRouteCount());
+
+        // direct ride from the station
+        Journey journey = planner.findJourney(0, 1, 8 * 60 + 1, 0);
+        assertEquals(1, journey.getLegs().size());
+        assertEquals(Math.min(8 * 60 + 30 + 8, 8 * 60 + 20 + 6 + 13), journey.getArrivalMinutes());
+        assertEquals(journey.getArrivalMinutes(), planner.earliestArrival(0, 1, 8 * 60 + 1, 0));
+
+        // after the last bus, the first bus of the next day is taken
+        journey = planner.findJourney(0, 2, 23 * 60, 0);
+        assertEquals(24 * 60 + 8 * 60 + 5 + BusStop.travelTimeToFrom(2, 0), journey.getArrivalMinutes());
+        assertEquals(new DayTime(8, 5), journey.getLegs().get(0).getDepartureTime());
+
+        // no ride needed
+        journey = planner.findJourney(4, 4, 100, 0);
+        assertTrue(journey.getLegs().isEmpty());
+        assertEquals(100, journey.getArrivalMinutes());
+
+        // no service leaves the stop 1
+        assertNull(planner.findJourney(1, 0, 100, 3));
+        assertEquals(-1, planner.earliestArrival(1, 0, 100, 3));
+    }
+
+    @Test
+    public void testHugeTransferLimit() {
+        List<VirtualTimetable> timetables = new ArrayList<>();
+        timetables.add(createTimetable("A", new DayTime(8, 0), new DayTime(18, 0), 10, new int[]{0, 2, 0}));
+        JourneyPlanner planner = new JourneyPlanner(timetables, BusStop.getStopCount());
+        int arrival = planner.earliestArrival(0, 2, 8 * 60, 3);
+        assertEquals(8 * 60 + BusStop.travelTimeToFrom(2, 0), arrival);
+        // more rides than routes never help, so the limit doesn't overflow or allocate the rounds up front
+        assertEquals(arrival, planner.earliestArrival(0, 2, 8 * 60, Integer.MAX_VALUE));
+        assertEquals(arrival, planner.earliestArrival(0, 2, 8 * 60, 50000000));
+        assertEquals(arrival, planner.findJourney(0, 2, 8 * 60, Integer.MAX_VALUE).getArrivalMinutes());
+    }
+
+    @Test
+    public void testSameAsBruteForce() {
+        Random random = new Random(11);
+        List<VirtualTimetable> timetables = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            timetables.add(createTimetable("service" + i, new DayTime(random.nextInt(24 * 60)),
+                    new DayTime(random.nextInt(24 * 60)), 5 + random.nextInt(120), randomRoute(random), randomTimeBands(random)));
+        JourneyPlanner planner = new JourneyPlanner(timetables, BusStop.getStopCount());
+
+        for (int query = 0; query < 300; query++) {
+            int from = random.nextInt(BusStop.getStopCount());
+            int to = random.nextInt(BusStop.getStopCount());
+            int departure = random.nextInt(24 * 60);
+            int expected = bruteForce(timetables, from, to, departure);
+            assertEquals(expected, planner.earliestArrival(from, to, departure, 30));
+
+            Journey journey = planner.findJourney(from, to, departure, 30);
+            if (expected == -1) {
+                assertNull(journey);
+                continue;
+            }
+            assertEquals(expected, journey.getArrivalMinutes());
+            // the legs must follow each other
+            int stop = from;
+            int time = departure;
+            for (Journey.Leg leg : journey.getLegs()) {
+                assertEquals(stop, leg.getFromStopId());
+                assertTrue(time <= leg.getDepartureMinutes());
+                stop = leg.getToStopId();
+                time = leg.getArrivalMinutes();
+            }
+            assertEquals(to, stop);
+
+            // fewer transfers can never be faster
+            int direct = planner.earliestArrival(from, to, departure, 0);
+            assertTrue(direct == -1 || direct >= expected);
+        }
+    }
+
+    @Test
+    public void testWithInvalidArgs() {
+        JourneyPlanner planner = new JourneyPlanner(new ArrayList<>(), BusStop.getStopCount());
+        try {
+            planner.findJourney(-1, 0, 0, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            planner.findJourney(0, BusStop.getStopCount(), 0, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            planner.earliestArrival(0, 1, 24 * 60, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            planner.earliestArrival(0, 1, 0, -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+}//class
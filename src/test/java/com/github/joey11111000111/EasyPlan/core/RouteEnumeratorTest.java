@@ -0,0 +1,126 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class RouteEnumeratorTest {
+
+    private void collectRoutes(TouchedStops stops, int maxStops, int maxMinutes, Set<String> routes) {
+        if (stops.isClosed()) {
+            int[] times = stops.getTravelTimes();
+            if (times[times.length - 1] <= maxMinutes)
+                routes.add(Arrays.toString(stops.getStops()));
+            return;
+        }
+        if (stops.getStopCount() == maxStops)
+            return;
+        for (int id : stops.getReachableStopIds()) {
+            stops.appendStop(id);
+            collectRoutes(stops, maxStops, maxMinutes, routes);
+            stops.undo();
+        }
+    }
+
+    // counts the closed routes with plain recursion, pruned by the time limit, without the enumerator
+    private long countRoutes(CityGraph city, int lastId, int stopCount, int minutes, int[] visits,
+                             int maxStops, int maxMinutes) {
+        long count = 0;
+        for (int id : city.getReachableIdsOf(lastId)) {
+            int time = minutes + city.travelTimeToFrom(id, lastId);
+            if (time > maxMinutes || visits[id] == 2 || stopCount == maxStops)
+                continue;
+            if (id == 0) {
+                count++;
+                continue;
+            }
+            visits[id]++;
+            count += countRoutes(city, id, stopCount + 1, time, visits, maxStops, maxMinutes);
+            visits[id]--;
+        }
+        return count;
+    }
+
+    @Test
+    public void testSameAsTouchedStops() {
+        CityGraph city = CityGraph.getDefault();
+        RouteEnumerator enumerator = new RouteEnumerator(city);
+        assertSame(city, enumerator.getCity());
+        // the brute force through the buffer is only fast enough for small limits
+        for (int[] limits : new int[][]{{3, 1000}, {8, 40}}) {
+            Set<String> expected = new HashSet<>();
+            collectRoutes(new TouchedStops(city), limits[0], limits[1], expected);
+
+            Set<String> routes = ConcurrentHashMap.newKeySet();
+            long count = enumerator.enumerate(limits[0], limits[1], route -> {
+                assertEquals(0, route[0]);
+                assertEquals(0, route[route.length - 1]);
+                routes.add(Arrays.toString(route));
+            });
+            assertEquals(expected.size(), count);
+            assertEquals(expected, routes);
+        }
+    }
+
+    @Test
+    public void testLargeLimits() {
+        CityGraph city = CityGraph.getDefault();
+        RouteEnumerator enumerator = new RouteEnumerator(city);
+        for (int[] limits : new int[][]{{9, 1000}, {14, 70}}) {
+            int[] visits = new int[city.getStopCount()];
+            visits[0] = 1;
+            long expectedCount = countRoutes(city, 0, 1, 0, visits, limits[0], limits[1]);
+
+            Set<String> routes = ConcurrentHashMap.newKeySet();
+            long count = enumerator.enumerate(limits[0], limits[1], route -> {
+                assertTrue(route.length > 2 && route.length <= limits[0]);
+                assertEquals(0, route[0]);
+                assertEquals(0, route[route.length - 1]);
+                int[] routeVisits = new int[city.getStopCount()];
+                int minutes = 0;
+                for (int i = 0; i < route.length; i++) {
+                    assertTrue(++routeVisits[route[i]] <= 2);
+                    if (i == 0)
+                        continue;
+                    assertTrue(i == route.length - 1 || route[i] != 0);
+                    assertTrue(city.isReachableToFrom(route[i], route[i - 1]));
+                    minutes += city.travelTimeToFrom(route[i], route[i - 1]);
+                }
+                assertTrue(minutes <= limits[1]);
+                assertTrue(routes.add(Arrays.toString(route)));
+            });
+            assertEquals(expectedCount, count);
+            assertEquals(expectedCount, routes.size());
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        RouteEnumerator enumerator = new RouteEnumerator(CityGraph.getDefault());
+        assertEquals(0, enumerator.enumerate(2, 1000, route -> assertTrue(false)));
+        assertEquals(0, enumerator.enumerate(100, 0, route -> assertTrue(false)));
+        // 0 -> 2 -> 0 takes 5 + 5 minutes
+        assertEquals(1, enumerator.enumerate(3, 10, route -> assertArrayEquals(new int[]{0, 2, 0}, route)));
+        try {
+            enumerator.enumerate(-1, 10, route -> {});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            enumerator.enumerate(5, -1, route -> {});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            enumerator.enumerate(5, 10, null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            new RouteEnumerator(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+}//class
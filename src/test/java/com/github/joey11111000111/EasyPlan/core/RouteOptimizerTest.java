@@ -0,0 +1,152 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.dao.BusStopData;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RouteOptimizerTest {
+
+    // a side * side grid, where the neighbours are connected in both directions with random travel times
+    private CityGraph createGrid(Random random, int side) {
+        List<iBusStopData> stops = new ArrayList<>();
+        for (int id = 0; id < side * side; id++) {
+            iBusStopData stop = new BusStopData();
+            stop.setId(id);
+            stop.setX(id % side);
+            stop.setY(id / side);
+            stops.add(stop);
+        }
+        for (int id = 0; id < side * side; id++) {
+            if (id % side + 1 < side) {
+                int minutes = 1 + random.nextInt(9);
+                stops.get(id).addReachableStop(id + 1, minutes);
+                stops.get(id + 1).addReachableStop(id, minutes);
+            }
+            if (id + side < side * side) {
+                int minutes = 1 + random.nextInt(9);
+                stops.get(id).addReachableStop(id + side, minutes);
+                stops.get(id + side).addReachableStop(id, minutes);
+            }
+        }
+        return CityGraph.fromStopData(stops);
+    }
+
+    // appends the route to a new buffer, which checks all the rules, and returns its travel time
+    private int checkRoute(CityGraph city, int[] route, int[] requiredStops) {
+        assertEquals(0, route[0]);
+        TouchedStops touched = new TouchedStops(city);
+        for (int i = 1; i < route.length; i++)
+            touched.appendStop(route[i]);
+        assertTrue(touched.isClosed());
+        for (int required : requiredStops) {
+            boolean found = false;
+            for (int stop : route)
+                found |= stop == required;
+            assertTrue(found);
+        }
+        int[] times = touched.getTravelTimes();
+        return times[times.length - 1];
+    }
+
+    @Test
+    public void testOptimalOnDefaultCity() {
+        CityGraph city = CityGraph.getDefault();
+        RouteOptimizer optimizer = new RouteOptimizer(city);
+        assertSame(city, optimizer.getCity());
+        int[][] cases = {{2}, {0, 5, 5}, {3, 9, 12}, {1, 6, 8, 11, 14}};
+        for (int[] required : cases) {
+            int minutes = checkRoute(city, optimizer.optimize(required, 100), required);
+            // the shortest of all the routes that serve the stops
+            AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+            new RouteEnumerator(city).enumerate(14, minutes, route -> {
+                boolean all = true;
+                for (int stop : required) {
+                    boolean found = false;
+                    for (int id : route)
+                        found |= id == stop;
+                    all &= found;
+                }
+                if (all) {
+                    int total = 0;
+                    for (int i = 1; i < route.length; i++)
+                        total += city.travelTimeToFrom(route[i], route[i - 1]);
+                    best.accumulateAndGet(total, Math::min);
+                }
+            });
+            assertEquals(best.get(), minutes);
+        }
+    }
+
+    @Test
+    public void testLargeCity() {
+        Random random = new Random(5);
+        CityGraph city = createGrid(random, 60);
+        int[] required = new int[150];
+        for (int i = 0; i < required.length; i++)
+            required[i] = random.nextInt(city.getStopCount());
+        RouteOptimizer optimizer = new RouteOptimizer(city);
+        long start = System.nanoTime();
+        int[] route = optimizer.optimize(required, 500);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        int minutes = checkRoute(city, route, required);
+        // without any optimization time it is only the first local optimum
+        assertTrue(minutes <= checkRoute(city, optimizer.optimize(required, 0), required));
+    }
+
+    @Test
+    public void testWriteRoute() {
+        Core core = new Core();
+        core.createNewService();
+        int[] route = new RouteOptimizer(core.getCity()).optimize(new int[] {4, 7}, 50);
+        RouteOptimizer.writeRoute(route, core);
+        assertArrayEquals(route, core.getStops());
+        assertTrue(core.isClosed());
+        core.undo();
+        assertFalse(core.isClosed());
+
+        try {
+            RouteOptimizer.writeRoute(new int[] {1, 0}, core);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            RouteOptimizer.writeRoute(new int[] {0, 3}, core);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            RouteOptimizer.writeRoute(null, core);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        RouteOptimizer optimizer = new RouteOptimizer(CityGraph.getDefault());
+        try {
+            optimizer.optimize(null, 10);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            optimizer.optimize(new int[] {0}, 10);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            optimizer.optimize(new int[] {3}, -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            optimizer.optimize(new int[] {16}, 10);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            new RouteOptimizer(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+}//class
@@ -0,0 +1,208 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.dao.BusStopData;
+import com.github.joey11111000111.EasyPlan.dao.IntArrayCache;
+import com.github.joey11111000111.EasyPlan.dao.iBusStopData;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ShortestPathsTest {
+
+    private CityGraph randomCity(Random random, int stopCount, int maxRoads) {
+        List<iBusStopData> stops = new ArrayList<>();
+        for (int id = 0; id < stopCount; id++) {
+            Map<Integer, Integer> reachables = new HashMap<>();
+            int count = 1 + random.nextInt(Math.min(maxRoads, stopCount));
+            while (reachables.size() < count)
+                reachables.put(random.nextInt(stopCount), 1 + random.nextInt(30));
+            iBusStopData stop = new BusStopData();
+            stop.setId(id);
+            stop.setX(random.nextInt(1000));
+            stop.setY(random.nextInt(1000));
+            stop.setReachableStops(reachables);
+            stops.add(stop);
+        }
+        return CityGraph.fromStopData(stops);
+    }
+
+    // every path must follow the roads and take exactly the shortest travel time
+    private void assertValidPaths(CityGraph city, ShortestPaths paths) {
+        int n = city.getStopCount();
+        for (int from = 0; from < n; from++)
+            for (int to = 0; to < n; to++) {
+                if (!paths.hasPath(from, to)) {
+                    try {
+                        paths.shortestPath(from, to);
+                        assertTrue(false);
+                    } catch (IllegalArgumentException iae) {}
+                    continue;
+                }
+                int[] path = paths.shortestPath(from, to);
+                assertEquals(from, path[0]);
+                assertEquals(to, path[path.length - 1]);
+                int minutes = 0;
+                for (int i = 1; i < path.length; i++)
+                    minutes += city.travelTimeToFrom(path[i], path[i - 1]);
+                assertEquals(paths.shortestTravelTime(from, to), minutes);
+            }
+    }
+
+    private void assertSameDistances(ShortestPaths expected, ShortestPaths actual) {
+        int n = expected.getStopCount();
+        assertEquals(n, actual.getStopCount());
+        for (int from = 0; from < n; from++)
+            for (int to = 0; to < n; to++) {
+                assertEquals(expected.hasPath(from, to), actual.hasPath(from, to));
+                if (expected.hasPath(from, to))
+                    assertEquals(expected.shortestTravelTime(from, to), actual.shortestTravelTime(from, to));
+            }
+    }
+
+    @Test
+    public void testDefaultCity() {
+        CityGraph city = CityGraph.getDefault();
+        ShortestPaths paths = ShortestPaths.compute(city);
+        assertValidPaths(city, paths);
+        assertSameDistances(paths, ShortestPaths.dijkstra(city));
+        for (int id = 0; id < city.getStopCount(); id++) {
+            assertEquals(0, paths.shortestTravelTime(id, id));
+            assertArrayEquals(new int[] {id}, paths.shortestPath(id, id));
+            for (int to : city.getReachableIdsOf(id))
+                assertTrue(paths.shortestTravelTime(id, to) <= city.travelTimeToFrom(to, id));
+        }
+    }
+
+    @Test
+    public void testAlgorithmsAgree() {
+        Random random = new Random(13);
+        for (int round = 0; round < 20; round++) {
+            CityGraph city = randomCity(random, 1 + random.nextInt(60), 1 + random.nextInt(4));
+            ShortestPaths floydWarshall = ShortestPaths.floydWarshall(city);
+            ShortestPaths dijkstra = ShortestPaths.dijkstra(city);
+            assertSameDistances(floydWarshall, dijkstra);
+            assertValidPaths(city, floydWarshall);
+            assertValidPaths(city, dijkstra);
+        }
+        // large enough for the Dijkstra searches
+        CityGraph city = randomCity(random, ShortestPaths.FLOYD_WARSHALL_MAX_STOPS + 44, 3);
+        ShortestPaths paths = ShortestPaths.compute(city);
+        assertSameDistances(ShortestPaths.floydWarshall(city), paths);
+        assertValidPaths(city, paths);
+    }
+
+    @Test
+    public void testUnreachableStops() {
+        // 0 <-> 1, 2 -> 0: the stop 2 cannot be reached from anywhere else
+        List<iBusStopData> stops = new ArrayList<>();
+        int[][] roads = {{1, 4}, {0, 5}, {0, 3}};
+        for (int id = 0; id < roads.length; id++) {
+            iBusStopData stop = new BusStopData();
+            stop.setId(id);
+            stop.setX(id);
+            stop.setY(0);
+            stop.addReachableStop(roads[id][0], roads[id][1]);
+            stops.add(stop);
+        }
+        CityGraph city = CityGraph.fromStopData(stops);
+        ShortestPaths paths = ShortestPaths.compute(city);
+        assertTrue(paths.hasPath(2, 1));
+        assertEquals(7, paths.shortestTravelTime(2, 1));
+        assertArrayEquals(new int[] {2, 0, 1}, paths.shortestPath(2, 1));
+        assertFalse(paths.hasPath(0, 2));
+        try {
+            paths.shortestTravelTime(1, 2);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            paths.shortestTravelTime(3, 0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            paths.shortestPath(0, -1);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            ShortestPaths.compute(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+    @Test
+    public void testTooLargeCity() {
+        CityGraph city = randomCity(new Random(13), ShortestPaths.MAX_STOPS + 1, 1);
+        try {
+            city.getShortestPaths();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+        try {
+            city.shortestTravelTime(0, 1);
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+        try {
+            ShortestPaths.compute(city);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // the size of the tables of a huge city doesn't overflow
+        try {
+            ShortestPaths.tableSize(50000);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        int maxStops = ShortestPaths.MAX_STOPS;
+        assertEquals(maxStops * maxStops, ShortestPaths.tableSize(maxStops));
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        File directory = Files.createTempDirectory("easyPlanCache").toFile();
+        IntArrayCache cache = new IntArrayCache(directory);
+        File cacheFile = new File(directory, ShortestPaths.CACHE_NAME + ".bin");
+        try {
+            CityGraph city = randomCity(new Random(7), 40, 3);
+            ShortestPaths computed = ShortestPaths.loadOrCompute(city, cache);
+            assertTrue(cacheFile.exists());
+            ShortestPaths loaded = ShortestPaths.loadOrCompute(city, cache);
+            assertNotSame(computed, loaded);
+            assertSameDistances(computed, loaded);
+            assertValidPaths(city, loaded);
+
+            // a cycle in the predecessors is detected, and the paths are calculated again
+            int[][] tables = cache.read(ShortestPaths.CACHE_NAME, city.getFingerprint());
+            int[] predecessors = tables[1];
+            for (int i = 0; i < predecessors.length; i++)
+                if (predecessors[i] >= 0)
+                    predecessors[i] = i % city.getStopCount();
+            cache.save(ShortestPaths.CACHE_NAME, city.getFingerprint(), tables[0], predecessors);
+            assertValidPaths(city, ShortestPaths.loadOrCompute(city, cache));
+
+            // a different city doesn't use the cache of the previous one
+            CityGraph other = randomCity(new Random(8), 40, 3);
+            assertNotEquals(city.getFingerprint(), other.getFingerprint());
+            assertEquals(city.getFingerprint(), randomCity(new Random(7), 40, 3).getFingerprint());
+            ShortestPaths otherPaths = ShortestPaths.loadOrCompute(other, cache);
+            assertValidPaths(other, otherPaths);
+            assertSameDistances(ShortestPaths.compute(other), otherPaths);
+
+            try {
+                ShortestPaths.loadOrCompute(null, cache);
+                assertTrue(false);
+            } catch (NullPointerException npe) {}
+            try {
+                ShortestPaths.loadOrCompute(city, null);
+                assertTrue(false);
+            } catch (NullPointerException npe) {}
+        } finally {
+            assertTrue(!cacheFile.exists() || cacheFile.delete());
+            assertTrue(directory.delete());
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SpatialIndexTest {
+
+    private int bruteNearest(int[] xCoords, int[] yCoords, double x, double y) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int id = 0; id < xCoords.length; id++) {
+            double dx = xCoords[id] - x;
+            double dy = yCoords[id] - y;
+            double distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                best = id;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private int[] bruteRectangle(int[] xCoords, int[] yCoords, int fromX, int fromY, int toX, int toY) {
+        return IntStream.range(0, xCoords.length)
+                .filter(id -> xCoords[id] >= fromX && xCoords[id] <= toX
+                        && yCoords[id] >= fromY && yCoords[id] <= toY)
+                .toArray();
+    }
+
+    private int[] randomCoords(Random random, int count, int from, int range) {
+        int[] coords = new int[count];
+        for (int i = 0; i < count; i++)
+            coords[i] = from + random.nextInt(range);
+        return coords;
+    }
+
+    @Test
+    public void testBounds() {
+        SpatialIndex index = new SpatialIndex(new int[] {5, -20, 300}, new int[] {7, 1000, -4});
+        assertEquals(-20, index.getMinX());
+        assertEquals(300, index.getMaxX());
+        assertEquals(-4, index.getMinY());
+        assertEquals(1000, index.getMaxY());
+    }
+
+    @Test
+    public void testSingleStop() {
+        SpatialIndex index = new SpatialIndex(new int[] {3}, new int[] {-8});
+        assertEquals(0, index.nearestStop(3, -8));
+        assertEquals(0, index.nearestStop(-1e6, 1e6));
+        assertArrayEquals(new int[] {0}, index.stopsInRectangle(3, -8, 3, -8));
+        assertArrayEquals(new int[0], index.stopsInRectangle(4, -8, 10, 10));
+    }
+
+    @Test
+    public void testTies() {
+        // the same position twice, and two stops at the same distance
+        SpatialIndex index = new SpatialIndex(new int[] {4, 0, 4, 8}, new int[] {4, 0, 4, 0});
+        assertEquals(0, index.nearestStop(4, 4));
+        assertEquals(1, index.nearestStop(4, -1));
+        assertArrayEquals(new int[] {0, 2}, index.stopsInRectangle(4, 4, 4, 4));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, index.stopsInRectangle(0, 0, 8, 4));
+        assertArrayEquals(new int[0], index.stopsInRectangle(8, 4, 0, 0));
+    }
+
+    @Test
+    public void testNearestStop() {
+        Random random = new Random(12);
+        for (int round = 0; round < 30; round++) {
+            int count = 1 + random.nextInt(400);
+            int range = 1 + random.nextInt(round % 3 == 0 ? 10 : 100000);
+            int[] xCoords = randomCoords(random, count, -range / 2, range);
+            int[] yCoords = randomCoords(random, count, -range / 3, 1 + random.nextInt(range));
+            SpatialIndex index = new SpatialIndex(xCoords, yCoords);
+            for (int query = 0; query < 200; query++) {
+                // some of the points are outside of the bounding box
+                double x = -range + random.nextDouble() * range * 3;
+                double y = -range + random.nextDouble() * range * 3;
+                int expected = bruteNearest(xCoords, yCoords, x, y);
+                int found = index.nearestStop(x, y);
+                double dx = xCoords[found] - x;
+                double dy = yCoords[found] - y;
+                double ex = xCoords[expected] - x;
+                double ey = yCoords[expected] - y;
+                assertEquals(ex * ex + ey * ey, dx * dx + dy * dy, 0.0);
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void testStopsInRectangle() {
+        Random random = new Random(21);
+        for (int round = 0; round < 30; round++) {
+            int count = 1 + random.nextInt(400);
+            int range = 1 + random.nextInt(round % 3 == 0 ? 10 : 5000);
+            int[] xCoords = randomCoords(random, count, -range / 2, range);
+            int[] yCoords = randomCoords(random, count, 0, range);
+            SpatialIndex index = new SpatialIndex(xCoords, yCoords);
+            for (int query = 0; query < 100; query++) {
+                int fromX = -range + random.nextInt(2 * range);
+                int fromY = -range / 2 + random.nextInt(2 * range);
+                int toX = fromX + random.nextInt(range);
+                int toY = fromY + random.nextInt(range);
+                assertArrayEquals(bruteRectangle(xCoords, yCoords, fromX, fromY, toX, toY),
+                        index.stopsInRectangle(fromX, fromY, toX, toY));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeCity() {
+        Random random = new Random(50000);
+        int count = 50000;
+        int[] xCoords = randomCoords(random, count, 0, 1000000);
+        int[] yCoords = randomCoords(random, count, 0, 1000000);
+        SpatialIndex index = new SpatialIndex(xCoords, yCoords);
+        for (int query = 0; query < 100; query++) {
+            double x = random.nextDouble() * 1000000;
+            double y = random.nextDouble() * 1000000;
+            assertEquals(bruteNearest(xCoords, yCoords, x, y), index.nearestStop(x, y));
+        }
+        int[] all = index.stopsInRectangle(0, 0, 1000000, 1000000);
+        assertEquals(count, all.length);
+        for (int i = 0; i < count; i++)
+            assertEquals(i, all[i]);
+        assertTrue(Arrays.equals(bruteRectangle(xCoords, yCoords, 1000, 2000, 31000, 52000),
+                index.stopsInRectangle(1000, 2000, 31000, 52000)));
+    }
+
+}
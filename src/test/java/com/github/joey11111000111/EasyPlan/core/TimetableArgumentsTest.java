@@ -4,6 +4,7 @@ import com.github.joey11111000111.EasyPlan.util.DayTime;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
@@ -45,6 +46,11 @@ public class TimetableArgumentsTest {
         testForException(args::setBoundaryTime, null, NullPointerException.class);
 
         testForException(args::setTimeGap, -1, IllegalArgumentException.class);
+        testForException(args::setTimeBands, null, NullPointerException.class);
+        testForException(args::setTimeBands, Arrays.asList(new TimeBand(), null), NullPointerException.class);
+        testForException(args::setTimeBands, Arrays.asList(new TimeBand(new DayTime(7, 0), 5),
+                new TimeBand(new DayTime(9, 0), 5), new TimeBand(new DayTime(7, 0), 6)),
+                IllegalArgumentException.class);
 
         int[] travelTimes = {12, 13, 22, 9, 10, 6};
         int[] stopIds = {0, 1, 4, 6};
@@ -0,0 +1,54 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// the timetables and routes of the default city that the tests of the timetable based algorithms share
+final class TimetableFixtures {
+
+    private TimetableFixtures() {}
+
+    static VirtualTimetable createTimetable(String name, DayTime firstLeaveTime, DayTime boundaryTime,
+                                            int timeGap, int[] stopIds) {
+        return createTimetable(name, firstLeaveTime, boundaryTime, timeGap, stopIds, new ArrayList<>());
+    }
+
+    static VirtualTimetable createTimetable(String name, DayTime firstLeaveTime, DayTime boundaryTime,
+                                            int timeGap, int[] stopIds, List<TimeBand> timeBands) {
+        int[] travelTimes = new int[stopIds.length - 1];
+        for (int i = 1; i < stopIds.length; i++)
+            travelTimes[i - 1] = (i == 1 ? 0 : travelTimes[i - 2]) + BusStop.travelTimeToFrom(stopIds[i], stopIds[i - 1]);
+        iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
+        args.setName(name);
+        args.setFirstLeaveTime(firstLeaveTime);
+        args.setBoundaryTime(boundaryTime);
+        args.setTimeGap(timeGap);
+        args.setStopIds(stopIds);
+        args.setTravelTimes(travelTimes);
+        args.setTimeBands(timeBands);
+        return VirtualTimetable.createTimetable(args);
+    }
+
+    static List<TimeBand> randomTimeBands(Random random) {
+        List<TimeBand> bands = new ArrayList<>();
+        for (int start = random.nextInt(24 * 60); bands.size() < 3 && random.nextBoolean(); start = (start + 97) % (24 * 60))
+            bands.add(new TimeBand(new DayTime(start), 3 + random.nextInt(60)));
+        return bands;
+    }
+
+    static int[] randomRoute(Random random) {
+        TouchedStops ts = new TouchedStops();
+        int length = 1 + random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            int[] reachable = ts.getReachableStopIds();
+            if (reachable.length == 0)
+                break;
+            ts.appendStop(reachable[random.nextInt(reachable.length)]);
+        }
+        return ts.getStops();
+    }
+
+}//class
@@ -70,6 +70,46 @@ public class TimetableTest {
         assertEquals(firstLeaveTime, times.get(0));
     }
 
+    @Test
+    public void testStopTimesView() {
+        iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
+        args.setName("22Y");
+        args.setFirstLeaveTime(new DayTime(23, 0));
+        args.setBoundaryTime(new DayTime(1, 0));
+        args.setTimeGap(20);
+        args.setTravelTimes(new int[]{8, 21, 31});
+        args.setStopIds(new int[]{0, 1, 4, 6});
+
+        Timetable tt = (Timetable) Timetable.createTimetable(args);
+        assertEquals(7, tt.getBusCount());
+        List<iTimetable.iStopTimes> allTimes = tt.getStopTimes();
+        assertEquals(4, allTimes.size());
+        assertEquals("6", allTimes.get(3).getID());
+
+        int[] offsets = new int[]{0, 8, 21, 31};
+        for (int stop = 0; stop < offsets.length; stop++) {
+            List<DayTime> times = allTimes.get(stop).getTimes();
+            assertEquals(7, times.size());
+            for (int bus = 0; bus < times.size(); bus++) {
+                DayTime expected = new DayTime(23 * 60 + bus * 20 + offsets[stop], true);
+                assertEquals(expected, times.get(bus));
+                assertEquals(expected.getTimeAsMinutes(), tt.getMinutesAt(stop, bus));
+            }
+        }
+        // the time after midnight is on the following day
+        assertEquals(new DayTime(1, 31), allTimes.get(3).getTimes().get(6));
+
+        // the views are read-only
+        try {
+            allTimes.get(0).getTimes().add(new DayTime(12, 0));
+            assertTrue(false);
+        } catch (UnsupportedOperationException uoe) {}
+        try {
+            allTimes.get(0).getTimes().get(7);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+    }
+
     @Test
     public void testWithInvalidArgs() {
         iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
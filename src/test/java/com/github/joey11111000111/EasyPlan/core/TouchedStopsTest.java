@@ -1,9 +1,16 @@
 package com.github.joey11111000111.EasyPlan.core;
 
+import com.github.joey11111000111.EasyPlan.util.IntList;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -288,4 +295,129 @@ public class TouchedStopsTest {
 
         ts.clear();
     }
+
+    @Test
+    public void testStopsView() {
+        ts.appendStop(1);
+        ts.appendStop(4);
+        IntList.Snapshot view = ts.getStopsView();
+        ts.removeChainFrom(4);
+        ts.appendStop(0);
+        assertArrayEquals(new int[] {0, 1, 4}, view.toArray());
+        assertArrayEquals(new int[] {0, 1, 0}, ts.getStopsView().toArray());
+        ts.undo();
+        ts.undo();
+        assertArrayEquals(new int[] {0, 1, 4}, ts.getStops());
+        assertArrayEquals(new int[] {1, 4}, ts.getStopsFrom(1));
+    }
+
+    // random edit, undo and redo sequences, compared with a plain model of the route and its undo history,
+    // checking the occurrence counts and the travel times after every step
+    @Test
+    public void testRandomEditsKeepOccurrenceCounts() {
+        CityGraph city = CityGraph.getDefault();
+        Random random = new Random(20161017);
+        for (int run = 0; run < 200; run++) {
+            TouchedStops stops = new TouchedStops(city);
+            List<Integer> route = new ArrayList<>(Collections.singletonList(0));
+            Deque<List<Integer>> history = new ArrayDeque<>();
+            Deque<List<Integer>> redoHistory = new ArrayDeque<>();
+            for (int step = 0; step < 60; step++) {
+                List<Integer> before = new ArrayList<>(route);
+                int operation = random.nextInt(11);
+                if (operation < 5) {
+                    int[] candidates = stops.getReachableStopIds();
+                    if (candidates.length == 0)
+                        continue;
+                    int id = candidates[random.nextInt(candidates.length)];
+                    stops.appendStop(id);
+                    route.add(id);
+                } else if (operation < 7) {
+                    int id = route.get(random.nextInt(route.size()));
+                    if (route.size() == 1)
+                        continue;
+                    stops.removeChainFrom(id);
+                    int fromIndex = !isClosed(route) && id == 0 ? 1 : route.lastIndexOf(id);
+                    route.subList(fromIndex, route.size()).clear();
+                } else if (operation < 8) {
+                    if (route.size() == 1)
+                        continue;
+                    stops.clear();
+                    route.subList(1, route.size()).clear();
+                } else if (operation < 9) {
+                    stops.markAsSaved();
+                    history.clear();
+                    redoHistory.clear();
+                    continue;
+                } else if (operation < 10) {
+                    assertEquals(!history.isEmpty(), stops.canUndo());
+                    if (history.isEmpty())
+                        continue;
+                    stops.undo();
+                    redoHistory.push(route);
+                    route = history.pop();
+                    assertRouteState(city, stops, route);
+                    continue;
+                } else {
+                    assertEquals(!redoHistory.isEmpty(), stops.canRedo());
+                    if (redoHistory.isEmpty())
+                        continue;
+                    stops.redo();
+                    history.push(route);
+                    route = redoHistory.pop();
+                    assertRouteState(city, stops, route);
+                    continue;
+                }
+                history.push(before);
+                redoHistory.clear();
+                assertFalse(stops.canRedo());
+                assertRouteState(city, stops, route);
+            }
+            while (!history.isEmpty()) {
+                stops.undo();
+                assertRouteState(city, stops, history.pop());
+            }
+            assertFalse(stops.canUndo());
+        }
+        try {
+            new TouchedStops(city).getOccurrenceCount(city.getStopCount());
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    private static boolean isClosed(List<Integer> route) {
+        return route.size() > 2 && route.get(route.size() - 1) == 0;
+    }
+
+    private static void assertRouteState(CityGraph city, TouchedStops stops, List<Integer> route) {
+        int[] expected = new int[route.size()];
+        int[] counts = new int[city.getStopCount()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = route.get(i);
+            counts[expected[i]]++;
+        }
+        assertArrayEquals(expected, stops.getStops());
+        int[] travelTimes = stops.getTravelTimes();
+        IntList.Snapshot travelTimesView = stops.getTravelTimesView();
+        assertEquals(expected.length - 1, travelTimes.length);
+        assertEquals(expected.length, travelTimesView.size());
+        assertEquals(0, travelTimesView.get(0));
+        for (int i = 1, minutes = 0; i < expected.length; i++) {
+            minutes += city.travelTimeToFrom(expected[i], expected[i - 1]);
+            assertEquals(minutes, travelTimes[i - 1]);
+            assertEquals(minutes, travelTimesView.get(i));
+        }
+        assertEquals(isClosed(route), stops.isClosed());
+        List<Integer> reachable = new ArrayList<>();
+        for (int id = 0; id < city.getStopCount(); id++) {
+            assertEquals(counts[id], stops.getOccurrenceCount(id));
+            if (!isClosed(route) && counts[id] < 2 && city.isReachableToFrom(id, route.get(route.size() - 1)))
+                reachable.add(id);
+        }
+        int[] reachableIds = stops.getReachableStopIds();
+        Arrays.sort(reachableIds);
+        assertEquals(reachable.size(), reachableIds.length);
+        for (int i = 0; i < reachableIds.length; i++)
+            assertEquals((int) reachable.get(i), reachableIds[i]);
+    }
 }//class
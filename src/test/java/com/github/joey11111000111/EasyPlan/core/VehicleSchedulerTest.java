@@ -0,0 +1,127 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.joey11111000111.EasyPlan.core.TimetableFixtures.*;
+import static org.junit.Assert.*;
+
+public class VehicleSchedulerTest {
+
+    private List<VirtualTimetable> randomTimetables(Random random, int count, int maxGap) {
+        List<VirtualTimetable> timetables = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<TimeBand> bands = new ArrayList<>();
+            if (random.nextBoolean())
+                bands.add(new TimeBand(new DayTime(random.nextInt(24 * 60)), 1 + random.nextInt(maxGap)));
+            timetables.add(createTimetable("s" + i, new DayTime(random.nextInt(24 * 60)),
+                    new DayTime(random.nextInt(24 * 60)), 1 + random.nextInt(maxGap), randomRoute(random), bands));
+        }
+        return timetables;
+    }
+
+    // the most trips that occupy a vehicle at the same time
+    private int maxOverlap(VehicleSchedule schedule) {
+        int layover = schedule.getMinLayoverMinutes();
+        int max = 0;
+        for (int i = 0; i < schedule.getTripCount(); i++) {
+            int time = schedule.getStartMinutesOf(i);
+            int count = 0;
+            for (int j = 0; j < schedule.getTripCount(); j++)
+                if (schedule.getStartMinutesOf(j) <= time && time < schedule.getEndMinutesOf(j) + layover)
+                    count++;
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    private void assertValid(VehicleSchedule schedule) {
+        int[] freeAt = new int[schedule.getVehicleCount()];
+        Arrays.fill(freeAt, Integer.MIN_VALUE);
+        for (int i = 0; i < schedule.getTripCount(); i++) {
+            if (i > 0)
+                assertTrue(schedule.getStartMinutesOf(i - 1) <= schedule.getStartMinutesOf(i));
+            int vehicle = schedule.getVehicleOf(i);
+            assertTrue(freeAt[vehicle] <= schedule.getStartMinutesOf(i));
+            freeAt[vehicle] = schedule.getEndMinutesOf(i) + schedule.getMinLayoverMinutes();
+        }
+    }
+
+    @Test
+    public void testSingleService() {
+        int[] stops = {0, 1, 0};
+        int duration = 8 + BusStop.travelTimeToFrom(0, 1);
+        VirtualTimetable timetable = createTimetable("a", new DayTime(8, 0), new DayTime(18, 0), 10, stops,
+                new ArrayList<>());
+        for (int layover = 0; layover < 30; layover += 7) {
+            VehicleSchedule schedule = VehicleScheduler.schedule(Collections.singletonList(timetable), layover);
+            assertEquals(61, schedule.getTripCount());
+            assertEquals((duration + layover + 9) / 10, schedule.getVehicleCount());
+            assertEquals(schedule.getVehicleCount(), schedule.getVehicleCountOf("a"));
+            assertEquals(0, schedule.getVehicleCountOf("b"));
+            assertEquals(8 * 60, schedule.getStartMinutesOf(0));
+            assertEquals(8 * 60 + duration, schedule.getEndMinutesOf(0));
+            assertEquals(60, schedule.getBusIndexOf(60));
+            assertEquals("a", schedule.getServiceNameOf(60));
+            assertValid(schedule);
+        }
+
+        // only the bus station, no trips to run
+        timetable = createTimetable("a", new DayTime(8, 0), new DayTime(18, 0), 10, new int[]{0}, new ArrayList<>());
+        assertEquals(0, VehicleScheduler.schedule(Collections.singletonList(timetable), 5).getVehicleCount());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        try {
+            VehicleScheduler.schedule(null, 0);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            VehicleScheduler.schedule(new ArrayList<>(), -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            VehicleScheduler.schedule(new ArrayList<>(), 0).getVehicleCountOf(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+    @Test
+    public void testRandomAgainstMaxOverlap() {
+        Random random = new Random(42);
+        for (int round = 0; round < 30; round++) {
+            List<VirtualTimetable> timetables = randomTimetables(random, 1 + random.nextInt(5), 120);
+            int layover = random.nextInt(20);
+            VehicleSchedule network = VehicleScheduler.schedule(timetables, layover);
+            assertValid(network);
+            assertEquals(maxOverlap(network), network.getVehicleCount());
+
+            // pooling the vehicles never needs more of them than running the services on their own
+            int separate = 0;
+            for (VirtualTimetable timetable : timetables) {
+                VehicleSchedule alone = VehicleScheduler.schedule(Collections.singletonList(timetable), layover);
+                assertEquals(maxOverlap(alone), alone.getVehicleCount());
+                assertTrue(network.getVehicleCountOf(timetable.getServiceName()) >= alone.getVehicleCount());
+                separate += alone.getVehicleCount();
+            }
+            assertTrue(network.getVehicleCount() <= separate);
+        }
+    }
+
+    @Test
+    public void testManyTrips() {
+        Random random = new Random(7);
+        List<VirtualTimetable> timetables = randomTimetables(random, 100, 3);
+        VehicleSchedule schedule = VehicleScheduler.schedule(timetables, 5);
+        assertTrue(schedule.getTripCount() > 10000);
+        assertValid(schedule);
+    }
+
+}//class
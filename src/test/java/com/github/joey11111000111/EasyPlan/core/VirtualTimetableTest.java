@@ -0,0 +1,221 @@
+package com.github.joey11111000111.EasyPlan.core;
+
+import com.github.joey11111000111.EasyPlan.util.DayTime;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class VirtualTimetableTest {
+
+    private iTimetable.iTimetableArguments createArgs(DayTime firstLeaveTime, DayTime boundaryTime, int timeGap,
+                                                      int[] stopIds, int[] travelTimes) {
+        iTimetable.iTimetableArguments args = new Timetable.TimetableArguments();
+        args.setName("22Y");
+        args.setFirstLeaveTime(firstLeaveTime);
+        args.setBoundaryTime(boundaryTime);
+        args.setTimeGap(timeGap);
+        args.setStopIds(stopIds);
+        args.setTravelTimes(travelTimes);
+        return args;
+    }
+
+    private void assertSameTimetable(iTimetable expected, iTimetable actual) {
+        assertEquals(expected.getServiceName(), actual.getServiceName());
+        assertEquals(expected.getBusCount(), actual.getBusCount());
+        assertEquals(expected.getTimeGap(), actual.getTimeGap());
+        assertEquals(expected.getTotalTravelTime(), actual.getTotalTravelTime());
+        List<iTimetable.iStopTimes> expectedStops = expected.getStopTimes();
+        List<iTimetable.iStopTimes> actualStops = actual.getStopTimes();
+        assertEquals(expectedStops.size(), actualStops.size());
+        for (int i = 0; i < expectedStops.size(); i++) {
+            assertEquals(expectedStops.get(i).getID(), actualStops.get(i).getID());
+            assertEquals(expectedStops.get(i).getTimes(), actualStops.get(i).getTimes());
+        }
+    }
+
+    @Test
+    public void testSameAsTimetable() {
+        int[] stopIds = new int[]{0, 1, 4, 6, 0};
+        int[] travelTimes = new int[]{8, 21, 31, 43};
+        iTimetable.iTimetableArguments args = createArgs(new DayTime(8, 0), new DayTime(18, 0), 10,
+                stopIds, travelTimes);
+        assertSameTimetable(Timetable.createTimetable(args), VirtualTimetable.createTimetable(args));
+
+        // over midnight
+        args = createArgs(new DayTime(22, 15), new DayTime(2, 0), 7, stopIds, travelTimes);
+        assertSameTimetable(Timetable.createTimetable(args), VirtualTimetable.createTimetable(args));
+
+        // peak hours, one of them over midnight
+        args = createArgs(new DayTime(5, 0), new DayTime(1, 0), 30, stopIds, travelTimes);
+        args.setTimeBands(Arrays.asList(new TimeBand(new DayTime(16, 0), 7), new TimeBand(new DayTime(7, 0), 5),
+                new TimeBand(new DayTime(9, 0), 20), new TimeBand(new DayTime(23, 50), 45)));
+        assertSameTimetable(Timetable.createTimetable(args), VirtualTimetable.createTimetable(args));
+
+        // only the station
+        args = createArgs(new DayTime(12, 0), new DayTime(11, 50), 23 * 60 + 59, new int[]{0}, new int[0]);
+        assertSameTimetable(Timetable.createTimetable(args), VirtualTimetable.createTimetable(args));
+    }
+
+    @Test
+    public void testCellsRowsAndColumns() {
+        iTimetable.iTimetableArguments args = createArgs(new DayTime(23, 0), new DayTime(1, 0), 20,
+                new int[]{0, 1, 4, 6}, new int[]{8, 21, 31});
+        Timetable materialized = (Timetable) Timetable.createTimetable(args);
+        VirtualTimetable tt = VirtualTimetable.createTimetable(args);
+
+        assertEquals(4, tt.getStopCount());
+        assertEquals(7, tt.getBusCount());
+        assertEquals(4, tt.getStopId(2));
+        assertEquals(0, tt.getTravelMinutes(0));
+        assertEquals(31, tt.getTravelMinutes(3));
+        assertEquals(23 * 60, tt.getFirstLeaveMinutes());
+        assertEquals(23 * 60 + 6 * 20, tt.getDepartureMinutes(6));
+        assertEquals(23 * 60 + 6 * 20 + 31, tt.getArrivalMinutes(3, 6));
+
+        for (int stop = 0; stop < tt.getStopCount(); stop++)
+            for (int bus = 0; bus < tt.getBusCount(); bus++)
+                assertEquals(materialized.getMinutesAt(stop, bus), tt.getMinutesAt(stop, bus));
+
+        List<DayTime> column = tt.getTimesOfBus(1);
+        assertEquals(4, column.size());
+        assertEquals(new DayTime(23, 20), column.get(0));
+        assertEquals(new DayTime(23, 51), column.get(3));
+
+        try {
+            tt.getDepartureMinutes(7);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            tt.getStopTimes().get(4);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            column.set(0, new DayTime());
+            assertTrue(false);
+        } catch (UnsupportedOperationException uoe) {}
+    }
+
+    @Test
+    public void testAppendAndTruncate() {
+        iTimetable.iTimetableArguments args = createArgs(new DayTime(8, 0), new DayTime(18, 0), 10,
+                new int[]{0, 1}, new int[]{8});
+        VirtualTimetable tt = VirtualTimetable.createTimetable(args);
+        VirtualTimetable longer = tt.appendStops(new int[]{4, 6});
+        assertEquals(2, tt.getStopCount());
+        assertEquals(4, longer.getStopCount());
+        assertEquals(31, longer.getTravelMinutes(3));
+
+        // the shorter timetable shares the stops, but a new append must not overwrite the longer one
+        VirtualTimetable shorter = longer.truncate(2);
+        VirtualTimetable other = shorter.appendStops(new int[]{0});
+        assertEquals(4, longer.getStopId(2));
+        assertEquals(6, longer.getStopId(3));
+        assertEquals(0, other.getStopId(2));
+        assertSameTimetable(Timetable.createTimetable(createArgs(new DayTime(8, 0), new DayTime(18, 0), 10,
+                new int[]{0, 1, 0}, new int[]{8, 8 + BusStop.travelTimeToFrom(0, 1)})), other);
+
+        try {
+            shorter.getStopId(2);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            tt.truncate(0);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            tt.truncate(3);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    // the stops alternate between the station and the stop 2, with the matching travel times
+    private void assertAlternatingStops(VirtualTimetable tt) {
+        int travelTime = 0;
+        for (int i = 0; i < tt.getStopCount(); i++) {
+            assertEquals(i % 2 == 0 ? 0 : 2, tt.getStopId(i));
+            if (i > 0)
+                travelTime += BusStop.travelTimeToFrom(tt.getStopId(i), tt.getStopId(i - 1));
+            assertEquals(travelTime, tt.getTravelMinutes(i));
+        }
+    }
+
+    @Test
+    public void testReadWhileAppending() throws Exception {
+        VirtualTimetable first = VirtualTimetable.createTimetable(createArgs(new DayTime(8, 0),
+                new DayTime(18, 0), 10, new int[]{0, 2}, new int[]{BusStop.travelTimeToFrom(2, 0)}));
+        AtomicReference<VirtualTimetable> latest = new AtomicReference<>(first);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    assertAlternatingStops(first);
+                    assertAlternatingStops(latest.get());
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        // the columns keep growing, and sometimes an older timetable appends to them again
+        Random random = new Random(4);
+        VirtualTimetable tt = first;
+        for (int i = 0; i < 5000; i++) {
+            if (tt.getStopCount() > 2 && random.nextInt(10) == 0)
+                tt = tt.truncate(2 + random.nextInt(tt.getStopCount() / 2 - 1) * 2);
+            tt = tt.appendStops(new int[]{0, 2});
+            latest.set(tt);
+        }
+        done.set(true);
+        reader.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertEquals(2, first.getStopCount());
+        assertAlternatingStops(tt);
+    }
+
+    @Test
+    public void testIncrementalUpdateOfService() {
+        BusService bs = new BusService();
+        TouchedStops ts = bs.getCurrentStops();
+        Random random = new Random(42);
+        bs.getTimetable();
+        for (int i = 0; i < 2000; i++) {
+            int[] reachable = ts.getReachableStopIds();
+            int operation = random.nextInt(10);
+            if (operation < 6 && reachable.length > 0)
+                ts.appendStop(reachable[random.nextInt(reachable.length)]);
+            else if (operation < 8 && ts.canUndo())
+                ts.undo();
+            else if (operation == 8 && ts.getStopCount() > 1) {
+                int[] stops = ts.getStops();
+                ts.removeChainFrom(stops[1 + random.nextInt(stops.length - 1)]);
+            } else if (operation == 9)
+                ts.clear();
+
+            // read the timetable only every few operations, to update it after more than one change
+            if (random.nextBoolean()) {
+                iTimetable.iTimetableArguments args = createArgs(new DayTime(8, 0), new DayTime(18, 0), 10,
+                        ts.getStops(), ts.getTravelTimes());
+                args.setName(BusService.DEFAULT_NAME);
+                assertSameTimetable(Timetable.createTimetable(args), bs.getTimetable());
+            }
+        }
+    }
+
+    @Test
+    public void testWithInvalidArgs() {
+        try {
+            VirtualTimetable.createTimetable(new Timetable.TimetableArguments());
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+}//class
@@ -0,0 +1,168 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryCityReaderTest {
+
+    private File directory;
+    private File cityFile;
+    private File compiledFile;
+
+    @Before
+    public void copyCity() throws Exception {
+        directory = Files.createTempDirectory("easyPlanCity").toFile();
+        cityFile = new File(directory, "city.xml");
+        compiledFile = new File(directory, "compiled" + File.separator + "city.bin");
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("city.xml")) {
+            Files.copy(is, cityFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @After
+    public void deleteFiles() {
+        assertTrue(!compiledFile.exists() || compiledFile.delete());
+        assertTrue(!compiledFile.getParentFile().exists() || compiledFile.getParentFile().delete());
+        assertTrue(cityFile.delete());
+        assertTrue(directory.delete());
+    }
+
+    private void assertSameCity(CompiledCity expected, CompiledCity actual) {
+        assertArrayEquals(expected.getXCoords(), actual.getXCoords());
+        assertArrayEquals(expected.getYCoords(), actual.getYCoords());
+        assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+        assertArrayEquals(expected.getTargets(), actual.getTargets());
+        assertArrayEquals(expected.getTravelMinutes(), actual.getTravelMinutes());
+    }
+
+    private long checksum() throws Exception {
+        return CityCompiler.checksumOf(new FileInputStream(cityFile));
+    }
+
+    @Test
+    public void testCompileAndLoad() throws Exception {
+        CompiledCity expected = CompiledCity.fromStopData(new StaxCityReader().readCityStops());
+        assertEquals(16, expected.getStopCount());
+
+        BinaryCityReader reader = new BinaryCityReader(cityFile, compiledFile);
+        assertSameCity(expected, reader.readCompiledCity());
+        assertTrue(compiledFile.exists());
+        assertEquals(CityCompiler.HEADER_SIZE + 4L * (3 * 16 + 1 + 2 * expected.getRoadCount()),
+                compiledFile.length());
+        // the second read uses the compiled file
+        assertSameCity(expected, CityCompiler.load(compiledFile, checksum()));
+        assertSameCity(expected, reader.readCompiledCity());
+
+        List<iBusStopData> stops = reader.readCityStops();
+        assertEquals(16, stops.size());
+        for (int id = 0; id < stops.size(); id++) {
+            assertEquals(id, stops.get(id).getId());
+            assertTrue(stops.get(id).isValid());
+        }
+        assertSameCity(expected, CompiledCity.fromStopData(stops));
+    }
+
+    @Test
+    public void testStaleCompiledFile() throws Exception {
+        BinaryCityReader reader = new BinaryCityReader(cityFile, compiledFile);
+        reader.readCompiledCity();
+        long oldChecksum = checksum();
+
+        // the travel time from the station to the stop 1 changes from 8 to 9
+        String xml = new String(Files.readAllBytes(cityFile.toPath()), StandardCharsets.UTF_8);
+        xml = xml.replaceFirst("<travel_time>8</travel_time>", "<travel_time>9</travel_time>");
+        Files.write(cityFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(oldChecksum, checksum());
+        try {
+            CityCompiler.load(compiledFile, checksum());
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+
+        CompiledCity city = reader.readCompiledCity();
+        assertEquals(1, city.getTargets()[0]);
+        assertEquals(9, city.getTravelMinutes()[0]);
+        assertEquals(9, CityCompiler.load(compiledFile, checksum()).getTravelMinutes()[0]);
+    }
+
+    @Test
+    public void testDamagedCompiledFile() throws Exception {
+        BinaryCityReader reader = new BinaryCityReader(cityFile, compiledFile);
+        CompiledCity expected = reader.readCompiledCity();
+        byte[] bytes = Files.readAllBytes(compiledFile.toPath());
+
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(compiledFile.toPath(), bytes);
+        try {
+            CityCompiler.load(compiledFile, checksum());
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+        // compiled again
+        assertSameCity(expected, reader.readCompiledCity());
+        CityCompiler.load(compiledFile, checksum());
+
+        Files.write(compiledFile.toPath(), new byte[] {1, 2, 3});
+        try {
+            CityCompiler.load(compiledFile, checksum());
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+        assertSameCity(expected, reader.readCompiledCity());
+
+        assertTrue(compiledFile.delete());
+        try {
+            CityCompiler.load(compiledFile, checksum());
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+    }
+
+    @Test
+    public void testInvalidCompiledCity() {
+        int[] coords = {0, 0};
+        try {
+            new CompiledCity(coords, coords, new int[] {0, 1, 2}, new int[] {1, 0}, null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        // valid
+        new CompiledCity(coords, coords, new int[] {0, 1, 2}, new int[] {1, 0}, new int[] {3, 4});
+        // lengths don't match
+        try {
+            new CompiledCity(coords, coords, new int[] {0, 1, 3}, new int[] {1, 0}, new int[] {3, 4});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // no roads from the stop 1
+        try {
+            new CompiledCity(coords, coords, new int[] {0, 2, 2}, new int[] {0, 1}, new int[] {3, 4});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // targets not in ascending order
+        try {
+            new CompiledCity(new int[1], new int[1], new int[] {0, 2}, new int[] {0, 0}, new int[] {3, 4});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // target doesn't exist
+        try {
+            new CompiledCity(coords, coords, new int[] {0, 1, 2}, new int[] {2, 0}, new int[] {3, 4});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        // no travel time
+        try {
+            new CompiledCity(coords, coords, new int[] {0, 1, 2}, new int[] {1, 0}, new int[] {3, 0});
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            new BinaryCityReader(null, compiledFile);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CityFileWatcherTest {
+
+    private File directory;
+    private File cityFile;
+    private String cityXml;
+
+    @Before
+    public void copyCity() throws Exception {
+        directory = Files.createTempDirectory("easyPlanCity").toFile();
+        cityFile = new File(directory, "city.xml");
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("city.xml")) {
+            Files.copy(is, cityFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        cityXml = new String(Files.readAllBytes(cityFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void deleteFiles() {
+        assertTrue(cityFile.delete());
+        assertTrue(directory.delete());
+    }
+
+    private void writeCity(String content) throws Exception {
+        Files.write(cityFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadCity() throws Exception {
+        assertEquals(16, CityFileWatcher.readCity(cityFile).getStopCount());
+        writeCity(cityXml.replace("<refid>1</refid>", "<refid>99</refid>"));
+        try {
+            CityFileWatcher.readCity(cityFile);
+            assertTrue(false);
+        } catch (CityReadFailureException crfe) {}
+        writeCity("<city><bus_stop>");
+        try {
+            CityFileWatcher.readCity(cityFile);
+            assertTrue(false);
+        } catch (CityReadFailureException crfe) {}
+        try {
+            CityFileWatcher.readCity(new File(directory, "missing.xml"));
+            assertTrue(false);
+        } catch (CityReadFailureException crfe) {}
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        BlockingQueue<CompiledCity> cities = new LinkedBlockingQueue<>();
+        CityFileWatcher watcher = new CityFileWatcher(cityFile, cities::add);
+        try {
+            // an invalid version is not passed on
+            writeCity(cityXml.replace("<refid>1</refid>", "<refid>99</refid>"));
+            assertNull(cities.poll(CityFileWatcher.SETTLE_MILLIS + 1000, TimeUnit.MILLISECONDS));
+
+            writeCity(cityXml.replace("<travel_time>8</travel_time>", "<travel_time>9</travel_time>"));
+            CompiledCity city = cities.poll(10, TimeUnit.SECONDS);
+            assertNotNull(city);
+            assertEquals(16, city.getStopCount());
+            int road = city.getOffsets()[0];
+            while (city.getTargets()[road] != 1)
+                road++;
+            assertEquals(9, city.getTravelMinutes()[road]);
+        } finally {
+            watcher.close();
+        }
+        try {
+            new CityFileWatcher(cityFile, null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+}//class
@@ -0,0 +1,127 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class IntArrayCacheTest {
+
+    private File directory;
+    private IntArrayCache cache;
+
+    @Before
+    public void createCache() throws Exception {
+        directory = Files.createTempDirectory("easyPlanCache").toFile();
+        // the cache must create the directory itself
+        assertTrue(directory.delete());
+        cache = new IntArrayCache(directory);
+    }
+
+    @After
+    public void deleteCache() {
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                assertTrue(file.delete());
+        assertTrue(!directory.exists() || directory.delete());
+    }
+
+    @Test
+    public void testSaveAndRead() throws Exception {
+        int[] first = {1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        int[] empty = {};
+        int[] large = new int[100000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = i * 31;
+        cache.save("test", 42L, first, empty, large);
+        assertEquals(1, directory.listFiles().length);
+
+        int[][] read = cache.read("test", 42L);
+        assertEquals(3, read.length);
+        assertArrayEquals(first, read[0]);
+        assertArrayEquals(empty, read[1]);
+        assertArrayEquals(large, read[2]);
+
+        // saving again replaces the previous content
+        cache.save("test", 43L, empty);
+        read = cache.read("test", 43L);
+        assertEquals(1, read.length);
+        assertEquals(0, read[0].length);
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testReadFailures() throws Exception {
+        try {
+            cache.read("missing", 1L);
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+
+        cache.save("stale", 1L, new int[] {1, 2, 3});
+        try {
+            cache.read("stale", 2L);
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+
+        // truncated file
+        File file = cache.fileOf("stale");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 2));
+        try {
+            cache.read("stale", 1L);
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+
+        // huge array length
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+            output.writeInt(IntArrayCache.MAGIC);
+            output.writeLong(1L);
+            output.writeInt(1);
+            output.writeInt(Integer.MAX_VALUE);
+        }
+        try {
+            cache.read("stale", 1L);
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+
+        // not a cache file
+        Files.write(file.toPath(), "<xml/>".getBytes("UTF-8"));
+        try {
+            cache.read("stale", 1L);
+            assertTrue(false);
+        } catch (ObjectReadFailureException orfe) {}
+    }
+
+    @Test
+    public void testInvalidArguments() throws Exception {
+        try {
+            new IntArrayCache(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            cache.save(null, 1L, new int[0]);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            cache.save("test", 1L, new int[0], null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            cache.read("", 1L);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+        try {
+            cache.read("../test", 1L);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+}
@@ -2,7 +2,9 @@ package com.github.joey11111000111.EasyPlan.dao;
 
 import com.github.joey11111000111.EasyPlan.core.Controller;
 import com.github.joey11111000111.EasyPlan.core.Core;
+import com.github.joey11111000111.EasyPlan.core.TimeBand;
 import com.github.joey11111000111.EasyPlan.core.exceptions.NameConflictException;
+import com.github.joey11111000111.EasyPlan.util.DayTime;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -79,6 +81,8 @@ public class ObjectIOTest {
         controller.setFirstLeaveHour(2);
         controller.setBoundaryMinute(11);
         controller.setBoundaryHour(12);
+        controller.setTimeBands(Arrays.asList(new TimeBand(new DayTime(7, 0), 5),
+                new TimeBand(new DayTime(9, 30), 20)));
 
         controller.appendStop(1);
         controller.appendStop(4);
@@ -127,7 +131,30 @@ public class ObjectIOTest {
         assertEquals(original.canUndo(), loaded.canUndo());
         System.out.println("-----canUndo +");
         assertEquals(original.getServiceCount(), loaded.getServiceCount());
+        assertEquals(original.getTimeBands(), loaded.getTimeBands());
+        assertArrayEquals(original.getStops(), loaded.getStops());
+        assertArrayEquals(original.getTravelTimes(), loaded.getTravelTimes());
     }
 
+    @Test
+    public void customSaveFileTest() throws Exception {
+        try {
+            new ObjectIO(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+
+        File customFile = File.createTempFile("easyPlan", ".xml");
+        customFile.deleteOnExit();
+        iObjectIO customIO = new ObjectIO(customFile);
+        Controller original = new Core();
+        fillWithData(original);
+        customIO.saveObject(original, Core.class);
+        assertFalse(saveFile.exists());
+
+        Controller loaded = customIO.readObject(Core.class);
+        loaded.init();
+        assertEquals(original.getServiceCount(), loaded.getServiceCount());
+        assertTrue(customFile.delete());
+    }
 
 }
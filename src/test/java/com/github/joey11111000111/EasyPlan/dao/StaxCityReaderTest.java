@@ -0,0 +1,115 @@
+package com.github.joey11111000111.EasyPlan.dao;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StaxCityReaderTest {
+
+    private void assertSameStops(List<iBusStopData> expected, List<iBusStopData> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            iBusStopData expectedStop = expected.get(i);
+            iBusStopData actualStop = actual.get(i);
+            assertTrue(actualStop.isValid());
+            assertEquals(expectedStop.getId(), actualStop.getId());
+            assertEquals(expectedStop.getX(), actualStop.getX());
+            assertEquals(expectedStop.getY(), actualStop.getY());
+            assertEquals(expectedStop.getReachableStops(), actualStop.getReachableStops());
+        }
+    }
+
+    // a city in the format of city.xml, with comments and the station after the first stop
+    private File writeCity(int stopCount, int connectionsPerStop) throws Exception {
+        File file = File.createTempFile("easyPlanCity", ".xml");
+        file.deleteOnExit();
+        Random random = new Random(stopCount);
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<?xml version=\"1.0\"?>");
+            writer.println("<city>");
+            for (int id = 1; id <= stopCount; id++) {
+                int stopId = id == 2 ? 0 : id == stopCount ? 2 : id;
+                String tag = stopId == 0 ? "bus_station" : "bus_stop";
+                writer.println("    <!-- " + stopId + ". -->");
+                writer.println("    <" + tag + ">");
+                writer.println("        <id> " + stopId + " </id>");
+                writer.println("        <position><x>" + random.nextInt(1000) + "</x>");
+                writer.println("            <y>" + (random.nextInt(1000) - 500) + "</y></position>");
+                writer.println("        <connections>");
+                for (int c = 0; c < connectionsPerStop; c++) {
+                    writer.println("            <connection>");
+                    writer.println("                <refid>" + random.nextInt(stopCount) + "</refid>");
+                    writer.println("                <travel_time>" + (1 + random.nextInt(20)) + "</travel_time>");
+                    writer.println("            </connection>");
+                }
+                writer.println("        </connections>");
+                writer.println("    </" + tag + ">");
+            }
+            writer.println("</city>");
+        }
+        return file;
+    }
+
+    @Test
+    public void testDefaultCity() {
+        List<iBusStopData> stops = new StaxCityReader().readCityStops();
+        assertEquals(16, stops.size());
+        assertEquals(0, stops.get(0).getId());
+        assertEquals(5, stops.get(0).getX());
+        assertEquals(9, stops.get(0).getY());
+        assertEquals(Integer.valueOf(8), stops.get(0).getReachableStops().get(1));
+        assertSameStops(new CityReader().readCityStops(), stops);
+    }
+
+    @Test
+    public void testSameAsDomReader() throws Exception {
+        File file = writeCity(300, 4);
+        assertSameStops(new CityReader(file).readCityStops(), new StaxCityReader(file).readCityStops());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testLargeCity() throws Exception {
+        File file = writeCity(20000, 10);
+        List<iBusStopData> stops = new StaxCityReader(file).readCityStops();
+        assertEquals(20000, stops.size());
+        assertEquals(0, stops.get(0).getId());
+        int connections = 0;
+        for (iBusStopData stop : stops)
+            connections += stop.getReachableStops().size();
+        assertTrue(connections > 150000);
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testSelection() {
+        String original = System.getProperty(iCityReader.READER_PROPERTY);
+        try {
+            System.clearProperty(iCityReader.READER_PROPERTY);
+            assertTrue(iCityReader.createDefault() instanceof BinaryCityReader);
+            System.setProperty(iCityReader.READER_PROPERTY, "DOM");
+            assertTrue(iCityReader.createDefault() instanceof CityReader);
+            System.setProperty(iCityReader.READER_PROPERTY, "stax");
+            assertTrue(iCityReader.createDefault() instanceof StaxCityReader);
+        } finally {
+            if (original == null)
+                System.clearProperty(iCityReader.READER_PROPERTY);
+            else
+                System.setProperty(iCityReader.READER_PROPERTY, original);
+        }
+        try {
+            new StaxCityReader(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            new CityReader(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.github.joey11111000111.EasyPlan.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntListTest {
+
+    private IntList list;
+
+    @Before
+    public void init() {
+        list = new IntList(2);
+    }
+
+    @Test
+    public void testAppendAndRemove() {
+        assertTrue(list.isEmpty());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, list.size());
+            list.append(i % 7);
+        }
+        assertEquals(6, list.get(20 - 14));
+        assertEquals(5, list.getLast());
+        assertEquals(19, list.lastIndexOf(5));
+        assertEquals(-1, list.lastIndexOf(7));
+
+        assertArrayEquals(new int[] {3, 4, 5}, list.removeFrom(17));
+        assertEquals(17, list.size());
+        assertEquals(2, list.removeLast());
+        list.appendAll(new int[] {8, 9});
+        assertArrayEquals(new int[] {1, 8, 9}, list.toArray(15));
+        assertArrayEquals(new int[0], list.toArray(18));
+        assertEquals(18, list.toArray().length);
+
+        list.truncate(2);
+        assertArrayEquals(new int[] {0, 1}, list.toArray());
+        try {
+            list.truncate(3);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        list.truncate(0);
+        assertTrue(list.isEmpty());
+        try {
+            list.removeLast();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+        try {
+            list.getLast();
+            assertTrue(false);
+        } catch (IllegalStateException ise) {}
+        try {
+            list.removeFrom(0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            list.get(0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            list.toArray(1);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            list.appendAll(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+        try {
+            new IntList(-1);
+            assertTrue(false);
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    @Test
+    public void testSnapshot() {
+        list.appendAll(new int[] {1, 2, 3});
+        IntList.Snapshot snapshot = list.snapshot();
+        list.append(4);
+        list.removeFrom(1);
+        list.append(5);
+        assertEquals(3, snapshot.size());
+        assertArrayEquals(new int[] {1, 2, 3}, snapshot.toArray());
+        assertArrayEquals(new int[] {1, 5}, list.toArray());
+        assertArrayEquals(new int[] {1, 5}, list.snapshot().toArray());
+
+        IntList.Snapshot empty = new IntList(0).snapshot();
+        assertEquals(0, empty.size());
+        try {
+            empty.get(0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+        try {
+            snapshot.get(3);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException ioobe) {}
+    }
+
+    @Test
+    public void testFromSnapshot() {
+        list.appendAll(new int[] {1, 2, 3});
+        IntList.Snapshot snapshot = list.snapshot();
+        IntList first = new IntList(snapshot);
+        IntList second = new IntList(snapshot);
+        // both lists append right after the shared elements
+        list.append(4);
+        first.append(5);
+        second.removeLast();
+        second.append(6);
+        assertArrayEquals(new int[] {1, 2, 3, 4}, list.toArray());
+        assertArrayEquals(new int[] {1, 2, 3, 5}, first.toArray());
+        assertArrayEquals(new int[] {1, 2, 6}, second.toArray());
+        assertArrayEquals(new int[] {1, 2, 3}, snapshot.toArray());
+        try {
+            new IntList(null);
+            assertTrue(false);
+        } catch (NullPointerException npe) {}
+    }
+
+}//class